@@ -0,0 +1,127 @@
+package org.ndexbio.common.access;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+
+/**
+ * One of the connection pools of NdexDatabase, with the counters reported by {@link #getStats()}.
+ */
+public final class NdexConnectionPool {
+
+	private static final Logger logger = Logger.getLogger(NdexConnectionPool.class.getName());
+
+	private final String name;
+	private final BasicDataSource dataSource;
+	private final long maxWaitSeconds;
+
+	private final AtomicInteger waiting = new AtomicInteger();
+	private final AtomicLong waitTimeouts = new AtomicLong();
+
+	NdexConnectionPool(String name, String dbURL, String dbUserName, String dbPassword, int size, long maxWaitSeconds,
+			int statementCacheSize) {
+		this(name, dbURL, dbUserName, dbPassword, size, maxWaitSeconds, statementCacheSize, false);
+	}
+
+	/**
+	 * @param readOnly true for the pools of read replicas. Their connections are read only, so a write routed to a
+	 * replica by mistake fails instead of being lost.
+	 */
+	NdexConnectionPool(String name, String dbURL, String dbUserName, String dbPassword, int size, long maxWaitSeconds,
+			int statementCacheSize, boolean readOnly) {
+		this.name = name;
+		this.maxWaitSeconds = maxWaitSeconds;
+
+		dataSource = new BasicDataSource();
+		dataSource.setUsername(dbUserName);
+		dataSource.setPassword(dbPassword);
+		dataSource.setDriverClassName("org.postgresql.Driver");
+		dataSource.setUrl(dbURL);
+		dataSource.setInitialSize(Math.min(3, size));
+		dataSource.setMaxIdle(Math.min(5, size));
+		dataSource.setMaxConnLifetimeMillis(-1);
+		dataSource.setMaxTotal(size);
+		dataSource.setMaxWait(Duration.ofSeconds(maxWaitSeconds));
+		if ( readOnly)
+			dataSource.setDefaultReadOnly(Boolean.TRUE);
+
+		// reusing the statements lets the driver switch them to server side prepared statements, so the queries
+		// are not parsed and planned again on every request.
+		if ( statementCacheSize > 0) {
+			dataSource.setPoolPreparedStatements(true);
+			dataSource.setMaxOpenPreparedStatements(statementCacheSize);
+		}
+
+		logger.info("Connection pool " + name + " to " + dbUserName + "@" + dbURL + " (" + size + ", max wait "
+				+ maxWaitSeconds + " seconds) created. Statement cache size: " + statementCacheSize);
+	}
+
+	/**
+	 * Get a connection from the pool. The connection is set to autoCommit=false.
+	 * @return
+	 * @throws SQLException if no connection became available within the max wait time of the pool.
+	 */
+	Connection getConnection() throws SQLException {
+		waiting.incrementAndGet();
+		Connection conn;
+		try {
+			conn = dataSource.getConnection();
+		} catch (SQLException e) {
+			waitTimeouts.incrementAndGet();
+			throw new SQLException("No connection available in the " + name + " pool after waiting up to "
+					+ maxWaitSeconds + " seconds: " + e.getMessage(), e);
+		} finally {
+			waiting.decrementAndGet();
+		}
+		conn.setAutoCommit(false);
+		return conn;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getNumActive() {
+		return dataSource.getNumActive();
+	}
+
+	public int getNumIdle() {
+		return dataSource.getNumIdle();
+	}
+
+	/**
+	 * @return number of threads waiting for a connection from this pool.
+	 */
+	public int getNumWaiting() {
+		return waiting.get();
+	}
+
+	/**
+	 * @return number of times a connection could not be obtained from this pool, mostly because the wait timed out.
+	 */
+	public long getWaitTimeouts() {
+		return waitTimeouts.get();
+	}
+
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("maxTotal", Integer.valueOf(dataSource.getMaxTotal()));
+		stats.put("active", Integer.valueOf(getNumActive()));
+		stats.put("idle", Integer.valueOf(getNumIdle()));
+		stats.put("waiting", Integer.valueOf(getNumWaiting()));
+		stats.put("waitTimeouts", Long.valueOf(getWaitTimeouts()));
+		stats.put("maxWaitSeconds", Long.valueOf(maxWaitSeconds));
+		return stats;
+	}
+
+	void close() throws SQLException {
+		dataSource.close();
+	}
+}
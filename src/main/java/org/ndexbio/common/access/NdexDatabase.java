@@ -32,18 +32,53 @@ package org.ndexbio.common.access;
 
 
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.logging.Logger;
 
-import org.apache.commons.dbcp2.BasicDataSource;
 import org.ndexbio.model.exceptions.NdexException;
+import org.ndexbio.rest.Configuration;
 
+/**
+ * The connection pools of this server. API requests and background work (the task processors, Solr index rebuilds,
+ * exports and other scheduled jobs) get their connections from separate pools, so a batch of long tasks can't take
+ * the connections the interactive requests need. A thread uses the request pool unless it has been marked with
+ * {@link #setCurrentThreadWorkload(Workload)}.
+ * <p>
+ * Read replicas can be configured with NdexDBReplicaURLs. The API requests marked as read only by the authentication
+ * filter (see {@link #setCurrentThreadRequest(UUID, boolean)}) get their connections from a replica, unless the user
+ * committed a change within the last few seconds; everything else uses the primary database. The recent writers are
+ * only known to the server that made the change, see {@link NdexReadReplicas}.
+ * <p>
+ * A network summary read from a replica is sent with the version (ETag) of the same replica, so the ETag always
+ * matches the data the client got. If the replica is behind, an update made with that ETag fails with 412 and the
+ * client has to read the network again; after a user's own change this can only happen on another server.
+ */
 public class NdexDatabase {
 	
+	public enum Workload { REQUEST, BACKGROUND }
+	
 	private static NdexDatabase INSTANCE = null;
 	
-	private BasicDataSource connectionPool;
+	private NdexConnectionPool requestPool;
+	
+	// null when the background work shares the request pool.
+	private NdexConnectionPool backgroundPool;
+	
+	// null when no replica is configured.
+	private NdexReadReplicas replicas;
+	
+	private static final ThreadLocal<Workload> currentWorkload = new ThreadLocal<>();
 	
+	// the user of the API request on the current thread, and whether the request only reads.
+	private static final ThreadLocal<UUID> currentUser = new ThreadLocal<>();
+	private static final ThreadLocal<Boolean> currentRequestReadOnly = new ThreadLocal<>();
 	
 	private static final Logger logger = Logger
 			.getLogger(NdexDatabase.class.getName());
@@ -61,21 +96,40 @@ public class NdexDatabase {
 			
 	//	Arrays.sort(NdexSupportedAspects) ;
 		
-		connectionPool = new BasicDataSource();
-		
-		connectionPool.setUsername(dbUserName);
-		connectionPool.setPassword(dbPassword);
-		
-		connectionPool.setDriverClassName("org.postgresql.Driver");
-		connectionPool.setUrl(dbURL);
-		connectionPool.setInitialSize(3);		
-		connectionPool.setMaxIdle(5);
-		connectionPool.setMaxConnLifetimeMillis(-1);
-		connectionPool.setMaxTotal(size);
-		
+		Configuration config = Configuration.getInstance();
+		int statementCacheSize = Configuration.defaultDBStatementCacheSize;
+		long maxWait = Configuration.defaultDBPoolMaxWait;
+		int backgroundSize = 0;
+		long backgroundMaxWait = Configuration.defaultDBBackgroundPoolMaxWait;
+		List<String> replicaURLs = new ArrayList<>();
+		int replicaSize = size;
+		long stickySeconds = Configuration.defaultDBReplicaStickySeconds;
+		if ( config != null) {
+			statementCacheSize = config.getDBStatementCacheSize();
+			maxWait = config.getDBPoolMaxWait();
+			backgroundSize = config.getDBBackgroundPoolSize();
+			backgroundMaxWait = config.getDBBackgroundPoolMaxWait();
+			replicaURLs = config.getDBReplicaURLs();
+			replicaSize = config.getDBReplicaPoolSize();
+			stickySeconds = config.getDBReplicaStickySeconds();
+		}
 		
-	    logger.info("Connection pool to " + dbUserName + "@" + dbURL + " ("+ size + ") created.");
+		requestPool = new NdexConnectionPool(Workload.REQUEST.name().toLowerCase(), dbURL, dbUserName, dbPassword,
+				size, maxWait, statementCacheSize);
+		if ( backgroundSize > 0)
+			backgroundPool = new NdexConnectionPool(Workload.BACKGROUND.name().toLowerCase(), dbURL, dbUserName,
+					dbPassword, backgroundSize, backgroundMaxWait, statementCacheSize);
+		else
+			logger.info("Background work shares the request connection pool.");
 		
+		if ( !replicaURLs.isEmpty()) {
+			List<NdexConnectionPool> pools = new ArrayList<>(replicaURLs.size());
+			for ( int i = 0; i < replicaURLs.size(); i++)
+				pools.add(new NdexConnectionPool("replica" + (i + 1), replicaURLs.get(i), dbUserName, dbPassword,
+						replicaSize, maxWait, statementCacheSize, true));
+			replicas = new NdexReadReplicas(pools, stickySeconds);
+			logger.info(pools.size() + " read replica(s) configured. Sticky period after a write: " + stickySeconds + " seconds.");
+		}
 	}
 	
 	public static synchronized long getCommitId () {
@@ -83,12 +137,12 @@ public class NdexDatabase {
 	}
 	
 	/**
-	 * This function create a NDEx database object. It connects to the specified back end database if it exists, otherwise it will create one and connect to it. 
-	 * @param HostURI  The URI of this NDEX server. It will be used to construct URIs for the networks that are created in this database.
+	 * This function create a NDEX database object. It connects to the specified back end database if it exists, otherwise it will create one and connect to it. 
+	 * The background pool and the wait limits are read from the configuration.
 	 * @param dbURL   Specify where the database is and what protocol we should use to connect to it.
 	 * @param dbUserName   the account that administrator that backend database.
 	 * @param dbPassword
-	 * @param size
+	 * @param size size of the request connection pool.
 	 * @return
 	 * @throws NdexException
 	 */
@@ -114,8 +168,16 @@ public class NdexDatabase {
     public static synchronized void close () throws SQLException {
     	if ( INSTANCE != null ) {
     		logger.info("Closing database.");
-    		INSTANCE.connectionPool.close();
-    		INSTANCE.connectionPool = null;
+    		INSTANCE.requestPool.close();
+    		INSTANCE.requestPool = null;
+    		if ( INSTANCE.backgroundPool != null) {
+    			INSTANCE.backgroundPool.close();
+    			INSTANCE.backgroundPool = null;
+    		}
+    		if ( INSTANCE.replicas != null) {
+    			INSTANCE.replicas.close();
+    			INSTANCE.replicas = null;
+    		}
     		INSTANCE = null;
     		logger.info("Database closed. on thread: " + Thread.currentThread().getName());
     	} else 
@@ -123,19 +185,123 @@ public class NdexDatabase {
     }
     
     /**
-     * Get a connection from the connection pool. The connection is set to autoCommit=false and user need to do a explicit commit and close the connection at the end.
+     * Set which pool the connections of the current thread come from. Long running background threads should call
+     * this with BACKGROUND when they start.
+     * @param workload
+     */
+    public static void setCurrentThreadWorkload(Workload workload) {
+    	currentWorkload.set(workload);
+    }
+    
+    public static Workload getCurrentThreadWorkload() {
+    	Workload w = currentWorkload.get();
+    	return w == null ? Workload.REQUEST : w;
+    }
+    
+    /**
+     * Set the API request handled by the current thread. Called by the authentication filter at the start of every
+     * request.
+     * @param userId the authenticated user, null for anonymous requests.
+     * @param readOnly true if the request only reads, so its connections can come from a read replica.
+     */
+    public static void setCurrentThreadRequest(UUID userId, boolean readOnly) {
+    	currentUser.set(userId);
+    	currentRequestReadOnly.set(Boolean.valueOf(readOnly));
+    }
+    
+    public static void clearCurrentThreadRequest() {
+    	currentUser.remove();
+    	currentRequestReadOnly.remove();
+    }
+    
+    /**
+     * Check, before the commit, whether the transaction of a primary connection changed anything, so that only real
+     * writes start the sticky period of {@link #writeCommitted()}. Always false when no replica is configured, in
+     * which case the database isn't asked.
+     * @param conn
+     * @param pendingInvalidations true if the transaction has cache invalidations waiting for the commit. Such a
+     * transaction has written, so the database isn't asked.
+     * @return
+     * @throws SQLException
+     */
+    public static boolean isWriteTransaction(Connection conn, boolean pendingInvalidations) throws SQLException {
+    	NdexDatabase db = getInstance();
+    	if ( db == null || db.replicas == null || currentUser.get() == null || conn.isReadOnly())
+    		return false;
+    	if ( pendingInvalidations)
+    		return true;
+    	// a transaction only gets a transaction id when it writes.
+    	try (Statement st = conn.createStatement();
+    			ResultSet rs = st.executeQuery("select txid_current_if_assigned() is not null")) {
+    		return rs.next() && rs.getBoolean(1);
+    	}
+    }
+    
+    /**
+     * Called after a transaction that changed something is committed on the primary database (see
+     * {@link #isWriteTransaction(Connection, boolean)}). The user of the current request reads from the primary
+     * database for the sticky period, so the change is visible to the user even if the replicas haven't got it yet.
+     */
+    public static void writeCommitted() {
+    	NdexDatabase db = getInstance();
+    	UUID userId = currentUser.get();
+    	if ( db != null && db.replicas != null && userId != null)
+    		db.replicas.recordWrite(userId);
+    }
+    
+    /**
+     * @return true if the connections of the current thread come from a read replica.
+     */
+    public boolean currentThreadReadsFromReplica() {
+    	if ( replicas == null || getCurrentThreadWorkload() != Workload.REQUEST
+    			|| !Boolean.TRUE.equals(currentRequestReadOnly.get()))
+    		return false;
+    	UUID userId = currentUser.get();
+    	return userId == null || !replicas.isRecentWriter(userId);
+    }
+    
+    /**
+     * Get a connection from the connection pool of the current thread's workload. The connection is set to autoCommit=false and user need to do a explicit commit and close the connection at the end.
+     * A read only API request gets a read only connection from a replica, if replicas are configured.
      * @return
      * @throws SQLException
      */
     public Connection getConnection() throws SQLException {
-    	
-//	    logger.info("Current idle connection in db connection pool is " + connectionPool.getNumIdle());
-
-    	Connection conn = connectionPool.getConnection();
-    	conn.setAutoCommit(false);
-    	return conn;
+    	if ( currentThreadReadsFromReplica()) {
+    		try {
+    			return replicas.getConnection();
+    		} catch (SQLException e) {
+    			logger.warning("No replica connection available, reading from the primary database: " + e.getMessage());
+    		}
+    	}
+    	return getConnection(getCurrentThreadWorkload());
+    }
+    
+    public Connection getConnection(Workload workload) throws SQLException {
+    	if ( workload == Workload.BACKGROUND && backgroundPool != null)
+    		return backgroundPool.getConnection();
+    	return requestPool.getConnection();
+    }
+    
+    /**
+     * @return active, idle and waiting connection counts of each pool, by pool name.
+     */
+    public Map<String, Map<String, Object>> getPoolStats() {
+    	Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+    	result.put(requestPool.getName(), requestPool.getStats());
+    	if ( backgroundPool != null)
+    		result.put(backgroundPool.getName(), backgroundPool.getStats());
+    	if ( replicas != null)
+    		result.putAll(replicas.getPoolStats());
+    	return result;
     }
 
+    /**
+     * @return the counts of the pool used by the API requests, see {@link NdexConnectionPool#getStats()}.
+     */
+    public Map<String, Object> getRequestPoolStats() {
+    	return requestPool.getStats();
+    }
 
  
 }
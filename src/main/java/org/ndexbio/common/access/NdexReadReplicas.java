@@ -0,0 +1,104 @@
+package org.ndexbio.common.access;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * The read replicas of the database, used by NdexDatabase for the API requests that only read (see
+ * org.ndexbio.rest.services.ReadsFromReplica).
+ * <p>
+ * Connections are taken from the replicas in turn; if a replica can't give one, the next one is tried. Replicas lag
+ * behind the primary database, so a user who just committed a change could read the old data from a replica. To
+ * prevent it, every commit made for a user is recorded and the reads of that user go to the primary database until
+ * the sticky period (NdexDBReplicaStickySeconds, default 10) has passed since the last one. Only the transactions
+ * that changed something are recorded.
+ * <p>
+ * The recent writers are kept in the memory of this server, so the stickiness only holds for the requests it
+ * serves. With several servers behind a load balancer, a user whose next request goes to another server can still
+ * read from a replica that hasn't got the change; the load balancer has to route a user's requests to the same server
+ * for read-your-writes across servers.
+ */
+final class NdexReadReplicas {
+
+	private static final Logger logger = Logger.getLogger(NdexReadReplicas.class.getName());
+
+	// only bounds the memory used if many users write at the same time; a user that is dropped early just reads from
+	// a replica sooner.
+	private static final long maxRecentWriters = 100000;
+
+	private final List<NdexConnectionPool> pools;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	private final Cache<UUID, Boolean> recentWriters;
+
+	NdexReadReplicas(List<NdexConnectionPool> pools, long stickySeconds, Ticker ticker) {
+		this.pools = new ArrayList<>(pools);
+		recentWriters = CacheBuilder.newBuilder().maximumSize(maxRecentWriters)
+				.expireAfterWrite(stickySeconds, TimeUnit.SECONDS).ticker(ticker).build();
+	}
+
+	NdexReadReplicas(List<NdexConnectionPool> pools, long stickySeconds) {
+		this(pools, stickySeconds, Ticker.systemTicker());
+	}
+
+	/**
+	 * Record that a transaction of the user has been committed, so the user reads from the primary database during
+	 * the sticky period.
+	 * @param userId
+	 */
+	void recordWrite(UUID userId) {
+		recentWriters.put(userId, Boolean.TRUE);
+	}
+
+	/**
+	 * @return true if the user committed a change within the sticky period.
+	 */
+	boolean isRecentWriter(UUID userId) {
+		return recentWriters.getIfPresent(userId) != null;
+	}
+
+	/**
+	 * Get a read only connection from the next replica. The connection is set to autoCommit=false.
+	 * @return
+	 * @throws SQLException if none of the replicas gave a connection.
+	 */
+	Connection getConnection() throws SQLException {
+		SQLException last = null;
+		int start = Math.floorMod(next.getAndIncrement(), pools.size());
+		for ( int i = 0; i < pools.size(); i++) {
+			NdexConnectionPool pool = pools.get((start + i) % pools.size());
+			try {
+				return pool.getConnection();
+			} catch (SQLException e) {
+				logger.warning("Failed to get a connection from replica pool " + pool.getName() + ": " + e.getMessage());
+				last = e;
+			}
+		}
+		throw last;
+	}
+
+	Map<String, Map<String, Object>> getPoolStats() {
+		Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+		for ( NdexConnectionPool pool : pools)
+			result.put(pool.getName(), pool.getStats());
+		return result;
+	}
+
+	void close() throws SQLException {
+		for ( NdexConnectionPool pool : pools)
+			pool.close();
+	}
+}
@@ -0,0 +1,171 @@
+package org.ndexbio.common.access;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A unit of work on the current thread, usually one API request or one task. All the DAOs created with their default
+ * constructor on this thread while the unit of work is open share one database connection and one transaction, so a
+ * request that has a NetworkDAO, a UserDAO and a TaskDAO open at the same time only holds one connection of the pool.
+ * <p>
+ * The connection is taken from the pool when the first DAO is created. When the last open DAO is closed, the
+ * uncommitted work is rolled back and the connection goes back to the pool, the same as closing a DAO that has its
+ * own connection, so a request doesn't keep a connection while it streams a file back to the client. A commit or
+ * rollback from any of the DAOs applies to the whole unit of work.
+ * <p>
+ * Units of work can be nested, the inner ones join the outer one.
+ *
+ * <pre>
+ * try (NdexUnitOfWork work = NdexUnitOfWork.begin()) {
+ *     ... create and use DAOs ...
+ * }
+ * </pre>
+ */
+public final class NdexUnitOfWork implements AutoCloseable {
+
+	private static final Logger logger = Logger.getLogger(NdexUnitOfWork.class.getName());
+
+	private static final ThreadLocal<NdexUnitOfWork> current = new ThreadLocal<>();
+
+	private int depth = 1;
+	// read by other threads, e.g. to renew the network locks held by this unit of work.
+	private volatile boolean open = true;
+	private Connection connection;
+	// number of DAOs that are using the connection.
+	private int users;
+	// cache invalidations to repeat after the transaction commits.
+	private List<Runnable> afterCommitActions;
+
+	private NdexUnitOfWork() {}
+
+	/**
+	 * Start a unit of work on the current thread, or join the one that is already open.
+	 */
+	public static NdexUnitOfWork begin() {
+		NdexUnitOfWork work = current.get();
+		if ( work != null) {
+			work.depth++;
+			return work;
+		}
+		work = new NdexUnitOfWork();
+		current.set(work);
+		return work;
+	}
+
+	/**
+	 * @return the unit of work open on the current thread, or null.
+	 */
+	public static NdexUnitOfWork current() {
+		return current.get();
+	}
+
+	/**
+	 * Get the shared connection for a new DAO. Each call has to be paired with a call to {@link #release()}.
+	 * @return
+	 * @throws SQLException
+	 */
+	public Connection acquire() throws SQLException {
+		if ( connection == null)
+			connection = NdexDatabase.getInstance().getConnection();
+		users++;
+		return connection;
+	}
+
+	/**
+	 * Called when a DAO that shares the connection is closed.
+	 * @throws SQLException
+	 */
+	public void release() throws SQLException {
+		if ( users <= 0)
+			return;
+		users--;
+		if ( users == 0)
+			closeConnection();
+	}
+
+	public void commit() throws SQLException {
+		if ( connection == null)
+			return;
+		boolean wrote = NdexDatabase.isWriteTransaction(connection, afterCommitActions != null);
+		connection.commit();
+		if ( wrote)
+			NdexDatabase.writeCommitted();
+		List<Runnable> actions = afterCommitActions;
+		afterCommitActions = null;
+		if ( actions != null) {
+			for ( Runnable action : actions)
+				action.run();
+		}
+	}
+
+	public void rollback() throws SQLException {
+		afterCommitActions = null;
+		if ( connection != null)
+			connection.rollback();
+	}
+
+	/**
+	 * Run an action after the current transaction commits. The action is dropped if the transaction is rolled back.
+	 * @param action
+	 */
+	public void afterCommit(Runnable action) {
+		if ( afterCommitActions == null)
+			afterCommitActions = new ArrayList<>();
+		afterCommitActions.add(action);
+	}
+
+	/**
+	 * @return true if the current transaction has actions waiting for the commit, i.e. it made changes that invalidate
+	 * cached data.
+	 */
+	public boolean hasAfterCommitActions() {
+		return afterCommitActions != null;
+	}
+
+	/**
+	 * @return false once the unit of work has been closed.
+	 */
+	public boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * @return true if a DAO of this unit of work holds a connection.
+	 */
+	public boolean hasConnection() {
+		return connection != null;
+	}
+
+	private void closeConnection() throws SQLException {
+		Connection conn = connection;
+		connection = null;
+		users = 0;
+		afterCommitActions = null;
+		try {
+			// the pool rolls back a returned connection too, but do it here so it doesn't depend on the pool settings.
+			conn.rollback();
+		} finally {
+			conn.close();
+		}
+	}
+
+	@Override
+	public void close() {
+		if ( --depth > 0)
+			return;
+		open = false;
+		current.remove();
+		if ( connection != null) {
+			logger.warning(users + " DAO(s) were not closed at the end of the unit of work.");
+			try {
+				closeConnection();
+			} catch (SQLException e) {
+				logger.log(Level.WARNING, "Failed to close the connection of a unit of work: " + e.getMessage(), e);
+			}
+		}
+	}
+}
@@ -16,19 +16,22 @@ import java.util.List;
 import java.util.UUID;
 
 import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
+import org.ndexbio.common.persistence.AspectStorage;
 import org.ndexbio.common.persistence.CX2NetworkLoader;
+import org.ndexbio.common.persistence.NetworkPathResolver;
 import org.ndexbio.cx2.aspect.element.core.CxAttributeDeclaration;
 import org.ndexbio.cx2.aspect.element.core.CxEdge;
 import org.ndexbio.cx2.aspect.element.core.CxMetadata;
 import org.ndexbio.cx2.aspect.element.core.CxNetworkAttribute;
 import org.ndexbio.cx2.aspect.element.core.CxNode;
+import org.ndexbio.cx2.aspect.element.core.CxOpaqueAspectElement;
 import org.ndexbio.cx2.aspect.element.core.CxVisualProperty;
 import org.ndexbio.cx2.io.CXWriter;
+import org.ndexbio.cxio.core.AspectIterator;
 import org.ndexbio.cxio.core.NdexCXNetworkWriter;
 import org.ndexbio.cxio.metadata.MetaDataCollection;
 import org.ndexbio.cxio.metadata.MetaDataElement;
 import org.ndexbio.model.exceptions.NdexException;
-import org.ndexbio.rest.Configuration;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
@@ -92,7 +95,7 @@ public class CX2NetworkFileGenerator {
 	
 	// create a CX2 network using a tmp file name and return the temp file name;
 	public String createCX2File() throws FileNotFoundException, IOException, NdexException {
-		String tmpFileName = Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/" + 
+		String tmpFileName = NetworkPathResolver.getNetworkDirPath(networkId) + "/" + 
 				 Thread.currentThread().getId() + "-" + Calendar.getInstance().getTimeInMillis();
 		
 		List<CxMetadata> remainingAspects = getRemainingAspects(metadata);
@@ -119,11 +122,22 @@ public class CX2NetworkFileGenerator {
 	}
 	
 	private void writeAspect(String aspectName, CXWriter wtr) throws NdexException, IOException {
-		 String aspectFileName = Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/"+
+		 String aspectFileName = NetworkPathResolver.getNetworkDirPath(networkId) + "/"+
 				 CX2NetworkLoader.cx2AspectDirName+ "/" + aspectName;
 		 File f = new File (aspectFileName);
-		 if (f.exists()) {
-			 wtr.writeAspectFromAspectFile(aspectName, aspectFileName);
+		 if (AspectStorage.aspectExists(f)) {
+			 if ( AspectStorage.isPlainAspectFile(aspectFileName)) {
+				 wtr.writeAspectFromAspectFile(aspectName, aspectFileName);
+				 return;
+			 }
+			 // decompress the aspect while it is written instead of making a plain copy first.
+			 wtr.startAspectFragment(aspectName);
+			 try (AspectIterator<CxOpaqueAspectElement> a = new AspectIterator<>(AspectStorage.newAspectInputStream(aspectFileName),
+					 CxOpaqueAspectElement.class)) {
+				 while ( a.hasNext())
+					 wtr.writeElementInFragment(a.next());
+			 }
+			 wtr.endAspectFragment();
 		 }
 	}
 	
@@ -132,7 +146,7 @@ public class CX2NetworkFileGenerator {
 		String tmpFileName = createCX2File();
 			// rename the tmp file
 		java.nio.file.Path src = Paths.get(tmpFileName);
-		java.nio.file.Path tgt = Paths.get(Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/network.cx");
+		java.nio.file.Path tgt = Paths.get(NetworkPathResolver.getNetworkDirPath(networkId) + "/network.cx");
 		Files.move(src, tgt, StandardCopyOption.REPLACE_EXISTING);  
 	} */
 	
@@ -147,7 +161,7 @@ public class CX2NetworkFileGenerator {
 		    		String tmpFileName = createNetworkFile(uuidStr, metadataCollection);
 		    		// rename the tmp file
 		    		java.nio.file.Path src = Paths.get(tmpFileName);
-		    		java.nio.file.Path tgt = Paths.get(Configuration.getInstance().getNdexRoot() + "/data/" + uuidStr + "/network.cx");
+		    		java.nio.file.Path tgt = Paths.get(NetworkPathResolver.getNetworkDirPath(uuidStr) + "/network.cx");
 				
 					Files.move(src, tgt, StandardCopyOption.REPLACE_EXISTING);
 				} catch (IOException e) {
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
@@ -12,13 +13,16 @@ import java.util.Calendar;
 import java.util.UUID;
 
 import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
+import org.ndexbio.common.persistence.AspectStorage;
+import org.ndexbio.common.persistence.NetworkPathResolver;
 import org.ndexbio.cxio.core.NdexCXNetworkWriter;
+import org.ndexbio.cxio.core.OpaqueAspectIterator;
 import org.ndexbio.cxio.metadata.MetaDataCollection;
 import org.ndexbio.cxio.metadata.MetaDataElement;
+import org.ndexbio.cxio.misc.OpaqueElement;
 import org.ndexbio.model.cx.NamespacesElement;
 import org.ndexbio.model.cx.Provenance;
 import org.ndexbio.model.exceptions.NdexException;
-import org.ndexbio.rest.Configuration;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
@@ -59,7 +63,7 @@ public class CXNetworkFileGenerator {
 	
 	// create a CX network using a tmp file name and return the temp file name;
 	public static String createNetworkFile(String uuidStr, MetaDataCollection metadataCollection) throws FileNotFoundException, IOException {
-		String tmpFileName = Configuration.getInstance().getNdexRoot() + "/data/" + uuidStr + "/" + 
+		String tmpFileName = NetworkPathResolver.getNetworkDirPath(uuidStr) + "/" + 
 				 Thread.currentThread().getId() + "-" + Calendar.getInstance().getTimeInMillis();
 		try (FileOutputStream out = new FileOutputStream(tmpFileName) ) {
 			NdexCXNetworkWriter wtr = new NdexCXNetworkWriter(out, true);
@@ -82,9 +86,9 @@ public class CXNetworkFileGenerator {
 //			 e.setLastUpdate(fullSummary.getModificationTime().getTime()); */
 		
 			 // for back compatibility reason. System used to generate provenance on the fly.
-			 String provenanceAspectFileName = Configuration.getInstance().getNdexRoot() + "/data/" + uuidStr + "/aspects/" + Provenance.ASPECT_NAME;
+			 String provenanceAspectFileName = NetworkPathResolver.getNetworkDirPath(uuidStr) + "/aspects/" + Provenance.ASPECT_NAME;
 			 File f = new File(provenanceAspectFileName);
-			 if(!f.exists() ) { 
+			 if(!AspectStorage.aspectExists(f) ) { 
 				 metadataCollection.remove(Provenance.ASPECT_NAME);
 			 }
 			
@@ -95,8 +99,8 @@ public class CXNetworkFileGenerator {
 			 //write namespace first
 			 if ( metadataCollection.getMetaDataElement(NamespacesElement.ASPECT_NAME) != null ) {
 				 wtr.startAspectFragment(NamespacesElement.ASPECT_NAME);
-				 String aspectFileName = Configuration.getInstance().getNdexRoot() + "/data/" + uuidStr + "/aspects/" + NamespacesElement.ASPECT_NAME;
-			 	 wtr.writeAspectElementsFromNdexAspectFile(aspectFileName);
+				 String aspectFileName = NetworkPathResolver.getNetworkDirPath(uuidStr) + "/aspects/" + NamespacesElement.ASPECT_NAME;
+				 writeAspectElements(wtr, NamespacesElement.ASPECT_NAME, aspectFileName);
 				 wtr.endAspectFragment(); 
 				 metadataCollection.remove(NamespacesElement.ASPECT_NAME);	 
 			 }
@@ -115,8 +119,8 @@ public class CXNetworkFileGenerator {
 			 //write all other aspects
 			 for ( MetaDataElement metaElmt: metadataCollection) {
 				wtr.startAspectFragment(metaElmt.getName());
-				String aspectFileName = Configuration.getInstance().getNdexRoot() + "/data/" + uuidStr + "/aspects/" + metaElmt.getName();
-				wtr.writeAspectElementsFromNdexAspectFile(aspectFileName);
+				String aspectFileName = NetworkPathResolver.getNetworkDirPath(uuidStr) + "/aspects/" + metaElmt.getName();
+				writeAspectElements(wtr, metaElmt.getName(), aspectFileName);
 				wtr.endAspectFragment(); 
 			 }
 			 
@@ -126,6 +130,21 @@ public class CXNetworkFileGenerator {
 		return tmpFileName;
 	}
 	
+	// plain aspect files are copied as they are, other aspects are decompressed and written one element at a time.
+	private static void writeAspectElements(NdexCXNetworkWriter wtr, String aspectName, String aspectFileName) throws IOException {
+		if ( AspectStorage.isPlainAspectFile(aspectFileName)) {
+			wtr.writeAspectElementsFromNdexAspectFile(aspectFileName);
+			return;
+		}
+		try (InputStream in = AspectStorage.newAspectInputStream(aspectFileName)) {
+			OpaqueAspectIterator asi = new OpaqueAspectIterator(in);
+			wtr.openFragment();
+			while ( asi.hasNext())
+				wtr.writeElement(new OpaqueElement(aspectName, asi.next()));
+			wtr.closeFragment();
+		}
+	}
+	
 	/**
 	 * 
 	 * @return file size
@@ -136,7 +155,7 @@ public class CXNetworkFileGenerator {
 		String tmpFileName = createNetworkFile(networkId.toString(), metadata);
 			// rename the tmp file
 		java.nio.file.Path src = Paths.get(tmpFileName);
-		java.nio.file.Path tgt = Paths.get(Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/network.cx");
+		java.nio.file.Path tgt = Paths.get(NetworkPathResolver.getNetworkDirPath(networkId) + "/network.cx");
 		Files.move(src, tgt, StandardCopyOption.REPLACE_EXISTING);
 		return Files.size(tgt);
 	}
@@ -152,7 +171,7 @@ public class CXNetworkFileGenerator {
 		    		String tmpFileName = createNetworkFile(uuidStr, metadataCollection);
 		    		// rename the tmp file
 		    		java.nio.file.Path src = Paths.get(tmpFileName);
-		    		java.nio.file.Path tgt = Paths.get(Configuration.getInstance().getNdexRoot() + "/data/" + uuidStr + "/network.cx");
+		    		java.nio.file.Path tgt = Paths.get(NetworkPathResolver.getNetworkDirPath(uuidStr) + "/network.cx");
 				
 					Files.move(src, tgt, StandardCopyOption.REPLACE_EXISTING);
 				} catch (IOException e) {
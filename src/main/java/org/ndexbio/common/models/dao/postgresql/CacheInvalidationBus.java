@@ -0,0 +1,417 @@
+package org.ndexbio.common.models.dao.postgresql;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+import org.ndexbio.rest.Configuration;
+import org.ndexbio.security.BasicAuthCache;
+import org.ndexbio.security.TokenUserCache;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Forwards the cache invalidations between the servers sharing the database, using PostgreSQL LISTEN/NOTIFY.
+ * <p>
+ * The bus listens to the invalidations of NetworkPermissionCache, NetworkSummaryCache and GroupMembershipCache, and
+ * is told directly about the users whose authentication changed and the networks that were unlocked. The DAOs make
+ * these invalidations again after their transaction commits, so the other servers always get an event after the
+ * change is visible to them.
+ * Events are queued and sent by the bus thread, so writers never wait for the database; duplicates waiting in the
+ * queue are sent once. The same thread holds a dedicated connection that LISTENs on the channel and applies the
+ * events of the other servers with the *Locally methods of the caches. Events sent while the connection is down are
+ * lost, so all the local caches are flushed whenever the connection is lost or made again.
+ * <p>
+ * Turned on by setting CACHE_INVALIDATION_BUS to true; without it, changes made by other servers are only seen when
+ * the cached entries expire.
+ */
+public final class CacheInvalidationBus implements Runnable {
+
+	static Logger logger = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+	public static final String ENABLED_PROPERTY = "CACHE_INVALIDATION_BUS";
+
+	static final String channel = "ndex_cache_invalidation";
+
+	// events waiting to be sent beyond this are replaced by flushing everything.
+	private static final int maxPending = 10000;
+
+	// how long the thread waits for notifications before it sends the queued events.
+	private static final int pollMillis = 100;
+
+	private static final long minRetryMillis = 1000;
+	private static final long maxRetryMillis = 30000;
+
+	enum Topic {
+		PERMISSION_NETWORK("pn", true),
+		PERMISSION_USER("pu", true),
+		PERMISSION_ACCESS_KEYS("pk", false),
+		PERMISSION_ALL("pa", false),
+		SUMMARY_NETWORK("sn", true),
+		SUMMARY_ALL("sa", false),
+		AUTH_USER("au", true),
+		AUTH_ALL("aa", false),
+		MEMBERSHIP_USER("mu", true),
+		MEMBERSHIP_ALL("ma", false),
+		NETWORK_UNLOCKED("nu", true);
+
+		final String code;
+		final boolean hasId;
+
+		Topic(String code, boolean hasId) {
+			this.code = code;
+			this.hasId = hasId;
+		}
+
+		static Topic fromCode(String code) {
+			for ( Topic t : values())
+				if ( t.code.equals(code))
+					return t;
+			return null;
+		}
+	}
+
+	static final class Event {
+		final Topic topic;
+		final UUID id;
+
+		Event(Topic topic, UUID id) {
+			if ( topic.hasId != (id != null))
+				throw new IllegalArgumentException("Event " + topic + (topic.hasId ? " needs" : " can't have") + " an id.");
+			this.topic = topic;
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if ( !(o instanceof Event))
+				return false;
+			Event e = (Event) o;
+			return topic == e.topic && Objects.equals(id, e.id);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(topic, id);
+		}
+
+		@Override
+		public String toString() {
+			return id == null ? topic.code : topic.code + ":" + id;
+		}
+	}
+
+	private static CacheInvalidationBus instance = null;
+
+	private final String dbURL;
+	private final String dbUser;
+	private final String dbPassword;
+
+	// events sent by this server are ignored when they come back.
+	private final String serverId = UUID.randomUUID().toString();
+
+	// guarded by this object.
+	private final Set<Event> pending = new LinkedHashSet<>();
+	private boolean overflowed = false;
+
+	private volatile boolean stopped = false;
+
+	private Thread thread;
+
+	private final NetworkPermissionCache.InvalidationListener permissionListener =
+			new NetworkPermissionCache.InvalidationListener() {
+				@Override
+				public void networkInvalidated(UUID networkId) {
+					publish(new Event(Topic.PERMISSION_NETWORK, networkId));
+				}
+
+				@Override
+				public void userInvalidated(UUID userId) {
+					publish(new Event(Topic.PERMISSION_USER, userId));
+				}
+
+				@Override
+				public void accessKeysInvalidated() {
+					publish(new Event(Topic.PERMISSION_ACCESS_KEYS, null));
+				}
+
+				@Override
+				public void allInvalidated() {
+					publish(new Event(Topic.PERMISSION_ALL, null));
+				}
+			};
+
+	private final NetworkSummaryCache.InvalidationListener summaryListener =
+			new NetworkSummaryCache.InvalidationListener() {
+				@Override
+				public void networkInvalidated(UUID networkId) {
+					publish(new Event(Topic.SUMMARY_NETWORK, networkId));
+				}
+
+				@Override
+				public void allInvalidated() {
+					publish(new Event(Topic.SUMMARY_ALL, null));
+				}
+			};
+
+	private final GroupMembershipCache.InvalidationListener membershipListener =
+			new GroupMembershipCache.InvalidationListener() {
+				@Override
+				public void userInvalidated(UUID userId) {
+					publish(new Event(Topic.MEMBERSHIP_USER, userId));
+				}
+
+				@Override
+				public void allInvalidated() {
+					publish(new Event(Topic.MEMBERSHIP_ALL, null));
+				}
+			};
+
+	CacheInvalidationBus(String dbURL, String dbUser, String dbPassword) {
+		this.dbURL = dbURL;
+		this.dbUser = dbUser;
+		this.dbPassword = dbPassword;
+	}
+
+	/**
+	 * Start the bus if CACHE_INVALIDATION_BUS is true in the configuration. Called when the server starts, after the
+	 * database has been created.
+	 */
+	public static synchronized void start() {
+		Configuration config = Configuration.getInstance();
+		if ( instance != null || config == null || !Boolean.parseBoolean(config.getProperty(ENABLED_PROPERTY)))
+			return;
+		instance = new CacheInvalidationBus(config.getDBURL(), config.getDBUser(), config.getDBPasswd());
+		NetworkPermissionCache.getInstance().addInvalidationListener(instance.permissionListener);
+		NetworkSummaryCache.getInstance().addInvalidationListener(instance.summaryListener);
+		GroupMembershipCache.getInstance().addInvalidationListener(instance.membershipListener);
+		instance.thread = new Thread(instance, "CacheInvalidationBus");
+		instance.thread.setDaemon(true);
+		instance.thread.start();
+		logger.info("Cache invalidation bus started on channel " + channel + ".");
+	}
+
+	/**
+	 * Stop the bus. Queued events that haven't been sent yet are dropped.
+	 */
+	public static synchronized void shutdown() throws InterruptedException {
+		if ( instance == null)
+			return;
+		NetworkPermissionCache.getInstance().removeInvalidationListener(instance.permissionListener);
+		NetworkSummaryCache.getInstance().removeInvalidationListener(instance.summaryListener);
+		GroupMembershipCache.getInstance().removeInvalidationListener(instance.membershipListener);
+		instance.stopped = true;
+		instance.thread.interrupt();
+		instance.thread.join(maxRetryMillis);
+		instance = null;
+	}
+
+	/**
+	 * Tell the other servers that the authentication of a user changed. Does nothing if the bus is not running.
+	 * @param userId
+	 */
+	public static void publishUserAuthentication(UUID userId) {
+		CacheInvalidationBus bus = getRunningInstance();
+		if ( bus != null)
+			bus.publish(new Event(Topic.AUTH_USER, userId));
+	}
+
+	/**
+	 * Wake up the threads of the other servers waiting for the network lock. Does nothing if the bus is not running.
+	 * @param networkId
+	 */
+	public static void publishNetworkUnlocked(UUID networkId) {
+		CacheInvalidationBus bus = getRunningInstance();
+		if ( bus != null)
+			bus.publish(new Event(Topic.NETWORK_UNLOCKED, networkId));
+	}
+
+	private static synchronized CacheInvalidationBus getRunningInstance() {
+		return instance;
+	}
+
+	synchronized void publish(Event event) {
+		if ( overflowed)
+			return;
+		if ( pending.size() >= maxPending) {
+			logger.warn("Too many cache invalidations waiting to be sent, the other servers will flush their caches.");
+			pending.clear();
+			overflowed = true;
+			return;
+		}
+		pending.add(event);
+	}
+
+	private synchronized List<Event> takePending() {
+		List<Event> result = new ArrayList<>(pending);
+		pending.clear();
+		if ( overflowed) {
+			result.add(new Event(Topic.PERMISSION_ALL, null));
+			result.add(new Event(Topic.SUMMARY_ALL, null));
+			result.add(new Event(Topic.AUTH_ALL, null));
+			result.add(new Event(Topic.MEMBERSHIP_ALL, null));
+			overflowed = false;
+		}
+		return result;
+	}
+
+	// put back the events that failed to be sent, they will be sent on the next connection.
+	private synchronized void restorePending(List<Event> events) {
+		for ( Event e : events)
+			publish(e);
+	}
+
+	@Override
+	public void run() {
+		long retryMillis = minRetryMillis;
+		while ( !stopped) {
+			try (Connection conn = DriverManager.getConnection(dbURL, dbUser, dbPassword)) {
+				conn.setAutoCommit(true);
+				try (Statement st = conn.createStatement()) {
+					st.execute("LISTEN " + channel);
+				}
+				// events sent while this server wasn't listening are lost.
+				flushLocalCaches();
+				retryMillis = minRetryMillis;
+				logger.info("Cache invalidation bus is listening.");
+				PGConnection pgConn = conn.unwrap(PGConnection.class);
+				try (PreparedStatement notify = conn.prepareStatement("select pg_notify(?, ?)")) {
+					while ( !stopped) {
+						send(notify);
+						PGNotification[] notifications = pgConn.getNotifications(pollMillis);
+						if ( notifications != null) {
+							for ( PGNotification n : notifications)
+								received(n.getParameter());
+						}
+					}
+				}
+			} catch (SQLException e) {
+				if ( stopped)
+					break;
+				logger.warn("Cache invalidation bus lost its database connection, retrying in " + retryMillis + " ms: "
+						+ e.getMessage());
+				flushLocalCaches();
+				try {
+					Thread.sleep(retryMillis);
+				} catch (@SuppressWarnings("unused") InterruptedException ie) {
+					break;
+				}
+				retryMillis = Math.min(retryMillis * 2, maxRetryMillis);
+			}
+		}
+		logger.info("Cache invalidation bus stopped.");
+	}
+
+	private void send(PreparedStatement notify) throws SQLException {
+		List<Event> events = takePending();
+		Iterator<Event> it = events.iterator();
+		try {
+			while ( it.hasNext()) {
+				Event e = it.next();
+				notify.setString(1, channel);
+				notify.setString(2, encode(serverId, e));
+				notify.execute();
+				it.remove();
+			}
+		} catch (SQLException ex) {
+			restorePending(events);
+			throw ex;
+		}
+	}
+
+	void received(String payload) {
+		String[] parts = payload == null ? new String[0] : payload.split(" ", 2);
+		if ( parts.length != 2) {
+			logger.warn("Ignored malformed cache invalidation: " + payload);
+			return;
+		}
+		if ( parts[0].equals(serverId))
+			return;
+		Event e = decode(parts[1]);
+		if ( e == null) {
+			logger.warn("Ignored malformed cache invalidation: " + payload);
+			return;
+		}
+		apply(e);
+	}
+
+	static String encode(String serverId, Event e) {
+		return serverId + " " + e;
+	}
+
+	/**
+	 * @return null if the text is not an event.
+	 */
+	static Event decode(String text) {
+		String[] parts = text.split(":", 2);
+		Topic topic = Topic.fromCode(parts[0]);
+		if ( topic == null || topic.hasId != (parts.length == 2))
+			return null;
+		try {
+			return new Event(topic, topic.hasId ? UUID.fromString(parts[1]) : null);
+		} catch (@SuppressWarnings("unused") IllegalArgumentException ex) {
+			return null;
+		}
+	}
+
+	private static void apply(Event e) {
+		switch (e.topic) {
+		case PERMISSION_NETWORK:
+			NetworkPermissionCache.getInstance().invalidateNetworkLocally(e.id);
+			break;
+		case PERMISSION_USER:
+			NetworkPermissionCache.getInstance().invalidateUserLocally(e.id);
+			break;
+		case PERMISSION_ACCESS_KEYS:
+			NetworkPermissionCache.getInstance().invalidateAccessKeysLocally();
+			break;
+		case PERMISSION_ALL:
+			NetworkPermissionCache.getInstance().invalidateAllLocally();
+			break;
+		case SUMMARY_NETWORK:
+			NetworkSummaryCache.getInstance().invalidateNetworkLocally(e.id);
+			break;
+		case SUMMARY_ALL:
+			NetworkSummaryCache.getInstance().invalidateAllLocally();
+			break;
+		case AUTH_USER:
+			BasicAuthCache.getInstance().invalidateUser(e.id);
+			TokenUserCache.invalidateUser(e.id);
+			break;
+		case AUTH_ALL:
+			BasicAuthCache.getInstance().invalidateAll();
+			TokenUserCache.invalidateAll();
+			break;
+		case MEMBERSHIP_USER:
+			GroupMembershipCache.getInstance().invalidateUserLocally(e.id);
+			break;
+		case MEMBERSHIP_ALL:
+			GroupMembershipCache.getInstance().invalidateAllLocally();
+			break;
+		case NETWORK_UNLOCKED:
+			NetworkLockManager.getInstance().released(e.id);
+			break;
+		default:
+			break;
+		}
+	}
+
+	private static void flushLocalCaches() {
+		NetworkPermissionCache.getInstance().invalidateAllLocally();
+		NetworkSummaryCache.getInstance().invalidateAllLocally();
+		BasicAuthCache.getInstance().invalidateAll();
+		TokenUserCache.invalidateAll();
+		GroupMembershipCache.getInstance().invalidateAllLocally();
+	}
+}
@@ -34,10 +34,10 @@ import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -109,10 +109,11 @@ public class GroupDAO extends NdexDBDAO {
 		Preconditions.checkArgument(null != id, 
 				"UUID required");
 		
-		String sqlStr = "SELECT * FROM " + NdexClasses.Group + " where \"UUID\" = '" + id + "' :: uuid and is_deleted = false";
+		String sqlStr = "SELECT * FROM " + NdexClasses.Group + " where \"UUID\" = ? and is_deleted = false";
 
-		try (Statement st = db.createStatement()) {
-			try (ResultSet rs = st.executeQuery(sqlStr) ) {
+		try (PreparedStatement st = db.prepareStatement(sqlStr)) {
+			st.setObject(1, id);
+			try (ResultSet rs = st.executeQuery() ) {
 				if (rs.next()) {
 					// populate the user object;
 					Group result = new Group();
@@ -129,6 +130,31 @@ public class GroupDAO extends NdexDBDAO {
 	}
 	
 	
+	/**
+	 * Get the groups of a list of ids in one query.
+	 * @param ids
+	 * @param missingIds if not null, receives the ids that don't have a group.
+	 * @return the groups in the order of ids.
+	 */
+	public List<Group> getGroupsByIds(List<UUID> ids, List<UUID> missingIds)
+			throws SQLException, JsonParseException, JsonMappingException, IOException {
+		if ( ids.isEmpty())
+			return new ArrayList<>();
+		String sqlStr = "SELECT * FROM " + NdexClasses.Group + " where \"UUID\" = ANY(?) and is_deleted = false";
+		Map<UUID,Group> groups = new HashMap<>(ids.size());
+		try (PreparedStatement st = db.prepareStatement(sqlStr)) {
+			st.setArray(1, createUUIDArray(ids));
+			try (ResultSet rs = st.executeQuery() ) {
+				while (rs.next()) {
+					Group group = new Group();
+					populateGroupFromResultSet(group, rs);
+					groups.put(group.getExternalId(), group);
+				}
+			}
+		}
+		return orderByIds(ids, groups, missingIds);
+	}
+	
 	private static void populateGroupFromResultSet(Group group, ResultSet rs) throws JsonParseException, JsonMappingException, SQLException, IOException {
 		Helper.populateAccountFromResultSet (group, rs,true);
 
@@ -205,10 +231,14 @@ public class GroupDAO extends NdexDBDAO {
 		try (GroupIndexManager indexManager = new GroupIndexManager()) {
 			SolrDocumentList l = indexManager.searchGroups(simpleQuery.getSearchString(), blockSize,
 					skipBlocks * blockSize);
-			List<Group> results = new ArrayList<>(l.size());
+			List<UUID> ids = new ArrayList<>(l.size());
 			for (SolrDocument d : l) {
-				results.add(getGroupById(UUID.fromString((String) d.get(GroupIndexManager.UUID))));
+				ids.add(UUID.fromString((String) d.get(GroupIndexManager.UUID)));
 			}
+			List<UUID> missingIds = new ArrayList<>();
+			List<Group> results = getGroupsByIds(ids, missingIds);
+			if ( !missingIds.isEmpty())
+				throw new ObjectNotFoundException("Group with UUID: " + missingIds.get(0) + " doesn't exist.");
 
 			return new SolrSearchResult<>(l.getNumFound(), l.getStart(), results);
 		}
@@ -249,7 +279,7 @@ public class GroupDAO extends NdexDBDAO {
 			permissionStr = " and permission_type=\'" + Permissions.READ.toString() + "\'";
 				
 		String sqlStr = "SELECT n.\"UUID\", n.name, gn.permission_type FROM group_network_membership gn, network n where gn.group_id = ? "+ permissionStr +
-				" and gn.network_id = n.\"UUID\" and " + NetworkDAO.createIsReadableConditionStr(userId) + " order by n.modification_time desc";
+				" and gn.network_id = n.\"UUID\" and " + NetworkDAO.createIsReadableConditionStr(userId) + " order by n.modification_time desc, n.\"UUID\" desc";
 		if ( skipBlocks>=0 && blockSize>0) {
 			sqlStr += " limit " + blockSize + " offset " + skipBlocks * blockSize;
 		}
@@ -259,6 +289,7 @@ public class GroupDAO extends NdexDBDAO {
 		List<Membership> memberships = new ArrayList<>();
 		try (PreparedStatement st = db.prepareStatement(sqlStr)) {
 			st.setObject(1, groupId);
+			NetworkDAO.setIsReadableConditionParams(st, 2, userId);
 			
 			try (ResultSet rs = st.executeQuery() ) {
 				while (rs.next()) {
@@ -297,7 +328,7 @@ public class GroupDAO extends NdexDBDAO {
 			permissionStr = " and permission_type=\'" + Permissions.READ.toString() + "\'";
 				
 		String sqlStr = "SELECT n.\"UUID\", gn.permission_type FROM group_network_membership gn, network n where gn.group_id = ? "+ permissionStr +
-				" and gn.network_id = n.\"UUID\" and " + NetworkDAO.createIsReadableConditionStr(userId) + " order by n.modification_time desc";
+				" and gn.network_id = n.\"UUID\" and " + NetworkDAO.createIsReadableConditionStr(userId) + " order by n.modification_time desc, n.\"UUID\" desc";
 		if ( skipBlocks>=0 && blockSize>0) {
 			sqlStr += " limit " + blockSize + " offset " + skipBlocks * blockSize;
 		}
@@ -309,6 +340,7 @@ public class GroupDAO extends NdexDBDAO {
 //		List<Membership> memberships = new ArrayList<>();
 		try (PreparedStatement st = db.prepareStatement(sqlStr)) {
 			st.setObject(1, groupId);
+			NetworkDAO.setIsReadableConditionParams(st, 2, userId);
 			
 			try (ResultSet rs = st.executeQuery() ) {
 				while (rs.next()) {
@@ -330,6 +362,57 @@ public class GroupDAO extends NdexDBDAO {
 		
 	}
 
+	/**
+	 * Keyset paged version of getGroupNetworkPermissions. The networks are in the same order, modification time and
+	 * UUID descending. No index covers that order across the membership join, so every page still reads and sorts all
+	 * the memberships of the group; the keyset only saves the rows skipped by an offset.
+	 * @param after cursor of the page, null for the first page.
+	 * @param limit page size, 0 or less to get all the networks after the cursor.
+	 * @return network UUID to permission, and the cursor of the next page.
+	 */
+	public PageCursor.Page<Map<String,String>> getGroupNetworkPermissions(UUID groupId, Permissions permission, PageCursor after, int limit, UUID userId, boolean inclusive)
+			throws IllegalArgumentException, SQLException {
+
+		Preconditions.checkArgument( (permission.equals( Permissions.READ ))
+				|| (permission.equals( Permissions.WRITE )),
+				"Valid permissions required");
+		Preconditions.checkArgument( after == null || after.getTime() != null, "Invalid cursor for a network listing.");
+
+		String permissionStr = "";
+		if ((permission.equals( Permissions.WRITE ) )) {
+			permissionStr = " and permission_type=\'" + Permissions.WRITE.toString() + "\'";
+		} else if ( !inclusive)
+			permissionStr = " and permission_type=\'" + Permissions.READ.toString() + "\'";
+
+		String sqlStr = "SELECT n.\"UUID\", gn.permission_type, n.modification_time FROM group_network_membership gn, network n where gn.group_id = ? "+ permissionStr +
+				" and gn.network_id = n.\"UUID\" and " + NetworkDAO.createIsReadableConditionStr(userId) +
+				(after != null ? " and (n.modification_time, n.\"UUID\") < (?, ?)" : "") +
+				" order by n.modification_time desc, n.\"UUID\" desc" + (limit > 0 ? " limit " + limit : "");
+
+		Map<String,String> result = new TreeMap<>();
+		PageCursor last = null;
+		int count = 0;
+		try (PreparedStatement st = db.prepareStatement(sqlStr)) {
+			st.setObject(1, groupId);
+			int i = NetworkDAO.setIsReadableConditionParams(st, 2, userId);
+			if ( after != null) {
+				st.setTimestamp(i++, after.getTime());
+				st.setObject(i, after.getId());
+			}
+
+			try (ResultSet rs = st.executeQuery() ) {
+				while (rs.next()) {
+					UUID networkId = (UUID) rs.getObject(1);
+					result.put(networkId.toString(), rs.getString(2));
+					last = new PageCursor(rs.getTimestamp(3), networkId);
+					count++;
+				}
+			}
+		}
+
+		return new PageCursor.Page<>(result, limit > 0 && count == limit ? last : null);
+	}
+
 	
 	/**
 	 * 
@@ -597,6 +680,7 @@ public class GroupDAO extends NdexDBDAO {
 				if ( rowsInserted != 1)
 					throw new NdexException ( "Failed to save group-user relationship" + newGroup.getGroupName() + " to database.");
 			}
+			invalidateNowAndAfterCommit(() -> GroupMembershipCache.getInstance().invalidateUser(adminId));
 			
 			return newGroup;
 
@@ -646,6 +730,11 @@ public class GroupDAO extends NdexDBDAO {
 				st.executeUpdate();
 			}		
 		}
+		// the group's grants are gone for all its members.
+		invalidateNowAndAfterCommit(() -> {
+			NetworkPermissionCache.getInstance().invalidateAll();
+			GroupMembershipCache.getInstance().invalidateAll();
+		});
 		
 		// auto response to pending request.
 		String sql = "update request set response ='DECLINED', responsemessage = 'NDEx auto response: group has been deleted.', responsetime = localtimestamp, " +
@@ -668,16 +757,8 @@ public class GroupDAO extends NdexDBDAO {
 	 */
 	public boolean isGroupAdmin(UUID groupId, UUID userId) throws SQLException  {
 		
-		String queryStr = "SELECT * FROM ndex_group_user where group_id = ? and user_id = ? and is_admin";
-		
-		try (PreparedStatement st = db.prepareStatement(queryStr))  {
-			st.setObject(1, groupId);
-			st.setObject(2, userId);
-		
-			try (ResultSet rs = st.executeQuery() ) {
-				return rs.next();
-			}
-		}
+		Boolean isAdmin = getGroupsOfUser(userId).get(groupId);
+		return isAdmin != null && isAdmin.booleanValue();
 		
 	}
 	
@@ -690,16 +771,7 @@ public class GroupDAO extends NdexDBDAO {
 	 */
 	public boolean isInGroup(UUID groupId, UUID userId) throws SQLException  {
 		
-		String queryStr = "SELECT * FROM ndex_group_user where group_id = ? and user_id = ?";
-		
-		try (PreparedStatement st = db.prepareStatement(queryStr))  {
-			st.setObject(1, groupId);
-			st.setObject(2, userId);
-		
-			try (ResultSet rs = st.executeQuery() ) {
-				return rs.next();
-			}
-		}
+		return getGroupsOfUser(userId).containsKey(groupId);
 		
 	}
 	
@@ -764,6 +836,10 @@ public class GroupDAO extends NdexDBDAO {
 			
 			pst.executeUpdate();
 		}
+		invalidateNowAndAfterCommit(() -> {
+			NetworkPermissionCache.getInstance().invalidateUser(userId);
+			GroupMembershipCache.getInstance().invalidateUser(userId);
+		});
 		
 	}
 	
@@ -811,6 +887,10 @@ public class GroupDAO extends NdexDBDAO {
 				st.executeUpdate();
 			}		
 		}
+		invalidateNowAndAfterCommit(() -> {
+			NetworkPermissionCache.getInstance().invalidateUser(memberId);
+			GroupMembershipCache.getInstance().invalidateUser(memberId);
+		});
 		
 	}
 	
@@ -0,0 +1,182 @@
+package org.ndexbio.common.models.dao.postgresql;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.ndexbio.rest.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Cache of the groups of each user (the ndex_group_user rows of the user), used by the network search filters, the
+ * permission checks and the group membership lookups of the DAOs instead of joining ndex_group_user every time.
+ * <p>
+ * GroupDAO and UserDAO invalidate a user when a group is created or one of its members is added, changed or removed,
+ * and everything when a group is deleted; like NetworkPermissionCache, they do it now and again after the commit, and
+ * a lookup that overlaps an invalidation is not cached. Entries expire after GROUP_MEMBERSHIP_CACHE_TTL seconds
+ * (default 60, 0 turns the cache off), which bounds the staleness caused by other servers unless the
+ * CacheInvalidationBus forwards the invalidations.
+ */
+public final class GroupMembershipCache {
+
+	static Logger logger = LoggerFactory.getLogger(GroupMembershipCache.class);
+
+	public static final String CACHE_TTL_PROPERTY = "GROUP_MEMBERSHIP_CACHE_TTL";
+	public static final String CACHE_SIZE_PROPERTY = "GROUP_MEMBERSHIP_CACHE_SIZE";
+
+	private static final long defaultTTL = 60;
+	private static final long defaultSize = 100000;
+
+	/**
+	 * Receives the invalidations made in this server, see NetworkPermissionCache.InvalidationListener.
+	 */
+	public interface InvalidationListener {
+		void userInvalidated(UUID userId);
+		void allInvalidated();
+	}
+
+	private static GroupMembershipCache instance = null;
+
+	// group id -> true if the user is an admin of the group, by user id.
+	private final Cache<UUID, Map<UUID, Boolean>> memberships;
+
+	private final AtomicLong generation = new AtomicLong();
+
+	// a generation that is never current, see NdexDBDAO.getGroupsOfUser.
+	static final long noGeneration = -1;
+
+	// puts share the lock, invalidations take it exclusively.
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+	GroupMembershipCache(long ttlSeconds, long maxSize) {
+		if ( ttlSeconds > 0)
+			memberships = CacheBuilder.newBuilder().maximumSize(maxSize)
+					.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).build();
+		else
+			memberships = null;
+	}
+
+	public static synchronized GroupMembershipCache getInstance() {
+		if ( instance == null) {
+			long ttl = defaultTTL;
+			long size = defaultSize;
+			Configuration config = Configuration.getInstance();
+			if ( config != null) {
+				String value = config.getProperty(CACHE_TTL_PROPERTY);
+				if ( value != null)
+					ttl = Long.parseLong(value.trim());
+				value = config.getProperty(CACHE_SIZE_PROPERTY);
+				if ( value != null)
+					size = Long.parseLong(value.trim());
+			}
+			instance = new GroupMembershipCache(ttl, size);
+			if ( instance.isEnabled())
+				logger.info("Group membership cache turned on. TTL: " + ttl + " seconds, size: " + size + ".");
+		}
+		return instance;
+	}
+
+	public boolean isEnabled() {
+		return memberships != null;
+	}
+
+	/**
+	 * Get the current invalidation generation. Call this before reading the memberships and pass the value to the
+	 * put method.
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * @return the groups of the user, mapped to true where the user is an admin, or null if they are not cached.
+	 */
+	Map<UUID, Boolean> get(UUID userId) {
+		if ( memberships == null)
+			return null;
+		return memberships.getIfPresent(userId);
+	}
+
+	/**
+	 * @return the immutable copy of the groups that was cached, or returned as is if the cache is off.
+	 */
+	Map<UUID, Boolean> put(UUID userId, Map<UUID, Boolean> groups, long startGeneration) {
+		Map<UUID, Boolean> value = ImmutableMap.copyOf(groups);
+		if ( memberships == null)
+			return value;
+		lock.readLock().lock();
+		try {
+			// an invalidation happened while the memberships were read, they might already be stale.
+			if ( generation.get() == startGeneration)
+				memberships.put(userId, value);
+		} finally {
+			lock.readLock().unlock();
+		}
+		return value;
+	}
+
+	public void addInvalidationListener(InvalidationListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeInvalidationListener(InvalidationListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Remove the groups of a user, and notify the listeners.
+	 * @param userId
+	 */
+	public void invalidateUser(UUID userId) {
+		invalidateUserLocally(userId);
+		for ( InvalidationListener l : listeners)
+			l.userInvalidated(userId);
+	}
+
+	public void invalidateUserLocally(UUID userId) {
+		lock.writeLock().lock();
+		try {
+			generation.incrementAndGet();
+			if ( memberships != null)
+				memberships.invalidate(userId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove the groups of all users, and notify the listeners. Used when a group is deleted.
+	 */
+	public void invalidateAll() {
+		invalidateAllLocally();
+		for ( InvalidationListener l : listeners)
+			l.allInvalidated();
+	}
+
+	public void invalidateAllLocally() {
+		lock.writeLock().lock();
+		try {
+			generation.incrementAndGet();
+			if ( memberships != null)
+				memberships.invalidateAll();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	long size() {
+		return memberships == null ? 0 : memberships.size();
+	}
+}
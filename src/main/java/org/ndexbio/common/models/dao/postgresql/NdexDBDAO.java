@@ -30,21 +30,46 @@
  */
 package org.ndexbio.common.models.dao.postgresql;
 
+import java.sql.Array;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import org.ndexbio.common.access.NdexDatabase;
+import org.ndexbio.common.access.NdexUnitOfWork;
 
 public abstract class NdexDBDAO implements AutoCloseable {
 
 	protected Connection db;
 
+	// set when the connection is shared with the other DAOs of a unit of work.
+	private NdexUnitOfWork unitOfWork;
+
+	// cache invalidations to repeat after the current transaction commits.
+	private List<Runnable> afterCommitActions;
+
 	public NdexDBDAO(Connection connection) {
 		this.db = connection;
 	}
 
+	/**
+	 * Use the connection of the unit of work open on this thread, or a new connection from the pool if there is none.
+	 * @throws SQLException
+	 */
 	protected NdexDBDAO() throws SQLException {
-		this.db = NdexDatabase.getInstance().getConnection();
+		NdexUnitOfWork work = NdexUnitOfWork.current();
+		if ( work != null) {
+			this.db = work.acquire();
+			this.unitOfWork = work;
+		} else
+			this.db = NdexDatabase.getInstance().getConnection();
 	}
 	
 
@@ -52,21 +77,141 @@ public abstract class NdexDBDAO implements AutoCloseable {
 		return db;
 	}
 
+	/**
+	 * Create a uuid[] parameter, to be used as "= ANY(?)" in place of an IN list so that the statement text doesn't
+	 * change with the ids.
+	 * @param ids
+	 * @return
+	 * @throws SQLException
+	 */
+	protected Array createUUIDArray(Collection<UUID> ids) throws SQLException {
+		return db.createArrayOf("uuid", ids.toArray());
+	}
+
+	/**
+	 * Put the rows of an "= ANY(?)" query back in the order of the ids they were looked up with, e.g. the relevance
+	 * order of a Solr search.
+	 * @param ids
+	 * @param rows rows by id.
+	 * @param missingIds if not null, receives the ids that have no row.
+	 * @return
+	 */
+	static <T> List<T> orderByIds(List<UUID> ids, Map<UUID, T> rows, List<UUID> missingIds) {
+		List<T> result = new ArrayList<>(ids.size());
+		for ( UUID id : ids) {
+			T row = rows.get(id);
+			if ( row != null)
+				result.add(row);
+			else if ( missingIds != null)
+				missingIds.add(id);
+		}
+		return result;
+	}
+
 
 
 
 	@Override
 	public void close () throws SQLException {
-		db.close();
+		if ( unitOfWork != null) {
+			NdexUnitOfWork work = unitOfWork;
+			unitOfWork = null;
+			work.release();
+		} else
+			db.close();
 	}
 
     public void commit () throws SQLException {
+    	if ( unitOfWork != null) {
+    		unitOfWork.commit();
+    		return;
+    	}
+    	boolean wrote = NdexDatabase.isWriteTransaction(db, afterCommitActions != null);
     	db.commit();
+    	if ( wrote)
+    		NdexDatabase.writeCommitted();
+    	runAfterCommitActions();
+    }
+
+    /**
+     * @return true if this DAO reads from a read replica. A replica can be behind the invalidations made on the
+     * primary database, so what is read from it must not be put in the caches.
+     * @throws SQLException
+     */
+    protected boolean readsFromReplica() throws SQLException {
+    	return db.isReadOnly();
+    }
+
+    /**
+     * Get the groups of a user from GroupMembershipCache, reading and caching them on a miss. A DAO with uncommitted
+     * changes reads them from the database and doesn't cache them, and neither does one that reads from a replica.
+     * @param userId
+     * @return group id mapped to true if the user is an admin of the group. The map can't be modified.
+     * @throws SQLException
+     */
+    protected Map<UUID, Boolean> getGroupsOfUser(UUID userId) throws SQLException {
+    	GroupMembershipCache cache = GroupMembershipCache.getInstance();
+    	boolean useCache = cache.isEnabled() && !hasPendingInvalidations();
+    	if ( useCache) {
+    		Map<UUID, Boolean> cached = cache.get(userId);
+    		if ( cached != null)
+    			return cached;
+    	}
+    	long generation = useCache && !readsFromReplica() ? cache.getGeneration() : GroupMembershipCache.noGeneration;
+    	Map<UUID, Boolean> groups = new HashMap<>();
+    	try (PreparedStatement st = db.prepareStatement("select group_id, is_admin from ndex_group_user where user_id = ?")) {
+    		st.setObject(1, userId);
+    		try (ResultSet rs = st.executeQuery()) {
+    			while ( rs.next())
+    				groups.put((UUID) rs.getObject(1), Boolean.valueOf(rs.getBoolean(2)));
+    		}
+    	}
+    	return cache.put(userId, groups, generation);
+    }
+
+    /**
+     * Run a cache invalidation now and again after the current transaction commits, so that a reader that loaded the
+     * old value before the commit can't leave it in the cache.
+     * @param invalidation
+     */
+    protected void invalidateNowAndAfterCommit(Runnable invalidation) {
+    	invalidation.run();
+    	if ( unitOfWork != null) {
+    		unitOfWork.afterCommit(invalidation);
+    		return;
+    	}
+    	if ( afterCommitActions == null)
+    		afterCommitActions = new ArrayList<>();
+    	afterCommitActions.add(invalidation);
+    }
+
+    /**
+     * @return true if the current transaction made changes that invalidated cached data and hasn't committed yet. Such
+     * a DAO must not fill the caches, because it sees its own uncommitted changes.
+     */
+    protected boolean hasPendingInvalidations() {
+    	if ( unitOfWork != null)
+    		return unitOfWork.hasAfterCommitActions();
+    	return afterCommitActions != null;
+    }
+
+    protected void runAfterCommitActions() {
+    	if ( afterCommitActions == null)
+    		return;
+    	List<Runnable> actions = afterCommitActions;
+    	afterCommitActions = null;
+    	for ( Runnable action : actions)
+    		action.run();
     }
     
     public void rollback() {
+    	// the invalidations already ran once, there is nothing to repeat.
+    	afterCommitActions = null;
     	try {
-    		db.rollback();
+    		if ( unitOfWork != null)
+    			unitOfWork.rollback();
+    		else
+    			db.rollback();
     	} catch (SQLException e) {
     		System.out.println("failed to rollback trascation in db: " + e.getMessage());
     		e.printStackTrace();
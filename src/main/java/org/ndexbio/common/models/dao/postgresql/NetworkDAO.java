@@ -33,6 +33,7 @@ package org.ndexbio.common.models.dao.postgresql;
 import java.io.IOException;
 import java.security.SecureRandom;
 import java.sql.Array;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -40,10 +41,13 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
@@ -83,6 +87,7 @@ import org.ndexbio.model.object.network.NetworkSummaryFormat;
 import org.ndexbio.model.object.network.NetworkProperties;
 import org.ndexbio.model.object.network.NetworkSummary;
 import org.ndexbio.model.object.network.VisibilityType;
+import org.ndexbio.rest.exceptions.PreconditionFailedException;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -114,11 +119,20 @@ public class NetworkDAO extends NdexDBDAO {
 			+ "n.subnetworkids,n.solr_idx_lvl, n.iscomplete, n.ndexdoi, n.certified, n.has_layout, n.has_sample, n.cxformat, n.cx_file_size, n.cx2_file_size "; 
 	
 	public static final String PENDING = "Pending";
+
+	// true if the network lock is held, i.e. its lease hasn't run out. Locks taken before the leases were added have
+	// no expiration.
+	private static final String lockHeldCondition =
+			"(n.islocked and (n.lock_expiration is null or n.lock_expiration >= localtimestamp))";
 	
 	public NetworkDAO () throws  SQLException {
 	    super();
 	}
 
+	NetworkDAO (Connection connection) {
+		super(connection);
+	}
+
 	public NetworkSummary CreateCloneNetworkEntry(UUID networkUUID, UUID ownerId, String ownerUserName, long fileSize, UUID srcUUID) throws SQLException {
 		Timestamp t = new Timestamp(System.currentTimeMillis());
 		
@@ -146,8 +160,10 @@ public class NetworkDAO extends NdexDBDAO {
 			String networkName, String cxformat) throws SQLException {
 		Timestamp t = new Timestamp(System.currentTimeMillis());
 		
-		String sqlStr = "insert into network (\"UUID\", creation_time, modification_time, is_deleted, islocked,visibility,owneruuid,owner,readonly, cx_file_size, name, cxformat, cx2_file_size) values"
-				+ "(?, ?, ?, false, true, 'PRIVATE',?,?,false,?,?,?,?) ";
+		NetworkLockManager lockManager = NetworkLockManager.getInstance();
+		String sqlStr = "insert into network (\"UUID\", creation_time, modification_time, is_deleted, islocked,visibility,owneruuid,owner,readonly, cx_file_size, name, cxformat, cx2_file_size,"
+				+ " lock_owner, lock_expiration) values"
+				+ "(?, ?, ?, false, true, 'PRIVATE',?,?,false,?,?,?,?, ?, localtimestamp + ? * interval '1 millisecond') ";
 		try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
 			pst.setObject(1, networkUUID);
 			pst.setTimestamp(2, t);
@@ -163,9 +179,12 @@ public class NetworkDAO extends NdexDBDAO {
 			}	
 			pst.setString(7, networkName);
 			pst.setString(8, cxformat);
+			pst.setString(10, lockManager.getOwnerId());
+			pst.setLong(11, lockManager.getLeaseMillis());
 			
 			pst.executeUpdate();
 		}
+		lockManager.acquired(networkUUID);
 		NdexObjectUpdateStatus result = new NdexObjectUpdateStatus();
 		result.setModificationTime(t);
 		result.setUuid(networkUUID);
@@ -175,6 +194,7 @@ public class NetworkDAO extends NdexDBDAO {
 
 	
 	public void setNetworkFileSize(UUID networkID, long fileSize) throws SQLException, NdexException {
+		invalidateSummary(networkID);
 		String sqlStr = "update network set cx_file_size =? where \"UUID\" = ? and is_deleted=false";
 		try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
 			pst.setObject(2, networkID);
@@ -187,6 +207,7 @@ public class NetworkDAO extends NdexDBDAO {
 	}
 
 	public void setCX2FileSize(UUID networkID, long cx2FileSize) throws SQLException, NdexException {
+		invalidateSummary(networkID);
 		String sqlStr = "update network set cx2_file_size =? where \"UUID\" = ? and is_deleted=false";
 		try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
 			pst.setObject(2, networkID);
@@ -199,6 +220,7 @@ public class NetworkDAO extends NdexDBDAO {
 	}
 	
 	public void setNetworkFileSizes(UUID networkID, long cxfileSize, long cx2FileSize) throws SQLException, NdexException {
+		invalidateSummary(networkID);
 		String sqlStr = "update network set cx_file_size =?, cx2_file_size = ? where \"UUID\" = ? and is_deleted=false";
 		try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
 			pst.setObject(3, networkID);
@@ -223,6 +245,7 @@ public class NetworkDAO extends NdexDBDAO {
 				throw new NdexException ("Failed to delete network. Reason could be invalid UUID, user is not the owner of the network, the network is Locked or the network is readonly.");
 			}
 		}
+		invalidatePermissions(networkId);
 		
 		
 		String[] sqlCmds = {
@@ -373,13 +396,45 @@ public class NetworkDAO extends NdexDBDAO {
 	 */
 	
 	public void setFlag(UUID networkId, String fieldName, boolean value) throws SQLException {
-		String sqlStr = "update network set "
-				+ fieldName + "=" + value + " where \"UUID\" = ? and is_deleted = false";
+		setFlags(networkId, Collections.singletonMap(fieldName, Boolean.valueOf(value)));
+	}
+
+	/**
+	 * Set several boolean flags of a network in one statement. The row is only rewritten if one of the flags actually
+	 * changes, so the flag updates made while loading and indexing networks don't leave a dead copy of the wide network
+	 * row behind every time, and the ones that do change stay HOT updates (see schema_update_2.5.8_to_2.5.9.sql).
+	 * @param networkId
+	 * @param flags column name to value.
+	 * @throws SQLException
+	 */
+	public void setFlags(UUID networkId, Map<String,Boolean> flags) throws SQLException {
+		if ( flags.isEmpty())
+			return;
+		List<String> names = new ArrayList<>(flags.keySet());
+		String sqlStr = "update network set " + String.join("=?,", names) + "=? where \"UUID\" = ? and is_deleted = false and "
+				+ (names.size() == 1 ? names.get(0) + " is distinct from ?"
+						: "(" + String.join(",", names) + ") is distinct from ("
+								+ String.join(",", Collections.nCopies(names.size(), "?")) + ")");
 		try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
+			int i = 1;
+			for ( String name : names)
+				pst.setBoolean(i++, flags.get(name).booleanValue());
+			pst.setObject(i++, networkId);
+			for ( String name : names)
+				pst.setBoolean(i++, flags.get(name).booleanValue());
+			if ( pst.executeUpdate() == 1)
+				invalidateSummary(networkId);
+			else if ( !networkExists(networkId))
+				throw new SQLException ("Failed to set flags " + flags + " in db for network " + networkId.toString());
+		}
+	}
+
+	private boolean networkExists(UUID networkId) throws SQLException {
+		try (PreparedStatement pst = db.prepareStatement("select 1 from network where \"UUID\" = ? and is_deleted = false")) {
 			pst.setObject(1, networkId);
-			int i = pst.executeUpdate();
-			if ( i != 1)
-				throw new SQLException ("Failed to set flag " + fieldName + "="  + value + " in db for network " + networkId.toString());
+			try ( ResultSet rs = pst.executeQuery()) {
+				return rs.next();
+			}
 		}
 	}
 
@@ -394,15 +449,16 @@ public class NetworkDAO extends NdexDBDAO {
 	 */
 	
 	public NdexObjectUpdateStatus clearNetworkSummary(UUID networkId, long fileSize) throws SQLException, NdexException {
+		invalidateSummary(networkId);
 		String sqlStr = "update network set modification_time = ?, name = null,"
 				+ "description = null, edgeCount = null, nodeCount = null, isComplete=false,"
 				+ " properties = null, cxmetadata = null, cx2metadata = null,"
-				+ "version = null, is_validated = false, error = null, warnings = null,subnetworkids = null, cx_file_size = ? where \"UUID\" ='" +
-				 networkId.toString() + "' and is_deleted = false";
+				+ "version = null, is_validated = false, error = null, warnings = null,subnetworkids = null, cx_file_size = ? where \"UUID\" = ? and is_deleted = false";
 		Timestamp t = new Timestamp(System.currentTimeMillis());
 		try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
 			pst.setTimestamp( 1, t);
 			pst.setLong(2, fileSize);
+			pst.setObject(3, networkId);
 			int i = pst.executeUpdate();
 			if ( i != 1)
 				throw new NdexException ("Failed to reset network "+ networkId + "'s entry in db.");
@@ -421,6 +477,7 @@ public class NetworkDAO extends NdexDBDAO {
 	 * @throws JsonProcessingException 
 	 */
 	public void saveNetworkEntry(NetworkSummary networkSummary, MetaDataCollection metadata, boolean setModificationTime) throws SQLException, NdexException, JsonProcessingException {
+		invalidateSummary(networkSummary.getExternalId());
 		String sqlStr = "update network set name = ?, description = ?, version = ?, edgecount=?, nodecount=?, "
 				+ "properties = ? ::jsonb, cxmetadata = ? :: json, warnings = ?, subnetworkids = ?, "
 				+ (setModificationTime? "modification_time = localtimestamp, " : "") 
@@ -472,6 +529,7 @@ public class NetworkDAO extends NdexDBDAO {
 	 * @throws JsonProcessingException 
 	 */
 	public void saveCX2NetworkEntry(NetworkSummary networkSummary, Map<String,CxMetadata> metadata, boolean setModificationTime) throws SQLException, NdexException, JsonProcessingException {
+		invalidateSummary(networkSummary.getExternalId());
 		String sqlStr = "update network set name = ?, description = ?, version = ?, edgecount=?, nodecount=?, "
 				+ "properties = ? ::jsonb, cx2metadata = ? :: json, warnings = ?, subnetworkids = ?, cxformat= ?, "
 				+ (setModificationTime? "modification_time = localtimestamp, " : "") 
@@ -589,30 +647,131 @@ public class NetworkDAO extends NdexDBDAO {
 	} */
 	
 	
+	/**
+	 * Remove the cached summary and metadata of a network, now and after the current transaction commits.
+	 * @param networkId
+	 */
+	private void invalidateSummary(UUID networkId) {
+		invalidateNowAndAfterCommit(() -> NetworkSummaryCache.getInstance().invalidateNetwork(networkId));
+	}
+
+	/**
+	 * @return null if the summary cache is turned off, or if this DAO has uncommitted changes.
+	 */
+	private NetworkSummaryCache getSummaryCache() {
+		NetworkSummaryCache cache = NetworkSummaryCache.getInstance();
+		return cache.isEnabled() && !hasPendingInvalidations() ? cache : null;
+	}
+
+	/**
+	 * Get the version to pass to the put methods of the summary cache. A DAO that reads from a replica gets one that
+	 * is never current, so it doesn't fill the cache.
+	 */
+	private long getCacheVersion(NetworkSummaryCache cache, UUID networkId) throws SQLException {
+		return readsFromReplica() ? NetworkSummaryCache.noVersion : cache.getVersion(networkId);
+	}
+
+	/**
+	 * @return null if the permission cache is turned off, or if this DAO has uncommitted changes. Such a DAO must see
+	 * its own changes, and must not cache decisions that are lost if it rolls back.
+	 */
+	private NetworkPermissionCache getPermissionCache() {
+		NetworkPermissionCache cache = NetworkPermissionCache.getInstance();
+		return cache.isEnabled() && !hasPendingInvalidations() ? cache : null;
+	}
+
+	/**
+	 * Get the generation to pass to the put methods of the permission cache, see getCacheVersion.
+	 */
+	private long getCacheGeneration(NetworkPermissionCache cache) throws SQLException {
+		return cache == null || readsFromReplica() ? NetworkPermissionCache.noGeneration : cache.getGeneration();
+	}
+
+	/**
+	 * Remove the cached permission checks on a network, now and after the current transaction commits.
+	 * @param networkId
+	 */
+	private void invalidatePermissions(UUID networkId) {
+		// the summary has the visibility and the owner.
+		invalidateNowAndAfterCommit(() -> {
+			NetworkPermissionCache.getInstance().invalidateNetwork(networkId);
+			NetworkSummaryCache.getInstance().invalidateNetwork(networkId);
+		});
+	}
+	
 	/**
 	 * We assume the alias of network table is n in this function. so make sure this is true when using this function to construct your sql.
+	 * The condition has bind parameters for the user id, set them with setIsReadableConditionParams.
 	 * @param userId
 	 * @return
 	 */
 	protected static String createIsReadableConditionStr(UUID userId) {
 		if ( userId == null)
 			return "n.visibility='PUBLIC'";
-		return "( n.visibility='PUBLIC' or n.owneruuid = '" + userId + "' ::uuid or " + 
-			" exists ( select 1 from user_network_membership un1 where un1.network_id = n.\"UUID\" and un1.user_id = '"+ userId + "' limit 1) or " +
+		return "( n.visibility='PUBLIC' or n.owneruuid = ? or " + 
+			" exists ( select 1 from user_network_membership un1 where un1.network_id = n.\"UUID\" and un1.user_id = ? limit 1) or " +
 		    " exists ( select 1 from group_network_membership gn1, ndex_group_user gu where gn1.group_id = gu.group_id "
-		    + "and gn1.network_id = n.\"UUID\" and gu.user_id = '"+ userId + "' limit 1) )";
+		    + "and gn1.network_id = n.\"UUID\" and gu.user_id = ? limit 1) )";
 	}
 
+	/**
+	 * Set the parameters of the condition created by createIsReadableConditionStr.
+	 * @param pst
+	 * @param index position of the first parameter of the condition.
+	 * @param userId
+	 * @return position of the parameter after the condition.
+	 * @throws SQLException
+	 */
+	protected static int setIsReadableConditionParams(PreparedStatement pst, int index, UUID userId) throws SQLException {
+		if ( userId == null)
+			return index;
+		int i = index;
+		pst.setObject(i++, userId);
+		pst.setObject(i++, userId);
+		pst.setObject(i++, userId);
+		return i;
+	}
+
+	/**
+	 * Access key condition on the network aliased as n, with two bind parameters for the key.
+	 */
+	private static final String accessKeyConditionStr = "coalesce(n.access_key_is_on and n.access_key = ?, false) or exists (select 1 from network_set s, network_set_member sm "
+			+ "where s.\"UUID\" = sm.set_id and sm.network_id = n.\"UUID\" and s.access_key_is_on and s.access_key = ? and s.is_deleted=false)";
+
 	
 	public boolean isReadable(UUID networkID, UUID userId) throws SQLException, ObjectNotFoundException {
-		String sqlStr = "select (" + createIsReadableConditionStr(userId) + ") from network n where n.\"UUID\" = ? and n.is_deleted=false ";		
+		NetworkPermissionCache cache = getPermissionCache();
+		Boolean cached = cache == null ? null : cache.get(NetworkPermissionCache.Check.READ, networkID, userId);
+		if ( cached != null)
+			return cached.booleanValue();
+		long generation = getCacheGeneration(cache);
+
+		// the groups come from GroupMembershipCache instead of joining ndex_group_user.
+		Set<UUID> groupIds = userId == null ? Collections.emptySet() : getGroupsOfUser(userId).keySet();
+		String conditionStr = userId == null ? createIsReadableConditionStr(null) :
+			"n.visibility='PUBLIC' or n.owneruuid = ? or " + 
+			" exists ( select 1 from user_network_membership un1 where un1.network_id = n.\"UUID\" and un1.user_id = ? limit 1)" +
+			(groupIds.isEmpty() ? "" :
+				" or exists ( select 1 from group_network_membership gn1 where gn1.network_id = n.\"UUID\" and gn1.group_id = ANY(?) limit 1)");
+		String sqlStr = "select (" + conditionStr + ") from network n where n.\"UUID\" = ? and n.is_deleted=false ";		
 			
 		try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
-			pst.setObject(1, networkID);
+			int i = 1;
+			if ( userId != null) {
+				pst.setObject(i++, userId);
+				pst.setObject(i++, userId);
+				if ( !groupIds.isEmpty())
+					pst.setArray(i++, createUUIDArray(groupIds));
+			}
+			pst.setObject(i, networkID);
 
 			try ( ResultSet rs = pst.executeQuery()) {
-				if ( rs.next()) 
-					return rs.getBoolean(1);
+				if ( rs.next()) {
+					boolean result = rs.getBoolean(1);
+					if ( cache != null)
+						cache.put(NetworkPermissionCache.Check.READ, networkID, userId, result, generation);
+					return result;
+				}
 				 
 				throw new ObjectNotFoundException("Network", networkID);
 			}
@@ -620,12 +779,20 @@ public class NetworkDAO extends NdexDBDAO {
 	}
 	
 	public boolean isWriteable(UUID networkID, UUID userId) throws SQLException {
+		NetworkPermissionCache cache = getPermissionCache();
+		Boolean cached = cache == null ? null : cache.get(NetworkPermissionCache.Check.WRITE, networkID, userId);
+		if ( cached != null)
+			return cached.booleanValue();
+		long generation = getCacheGeneration(cache);
+
 		String sqlStr = "select 1 from network n where n.\"UUID\" = ? and n.is_deleted=false and (";
 		
+		Set<UUID> groupIds = getGroupsOfUser(userId).keySet();
 		sqlStr += " n.owneruuid = ? or "
-				+ " exists ( select 1 from user_network_membership un1 where un1.network_id = n.\"UUID\" and un1.user_id = ? and un1.permission_type = 'WRITE' limit 1) or " +
-				  " exists ( select 1 from group_network_membership gn1, ndex_group_user gu where gn1.group_id = gu.group_id "
-				  + "   and gn1.network_id = n.\"UUID\" and gu.user_id = ? and gn1.permission_type = 'WRITE' limit 1) " ;
+				+ " exists ( select 1 from user_network_membership un1 where un1.network_id = n.\"UUID\" and un1.user_id = ? and un1.permission_type = 'WRITE' limit 1) " ;
+		if ( !groupIds.isEmpty())
+			sqlStr += " or exists ( select 1 from group_network_membership gn1 "
+				  + "   where gn1.network_id = n.\"UUID\" and gn1.group_id = ANY(?) and gn1.permission_type = 'WRITE' limit 1) " ;
 
 		sqlStr += ")";
 			
@@ -633,10 +800,14 @@ public class NetworkDAO extends NdexDBDAO {
 			pst.setObject(1, networkID);
 				pst.setObject(2, userId);
 				pst.setObject(3, userId);
-				pst.setObject(4, userId);
+				if ( !groupIds.isEmpty())
+					pst.setArray(4, createUUIDArray(groupIds));
 			
 			try ( ResultSet rs = pst.executeQuery()) {
-				return rs.next();
+				boolean result = rs.next();
+				if ( cache != null)
+					cache.put(NetworkPermissionCache.Check.WRITE, networkID, userId, result, generation);
+				return result;
 			}
 		}
 	}
@@ -701,13 +872,16 @@ public class NetworkDAO extends NdexDBDAO {
 	}
 	
 	public void setIndexLevel(UUID networkId, NetworkIndexLevel lvl) throws SQLException, NdexException {
-		String sqlStr = "update network set solr_idx_lvl =? where \"UUID\" = ? and is_deleted=false";
+		String sqlStr = "update network set solr_idx_lvl =? where \"UUID\" = ? and is_deleted=false and solr_idx_lvl is distinct from ?";
 		
 		try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
 			pst.setObject(2, networkId);
 			pst.setString(1, lvl.toString());
+			pst.setString(3, lvl.toString());
 			int cnt = pst.executeUpdate();
-			if ( cnt !=1) {
+			if ( cnt == 1)
+				invalidateSummary(networkId);
+			else if ( !networkExists(networkId)) {
 				throw new NdexException ("Failed to Update network index level in db. Invalid network UUID.");
 			}
 		}
@@ -715,56 +889,69 @@ public class NetworkDAO extends NdexDBDAO {
 	
 	
 	public boolean isAdmin(UUID networkID, UUID userId) throws SQLException {
+		NetworkPermissionCache cache = getPermissionCache();
+		Boolean cached = cache == null ? null : cache.get(NetworkPermissionCache.Check.ADMIN, networkID, userId);
+		if ( cached != null)
+			return cached.booleanValue();
+		long generation = getCacheGeneration(cache);
+
 		String sqlStr = "select 1 from network n where n.\"UUID\" = ? and n.is_deleted=false and n.owneruuid= ?";
 			
 		try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
 			pst.setObject(1, networkID);
 			pst.setObject(2, userId);
 			try ( ResultSet rs = pst.executeQuery()) {
-				return rs.next() ;
+				boolean result = rs.next();
+				if ( cache != null)
+					cache.put(NetworkPermissionCache.Check.ADMIN, networkID, userId, result, generation);
+				return result;
 			}
 		}
 	}	
 	
 	
 	/**
-	 * Set the islocked flag to true in the db.
+	 * Set the islocked flag to true in the db. If another request or task holds the lock, wait in line for it up to
+	 * NETWORK_LOCK_MAX_WAIT seconds (see NetworkLockManager). A lock whose lease has run out is taken over.
 	 * This is an atomic operation. Will commit the current transaction.
 	 * @param networkID
 	 * @throws SQLException 
-	 * @throws InterruptedException 
-	 * @throws NdexException 
+	 * @throws NetworkConcurrentModificationException if the network was still locked at the end of the wait.
 	 */
 	public void lockNetwork(UUID networkId) throws SQLException, NetworkConcurrentModificationException {
-		//setNetworkLock(networkId,true);
 		
-		String sql = "update network set islocked= true where \"UUID\" = ? and is_deleted=false and islocked =false";
+		NetworkLockManager lockManager = NetworkLockManager.getInstance();
+		String sql = "update network n set islocked= true, lock_owner = ?, lock_expiration = localtimestamp + ? * interval '1 millisecond'"
+				+ " where \"UUID\" = ? and is_deleted=false and not " + lockHeldCondition;
 		try ( PreparedStatement p = db.prepareStatement(sql)) {
-			p.setObject(1, networkId);
-			for( int j = 0 ; j < 3 ; j++ )  {
-				int i = p.executeUpdate();
-				if ( i ==1) {
-					db.commit();
-					return;
-				}
-				try {
-					Thread.sleep(400);
-				} catch (InterruptedException e) {
-					logger.info("Interrrupted when trying to lock network " + networkId + ": " + e.getMessage()+
-							".");
-					break;
-				}
+			p.setString(1, lockManager.getOwnerId());
+			p.setLong(2, lockManager.getLeaseMillis());
+			p.setObject(3, networkId);
+			boolean locked = false;
+			try {
+				locked = lockManager.lock(networkId, () -> p.executeUpdate() == 1);
+			} catch (InterruptedException e) {
+				logger.info("Interrrupted when trying to lock network " + networkId + ": " + e.getMessage()+
+						".");
+				Thread.currentThread().interrupt();
+			}
+			if ( locked) {
+				commit();
+				lockManager.acquired(networkId);
+				return;
 			}
 			throw new NetworkConcurrentModificationException();
 		}
 	}
 	
 	
-	private void setNetworkLock(UUID networkId, boolean lock) throws SQLException {
-		String sql = "update network set islocked=? where \"UUID\" = ? and is_deleted=false";
+	// a lock that was taken over by another server after its lease ran out is left alone.
+	private void clearNetworkLock(UUID networkId) throws SQLException {
+		String sql = "update network set islocked=false, lock_owner = null, lock_expiration = null where \"UUID\" = ? and is_deleted=false"
+				+ " and islocked is distinct from false and (lock_owner is null or lock_owner = ?)";
 		try ( PreparedStatement p = db.prepareStatement(sql)) {
-			p.setBoolean(1, lock);
-			p.setObject(2, networkId);
+			p.setObject(1, networkId);
+			p.setString(2, NetworkLockManager.getInstance().getOwnerId());
 			p.executeUpdate();
 			//if ( i !=1)
 			//	throw new ObjectNotFoundException("network",networkId);
@@ -779,29 +966,105 @@ public class NetworkDAO extends NdexDBDAO {
 	 * @throws SQLException 
 	 */
 	public void unlockNetwork (UUID networkId) throws  SQLException {
-		setNetworkLock(networkId,false);
-		db.commit(); 
+		clearNetworkLock(networkId);
+		commit(); 
+		NetworkLockManager.getInstance().unlocked(networkId);
+		NetworkLockManager.getInstance().released(networkId);
+		CacheInvalidationBus.publishNetworkUnlocked(networkId);
 	}
 	
 	public boolean networkIsLocked(UUID networkUUID) throws ObjectNotFoundException, SQLException {
-		return getBooleanFlag(networkUUID, "islocked");
+		return getBooleanFlag(networkUUID, lockHeldCondition);
 	}
 
-	// max retry is set at 10 by this function. Retry interval is 0.5 second
+	/**
+	 * Wait up to 0.5 second per retry (at most 10 retries) for the network to be unlocked.
+	 * @return true if the network is still locked.
+	 */
 	public boolean networkIsLocked(UUID networkUUID,int retry) throws ObjectNotFoundException, SQLException, InterruptedException {
-		String sql = "select islocked from network where \"UUID\" = ? and is_deleted = false";
+		boolean islocked = networkIsLocked(networkUUID);
+		if ( !islocked || retry <= 0)
+			return islocked;
+		return !NetworkLockManager.getInstance().awaitUnlocked(networkUUID, () -> !getLockFlag(networkUUID),
+				Math.min(retry, 10) * 500L);
+	}
+	
+	// false if the network is not locked, or has been deleted.
+	private boolean getLockFlag(UUID networkUUID) throws SQLException {
+		String sql = "select " + lockHeldCondition + " from network n where \"UUID\" = ? and is_deleted = false";
 		try(PreparedStatement p = db.prepareStatement(sql)){
 			p.setObject(1, networkUUID);
 			try ( ResultSet rs = p.executeQuery()) {
-				if ( rs.next()) {
-					boolean islocked =  rs.getBoolean(1);
-					if ( !islocked || retry <=0 ) {
-						return islocked;
-					} 
-					Thread.sleep(500);
-					return networkIsLocked(networkUUID, (retry>10 ? 10: retry -1));					
-				}
-				throw new ObjectNotFoundException ("network",networkUUID);
+				return rs.next() && rs.getBoolean(1);
+			}
+		}
+	}
+	
+	/**
+	 * Extend the leases of network locks held by a server, see NetworkLockManager.
+	 * Will commit the current transaction.
+	 * @param networkIds
+	 * @param owner
+	 * @param leaseMillis
+	 * @throws SQLException
+	 */
+	public void renewNetworkLocks(Collection<UUID> networkIds, String owner, long leaseMillis) throws SQLException {
+		String sql = "update network set lock_expiration = localtimestamp + ? * interval '1 millisecond'"
+				+ " where \"UUID\" = any(?) and islocked and lock_owner = ?";
+		try (PreparedStatement p = db.prepareStatement(sql)) {
+			p.setLong(1, leaseMillis);
+			p.setArray(2, createUUIDArray(networkIds));
+			p.setString(3, owner);
+			p.executeUpdate();
+		}
+		commit();
+	}
+	
+	/**
+	 * Get the version of a network record. The version goes up every time the metadata of the network changes, it is
+	 * sent to the clients as the ETag of the network.
+	 * @param networkId
+	 * @return
+	 * @throws ObjectNotFoundException
+	 * @throws SQLException
+	 */
+	public long getNetworkVersion(UUID networkId) throws ObjectNotFoundException, SQLException {
+		String sql = "select row_version from network where \"UUID\" = ? and is_deleted = false";
+		try (PreparedStatement p = db.prepareStatement(sql)) {
+			p.setObject(1, networkId);
+			try ( ResultSet rs = p.executeQuery()) {
+				if ( rs.next())
+					return rs.getLong(1);
+				throw new ObjectNotFoundException ("network",networkId);
+			}
+		}
+	}
+	
+	/**
+	 * Fail if the version of the network is not the one the client has (If-Match header).
+	 * @throws PreconditionFailedException
+	 */
+	public void checkNetworkVersion(UUID networkId, long expectedVersion) throws ObjectNotFoundException, SQLException, PreconditionFailedException {
+		if ( getNetworkVersion(networkId) != expectedVersion)
+			throw new PreconditionFailedException("Network " + networkId + " has been modified since version " + expectedVersion + ".");
+	}
+	
+	/**
+	 * Move the network to a new version if it is still at the version the client has (If-Match header). The row stays
+	 * locked until the current transaction ends, so concurrent updates made with the same version fail instead of
+	 * overwriting each other. Doesn't commit.
+	 * @return the new version.
+	 * @throws PreconditionFailedException if the network has been modified or deleted.
+	 */
+	public long claimNetworkVersion(UUID networkId, long expectedVersion) throws SQLException, PreconditionFailedException {
+		String sql = "update network set row_version = row_version + 1 where \"UUID\" = ? and is_deleted = false and row_version = ? returning row_version";
+		try (PreparedStatement p = db.prepareStatement(sql)) {
+			p.setObject(1, networkId);
+			p.setLong(2, expectedVersion);
+			try ( ResultSet rs = p.executeQuery()) {
+				if ( rs.next())
+					return rs.getLong(1);
+				throw new PreconditionFailedException("Network " + networkId + " has been modified since version " + expectedVersion + ".");
 			}
 		}
 	}
@@ -1012,6 +1275,7 @@ public class NetworkDAO extends NdexDBDAO {
 					props.add(p);
 			}
 						
+			invalidateSummary(networkId);
 			String sqlStr = "update network set properties = ? ::jsonb where \"UUID\" = ? and is_deleted = false";
 			try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
 				
@@ -1056,6 +1320,7 @@ public class NetworkDAO extends NdexDBDAO {
 		
 //		Date updateTime = Calendar.getInstance().getTime();
 		
+		invalidateSummary(networkId);
 		String sqlStr = "update network set properties = ? ::jsonb, modification_time = localtimestamp, iscomplete=false where \"UUID\" = ? and is_deleted = false";
 		try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
 			
@@ -1120,31 +1385,25 @@ public class NetworkDAO extends NdexDBDAO {
 
 			List<UUID> groupUUIDs = new ArrayList<>();
 			if (loggedInUser != null && simpleNetworkQuery.getIncludeGroups()) {
-				try (UserDAO userDao = new UserDAO()) {
-					for (Membership m : userDao.getUserGroupMemberships(loggedInUser.getExternalId(),
-							Permissions.MEMBER, 0, 0, true)) {
-						groupUUIDs.add(m.getResourceUUID());
-					}
-				}
+				groupUUIDs.addAll(getGroupsOfUser(loggedInUser.getExternalId()).keySet());
 			}
 
 			SolrDocumentList solrResults = networkIdx.searchForNetworks(queryStr,
 					(loggedInUser == null ? null : loggedInUser.getUserName()), top, skipBlocks * top,
 					simpleNetworkQuery.getAccountName(), simpleNetworkQuery.getPermission(), groupUUIDs);
 
-			List<NetworkSummary> results = new ArrayList<>(solrResults.size());
+			List<UUID> ids = new ArrayList<>(solrResults.size());
 			for (SolrDocument d : solrResults) {
-				String id = (String) d.get(NetworkGlobalIndexManager.UUID);
-				try {
-					NetworkSummary s = getNetworkSummaryById(UUID.fromString(id));
+				ids.add(UUID.fromString((String) d.get(NetworkGlobalIndexManager.UUID)));
+			}
 
-					if (s != null) {
-						s.setWarnings(emptyStringList);
-						results.add(s);
-					}
-				} catch (ObjectNotFoundException ne) {
-					logger.warning("Network " + id + " was not found in db: " + ne.getMessage());
-				}
+			List<UUID> missingIds = new ArrayList<>();
+			List<NetworkSummary> results = getNetworkSummariesByIds(ids, missingIds);
+			for (NetworkSummary s : results) {
+				s.setWarnings(emptyStringList);
+			}
+			for (UUID id : missingIds) {
+				logger.warning("Network " + id + " was not found in db.");
 			}
 
 			return new NetworkSearchResult(solrResults.getNumFound(), solrResults.getStart(), results);
@@ -1169,22 +1428,72 @@ public class NetworkDAO extends NdexDBDAO {
 	}
 	
 	public NetworkSummary getNetworkSummaryById (UUID networkId) throws SQLException, ObjectNotFoundException, JsonParseException, JsonMappingException, IOException {
+		NetworkSummaryCache cache = getSummaryCache();
+		if ( cache != null) {
+			SummaryRow cached = (SummaryRow) cache.get(NetworkSummaryCache.Kind.SUMMARY, networkId);
+			if ( cached != null)
+				return cached.toSummary();
+		}
+		long version = cache == null ? 0 : getCacheVersion(cache, networkId);
+
 		// be careful when modify the order or the select clause because populateNetworkSummaryFromResultSet function depends on the order.
 		String sqlStr = networkSummarySelectClause + " from network n where n.\"UUID\" = ? and n.is_deleted= false";
 		try (PreparedStatement p = db.prepareStatement(sqlStr)) {
 			p.setObject(1, networkId);
 			try ( ResultSet rs = p.executeQuery()) {
 				if ( rs.next()) {
-					NetworkSummary result = new NetworkSummary();
-					populateNetworkSummaryFromResultSet(result,rs);
-					
-					return result;
+					SummaryRow row = new SummaryRow(rs);
+					if ( cache != null)
+						cache.put(NetworkSummaryCache.Kind.SUMMARY, networkId, row, row.weight(), version);
+					return row.toSummary();
 				}
 				throw new ObjectNotFoundException("Network " + networkId + " not found in db.");
 			}
 		}
 	}
 
+	/**
+	 * Get the summaries of a list of networks in one query. No permission check is done, callers such as the network
+	 * search have already filtered the ids.
+	 * @param networkIds
+	 * @param missingIds if not null, receives the ids of the networks that are not in the db or are deleted.
+	 * @return the summaries in the order of networkIds.
+	 */
+	public List<NetworkSummary> getNetworkSummariesByIds (List<UUID> networkIds, List<UUID> missingIds) throws SQLException, JsonParseException, JsonMappingException, IOException {
+		if ( networkIds.isEmpty())
+			return new ArrayList<>();
+		Map<UUID,NetworkSummary> summaries = new HashMap<>(networkIds.size());
+
+		// only query the networks that are not in the cache.
+		NetworkSummaryCache cache = getSummaryCache();
+		Map<UUID,Long> versions = new HashMap<>(networkIds.size());
+		for ( UUID id : networkIds) {
+			SummaryRow cached = cache == null ? null : (SummaryRow) cache.get(NetworkSummaryCache.Kind.SUMMARY, id);
+			if ( cached != null)
+				summaries.put(id, cached.toSummary());
+			else
+				versions.put(id, Long.valueOf(cache == null ? 0 : getCacheVersion(cache, id)));
+		}
+
+		if ( !versions.isEmpty()) {
+			// be careful when modify the order or the select clause because populateNetworkSummaryFromResultSet function depends on the order.
+			String sqlStr = networkSummarySelectClause + " from network n where n.\"UUID\" = ANY(?) and n.is_deleted= false";
+			try (PreparedStatement p = db.prepareStatement(sqlStr)) {
+				p.setArray(1, createUUIDArray(versions.keySet()));
+				try ( ResultSet rs = p.executeQuery()) {
+					while ( rs.next()) {
+						SummaryRow row = new SummaryRow(rs);
+						NetworkSummary s = row.toSummary();
+						if ( cache != null)
+							cache.put(NetworkSummaryCache.Kind.SUMMARY, s.getExternalId(), row, row.weight(),
+									versions.get(s.getExternalId()).longValue());
+						summaries.put(s.getExternalId(), s);
+					}
+				}
+			}
+		}
+		return orderByIds(networkIds, summaries, missingIds);
+	}
 	
 	public NetworkSummaryV3 getNetworkMetadataById (UUID networkId, NetworkSummaryFormat format) throws SQLException, JsonParseException, JsonMappingException, IOException, NdexException {
 		// be careful when modify the order or the select clause because populateNetworkSummaryFromResultSet function depends on the order.
@@ -1203,6 +1512,76 @@ public class NetworkDAO extends NdexDBDAO {
 		}
 	}
 
+	@FunctionalInterface
+	private interface SummaryReader<T> {
+		T read(ResultSet rs) throws SQLException, IOException, NdexException;
+	}
+
+	/**
+	 * Check the read permission of a user and get the summary of a network in one query.
+	 * @param networkId
+	 * @param userId can be null for anonymous users.
+	 * @param accessKey can be null.
+	 * @return the summary is returned even if the user can't read the network, the caller needs to check isAuthorized() before using it.
+	 * @throws ObjectNotFoundException if the network doesn't exist.
+	 */
+	public NetworkReadAccess<NetworkSummary> getNetworkSummaryForRead(UUID networkId, UUID userId, String accessKey)
+			throws SQLException, IOException, NdexException {
+		return getNetworkForRead(networkSummarySelectClause, networkId, userId, accessKey, rs -> {
+			NetworkSummary result = new NetworkSummary();
+			populateNetworkSummaryFromResultSet(result, rs);
+			return result;
+		});
+	}
+
+	/**
+	 * Same as getNetworkSummaryForRead, but returns the V3 metadata in the given format.
+	 */
+	public NetworkReadAccess<NetworkSummaryV3> getNetworkMetadataForRead(UUID networkId, UUID userId, String accessKey,
+			NetworkSummaryFormat format) throws SQLException, IOException, NdexException {
+		return getNetworkForRead(generateMetadataQueryStr(format), networkId, userId, accessKey, rs -> {
+			NetworkSummaryV3 result = new NetworkSummaryV3();
+			populateNetworkMetadataFromResultSet(result, rs, format);
+			return result;
+		});
+	}
+
+	private <T> NetworkReadAccess<T> getNetworkForRead(String selectClause, UUID networkId, UUID userId, String accessKey,
+			SummaryReader<T> reader) throws SQLException, IOException, NdexException {
+		boolean hasKey = accessKey != null && accessKey.length() > 0;
+		NetworkPermissionCache cache = getPermissionCache();
+		long generation = getCacheGeneration(cache);
+
+		// the extra columns are read by name, so the summary columns keep their positions.
+		String sqlStr = selectClause + ", (" + createIsReadableConditionStr(userId) + ") as read_permission, "
+				+ (hasKey ? accessKeyConditionStr : "false")
+				+ " as access_key_valid, " + lockHeldCondition + " as network_locked, n.cx2metadata is not null as has_cx2,"
+				+ " n.row_version as row_version"
+				+ " from network n where n.\"UUID\" = ? and n.is_deleted= false";
+		try (PreparedStatement p = db.prepareStatement(sqlStr)) {
+			int i = setIsReadableConditionParams(p, 1, userId);
+			if ( hasKey) {
+				p.setString(i++, accessKey);
+				p.setString(i++, accessKey);
+			}
+			p.setObject(i, networkId);
+			try ( ResultSet rs = p.executeQuery()) {
+				if ( rs.next()) {
+					boolean readable = rs.getBoolean("read_permission");
+					boolean keyValid = rs.getBoolean("access_key_valid");
+					if ( cache != null) {
+						cache.put(NetworkPermissionCache.Check.READ, networkId, userId, readable, generation);
+						if ( hasKey)
+							cache.putAccessKeyDecision(networkId, accessKey, keyValid, generation);
+					}
+					return new NetworkReadAccess<>(reader.read(rs), readable, keyValid,
+							rs.getBoolean("network_locked"), rs.getBoolean("has_cx2"), rs.getLong("row_version"));
+				}
+				throw new ObjectNotFoundException("Network", networkId);
+			}
+		}
+	}
+
 	private static String summaryPropClause= ",n.name,n.description,n.version, n.properties ";
 	
 	private static String generateMetadataQueryStr (NetworkSummaryFormat format) {
@@ -1308,20 +1687,6 @@ public class NetworkDAO extends NdexDBDAO {
 	}
 		
 	
-	private static String cvtUUIDListToStr (List<UUID> uuids) {
-		if (uuids == null) return null;
-		
-		StringBuffer cnd = new StringBuffer() ;
-		for ( UUID id : uuids ) {
-			if (cnd.length()>1)
-				cnd.append(',');
-			cnd.append('\'');
-			cnd.append(id);
-			cnd.append('\'');			
-		}
-		return cnd.toString();
-	}
-	
 	public Map<String,String> getNetworkPermissionMapByNetworkIds(UUID userId, List<UUID> networkIds)
 			throws SQLException {
 	
@@ -1329,19 +1694,23 @@ public class NetworkDAO extends NdexDBDAO {
 		if ( networkIds.isEmpty())
 			return result;
 
-		String uuidListStr = cvtUUIDListToStr(networkIds);
 		String queryStr = "select \"UUID\" as network_id, 'ADMIN' :: ndex_permission_type as permission_type " + 
-						"from network n where n.is_deleted=false and owneruuid = '" + userId.toString() + "' :: uuid and n.\"UUID\" in ( " + uuidListStr + ")";
+						"from network n where n.is_deleted=false and owneruuid = ? and n.\"UUID\" = ANY(?)";
 					
 			queryStr = " select a.network_id, max(a.permission_type) as permission_type from (" +  queryStr + " union "   +
 					" select un.network_id, un.permission_type " + 
-					"from user_network_membership un where un.user_id = '"+ userId.toString() + "' :: uuid " +
+					"from user_network_membership un where un.user_id = ? " +
 					" union select gn.network_id, gn.permission_type from ndex_group_user ug, group_network_membership gn " + 
-					" where ug.group_id = gn.group_id and ug.user_id = '" + userId + "' :: uuid " +" ) a where a.network_id in (" + 
-					  uuidListStr + ") group by a.network_id ";
+					" where ug.group_id = gn.group_id and ug.user_id = ? ) a where a.network_id = ANY(?) group by a.network_id ";
 					
 
 		try (PreparedStatement st = db.prepareStatement(queryStr))  {		
+			Array ids = createUUIDArray(networkIds);
+			st.setObject(1, userId);
+			st.setArray(2, ids);
+			st.setObject(3, userId);
+			st.setObject(4, userId);
+			st.setArray(5, ids);
 			try (ResultSet rs = st.executeQuery() ) {
 				while (rs.next()) {
 					result.put(rs.getObject(1).toString(), rs.getString(2));
@@ -1354,6 +1723,19 @@ public class NetworkDAO extends NdexDBDAO {
 	
 	
 	
+	// parameters of the queries in getNetworkSummariesByIdStrList and getNetworkV3SummariesByIdStrList.
+	private void setNetworkIdListParams(PreparedStatement p, List<String> networkIdstrList, UUID userId, String accessKey) throws SQLException {
+		List<UUID> ids = new ArrayList<>(networkIdstrList.size());
+		for ( String idstr : networkIdstrList)
+			ids.add(UUID.fromString(idstr));
+		p.setArray(1, createUUIDArray(ids));
+		int i = setIsReadableConditionParams(p, 2, userId);
+		if ( accessKey != null) {
+			p.setString(i++, accessKey);
+			p.setString(i, accessKey);
+		}
+	}
+
 	public List<NetworkSummary> getNetworkSummariesByIdStrList (List<String> networkIdstrList, UUID userId, String accessKey) throws SQLException, JsonParseException, JsonMappingException, IOException {
 		// be careful when modify the order or the select clause because populateNetworkSummaryFromResultSet function depends on the order.
 		
@@ -1361,24 +1743,12 @@ public class NetworkDAO extends NdexDBDAO {
 		
 		if ( networkIdstrList.isEmpty()) return result;
 		
-		StringBuffer cnd = new StringBuffer() ;
-		for ( String idstr : networkIdstrList ) {
-			if (cnd.length()>1)
-				cnd.append(',');
-			cnd.append('\'');
-			cnd.append(idstr);
-			cnd.append('\'');			
-		}
-		
-		String sqlStr = accessKey == null ? (networkSummarySelectClause 
-				+ " from network n where n.\"UUID\" in("+ cnd.toString() + ") and n.is_deleted= false  and " + createIsReadableConditionStr(userId))
-				  : ( networkSummarySelectClause 
-							+ "from network n where n.\"UUID\" in("+ cnd.toString() + ") and n.is_deleted= false  and ( (" + createIsReadableConditionStr(userId)
-				            +  ") or ( n.access_key_is_on and n.access_key = '" + accessKey + "') or " + 
-					                 " exists (select 1 from network_set s, network_set_member sm where s.\"UUID\" = sm.set_id "
-							                 + "and sm.network_id = n.\"UUID\" and s.access_key_is_on and s.access_key = '"+ accessKey + "' and s.is_deleted=false))" );
+		String sqlStr = networkSummarySelectClause + " from network n where n.\"UUID\" = ANY(?) and n.is_deleted= false and "
+				+ (accessKey == null ? createIsReadableConditionStr(userId)
+						: "( (" + createIsReadableConditionStr(userId) + ") or " + accessKeyConditionStr + ")");
 		
 		try (PreparedStatement p = db.prepareStatement(sqlStr)) {
+			setNetworkIdListParams(p, networkIdstrList, userId, accessKey);
 			try ( ResultSet rs = p.executeQuery()) {
 				while ( rs.next()) {
 					NetworkSummary s = new NetworkSummary();
@@ -1397,26 +1767,12 @@ public class NetworkDAO extends NdexDBDAO {
 		
 		if ( networkIdstrList.isEmpty()) return result;
 		
-		StringBuffer cnd = new StringBuffer() ;
-		for ( String idstr : networkIdstrList ) {
-			if (cnd.length()>1)
-				cnd.append(',');
-			cnd.append('\'');
-			cnd.append(idstr);
-			cnd.append('\'');			
-		}
-		
-		String selectClause = generateMetadataQueryStr(fmt);
-		
-		String sqlStr = accessKey == null ? (selectClause
-				+ " from network n where n.\"UUID\" in("+ cnd.toString() + ") and n.is_deleted= false  and " + createIsReadableConditionStr(userId))
-				  : (  selectClause //networkSummarySelectClause 
-							+ "from network n where n.\"UUID\" in("+ cnd.toString() + ") and n.is_deleted= false  and ( (" + createIsReadableConditionStr(userId)
-				            +  ") or ( n.access_key_is_on and n.access_key = '" + accessKey + "') or " + 
-					                 " exists (select 1 from network_set s, network_set_member sm where s.\"UUID\" = sm.set_id "
-							                 + "and sm.network_id = n.\"UUID\" and s.access_key_is_on and s.access_key = '"+ accessKey + "' and s.is_deleted=false))" );
+		String sqlStr = generateMetadataQueryStr(fmt) + " from network n where n.\"UUID\" = ANY(?) and n.is_deleted= false and "
+				+ (accessKey == null ? createIsReadableConditionStr(userId)
+						: "( (" + createIsReadableConditionStr(userId) + ") or " + accessKeyConditionStr + ")");
 		
 		try (PreparedStatement p = db.prepareStatement(sqlStr)) {
+			setNetworkIdListParams(p, networkIdstrList, userId, accessKey);
 			try ( ResultSet rs = p.executeQuery()) {
 				while ( rs.next()) {
 					NetworkSummaryV3 s = new NetworkSummaryV3();
@@ -1428,6 +1784,106 @@ public class NetworkDAO extends NdexDBDAO {
 		}
 		return result;
 	}
+
+	/**
+	 * Same as getNetworkSummariesByIdStrList, but returns the summaries serialized as JSON, in the order of the list.
+	 * The JSON is kept in the summary cache, so a summary is only read from the db and serialized again after the
+	 * network changed. The arrays must not be modified.
+	 * @param networkIdstrList
+	 * @param userId
+	 * @param accessKey
+	 * @return
+	 */
+	public List<byte[]> getNetworkSummaryJsonByIdStrList (List<String> networkIdstrList, UUID userId, String accessKey) throws SQLException, IOException, NdexException {
+		return getSummaryJson(getReadableNetworkIds(networkIdstrList, userId, accessKey), NetworkSummaryCache.Kind.SUMMARY_JSON, null,
+				ids -> {
+					Map<UUID,NetworkSummary> summaries = new HashMap<>(ids.size());
+					for ( NetworkSummary s : getNetworkSummariesByIds(ids, null))
+						summaries.put(s.getExternalId(), s);
+					return summaries;
+				});
+	}
+
+	/**
+	 * Same as getNetworkV3SummariesByIdStrList, but returns the summaries serialized as JSON, in the order of the list.
+	 * See getNetworkSummaryJsonByIdStrList.
+	 */
+	public List<byte[]> getNetworkV3SummaryJsonByIdStrList (List<String> networkIdstrList, UUID userId, String accessKey, NetworkSummaryFormat fmt) throws SQLException, IOException, NdexException {
+		return getSummaryJson(getReadableNetworkIds(networkIdstrList, userId, accessKey), NetworkSummaryCache.Kind.SUMMARY_V3_JSON, fmt.name(),
+				ids -> {
+					Map<UUID,NetworkSummaryV3> summaries = new HashMap<>(ids.size());
+					String sqlStr = generateMetadataQueryStr(fmt) + " from network n where n.\"UUID\" = ANY(?) and n.is_deleted= false";
+					try (PreparedStatement p = db.prepareStatement(sqlStr)) {
+						p.setArray(1, createUUIDArray(ids));
+						try ( ResultSet rs = p.executeQuery()) {
+							while ( rs.next()) {
+								NetworkSummaryV3 s = new NetworkSummaryV3();
+								populateNetworkMetadataFromResultSet(s, rs, fmt);
+								summaries.put(s.getUuid(), s);
+							}
+						}
+					}
+					return summaries;
+				});
+	}
+
+	/**
+	 * Get the networks of the list the user can read, in the order of the list. An id is only returned once.
+	 */
+	private List<UUID> getReadableNetworkIds(List<String> networkIdstrList, UUID userId, String accessKey) throws SQLException {
+		Set<UUID> ids = new LinkedHashSet<>(networkIdstrList.size());
+		for ( String idstr : networkIdstrList)
+			ids.add(UUID.fromString(idstr));
+		if ( ids.isEmpty())
+			return new ArrayList<>();
+
+		String sqlStr = "select n.\"UUID\" from network n where n.\"UUID\" = ANY(?) and n.is_deleted= false and "
+				+ (accessKey == null ? createIsReadableConditionStr(userId)
+						: "( (" + createIsReadableConditionStr(userId) + ") or " + accessKeyConditionStr + ")");
+		Map<UUID,UUID> readable = new HashMap<>(ids.size());
+		try (PreparedStatement p = db.prepareStatement(sqlStr)) {
+			setNetworkIdListParams(p, networkIdstrList, userId, accessKey);
+			try ( ResultSet rs = p.executeQuery()) {
+				while ( rs.next()) {
+					UUID id = (UUID)rs.getObject(1);
+					readable.put(id, id);
+				}
+			}
+		}
+		return orderByIds(new ArrayList<>(ids), readable, null);
+	}
+
+	@FunctionalInterface
+	private interface SummaryLoader {
+		Map<UUID,?> load(List<UUID> networkIds) throws SQLException, IOException, NdexException;
+	}
+
+	private static final ObjectMapper summaryJsonMapper = new ObjectMapper();
+
+	private List<byte[]> getSummaryJson(List<UUID> networkIds, NetworkSummaryCache.Kind kind, String variant,
+			SummaryLoader loader) throws SQLException, IOException, NdexException {
+		NetworkSummaryCache cache = getSummaryCache();
+		Map<UUID,byte[]> json = new HashMap<>(networkIds.size());
+		Map<UUID,Long> versions = new HashMap<>();
+		for ( UUID id : networkIds) {
+			byte[] cached = cache == null ? null : (byte[]) cache.get(kind, id, variant);
+			if ( cached != null)
+				json.put(id, cached);
+			else
+				versions.put(id, Long.valueOf(cache == null ? 0 : getCacheVersion(cache, id)));
+		}
+
+		if ( !versions.isEmpty()) {
+			for ( Map.Entry<UUID,?> e : loader.load(new ArrayList<>(versions.keySet())).entrySet()) {
+				byte[] b = summaryJsonMapper.writeValueAsBytes(e.getValue());
+				if ( cache != null)
+					cache.put(kind, e.getKey(), variant, b, 100 + b.length, versions.get(e.getKey()).longValue());
+				json.put(e.getKey(), b);
+			}
+		}
+		// networks deleted in the mean time are left out.
+		return orderByIds(networkIds, json, null);
+	}
 	
 	/**
 	 * Order in the ResultSet is critical.
@@ -1439,59 +1895,149 @@ public class NetworkDAO extends NdexDBDAO {
 	 * @throws JsonParseException 
 	 */
 	private static void populateNetworkSummaryFromResultSet (NetworkSummary result, ResultSet rs) throws SQLException, JsonParseException, JsonMappingException, IOException {
-		result.setCreationTime(rs.getTimestamp(1));
-		result.setModificationTime(rs.getTimestamp(2));
-		result.setName(rs.getString(3));
-		result.setDescription(rs.getString(4));
-		result.setVersion(rs.getString(5));
-		result.setEdgeCount(rs.getInt(6));
-		result.setNodeCount(rs.getInt(7));
-		result.setVisibility(VisibilityType.valueOf(rs.getString(8)));
-		result.setOwner(rs.getString(9));
-		result.setOwnerUUID((UUID)rs.getObject(10));
-		String proptiesStr = rs.getString(11);
-		
-		if ( proptiesStr != null) {
-			ObjectMapper mapper = new ObjectMapper(); 
-			
-			List<NdexPropertyValuePair> o = mapper.readValue(proptiesStr, new TypeReference<List<NdexPropertyValuePair>>() {/*do nothing*/}); 		
-			if( o != null)
-	         result.setProperties(o);  
+		new SummaryRow(rs).populate(result);
+	}
+
+	/**
+	 * The columns of networkSummarySelectClause, kept in NetworkSummaryCache. Callers are free to modify the summaries
+	 * they get, so each of them gets its own object created from the row.
+	 */
+	private static final class SummaryRow {
+		private final Timestamp creationTime;
+		private final Timestamp modificationTime;
+		private final String name;
+		private final String description;
+		private final String version;
+		private final int edgeCount;
+		private final int nodeCount;
+		private final String visibility;
+		private final String owner;
+		private final UUID ownerUUID;
+		private final String properties;
+		private final UUID externalId;
+		private final boolean isValid;
+		private final String error;
+		private final boolean readOnly;
+		private final String[] warnings;
+		private final boolean showcase;
+		private final Long[] subNetworkIds;
+		private final String indexLevel;
+		private final boolean completed;
+		private final String doi;
+		private final boolean certified;
+		private final boolean hasLayout;
+		private final boolean hasSample;
+		private final String cxFormat;
+		private final long cxFileSize;
+		private final long cx2FileSize;
+
+		// be careful when modify the order or the select clause because this constructor depends on the order.
+		SummaryRow(ResultSet rs) throws SQLException {
+			creationTime = rs.getTimestamp(1);
+			modificationTime = rs.getTimestamp(2);
+			name = rs.getString(3);
+			description = rs.getString(4);
+			version = rs.getString(5);
+			edgeCount = rs.getInt(6);
+			nodeCount = rs.getInt(7);
+			visibility = rs.getString(8);
+			owner = rs.getString(9);
+			ownerUUID = (UUID)rs.getObject(10);
+			properties = rs.getString(11);
+			externalId = (UUID)rs.getObject(12);
+			isValid = rs.getBoolean(13);
+			error = rs.getString(14);
+			readOnly = rs.getBoolean(15);
+			Array w = rs.getArray(16);
+			warnings = w == null ? null : (String[]) w.getArray();
+			showcase = rs.getBoolean(17);
+			Array subNets = rs.getArray(18);
+			subNetworkIds = subNets == null ? null : (Long[]) subNets.getArray();
+			indexLevel = rs.getString(19);
+			completed = rs.getBoolean(20);
+			doi = rs.getString(21);
+			certified = rs.getBoolean(22);
+			hasLayout = rs.getBoolean(23);
+			hasSample = rs.getBoolean(24);
+			cxFormat = rs.getString(25);
+			cxFileSize = rs.getLong(26);
+			cx2FileSize = rs.getLong(27);
+		}
+
+		NetworkSummary toSummary() throws JsonParseException, JsonMappingException, IOException {
+			NetworkSummary result = new NetworkSummary();
+			populate(result);
+			return result;
 		}
+
+		void populate(NetworkSummary result) throws JsonParseException, JsonMappingException, IOException {
+			result.setCreationTime(creationTime == null ? null : (Timestamp) creationTime.clone());
+			result.setModificationTime(modificationTime == null ? null : (Timestamp) modificationTime.clone());
+			result.setName(name);
+			result.setDescription(description);
+			result.setVersion(version);
+			result.setEdgeCount(edgeCount);
+			result.setNodeCount(nodeCount);
+			result.setVisibility(VisibilityType.valueOf(visibility));
+			result.setOwner(owner);
+			result.setOwnerUUID(ownerUUID);
+			
+			if ( properties != null) {
+				ObjectMapper mapper = new ObjectMapper(); 
+				
+				List<NdexPropertyValuePair> o = mapper.readValue(properties, new TypeReference<List<NdexPropertyValuePair>>() {/*do nothing*/}); 		
+				if( o != null)
+		         result.setProperties(o);  
+			}
+			
+			result.setExternalId(externalId);
+			result.setIsValid(isValid);
+			result.setErrorMessage(error);
+			result.setIsReadOnly(readOnly);
+			if ( warnings != null) {
+				List<String> warningList = Arrays.asList(warnings.clone());  
+				result.setWarnings(warningList);
+			}  
+			
+			result.setIsShowcase(showcase);
 		
-		result.setExternalId((UUID)rs.getObject(12));
-		result.setIsValid(rs.getBoolean(13));
-		result.setErrorMessage(rs.getString(14));
-		result.setIsReadOnly(rs.getBoolean(15));
-		Array warnings = rs.getArray(16);
-		if ( warnings != null) {
-			String[] wA = (String[]) warnings.getArray();
-			List<String> warningList = Arrays.asList(wA);  
-			result.setWarnings(warningList);
-		}  
-		
-		result.setIsShowcase(rs.getBoolean(17));
-	
-		Array subNetworkIds = rs.getArray(18);
-		if ( subNetworkIds != null) {
-			Long[] subNetIds = (Long[]) subNetworkIds.getArray();
-			result.setSubnetworkIds(new HashSet<> (Arrays.asList(subNetIds)));
+			if ( subNetworkIds != null) {
+				result.setSubnetworkIds(new HashSet<> (Arrays.asList(subNetworkIds)));
+			}
+			
+			result.setIndexLevel(NetworkIndexLevel.valueOf(indexLevel));
+			result.setCompleted(completed);
+			result.setDoi(doi);
+			result.setIsCertified(certified);
+			result.setHasLayout(hasLayout);
+			result.setHasSample(hasSample);
+			result.setCxFormat(cxFormat);
+			result.setCxFileSize(cxFileSize);
+			result.setCx2FileSize(cx2FileSize);
+		}
+
+		// rough size in memory, for the cache.
+		int weight() {
+			int size = 400 + 2 * (length(name) + length(description) + length(version) + length(owner) + length(properties)
+					+ length(error) + length(doi));
+			if ( warnings != null) {
+				for ( String w : warnings)
+					size += 40 + 2 * length(w);
+			}
+			if ( subNetworkIds != null)
+				size += 24 * subNetworkIds.length;
+			return size;
 		}
-		
-		result.setIndexLevel(NetworkIndexLevel.valueOf(rs.getString(19)));
-		result.setCompleted(rs.getBoolean(20));
-		result.setDoi(rs.getString(21));
-		result.setIsCertified(rs.getBoolean(22));
-		result.setHasLayout(rs.getBoolean(23));
-		result.setHasSample(rs.getBoolean(24));
-		result.setCxFormat(rs.getString(25));
-		result.setCxFileSize(rs.getLong(26));
-		result.setCx2FileSize(rs.getLong(27));
+	}
+
+	private static int length(String s) {
+		return s == null ? 0 : s.length();
 	}
 	
 	
 	public void updateNetworkProfile(UUID networkId, Map<String,String> newValues) throws NdexException, SQLException {
 	
+		    invalidateSummary(networkId);
 	    	 //update db
 		    String sqlStr = "update network set ";
 		    List<String> values = new ArrayList<>(newValues.size());
@@ -1501,12 +2047,13 @@ public class NetworkDAO extends NdexDBDAO {
 		    		sqlStr += entry.getKey() + " = ?";	
 		    		values.add(entry.getValue());
 		    }
-		    sqlStr += ", modification_time = localtimestamp, iscomplete=false where \"UUID\" = '" + networkId + "' ::uuid and is_deleted=false";
+		    sqlStr += ", modification_time = localtimestamp, iscomplete=false where \"UUID\" = ? and is_deleted=false";
 		    
 		    try (PreparedStatement p = db.prepareStatement(sqlStr)) {
 		    	for ( int i = 0 ; i < values.size(); i++) {
 		    		p.setString(i+1, values.get(i));
 		    	}
+		    	p.setObject(values.size()+1, networkId);
 		    	int cnt = p.executeUpdate();
 		    	if ( cnt != 1 ) {
 		    		throw new NdexException ("Failed to update. Network " + networkId + " might have been locked.");
@@ -1518,7 +2065,7 @@ public class NetworkDAO extends NdexDBDAO {
 	public void updateNetworkSummary(UUID networkId, NetworkSummary summary) throws NdexException, SQLException, JsonProcessingException {
 		
 	    String sqlStr = "update network set name =?, description=?, version = ?, properties =? :: jsonb, visibility = ?,"
-	    		+ "modification_time = localtimestamp, iscomplete=false where \"UUID\" = '" + networkId + "' ::uuid and is_deleted=false";
+	    		+ "modification_time = localtimestamp, iscomplete=false where \"UUID\" = ? and is_deleted=false";
 	    
 	    try (PreparedStatement p = db.prepareStatement(sqlStr)) {
 	    	p.setString(1, summary.getName());
@@ -1534,32 +2081,26 @@ public class NetworkDAO extends NdexDBDAO {
 			}
 			
 	    	p.setString(5, summary.getVisibility().toString());
+	    	p.setObject(6, networkId);
 	    	int cnt = p.executeUpdate();
 	    	if ( cnt != 1 ) {
 	    		throw new NdexException ("Failed to update. Network " + networkId + " might have been locked.");
 	    	}
 	    }
+	    // the visibility might have changed.
+	    invalidatePermissions(networkId);
 }
 	
 	
 	
 	public MetaDataCollection getMetaDataCollection(UUID networkId) throws SQLException, IOException, NdexException {
-		String sqlStr = "select cxmetadata from network n where n.\"UUID\" =? and n.is_deleted= false" ;
-		
-		try (PreparedStatement p = db.prepareStatement(sqlStr)) {
-			p.setObject(1, networkId);
-			try ( ResultSet rs = p.executeQuery()) {
-				if ( rs.next()) {
-					String s = rs.getString(1);
-					if ( s != null) {
-						return MetaDataCollection.createInstanceFromJson(s);
-					}
-					return new MetaDataCollection();
-				}
-				throw new NdexException ("No metadata found for network " + networkId + " in database.");
-			}
+		Optional<String> s = getMetadataColumn(networkId, NetworkSummaryCache.Kind.CX_METADATA);
+		if ( s == null)
+			throw new NdexException ("No metadata found for network " + networkId + " in database.");
+		if ( s.isPresent()) {
+			return MetaDataCollection.createInstanceFromJson(s.get());
 		}
-		
+		return new MetaDataCollection();
 	}
 
 	/**
@@ -1571,25 +2112,48 @@ public class NetworkDAO extends NdexDBDAO {
 	 * @throws NdexException
 	 */
 	public List<CxMetadata> getCx2MetaDataList(UUID networkId) throws SQLException, IOException, NdexException {
-		String sqlStr = "select cx2metadata from network n where n.\"UUID\" =? and n.is_deleted= false" ;
+		Optional<String> s = getMetadataColumn(networkId, NetworkSummaryCache.Kind.CX2_METADATA);
 		
 		List<CxMetadata> result = new ArrayList<>();
+		if ( s != null && s.isPresent()) {
+			ObjectMapper mapper = new ObjectMapper();
+			result = mapper.readValue(s.get(),new TypeReference<List<CxMetadata>>(){});
+		}
+		return result;
+		
+	}
+
+	/**
+	 * Read the cxmetadata or cx2metadata column of a network through the summary cache. The JSON is parsed by the
+	 * callers because they modify the objects they get.
+	 * @param networkId
+	 * @param kind CX_METADATA or CX2_METADATA
+	 * @return null if the network is not found, an empty Optional if the column is null.
+	 * @throws SQLException
+	 */
+	private Optional<String> getMetadataColumn(UUID networkId, NetworkSummaryCache.Kind kind) throws SQLException {
+		NetworkSummaryCache cache = getSummaryCache();
+		if ( cache != null) {
+			@SuppressWarnings("unchecked")
+			Optional<String> cached = (Optional<String>) cache.get(kind, networkId);
+			if ( cached != null)
+				return cached;
+		}
+		long version = cache == null ? 0 : getCacheVersion(cache, networkId);
+
+		String sqlStr = "select " + (kind == NetworkSummaryCache.Kind.CX_METADATA ? "cxmetadata" : "cx2metadata")
+				+ " from network n where n.\"UUID\" =? and n.is_deleted= false" ;
 		try (PreparedStatement p = db.prepareStatement(sqlStr)) {
 			p.setObject(1, networkId);
 			try ( ResultSet rs = p.executeQuery()) {
-				if ( rs.next()) {
-					String s = rs.getString(1);
-					
-					if ( s != null) {
-						ObjectMapper mapper = new ObjectMapper();
-						result = mapper.readValue(s,new TypeReference<List<CxMetadata>>(){});
-						
-					}
-				}
+				if ( !rs.next())
+					return null;
+				Optional<String> s = Optional.ofNullable(rs.getString(1));
+				if ( cache != null)
+					cache.put(kind, networkId, s, 100 + 2 * length(s.orElse(null)), version);
+				return s;
 			}
 		}
-		return result;
-		
 	}
 
 	public boolean hasCX2(UUID networkId) throws SQLException {
@@ -1634,6 +2198,7 @@ public class NetworkDAO extends NdexDBDAO {
 	
 
 	public void setCxMetadata(UUID networkId, List<CxMetadata> cx2metadata) throws SQLException, JsonProcessingException, NdexException {
+		invalidateSummary(networkId);
 		String sqlStr = "update network set cx2metadata = ? ::jsonb where \"UUID\" = ? and is_deleted=false";
 		 try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
 			ObjectMapper mapper = new ObjectMapper();
@@ -1648,6 +2213,7 @@ public class NetworkDAO extends NdexDBDAO {
 	
 	
 	public void updateMetadataColleciton(UUID networkId, MetaDataCollection metadata) throws SQLException, JsonProcessingException, NdexException {
+		invalidateSummary(networkId);
 		String sqlStr = "update network set cxmetadata = ? ::jsonb where \"UUID\" = ? and is_deleted=false";
 		 try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
 			ObjectMapper mapper = new ObjectMapper();
@@ -1661,16 +2227,17 @@ public class NetworkDAO extends NdexDBDAO {
 	}
 	
 	public void updateNetworkVisibility (UUID networkId, VisibilityType v, boolean force) throws SQLException, NdexException {
-		 String sqlStr = "update network set visibility = '" + v.toString() + "' where \"UUID\" = ? and is_deleted=false";
+		 String sqlStr = "update network n set visibility = '" + v.toString() + "' where \"UUID\" = ? and is_deleted=false";
 		 
 		 if ( !force) 
-			 sqlStr += " and islocked=false";
+			 sqlStr += " and not " + lockHeldCondition;
 		 try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
 			 pst.setObject(1, networkId);
 			 int i = pst.executeUpdate();
 			 if ( i !=1 )
 				 throw new NdexException ("Failed to update visibility. Network " + networkId + " might have been locked.");
 		 }
+		 invalidatePermissions(networkId);
 		    	  	
 		 //update solr index
 	/*	 NetworkGlobalIndexManager networkIdx = new NetworkGlobalIndexManager();
@@ -1716,7 +2283,7 @@ public class NetworkDAO extends NdexDBDAO {
 		String sql = "select owneruuid as user_id, owner as user_name,name, 'ADMIN' from network where \"UUID\"=? and is_deleted=false";
 		if ( permission == null ) {
 			sql += " union select un.user_id, u.user_name, n.name, un.permission_type from user_network_membership un, network n, ndex_user u where u.\"UUID\" = un.user_id and "
-					+ "n.\"UUID\" = un.network_id and network_id = '" + networkId.toString() + "'";
+					+ "n.\"UUID\" = un.network_id and network_id = ?";
 		}else if ( permission != Permissions.ADMIN) 
 			sql = "select user_id, u.user_name, n.name, un.permission_type from user_network_membership un, network n, ndex_user u where u.\"UUID\" = un.user_id and n.\"UUID\" = un.network_id "
 					+ "and network_id = ? and un.permission_type = '" + permission.toString() + "'";
@@ -1726,6 +2293,8 @@ public class NetworkDAO extends NdexDBDAO {
 		}
 		try ( PreparedStatement p = db.prepareStatement(sql)) {
 			p.setObject(1, networkId);
+			if ( permission == null)
+				p.setObject(2, networkId);
 			try ( ResultSet rs = p.executeQuery()) {
 				while ( rs.next()) {
 					Membership membership = new Membership();
@@ -1760,15 +2329,18 @@ public class NetworkDAO extends NdexDBDAO {
 
 		String sql = "select owneruuid as user_id, 'ADMIN' :: ndex_permission_type as permission_type from network where \"UUID\"=? and is_deleted=false";
 		if ( permission == null ) {
-			sql += " union select un.user_id, un.permission_type from user_network_membership un where un.network_id = '" + networkId.toString() + "'";
+			sql += " union select un.user_id, un.permission_type from user_network_membership un where un.network_id = ?";
 		}else if ( permission != Permissions.ADMIN) 
 			sql = "select user_id, un.permission_type from user_network_membership un where un.network_id = ? and un.permission_type = '" + permission.toString() + "'";
 		
+		sql += " order by user_id";
 		if ( skipBlocks>=0 && blockSize>0) {
 			sql += " limit " + blockSize + " offset " + skipBlocks * blockSize;
 		}
 		try ( PreparedStatement p = db.prepareStatement(sql)) {
 			p.setObject(1, networkId);
+			if ( permission == null)
+				p.setObject(2, networkId);
 			try ( ResultSet rs = p.executeQuery()) {
 				while ( rs.next()) {
 					memberships.put(rs.getObject(1).toString(), rs.getString(2));
@@ -1790,15 +2362,17 @@ public class NetworkDAO extends NdexDBDAO {
 				"Valid permission required");
 		Map<String,String> memberships = new TreeMap<>();
 
-		String sql = "select gn.group_id, gn.permission_type from group_network_membership gn where gn.network_id = '" + networkId.toString() + "'";
+		String sql = "select gn.group_id, gn.permission_type from group_network_membership gn where gn.network_id = ?";
 		if (permission != null )
 			sql += " and gn.permission_type = '" + permission.toString() + "'";
 		
+		sql += " order by gn.group_id";
 		if ( skipBlocks>=0 && blockSize>0) {
 			sql += " limit " + blockSize + " offset " + skipBlocks * blockSize;
 		}
 		
 		try ( PreparedStatement p = db.prepareStatement(sql)) {
+			p.setObject(1, networkId);
 			try ( ResultSet rs = p.executeQuery()) {
 				while ( rs.next()) {
 					memberships.put(rs.getObject(1).toString(), rs.getString(2));
@@ -1809,9 +2383,91 @@ public class NetworkDAO extends NdexDBDAO {
 	//	logger.info("Successfuly retrieved network-group permissions.");
 		return memberships;
 	}
-		
-	
-	
+
+	/**
+	 * Keyset paged version of getNetworkUserPermissions, ordered by user UUID.
+	 * @param after cursor of the page, null for the first page.
+	 * @param limit page size, 0 or less to get all the users after the cursor.
+	 * @return user UUID to permission, and the cursor of the next page.
+	 */
+	public PageCursor.Page<Map<String,String>> getNetworkUserPermissions(UUID networkId, Permissions permission, PageCursor after, int limit)
+			throws SQLException {
+
+		if ( permission !=null )
+			Preconditions.checkArgument(
+				(permission.equals( Permissions.ADMIN) )
+				|| (permission.equals( Permissions.WRITE ))
+				|| (permission.equals( Permissions.READ )),
+				"Valid permission required");
+
+		String sql = "select owneruuid as user_id, 'ADMIN' :: ndex_permission_type as permission_type from network where \"UUID\"=? and is_deleted=false";
+		if ( permission == null ) {
+			sql += " union select un.user_id, un.permission_type from user_network_membership un where un.network_id = ?";
+		}else if ( permission != Permissions.ADMIN)
+			sql = "select user_id, un.permission_type from user_network_membership un where un.network_id = ? and un.permission_type = '" + permission.toString() + "'";
+
+		sql = "select * from (" + sql + ") k" + (after != null ? " where k.user_id > ?" : "") + " order by k.user_id"
+				+ (limit > 0 ? " limit " + limit : "");
+
+		try ( PreparedStatement p = db.prepareStatement(sql)) {
+			int i = 1;
+			p.setObject(i++, networkId);
+			if ( permission == null)
+				p.setObject(i++, networkId);
+			if ( after != null)
+				p.setObject(i, after.getId());
+			return getAccountPermissionPage(p, limit);
+		}
+	}
+
+	/**
+	 * Keyset paged version of getNetworkGroupPermissions, ordered by group UUID.
+	 * @param after cursor of the page, null for the first page.
+	 * @param limit page size, 0 or less to get all the groups after the cursor.
+	 * @return group UUID to permission, and the cursor of the next page.
+	 */
+	public PageCursor.Page<Map<String,String>> getNetworkGroupPermissions(UUID networkId, Permissions permission, PageCursor after, int limit)
+			throws SQLException {
+
+		if ( permission !=null )
+			Preconditions.checkArgument(
+				 (permission.equals( Permissions.WRITE ))
+				|| (permission.equals( Permissions.READ )),
+				"Valid permission required");
+
+		String sql = "select gn.group_id, gn.permission_type from group_network_membership gn where gn.network_id = ?";
+		if (permission != null )
+			sql += " and gn.permission_type = '" + permission.toString() + "'";
+		if ( after != null)
+			sql += " and gn.group_id > ?";
+		sql += " order by gn.group_id" + (limit > 0 ? " limit " + limit : "");
+
+		try ( PreparedStatement p = db.prepareStatement(sql)) {
+			p.setObject(1, networkId);
+			if ( after != null)
+				p.setObject(2, after.getId());
+			return getAccountPermissionPage(p, limit);
+		}
+	}
+
+	private static PageCursor.Page<Map<String,String>> getAccountPermissionPage(PreparedStatement p, int limit) throws SQLException {
+		Map<String,String> memberships = new TreeMap<>();
+		UUID last = null;
+		int count = 0;
+		try ( ResultSet rs = p.executeQuery()) {
+			while ( rs.next()) {
+				last = (UUID) rs.getObject(1);
+				memberships.put(last.toString(), rs.getString(2));
+				count++;
+			}
+		}
+		// the rows come in UUID order, the last one is the end of the page.
+		return new PageCursor.Page<>(memberships,
+				limit > 0 && count == limit ? new PageCursor(null, last) : null);
+	}
+
+
+
 	private Permissions getNetworkPermissionOnGroup(UUID networkId, UUID groupId) throws SQLException {
 		String sql = "select permission_type from group_network_membership where network_id =? and group_id = ?";
 		try ( PreparedStatement p = db.prepareStatement(sql)) {
@@ -1877,6 +2533,7 @@ public class NetworkDAO extends NdexDBDAO {
         }
         
         setFlag(networkUUID, "iscomplete",false);
+        invalidatePermissions(networkUUID);
         
         commit();
 		//update solr index
@@ -1936,6 +2593,7 @@ public class NetworkDAO extends NdexDBDAO {
     			pst.executeUpdate();
     		}
     		
+    		invalidatePermissions(networkUUID);
     		// keep the old 
     		commit();
     		
@@ -1948,6 +2606,7 @@ public class NetworkDAO extends NdexDBDAO {
     			pst.executeUpdate();
     		}
     		setFlag(networkUUID, "iscomplete", false);
+    		invalidatePermissions(networkUUID);
     		commit();
     	}
 
@@ -1975,6 +2634,7 @@ public class NetworkDAO extends NdexDBDAO {
         	pst.setObject(1, networkUUID);
         	pst.setObject(2,groupUUID);
         	int c = pst.executeUpdate();
+        	invalidatePermissions(networkUUID);
         	commit();
 
         	return c;	
@@ -1999,6 +2659,7 @@ public class NetworkDAO extends NdexDBDAO {
         	pst.setObject(1, networkUUID);
         	pst.setObject(2,userUUID);
         	int c = pst.executeUpdate();
+        	invalidatePermissions(networkUUID);
         	commit();
         	//if ( c ==1 )  {
         	//	try (UserDAO dao = new UserDAO()) {
@@ -2020,7 +2681,7 @@ public class NetworkDAO extends NdexDBDAO {
      * @param errorMessage
      */
     public void setErrorMessage(UUID networkId, String errorMessage) {
-    	String sql = "update network set error = ? where \"UUID\" = ? and is_deleted=false";
+    	String sql = "update network set error = ? where \"UUID\" = ? and is_deleted=false and error is distinct from ?";
     	
     	String trimmedMsg = errorMessage;
     	if ( trimmedMsg == null)
@@ -2031,10 +2692,13 @@ public class NetworkDAO extends NdexDBDAO {
     	try ( PreparedStatement pst = db.prepareStatement(sql)) {
     		pst.setString(1, trimmedMsg);
     		pst.setObject(2, networkId);
+    		pst.setString(3, trimmedMsg);
     		int i = pst.executeUpdate();
-    		if ( i !=1)
+    		if ( i == 1)
+    			invalidateSummary(networkId);
+    		else if ( !networkExists(networkId))
     			logger.severe("Update statement for network " + networkId + " doesn't returned row count " + i + ". sql=" + sql);
-    		db.commit();
+    		commit();
     	} catch (SQLException e) {
     		logger.severe("Failed to set error message for network " + networkId + ": " + e.getMessage());
     	}
@@ -2042,6 +2706,7 @@ public class NetworkDAO extends NdexDBDAO {
     }
     
     public void setWarning(UUID networkId, List<String> warnings) throws SQLException, NdexException {
+    	invalidateSummary(networkId);
     	String sqlStr = "update network set  warnings = ? where \"UUID\" = ? and is_deleted = false";
 		try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
 			
@@ -2059,6 +2724,7 @@ public class NetworkDAO extends NdexDBDAO {
     }
     
     public void setSubNetworkIds(UUID networkId, Set<Long> subNetworkIds) throws SQLException, NdexException {
+    	invalidateSummary(networkId);
     	String sqlStr = "update network set  subnetworkids = ? where \"UUID\" = ? and is_deleted = false";
 		try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
 			
@@ -2077,6 +2743,7 @@ public class NetworkDAO extends NdexDBDAO {
     
     public void setShowcaseFlag(UUID networkId, UUID userId, boolean bv) throws SQLException, UnauthorizedOperationException {
     	if ( isAdmin(networkId,userId)) {
+    		invalidateSummary(networkId);
     		String sql = "update network set show_in_homepage = ? where \"UUID\"=? and is_deleted=false";
         	try ( PreparedStatement pst = db.prepareStatement(sql)) {
         		pst.setBoolean(1, bv);
@@ -2120,7 +2787,9 @@ public class NetworkDAO extends NdexDBDAO {
 		
 		try (PreparedStatement p = db.prepareStatement(sqlStr)) {
 			p.setObject(1, userId);
-			p.setObject(2, userId);
+			int i = setIsReadableConditionParams(p, 2, signedInUserId);
+			p.setObject(i++, userId);
+			setIsReadableConditionParams(p, i, signedInUserId);
 			try ( ResultSet rs = p.executeQuery()) {
 				while ( rs.next()) {
 					NetworkSummary s = new NetworkSummary();
@@ -2145,7 +2814,7 @@ public class NetworkDAO extends NdexDBDAO {
 				+ "n.edgecount,n.nodecount,n.visibility,n.owner,n.owneruuid,"
 				+ " n.properties, n.\"UUID\", n.is_validated, n.error, n.readonly, n.warnings, un.show_in_homepage, n.subnetworkids,n.solr_idx_lvl,"
 				+ " n.iscomplete, n.ndexdoi, n.certified,n.has_layout, n.has_sample, n.cxformat, n.cx_file_size, n.cx2_file_size "
-				+ " from network n, user_network_membership un where un.network_id = n.\"UUID\" and un.user_id = ? ) k order by k.modification_time desc"; 
+				+ " from network n, user_network_membership un where un.network_id = n.\"UUID\" and un.user_id = ? ) k order by k.modification_time desc, k.\"UUID\" desc";
 
 		if ( offset >=0 && limit >0) {
 			sqlStr += " limit " + limit + " offset " + offset;
@@ -2164,8 +2833,64 @@ public class NetworkDAO extends NdexDBDAO {
 		}
 		return result;
 	}
-	
-	
+
+	/**
+	 * Keyset paged version of getNetworkSummariesForMyAccountPage. Each branch of the union seeks to the cursor and
+	 * stops after limit rows. Only the owner branch seeks through an index (network_owner_modtime_idx), so a deep page
+	 * reads no more owned networks than the first one; the membership branch is ordered by a column of the joined
+	 * network table, so it still reads and sorts all the memberships of the user on every page.
+	 * @param userId
+	 * @param after cursor of the page, null for the first page.
+	 * @param limit page size, 0 or less to get all the networks after the cursor.
+	 * @return the networks and the cursor of the next page.
+	 */
+	public PageCursor.Page<List<NetworkSummary>> getNetworkSummariesForMyAccountPage
+			(UUID userId, PageCursor after, int limit) throws SQLException, JsonParseException, JsonMappingException, IOException {
+		// be careful when modify the order or the select clause becaue populateNetworkSummaryFromResultSet function depends on the order.
+
+		if ( after != null && after.getTime() == null)
+			throw new IllegalArgumentException("Invalid cursor for a network listing.");
+
+		String seek = (after != null ? " and (n.modification_time, n.\"UUID\") < (?, ?)" : "");
+		String page = " order by n.modification_time desc, n.\"UUID\" desc" + (limit > 0 ? " limit " + limit : "");
+
+		String sqlStr = "select * from ( (" + networkSummarySelectClause
+				+ " from network n where n.owneruuid = ? and n.is_deleted= false " + seek + page
+				+ ") union (select n.creation_time, n.modification_time, n.name,n.description,n.version,"
+				+ "n.edgecount,n.nodecount,n.visibility,n.owner,n.owneruuid,"
+				+ " n.properties, n.\"UUID\", n.is_validated, n.error, n.readonly, n.warnings, un.show_in_homepage, n.subnetworkids,n.solr_idx_lvl,"
+				+ " n.iscomplete, n.ndexdoi, n.certified,n.has_layout, n.has_sample, n.cxformat, n.cx_file_size, n.cx2_file_size "
+				+ " from network n, user_network_membership un where un.network_id = n.\"UUID\" and un.user_id = ? " + seek + page
+				+ ") ) k order by k.modification_time desc, k.\"UUID\" desc" + (limit > 0 ? " limit " + limit : "");
+
+		List<NetworkSummary> result = new ArrayList<>(limit > 0 ? limit : 50);
+		try (PreparedStatement p = db.prepareStatement(sqlStr)) {
+			int i = 1;
+			for ( int branch = 0; branch < 2; branch++) {
+				p.setObject(i++, userId);
+				if ( after != null) {
+					p.setTimestamp(i++, after.getTime());
+					p.setObject(i++, after.getId());
+				}
+			}
+			try ( ResultSet rs = p.executeQuery()) {
+				while ( rs.next()) {
+					NetworkSummary s = new NetworkSummary();
+					populateNetworkSummaryFromResultSet(s,rs);
+					result.add(s);
+				}
+			}
+		}
+
+		PageCursor next = null;
+		if ( limit > 0 && result.size() == limit) {
+			NetworkSummary last = result.get(result.size() - 1);
+			next = new PageCursor(last.getModificationTime(), last.getExternalId());
+		}
+		return new PageCursor.Page<>(result, next);
+	}
+
+
 	public int getNumNetworksForMyAccountPage (UUID userId) throws SQLException, NdexException {
 
 		
@@ -2240,6 +2965,7 @@ public class NetworkDAO extends NdexDBDAO {
 	        	pst.setObject(1, networkId);
 	        	pst.executeUpdate();
 	        }	
+			invalidatePermissions(networkId);
 			return oldKey;
 				
 		}
@@ -2257,11 +2983,13 @@ public class NetworkDAO extends NdexDBDAO {
 	        	pst.setObject(2, networkId);
 	        	pst.executeUpdate();
 	      }	
+	     invalidatePermissions(networkId);
 	     
 	     return newKey;
 	}
 
 	public void setDOI (UUID networkId, String DOIStr) throws SQLException, NdexException {
+		invalidateSummary(networkId);
 		String sqlStr = "update network set ndexdoi= ? where \"UUID\" = ? and is_deleted = false";
 		try (PreparedStatement pst = db.prepareStatement(sqlStr)) {
 			pst.setString(1, DOIStr);
@@ -2303,31 +3031,43 @@ public class NetworkDAO extends NdexDBDAO {
 	        pst.setObject(1, networkId);
 	        pst.executeUpdate();
 	    }	
+		invalidatePermissions(networkId);
 	}
 	
 	public boolean accessKeyIsValid(UUID networkId, String accessKey) throws SQLException {
 		if ( accessKey ==null || accessKey.length() == 0)
 			return false;
 		
+		NetworkPermissionCache cache = getPermissionCache();
+		Boolean cached = cache == null ? null : cache.getAccessKeyDecision(networkId, accessKey);
+		if ( cached != null)
+			return cached.booleanValue();
+		long generation = getCacheGeneration(cache);
+
+		boolean result = false;
 		String sqlStr = "select 1 from network where (\"UUID\"=? and access_key_is_on and access_key = ?)" ;
 		try (PreparedStatement p = db.prepareStatement(sqlStr)) {
 			p.setObject(1, networkId);
 			p.setString(2, accessKey);
 			try ( ResultSet rs = p.executeQuery()) {
-				 if (rs.next())
-					 return true;
+				 result = rs.next();
 			}		
 		}
 		
-		sqlStr = "select 1 from network_set s, network_set_member sm where s.\"UUID\" = sm.set_id "
-                + "and sm.network_id = ? and s.access_key_is_on and s.access_key = ? and s.is_deleted=false";
-		try (PreparedStatement p = db.prepareStatement(sqlStr)) {
-			p.setObject(1, networkId);
-			p.setString(2, accessKey);
-			try ( ResultSet rs = p.executeQuery()) {
-				 return rs.next();
-			}		
+		if ( !result) {
+			sqlStr = "select 1 from network_set s, network_set_member sm where s.\"UUID\" = sm.set_id "
+					+ "and sm.network_id = ? and s.access_key_is_on and s.access_key = ? and s.is_deleted=false";
+			try (PreparedStatement p = db.prepareStatement(sqlStr)) {
+				p.setObject(1, networkId);
+				p.setString(2, accessKey);
+				try ( ResultSet rs = p.executeQuery()) {
+					result = rs.next();
+				}		
+			}
 		}
+		if ( cache != null)
+			cache.putAccessKeyDecision(networkId, accessKey, result, generation);
+		return result;
 
 	}
 }
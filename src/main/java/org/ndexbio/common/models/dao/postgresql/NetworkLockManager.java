@@ -0,0 +1,350 @@
+package org.ndexbio.common.models.dao.postgresql;
+
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+import org.ndexbio.common.access.NdexDatabase;
+import org.ndexbio.common.access.NdexUnitOfWork;
+import org.ndexbio.rest.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Wait queues for the network lock (the islocked flag in the network table), used by NetworkDAO.lockNetwork and
+ * networkIsLocked.
+ * <p>
+ * The flag stays the lock itself, because a network is often locked by an API request and unlocked by the task that
+ * finishes the update, and because every server sharing the database has to see it. This class only replaces the
+ * fixed sleeps of the callers: the threads of this server that want the same network wait in FIFO order, only the
+ * first one tries to set the flag, and it is woken up as soon as unlockNetwork commits on this server. A lock held by
+ * another server is noticed by re-checking the flag every {@link #pollMillis} ms, or as soon as CacheInvalidationBus
+ * forwards the unlock when it is running. Waiting is bounded by
+ * NETWORK_LOCK_MAX_WAIT seconds (default 5).
+ * <p>
+ * A lock is also a lease: the row records the server that holds it (lock_owner) and when the lease runs out
+ * (lock_expiration), and lockNetwork takes a lock whose lease has run out. This server renews the leases of the locks
+ * it holds every third of NETWORK_LOCK_LEASE seconds (default 300) for as long as the request or task that holds the
+ * lock is running, so the lock of a crashed server, or of a request or task that ended without unlocking the network,
+ * is released when its lease runs out. A request that leaves the rest of the update to a queued task hands the lock
+ * off with {@link #handOff(UUID)}, and the task takes it over with {@link #adopt(UUID)} when it starts.
+ */
+public final class NetworkLockManager {
+
+	static Logger logger = LoggerFactory.getLogger(NetworkLockManager.class);
+
+	public static final String MAX_WAIT_PROPERTY = "NETWORK_LOCK_MAX_WAIT";
+	public static final String LEASE_PROPERTY = "NETWORK_LOCK_LEASE";
+
+	private static final long defaultMaxWait = 5;
+	private static final long defaultLease = 300;
+
+	// how often a waiting thread checks the flag again if it is not woken up, e.g. when another server holds the lock.
+	static final long pollMillis = 250;
+
+	/**
+	 * One attempt to get the lock or to check it, made by the waiting thread.
+	 */
+	@FunctionalInterface
+	interface Attempt {
+		boolean succeeded() throws SQLException;
+	}
+
+	/**
+	 * Extends the leases of the locks this server holds, see NetworkDAO.renewNetworkLocks.
+	 */
+	@FunctionalInterface
+	interface Renewer {
+		void renew(Collection<UUID> networkIds, String owner, long leaseMillis) throws SQLException;
+	}
+
+	// a lock handed off to a queued task is renewed until the task takes it over.
+	private static final BooleanSupplier queued = () -> true;
+
+	private static final class Waiters {
+		// fair, so the waiting threads get the lock in the order they asked for it.
+		final ReentrantLock queue = new ReentrantLock(true);
+		// guarded by this object.
+		long releases;
+		// guarded by the manager.
+		int count;
+	}
+
+	private static NetworkLockManager instance = null;
+
+	private final long maxWaitMillis;
+
+	private final Map<UUID, Waiters> waiters = new HashMap<>();
+
+	private final long leaseMillis;
+
+	// written to lock_owner, unique to this server process.
+	private final String ownerId;
+
+	private final Renewer renewer;
+
+	// locks held by this server -> true while the request or task holding the lock is running.
+	private final Map<UUID, BooleanSupplier> held = new ConcurrentHashMap<>();
+
+	// guarded by this object.
+	private ScheduledExecutorService renewal;
+
+	NetworkLockManager(long maxWaitMillis) {
+		this(maxWaitMillis, defaultLease * 1000, createOwnerId(), NetworkLockManager::renewInDatabase);
+	}
+
+	NetworkLockManager(long maxWaitMillis, long leaseMillis, String ownerId, Renewer renewer) {
+		this.maxWaitMillis = maxWaitMillis;
+		this.leaseMillis = leaseMillis;
+		this.ownerId = ownerId;
+		this.renewer = renewer;
+	}
+
+	public static synchronized NetworkLockManager getInstance() {
+		if ( instance == null) {
+			long maxWait = defaultMaxWait;
+			long lease = defaultLease;
+			Configuration config = Configuration.getInstance();
+			if ( config != null) {
+				String value = config.getProperty(MAX_WAIT_PROPERTY);
+				if ( value != null)
+					maxWait = Long.parseLong(value.trim());
+				value = config.getProperty(LEASE_PROPERTY);
+				if ( value != null)
+					lease = Long.parseLong(value.trim());
+			}
+			instance = new NetworkLockManager(maxWait * 1000, lease * 1000, createOwnerId(),
+					NetworkLockManager::renewInDatabase);
+		}
+		return instance;
+	}
+
+	/**
+	 * Stop renewing the leases. Called when the server shuts down; the locks it still holds are released when their
+	 * leases run out.
+	 */
+	public static synchronized void shutdown() {
+		if ( instance != null)
+			instance.stopRenewal();
+	}
+
+	public long getMaxWaitMillis() {
+		return maxWaitMillis;
+	}
+
+	public long getLeaseMillis() {
+		return leaseMillis;
+	}
+
+	public String getOwnerId() {
+		return ownerId;
+	}
+
+	// pid@host plus a random part, so a restarted server doesn't renew the leases of its previous run.
+	private static String createOwnerId() {
+		return ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+	}
+
+	private static void renewInDatabase(Collection<UUID> networkIds, String owner, long leaseMillis) throws SQLException {
+		try (NetworkDAO dao = new NetworkDAO()) {
+			dao.renewNetworkLocks(networkIds, owner, leaseMillis);
+		}
+	}
+
+	/**
+	 * Start renewing the lease of a lock this server has just taken, for as long as the current request or task runs.
+	 * @param networkId
+	 */
+	void acquired(UUID networkId) {
+		held.put(networkId, currentHolder());
+		startRenewal();
+	}
+
+	/**
+	 * Stop renewing the lease of a lock. Called when the network is unlocked.
+	 * @param networkId
+	 */
+	void unlocked(UUID networkId) {
+		held.remove(networkId);
+	}
+
+	/**
+	 * Keep renewing the lease of a lock after the current request ends, because a queued task finishes the update.
+	 * Does nothing if this server doesn't hold the lock.
+	 * @param networkId
+	 */
+	public void handOff(UUID networkId) {
+		held.computeIfPresent(networkId, (k, v) -> queued);
+	}
+
+	/**
+	 * Renew the lease of a lock for as long as the current task runs. Called by the task that finishes the update of a
+	 * network locked by a request. Does nothing if this server doesn't hold the lock.
+	 * @param networkId
+	 */
+	public void adopt(UUID networkId) {
+		held.computeIfPresent(networkId, (k, v) -> currentHolder());
+	}
+
+	// the unit of work of the current request or task, or the current thread if it doesn't run one.
+	private static BooleanSupplier currentHolder() {
+		NdexUnitOfWork work = NdexUnitOfWork.current();
+		if ( work != null)
+			return work::isOpen;
+		Thread t = Thread.currentThread();
+		return t::isAlive;
+	}
+
+	/**
+	 * Renew the leases of the locks whose holders are still running, and forget the others so their leases run out.
+	 */
+	void renewLeases() {
+		List<UUID> ids = new ArrayList<>();
+		for ( Map.Entry<UUID, BooleanSupplier> e : held.entrySet()) {
+			if ( e.getValue().getAsBoolean())
+				ids.add(e.getKey());
+			else if ( held.remove(e.getKey(), e.getValue()))
+				logger.warn("Network " + e.getKey() + " is still locked by a request or task that has ended. The lock " +
+						"will be released when its lease runs out.");
+		}
+		if ( ids.isEmpty())
+			return;
+		try {
+			renewer.renew(ids, ownerId, leaseMillis);
+		} catch (SQLException | RuntimeException e) {
+			logger.error("Failed to renew the leases of " + ids.size() + " network lock(s): " + e.getMessage());
+		}
+	}
+
+	int getHeldCount() {
+		return held.size();
+	}
+
+	private synchronized void startRenewal() {
+		if ( renewal != null)
+			return;
+		renewal = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(() -> {
+				NdexDatabase.setCurrentThreadWorkload(NdexDatabase.Workload.BACKGROUND);
+				r.run();
+			}, "NetworkLockRenewal");
+			t.setDaemon(true);
+			return t;
+		});
+		long period = Math.max(1, leaseMillis / 3);
+		renewal.scheduleWithFixedDelay(this::renewLeases, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	synchronized void stopRenewal() {
+		if ( renewal != null) {
+			renewal.shutdownNow();
+			renewal = null;
+		}
+	}
+
+	/**
+	 * Make attempts to lock a network until one succeeds or the max wait time runs out. Only one thread of this server
+	 * makes attempts on a network at a time, the others wait in line.
+	 * @param networkId
+	 * @param attempt tries to set the lock flag and returns true if it did.
+	 * @return false if the network was still locked after the max wait time.
+	 * @throws InterruptedException
+	 */
+	boolean lock(UUID networkId, Attempt attempt) throws SQLException, InterruptedException {
+		return await(networkId, attempt, maxWaitMillis, true);
+	}
+
+	/**
+	 * Wait until the network is unlocked or the timeout runs out. Unlike {@link #lock(UUID, Attempt)}, checking doesn't
+	 * queue behind the threads that are trying to lock the network.
+	 * @param networkId
+	 * @param check returns true if the network is not locked.
+	 * @param timeoutMillis
+	 * @return false if the network was still locked at the end of the timeout.
+	 * @throws InterruptedException
+	 */
+	boolean awaitUnlocked(UUID networkId, Attempt check, long timeoutMillis)
+			throws SQLException, InterruptedException {
+		return await(networkId, check, timeoutMillis, false);
+	}
+
+	private boolean await(UUID networkId, Attempt attempt, long timeoutMillis, boolean inLine)
+			throws SQLException, InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		Waiters w = enter(networkId);
+		try {
+			if ( inLine && !w.queue.tryLock(timeoutMillis, TimeUnit.MILLISECONDS))
+				return false;
+			try {
+				while ( true) {
+					long seen;
+					synchronized (w) {
+						seen = w.releases;
+					}
+					if ( attempt.succeeded())
+						return true;
+					long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+					if ( remaining <= 0)
+						return false;
+					synchronized (w) {
+						if ( w.releases == seen)
+							w.wait(Math.min(remaining, pollMillis));
+					}
+				}
+			} finally {
+				if ( inLine)
+					w.queue.unlock();
+			}
+		} finally {
+			leave(networkId, w);
+		}
+	}
+
+	/**
+	 * Wake up the threads waiting for a network. Called after the unlock has been committed.
+	 * @param networkId
+	 */
+	public void released(UUID networkId) {
+		Waiters w;
+		synchronized (this) {
+			w = waiters.get(networkId);
+		}
+		if ( w != null) {
+			synchronized (w) {
+				w.releases++;
+				w.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * @return number of threads waiting for the network.
+	 */
+	synchronized int getWaitingCount(UUID networkId) {
+		Waiters w = waiters.get(networkId);
+		return w == null ? 0 : w.count;
+	}
+
+	private synchronized Waiters enter(UUID networkId) {
+		Waiters w = waiters.computeIfAbsent(networkId, k -> new Waiters());
+		w.count++;
+		return w;
+	}
+
+	private synchronized void leave(UUID networkId, Waiters w) {
+		if ( --w.count == 0)
+			waiters.remove(networkId);
+	}
+
+}
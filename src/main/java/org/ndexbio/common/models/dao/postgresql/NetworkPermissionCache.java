@@ -0,0 +1,268 @@
+package org.ndexbio.common.models.dao.postgresql;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+import org.ndexbio.rest.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of the permission checks in NetworkDAO (isReadable, isWriteable, isAdmin and accessKeyIsValid), keyed by
+ * network and user (or access key).
+ * <p>
+ * The DAOs invalidate the affected entries when visibility, ownership, network or group memberships, access keys or
+ * network sets change, or when a network, user or group is deleted. They do it twice: when the change is made, and again
+ * after the transaction commits, so that a check that read the old value before the commit can't put it back in the cache.
+ * A check that overlaps an invalidation is not cached at all (see {@link #getGeneration()}); checking the generation
+ * and adding the entry is atomic with respect to invalidations, so a stale decision is never visible. Entries also expire after
+ * NETWORK_PERMISSION_CACHE_TTL seconds (default 60, 0 turns the cache off), which bounds the staleness caused by changes
+ * made by other servers if no {@link InvalidationListener} forwards the invalidations between them.
+ */
+public final class NetworkPermissionCache {
+
+	static Logger logger = LoggerFactory.getLogger(NetworkPermissionCache.class);
+
+	public static final String CACHE_TTL_PROPERTY = "NETWORK_PERMISSION_CACHE_TTL";
+	public static final String CACHE_SIZE_PROPERTY = "NETWORK_PERMISSION_CACHE_SIZE";
+
+	private static final long defaultTTL = 60;
+	private static final long defaultSize = 100000;
+
+	/**
+	 * Receives the invalidations made in this server, for example to forward them to the other servers sharing the
+	 * database. Invalidations received from other servers should be applied with the *Locally methods so they are not
+	 * sent back.
+	 */
+	public interface InvalidationListener {
+		void networkInvalidated(UUID networkId);
+		void userInvalidated(UUID userId);
+		void accessKeysInvalidated();
+		void allInvalidated();
+	}
+
+	enum Check { READ, WRITE, ADMIN, ACCESS_KEY }
+
+	private static final class Key {
+		final Check check;
+		final UUID networkId;
+		final UUID userId;
+		final String accessKeyHash;
+
+		Key(Check check, UUID networkId, UUID userId, String accessKeyHash) {
+			this.check = check;
+			this.networkId = networkId;
+			this.userId = userId;
+			this.accessKeyHash = accessKeyHash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if ( this == o)
+				return true;
+			if ( !(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return check == k.check && networkId.equals(k.networkId) && Objects.equals(userId, k.userId)
+					&& Objects.equals(accessKeyHash, k.accessKeyHash);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(check, networkId, userId, accessKeyHash);
+		}
+	}
+
+	private static NetworkPermissionCache instance = null;
+
+	private final Cache<Key, Boolean> decisions;
+
+	private final AtomicLong generation = new AtomicLong();
+
+	// a generation that is never current. Checks made with it are not cached, e.g. the ones read from a read replica.
+	static final long noGeneration = -1;
+
+	// puts share the lock, invalidations take it exclusively.
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+	NetworkPermissionCache(long ttlSeconds, long maxSize) {
+		if ( ttlSeconds > 0)
+			decisions = CacheBuilder.newBuilder().maximumSize(maxSize)
+					.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).build();
+		else
+			decisions = null;
+	}
+
+	public static synchronized NetworkPermissionCache getInstance() {
+		if ( instance == null) {
+			long ttl = defaultTTL;
+			long size = defaultSize;
+			Configuration config = Configuration.getInstance();
+			if ( config != null) {
+				String value = config.getProperty(CACHE_TTL_PROPERTY);
+				if ( value != null)
+					ttl = Long.parseLong(value.trim());
+				value = config.getProperty(CACHE_SIZE_PROPERTY);
+				if ( value != null)
+					size = Long.parseLong(value.trim());
+			}
+			instance = new NetworkPermissionCache(ttl, size);
+			if ( instance.isEnabled())
+				logger.info("Network permission cache turned on. TTL: " + ttl + " seconds, size: " + size + ".");
+		}
+		return instance;
+	}
+
+	public boolean isEnabled() {
+		return decisions != null;
+	}
+
+	/**
+	 * Get the current invalidation generation. Call this before running the permission query and pass the value to
+	 * the put method.
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	Boolean get(Check check, UUID networkId, UUID userId) {
+		if ( decisions == null)
+			return null;
+		return decisions.getIfPresent(new Key(check, networkId, userId, null));
+	}
+
+	void put(Check check, UUID networkId, UUID userId, boolean value, long startGeneration) {
+		put(new Key(check, networkId, userId, null), value, startGeneration);
+	}
+
+	Boolean getAccessKeyDecision(UUID networkId, String accessKey) {
+		if ( decisions == null)
+			return null;
+		return decisions.getIfPresent(new Key(Check.ACCESS_KEY, networkId, null, hashAccessKey(accessKey)));
+	}
+
+	void putAccessKeyDecision(UUID networkId, String accessKey, boolean value, long startGeneration) {
+		if ( decisions == null)
+			return;
+		put(new Key(Check.ACCESS_KEY, networkId, null, hashAccessKey(accessKey)), value, startGeneration);
+	}
+
+	private void put(Key key, boolean value, long startGeneration) {
+		if ( decisions == null)
+			return;
+		lock.readLock().lock();
+		try {
+			// an invalidation happened while the permission was checked, the value might already be stale.
+			if ( generation.get() == startGeneration)
+				decisions.put(key, Boolean.valueOf(value));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void invalidateIf(Predicate<Key> predicate) {
+		lock.writeLock().lock();
+		try {
+			generation.incrementAndGet();
+			if ( decisions != null) {
+				if ( predicate == null)
+					decisions.invalidateAll();
+				else
+					decisions.asMap().keySet().removeIf(predicate);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void addInvalidationListener(InvalidationListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeInvalidationListener(InvalidationListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Remove all the decisions on a network, and notify the listeners.
+	 * @param networkId
+	 */
+	public void invalidateNetwork(UUID networkId) {
+		invalidateNetworkLocally(networkId);
+		for ( InvalidationListener l : listeners)
+			l.networkInvalidated(networkId);
+	}
+
+	public void invalidateNetworkLocally(UUID networkId) {
+		invalidateIf(k -> k.networkId.equals(networkId));
+	}
+
+	/**
+	 * Remove all the decisions made for a user, and notify the listeners. Used when the groups of the user change.
+	 * @param userId
+	 */
+	public void invalidateUser(UUID userId) {
+		invalidateUserLocally(userId);
+		for ( InvalidationListener l : listeners)
+			l.userInvalidated(userId);
+	}
+
+	public void invalidateUserLocally(UUID userId) {
+		invalidateIf(k -> userId.equals(k.userId));
+	}
+
+	/**
+	 * Remove all the access key decisions, and notify the listeners. Used when network sets or their access keys
+	 * change.
+	 */
+	public void invalidateAccessKeys() {
+		invalidateAccessKeysLocally();
+		for ( InvalidationListener l : listeners)
+			l.accessKeysInvalidated();
+	}
+
+	public void invalidateAccessKeysLocally() {
+		invalidateIf(k -> k.check == Check.ACCESS_KEY);
+	}
+
+	public void invalidateAll() {
+		invalidateAllLocally();
+		for ( InvalidationListener l : listeners)
+			l.allInvalidated();
+	}
+
+	public void invalidateAllLocally() {
+		invalidateIf(null);
+	}
+
+	long size() {
+		return decisions == null ? 0 : decisions.size();
+	}
+
+	// access keys are not kept in memory.
+	private static String hashAccessKey(String accessKey) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			return Base64.getEncoder().encodeToString(md.digest(accessKey.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-256 is required in every Java platform.
+			throw new IllegalStateException("SHA-256 is not available.", e);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package org.ndexbio.common.models.dao.postgresql;
+
+/**
+ * Result of the combined read queries in NetworkDAO: whether the caller can read the network, the flags the read
+ * endpoints check, and the summary of the network, all fetched in one statement.
+ *
+ * @param <T> NetworkSummary or NetworkSummaryV3
+ */
+public final class NetworkReadAccess<T> {
+
+	private final T summary;
+	private final boolean readable;
+	private final boolean accessKeyValid;
+	private final boolean locked;
+	private final boolean hasCX2;
+	private final long version;
+
+	NetworkReadAccess(T summary, boolean readable, boolean accessKeyValid, boolean locked, boolean hasCX2, long version) {
+		this.summary = summary;
+		this.readable = readable;
+		this.accessKeyValid = accessKeyValid;
+		this.locked = locked;
+		this.hasCX2 = hasCX2;
+		this.version = version;
+	}
+
+	public T getSummary() {
+		return summary;
+	}
+
+	/**
+	 * @return true if the user can read the network.
+	 */
+	public boolean isReadable() {
+		return readable;
+	}
+
+	public boolean isAccessKeyValid() {
+		return accessKeyValid;
+	}
+
+	/**
+	 * @return true if the network is readable to the user or the access key is valid on it.
+	 */
+	public boolean isAuthorized() {
+		return readable || accessKeyValid;
+	}
+
+	public boolean isLocked() {
+		return locked;
+	}
+
+	public boolean hasCX2() {
+		return hasCX2;
+	}
+
+	/**
+	 * @return version of the network record, used as its ETag.
+	 */
+	public long getVersion() {
+		return version;
+	}
+}
@@ -60,10 +60,12 @@ public class NetworkSetDAO extends NdexDBDAO {
 		
 		String sqlStr = "select 1 from network_set where  owner_id = ? and name =? and is_deleted = false";
 		if (setId !=null)
-			sqlStr += " and \"UUID\" <> '" + setId + "' :: uuid";
+			sqlStr += " and \"UUID\" <> ?";
 		try (PreparedStatement p = db.prepareStatement(sqlStr)) {
 			p.setObject(1, ownerId);
 			p.setString(2, name);
+			if ( setId != null)
+				p.setObject(3, setId);
 			try ( ResultSet rs = p.executeQuery()) {
 				if ( rs.next()) 
 					throw new DuplicateObjectException("Network set with this name already exists for this user.");
@@ -103,6 +105,11 @@ public class NetworkSetDAO extends NdexDBDAO {
 		}
 	}
 	
+	// the access key of a set grants access to its member networks.
+	private void invalidateAccessKeyDecisions() {
+		invalidateNowAndAfterCommit(() -> NetworkPermissionCache.getInstance().invalidateAccessKeys());
+	}
+
 	public void deleteNetworkSet(UUID setId) throws SQLException {
 		Timestamp t = new Timestamp(System.currentTimeMillis());
 		
@@ -120,6 +127,7 @@ public class NetworkSetDAO extends NdexDBDAO {
 			pst.setObject(1, setId);
 			pst.executeUpdate();
 		}
+		invalidateAccessKeyDecisions();
 		
 	}
 	
@@ -172,6 +180,8 @@ public class NetworkSetDAO extends NdexDBDAO {
 		
 		try (PreparedStatement p = db.prepareStatement(sqlStr)) {
 			p.setObject(1, setId);
+			if ( !keyIsValid)
+				NetworkDAO.setIsReadableConditionParams(p, 2, userId);
 			try ( ResultSet rs = p.executeQuery()) {
 				List<UUID> networkIds = result.getNetworks();
 				while ( rs.next()) {
@@ -194,7 +204,7 @@ public class NetworkSetDAO extends NdexDBDAO {
 				p.executeUpdate();
 			}
 		}
-		
+		invalidateAccessKeyDecisions();
 	}
 
 	public void deleteNetworksToNetworkSet(UUID setId, Collection<UUID> networkIds) throws SQLException {
@@ -208,7 +218,7 @@ public class NetworkSetDAO extends NdexDBDAO {
 				p.executeUpdate();
 			}
 		}
-		
+		invalidateAccessKeyDecisions();
 	}
 
 	
@@ -265,6 +275,7 @@ public class NetworkSetDAO extends NdexDBDAO {
 			for (NetworkSet entry : result) {
 				try (PreparedStatement p = db.prepareStatement(sqlStr)) {
 					p.setObject(1, entry.getExternalId());
+					NetworkDAO.setIsReadableConditionParams(p, 2, signedInUserId);
 					try ( ResultSet rs = p.executeQuery()) {
 						List<UUID> networkIds = entry.getNetworks();
 						while ( rs.next()) {
@@ -347,6 +358,7 @@ public class NetworkSetDAO extends NdexDBDAO {
 	        	pst.setObject(1, networkSetId);
 	        	pst.executeUpdate();
 	        }	
+			invalidateAccessKeyDecisions();
 			return oldKey;
 				
 		}
@@ -364,6 +376,7 @@ public class NetworkSetDAO extends NdexDBDAO {
 	        	pst.setObject(2, networkSetId);
 	        	pst.executeUpdate();
 	      }		     
+	     invalidateAccessKeyDecisions();
 	     return newKey;
 	}
 
@@ -375,6 +388,7 @@ public class NetworkSetDAO extends NdexDBDAO {
 	        pst.setObject(1, networkSetId);
 	        pst.executeUpdate();
 	    }	
+		invalidateAccessKeyDecisions();
 	}
 	
 	
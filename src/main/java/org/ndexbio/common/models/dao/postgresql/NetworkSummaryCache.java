@@ -0,0 +1,237 @@
+package org.ndexbio.common.models.dao.postgresql;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.ndexbio.rest.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of the network records read by NetworkDAO.getNetworkSummaryById, getNetworkSummariesByIds,
+ * getMetaDataCollection and getCx2MetaDataList, and of the serialized summaries returned by the batch summary
+ * functions, keyed by network UUID.
+ * <p>
+ * Every network has a modification version (networks share a fixed number of version counters, so the memory used
+ * doesn't grow with the number of networks). A reader gets the version before it queries the db and stores it with the
+ * entry; an entry is only served while the version of its network is still the same. NetworkDAO invalidates a network,
+ * which increments its version, whenever it changes a column that is cached: loaders, summary, property and metadata
+ * updates, flags, permissions, DOIs and deletes. Like the permission cache it does it when the change is made and again
+ * after the transaction commits, and a DAO with uncommitted changes doesn't use the cache at all, so neither a value read
+ * before the commit nor an uncommitted one can be served after the commit.
+ * <p>
+ * The cache is bounded by the estimated size of the entries, NETWORK_SUMMARY_CACHE_SIZE_MB (default 64). Entries
+ * expire after NETWORK_SUMMARY_CACHE_TTL seconds (default 60, 0 turns the cache off), which bounds the staleness caused
+ * by changes made by other servers if no {@link InvalidationListener} forwards the invalidations between them.
+ */
+public final class NetworkSummaryCache {
+
+	static Logger logger = LoggerFactory.getLogger(NetworkSummaryCache.class);
+
+	public static final String CACHE_TTL_PROPERTY = "NETWORK_SUMMARY_CACHE_TTL";
+	public static final String CACHE_SIZE_PROPERTY = "NETWORK_SUMMARY_CACHE_SIZE_MB";
+
+	private static final long defaultTTL = 60;
+	private static final long defaultSizeMB = 64;
+
+	// number of version counters. Networks that share one are invalidated together, which only costs a cache miss.
+	private static final int versionStripes = 4096;
+
+	// a version that is never current. Values read with it are not cached, e.g. the ones read from a read replica.
+	static final long noVersion = -1;
+
+	/**
+	 * Receives the invalidations made in this server, for example to forward them to the other servers sharing the
+	 * database. Invalidations received from other servers should be applied with the *Locally methods so they are not
+	 * sent back.
+	 */
+	public interface InvalidationListener {
+		void networkInvalidated(UUID networkId);
+		void allInvalidated();
+	}
+
+	enum Kind {
+		SUMMARY, CX_METADATA, CX2_METADATA, SUMMARY_JSON,
+		// one entry per format, the format is the variant of the key.
+		SUMMARY_V3_JSON
+	}
+
+	private static final class Key {
+		final Kind kind;
+		final UUID networkId;
+		final String variant;
+
+		Key(Kind kind, UUID networkId, String variant) {
+			this.kind = kind;
+			this.networkId = networkId;
+			this.variant = variant;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if ( this == o)
+				return true;
+			if ( !(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return kind == k.kind && networkId.equals(k.networkId) && Objects.equals(variant, k.variant);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(kind, networkId, variant);
+		}
+	}
+
+	private static final class Entry {
+		final Object value;
+		final long version;
+		final int weight;
+
+		Entry(Object value, long version, int weight) {
+			this.value = value;
+			this.version = version;
+			this.weight = weight;
+		}
+	}
+
+	private static NetworkSummaryCache instance = null;
+
+	private final Cache<Key, Entry> entries;
+
+	private final AtomicLongArray versions = new AtomicLongArray(versionStripes);
+
+	private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+	NetworkSummaryCache(long ttlSeconds, long maxBytes) {
+		if ( ttlSeconds > 0)
+			entries = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+					.weigher((Key k, Entry e) -> e.weight)
+					.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).build();
+		else
+			entries = null;
+	}
+
+	public static synchronized NetworkSummaryCache getInstance() {
+		if ( instance == null) {
+			long ttl = defaultTTL;
+			long sizeMB = defaultSizeMB;
+			Configuration config = Configuration.getInstance();
+			if ( config != null) {
+				String value = config.getProperty(CACHE_TTL_PROPERTY);
+				if ( value != null)
+					ttl = Long.parseLong(value.trim());
+				value = config.getProperty(CACHE_SIZE_PROPERTY);
+				if ( value != null)
+					sizeMB = Long.parseLong(value.trim());
+			}
+			instance = new NetworkSummaryCache(ttl, sizeMB * 1024 * 1024);
+			if ( instance.isEnabled())
+				logger.info("Network summary cache turned on. TTL: " + ttl + " seconds, size: " + sizeMB + "MB.");
+		}
+		return instance;
+	}
+
+	public boolean isEnabled() {
+		return entries != null;
+	}
+
+	private static int stripe(UUID networkId) {
+		return (networkId.hashCode() & 0x7fffffff) % versionStripes;
+	}
+
+	/**
+	 * Get the current modification version of a network. Call this before querying the db and pass the value to the
+	 * put method.
+	 */
+	long getVersion(UUID networkId) {
+		return versions.get(stripe(networkId));
+	}
+
+	Object get(Kind kind, UUID networkId) {
+		return get(kind, networkId, null);
+	}
+
+	Object get(Kind kind, UUID networkId, String variant) {
+		if ( entries == null)
+			return null;
+		Key key = new Key(kind, networkId, variant);
+		Entry e = entries.getIfPresent(key);
+		if ( e == null)
+			return null;
+		if ( e.version != versions.get(stripe(networkId))) {
+			// the network changed after this value was read from the db.
+			entries.asMap().remove(key, e);
+			return null;
+		}
+		return e.value;
+	}
+
+	/**
+	 * @param value an immutable value.
+	 * @param weight estimated size of the value in bytes.
+	 * @param version the version of the network before the value was read from the db.
+	 */
+	void put(Kind kind, UUID networkId, Object value, int weight, long version) {
+		put(kind, networkId, null, value, weight, version);
+	}
+
+	void put(Kind kind, UUID networkId, String variant, Object value, int weight, long version) {
+		if ( entries == null || versions.get(stripe(networkId)) != version)
+			return;
+		// if the network is invalidated right after the check, the version of the entry is already outdated and the
+		// entry is never served.
+		entries.put(new Key(kind, networkId, variant), new Entry(value, version, weight));
+	}
+
+	public void addInvalidationListener(InvalidationListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeInvalidationListener(InvalidationListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Remove the cached records of a network, and notify the listeners.
+	 * @param networkId
+	 */
+	public void invalidateNetwork(UUID networkId) {
+		invalidateNetworkLocally(networkId);
+		for ( InvalidationListener l : listeners)
+			l.networkInvalidated(networkId);
+	}
+
+	public void invalidateNetworkLocally(UUID networkId) {
+		versions.incrementAndGet(stripe(networkId));
+		if ( entries != null) {
+			// the entries with a variant are outdated by the new version, they are dropped when they are read next.
+			for ( Kind kind : Kind.values())
+				entries.invalidate(new Key(kind, networkId, null));
+		}
+	}
+
+	public void invalidateAll() {
+		invalidateAllLocally();
+		for ( InvalidationListener l : listeners)
+			l.allInvalidated();
+	}
+
+	public void invalidateAllLocally() {
+		for ( int i = 0; i < versionStripes; i++)
+			versions.incrementAndGet(i);
+		if ( entries != null)
+			entries.invalidateAll();
+	}
+
+	long size() {
+		return entries == null ? 0 : entries.size();
+	}
+}
@@ -0,0 +1,120 @@
+package org.ndexbio.common.models.dao.postgresql;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in a listing that is paged by its sort key (keyset pagination) instead of an offset. The cursor holds the
+ * sort key of the last row of a page, and the next page starts right after it, so a page costs the same no matter how
+ * deep it is, and rows added or removed before the position don't shift the pages.
+ * <p>
+ * Listings of networks are sorted by modification time and UUID, both descending. Listings of accounts are sorted by
+ * the account UUID and the cursor has no time. Clients get the cursor as an opaque string.
+ */
+public final class PageCursor {
+
+	/**
+	 * A page of a listing and the cursor of the next page.
+	 * @param <T> the type of the rows of the page.
+	 */
+	public static final class Page<T> {
+		private final T items;
+		private final PageCursor next;
+
+		Page(T items, PageCursor next) {
+			this.items = items;
+			this.next = next;
+		}
+
+		public T getItems() {
+			return items;
+		}
+
+		/**
+		 * @return null if this is the last page.
+		 */
+		public PageCursor getNext() {
+			return next;
+		}
+	}
+
+	private final Timestamp time;
+	private final UUID id;
+
+	PageCursor(Timestamp time, UUID id) {
+		if ( id == null)
+			throw new IllegalArgumentException("Id of the cursor can't be null.");
+		this.time = time == null ? null : (Timestamp) time.clone();
+		this.id = id;
+	}
+
+	Timestamp getTime() {
+		return time == null ? null : (Timestamp) time.clone();
+	}
+
+	UUID getId() {
+		return id;
+	}
+
+	/**
+	 * @return the opaque string given to clients.
+	 */
+	public String encode() {
+		String s = id.toString();
+		if ( time != null) {
+			// the nanos of a Timestamp hold the whole fraction of the second, which keeps the microseconds of postgres.
+			long seconds = Math.floorDiv(time.getTime(), 1000);
+			s = seconds + "." + time.getNanos() + "." + s;
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(s.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param cursor a string created by {@link #encode()}.
+	 * @return null if the cursor is null or empty.
+	 * @throws IllegalArgumentException the cursor is not one of ours.
+	 */
+	public static PageCursor decode(String cursor) {
+		if ( cursor == null || cursor.trim().isEmpty())
+			return null;
+		try {
+			String s = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+			String[] parts = s.split("\\.");
+			if ( parts.length == 1)
+				return new PageCursor(null, UUID.fromString(parts[0]));
+			if ( parts.length == 3) {
+				int nanos = Integer.parseInt(parts[1]);
+				if ( nanos < 0 || nanos > 999999999)
+					throw new IllegalArgumentException();
+				Timestamp t = new Timestamp(Math.multiplyExact(Long.parseLong(parts[0]), 1000));
+				t.setNanos(nanos);
+				return new PageCursor(t, UUID.fromString(parts[2]));
+			}
+		} catch (IllegalArgumentException | ArithmeticException e) {
+			throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+		}
+		throw new IllegalArgumentException("Invalid cursor: " + cursor);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if ( this == o)
+			return true;
+		if ( !(o instanceof PageCursor))
+			return false;
+		PageCursor c = (PageCursor) o;
+		return id.equals(c.id) && (time == null ? c.time == null : time.equals(c.time));
+	}
+
+	@Override
+	public int hashCode() {
+		return id.hashCode() * 31 + (time == null ? 0 : time.hashCode());
+	}
+
+	@Override
+	public String toString() {
+		return encode();
+	}
+}
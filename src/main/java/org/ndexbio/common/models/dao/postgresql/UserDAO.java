@@ -35,7 +35,6 @@ import java.security.NoSuchAlgorithmException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -44,6 +43,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.logging.Logger;
 
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
@@ -62,6 +62,8 @@ import org.ndexbio.model.object.SimpleQuery;
 import org.ndexbio.model.object.SolrSearchResult;
 import org.ndexbio.model.object.User;
 import org.ndexbio.rest.helpers.Security;
+import org.ndexbio.security.BasicAuthCache;
+import org.ndexbio.security.TokenUserCache;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -72,9 +74,10 @@ import com.google.common.base.Strings;
 
 public class UserDAO extends NdexDBDAO {
 
+	private static Logger logger = Logger.getLogger(UserDAO.class.getName());
+
 	public static long default_disk_quota = 10*1000000000l; //default disk quota for each user. -1 means no limit;
 
-	
 	/*
 	 * User operations can be achieved with Orient Document API methods. The
 	 * constructor will need to accept a OrientGraph object if we wish to use
@@ -95,6 +98,19 @@ public class UserDAO extends NdexDBDAO {
 		super();
 	}
 
+	/**
+	 * Remove the cached authentications of a user now, and again when this transaction is committed, so that
+	 * an authentication that read the old record in between doesn't stay in the cache.
+	 * @param userId
+	 */
+	private void invalidateCachedAuthentication(UUID userId) {
+		invalidateNowAndAfterCommit(() -> {
+			BasicAuthCache.getInstance().invalidateUser(userId);
+			TokenUserCache.invalidateUser(userId);
+			CacheInvalidationBus.publishUserAuthentication(userId);
+		});
+	}
+
 	/**************************************************************************
 	 * Authenticates a user trying to login.
 	 * 
@@ -245,16 +261,18 @@ public class UserDAO extends NdexDBDAO {
 			user.getProperties().remove(NdexClasses.User_verification_code);
 			String updateStr = "update " + NdexClasses.User + " set " + NdexClasses.Account_otherAttributes + 
 					" = ? :: jsonb, " + NdexClasses.User_isVerified + " = true, "  + 
-					NdexClasses.ExternalObj_mTime + "= ? where \"UUID\"= '" + user.getExternalId().toString() + "' :: uuid" ;
+					NdexClasses.ExternalObj_mTime + "= ? where \"UUID\"= ?" ;
 			
 			try (PreparedStatement st = db.prepareStatement(updateStr) ) {
 					ObjectMapper mapper = new ObjectMapper();
 			        String s = mapper.writeValueAsString( user.getProperties());
 					st.setString(1, s);	
 					st.setTimestamp(2, new Timestamp (t2));
+					st.setObject(3, user.getExternalId());
 					int rowsInserted = st.executeUpdate();
 					if ( rowsInserted != 1)
 						throw new NdexException ( "Failed to verify user " + user.getUserName() + " in database.");
+					invalidateCachedAuthentication(user.getExternalId());
 				
 			}
 			return "User account " + user.getUserName() + " has been activated.";			
@@ -290,12 +308,13 @@ public class UserDAO extends NdexDBDAO {
 
 		Preconditions.checkArgument(null != id, "UUID required");
 		
-		String sqlStr = "SELECT * FROM " + NdexClasses.User + " where \"UUID\" = '" + id + "' :: uuid";
+		String sqlStr = "SELECT * FROM " + NdexClasses.User + " where \"UUID\" = ?";
 		if ( currentUserOnly) {
 			sqlStr += " and is_deleted = false";
 		}
-		try (Statement st = db.createStatement()) {
-			try (ResultSet rs = st.executeQuery(sqlStr) ) {
+		try (PreparedStatement st = db.prepareStatement(sqlStr)) {
+			st.setObject(1, id);
+			try (ResultSet rs = st.executeQuery() ) {
 				if (rs.next()) {
 					// populate the user object;
 					User result = new User();
@@ -311,6 +330,32 @@ public class UserDAO extends NdexDBDAO {
 
 	}
 	
+	/**
+	 * Get the current (not deleted) users of a list of ids in one query.
+	 * @param ids
+	 * @param fullRecord
+	 * @param missingIds if not null, receives the ids that don't have a current user.
+	 * @return the users in the order of ids.
+	 */
+	public List<User> getUsersByIds(List<UUID> ids, boolean fullRecord, List<UUID> missingIds)
+			throws SQLException, JsonParseException, JsonMappingException, IOException {
+		if ( ids.isEmpty())
+			return new ArrayList<>();
+		String sqlStr = "SELECT * FROM " + NdexClasses.User + " where \"UUID\" = ANY(?) and is_deleted = false";
+		Map<UUID,User> users = new HashMap<>(ids.size());
+		try (PreparedStatement st = db.prepareStatement(sqlStr)) {
+			st.setArray(1, createUUIDArray(ids));
+			try (ResultSet rs = st.executeQuery() ) {
+				while (rs.next()) {
+					User user = new User();
+					populateUserFromResultSet(user, rs, fullRecord);
+					users.put(user.getExternalId(), user);
+				}
+			}
+		}
+		return orderByIds(ids, users, missingIds);
+	}
+	
 	public User getUserByEmail(String email, boolean fullRecord) throws NdexException,
 	IllegalArgumentException, ObjectNotFoundException, SQLException, JsonParseException, JsonMappingException, IOException {
 
@@ -471,14 +516,14 @@ public class UserDAO extends NdexDBDAO {
 		try (UserIndexManager indexManager = new UserIndexManager()) {
 			SolrDocumentList l = indexManager.searchUsers(simpleQuery.getSearchString(), top, skipBlock * top);
 
-			List<User> results = new ArrayList<>(l.size());
+			List<UUID> ids = new ArrayList<>(l.size());
 			for (SolrDocument d : l) {
-				try {
-					results.add(getUserById(UUID.fromString((String) d.get(UserIndexManager.UUID)), true, false));
-				} catch ( ObjectNotFoundException o) {
-					System.out.print("Solr index might be corrupted. User " + 
-							(String) d.get(UserIndexManager.UUID) + " not found in Postgres DB." );
-				}
+				ids.add(UUID.fromString((String) d.get(UserIndexManager.UUID)));
+			}
+			List<UUID> missingIds = new ArrayList<>();
+			List<User> results = getUsersByIds(ids, false, missingIds);
+			for (UUID id : missingIds) {
+				logger.warning("Solr index might be corrupted. User " + id + " not found in Postgres DB.");
 			}
 			return new SolrSearchResult<>(l.getNumFound(), l.getStart(), results);
 		}
@@ -520,6 +565,7 @@ public class UserDAO extends NdexDBDAO {
 			st.setObject(2, userId);
 			st.executeUpdate();
 		} 
+		invalidateCachedAuthentication(userId);
 		return newPassword;		
 	}
 
@@ -560,7 +606,7 @@ public class UserDAO extends NdexDBDAO {
 			     NdexClasses.User_lastName        + " =?, " +
 			     NdexClasses.User_displayName      + " =?, " +
 			     NdexClasses.User_emailAddress     + " =?, " +
-			     NdexClasses.User_isIndividual     + " =? where \"UUID\" = \'" + id.toString() + "\' :: uuid and is_deleted = false";
+			     NdexClasses.User_isIndividual     + " =? where \"UUID\" = ? and is_deleted = false";
 		
 		try (PreparedStatement st = db.prepareStatement(updateStr) ) {
 			st.setString ( 1, updatedUser.getDescription());
@@ -581,12 +627,14 @@ public class UserDAO extends NdexDBDAO {
 			st.setString(7, updatedUser.getDisplayName());
 			st.setString(8, updatedUser.getEmailAddress());
 			st.setBoolean(9, updatedUser.getIsIndividual());
+			st.setObject(10, id);
 			
 			
 			int rowsInserted = st.executeUpdate();
 			if ( rowsInserted != 1)
 				throw new NdexException ( "Failed to save user " + updatedUser.getUserName() + " to database when update.");
 		}
+		invalidateCachedAuthentication(id);
 			return updatedUser;		
 
 	}
@@ -622,16 +670,19 @@ public class UserDAO extends NdexDBDAO {
 				"A user UUID is required");
 		
 		String queryStr = "select \"UUID\" as network_id, 'ADMIN' :: ndex_permission_type as permission_type " + 
-						"from network n where owneruuid = '" + userId.toString() + "' :: uuid ";
+						"from network n where owneruuid = ? ";
+		// every parameter of the query is the user id.
+		int userIdParams = 1;
 		
 		if ( permission == Permissions.READ || permission == Permissions.WRITE) {
 			
 			String permissionClause =  (inclusive? " >= '" : " = '" ) + permission + "' ";
 			queryStr = " select a.network_id, max(a.permission_type) as permission_type from (" + (inclusive ? (queryStr + " union ") : "" ) +
 					" select un.network_id, un.permission_type " + 
-					"from user_network_membership un where un.user_id = '"+ userId.toString() + "' :: uuid and un.permission_type " + permissionClause +
+					"from user_network_membership un where un.user_id = ? and un.permission_type " + permissionClause +
 					" union select gn.network_id, gn.permission_type from ndex_group_user ug, group_network_membership gn " + 
-					" where ug.group_id = gn.group_id and ug.user_id = '" + userId + "' :: uuid and gn.permission_type " + permissionClause +" ) a group by a.network_id ";
+					" where ug.group_id = gn.group_id and ug.user_id = ? and gn.permission_type " + permissionClause +" ) a group by a.network_id ";
+			userIdParams = inclusive ? 3 : 2;
 					
 		}  else if ( permission == null || permission !=Permissions.ADMIN) {
 			throw new IllegalArgumentException("Valid permissions required.");
@@ -656,6 +707,8 @@ public class UserDAO extends NdexDBDAO {
 		List<Membership> memberships = new ArrayList<>();
 
 		try (PreparedStatement st = db.prepareStatement(queryStr))  {		
+			for ( int i = 1; i <= userIdParams; i++)
+				st.setObject(i, userId);
 			try (ResultSet rs = st.executeQuery() ) {
 				User user = getUserById(userId, true ,false);
 				while (rs.next()) {
@@ -685,17 +738,20 @@ public class UserDAO extends NdexDBDAO {
 			throws SQLException {
 	
 		String queryStr = "select \"UUID\" as network_id, 'ADMIN' :: ndex_permission_type as permission_type " + 
-						"from network n where n.is_deleted =false and owneruuid = '" + userId.toString() + "' :: uuid ";
+						"from network n where n.is_deleted =false and owneruuid = ? ";
+		// every parameter of the query is the user id.
+		int userIdParams = 1;
 		
 		if ( permission == Permissions.READ || permission == Permissions.WRITE) {
 			
 			String permissionClause =  (inclusive? " >= '" : " = '" ) + permission + "' ";
 			queryStr = " select a.network_id, max(a.permission_type) as permission_type from (" + (inclusive ? (queryStr + " union ") : "" ) +
 					" select un.network_id, un.permission_type " + 
-					"from user_network_membership un where un.user_id = '"+ userId.toString() + "' :: uuid and un.permission_type " + permissionClause +
+					"from user_network_membership un where un.user_id = ? and un.permission_type " + permissionClause +
 					( directOnly ? "" :
 					(" union select gn.network_id, gn.permission_type from ndex_group_user ug, group_network_membership gn " + 
-					" where ug.group_id = gn.group_id and ug.user_id = '" + userId + "' :: uuid and gn.permission_type " + permissionClause) ) +" ) a group by a.network_id ";
+					" where ug.group_id = gn.group_id and ug.user_id = ? and gn.permission_type " + permissionClause) ) +" ) a group by a.network_id ";
+			userIdParams = (inclusive ? 1 : 0) + (directOnly ? 1 : 2);
 					
 		}  else if ( permission == null || permission !=Permissions.ADMIN) {
 			throw new IllegalArgumentException("Valid permissions required.");
@@ -708,6 +764,8 @@ public class UserDAO extends NdexDBDAO {
 		Map<String,String> result = new TreeMap<>();
 
 		try (PreparedStatement st = db.prepareStatement(queryStr))  {		
+			for ( int i = 1; i <= userIdParams; i++)
+				st.setObject(i, userId);
 			try (ResultSet rs = st.executeQuery() ) {
 				while (rs.next()) {
 					result.put(rs.getObject(1).toString(), rs.getString(2));
@@ -793,32 +851,29 @@ public class UserDAO extends NdexDBDAO {
 			Permissions permission, int skipBlocks, int blockSize)
 			throws ObjectNotFoundException, NdexException, IllegalArgumentException, SQLException {
 
-		Map <String,String> result = new TreeMap<>();
-		String queryStr = "select gu.group_id, gu.is_admin from ndex_group_user gu where gu.user_id = ? ";
-		
-		if ( permission !=null) {
-			if ( permission == Permissions.GROUPADMIN) {
-				queryStr += " and gu.is_admin";
-			} else if ( permission != Permissions.MEMBER) 
-				throw new NdexException ("Valid permissions required in getUserGroupMembership function.");
-			else {
-				queryStr += " and not gu.is_admin ";
-			}
+		if ( permission != null && permission != Permissions.GROUPADMIN && permission != Permissions.MEMBER) 
+			throw new NdexException ("Valid permissions required in getUserGroupMembership function.");
+
+		// served from GroupMembershipCache; the page is taken in group id order so it is stable.
+		Map <String,String> all = new TreeMap<>();
+		for ( Map.Entry<UUID,Boolean> e : getGroupsOfUser(userId).entrySet()) {
+			boolean isAdmin = e.getValue().booleanValue();
+			if ( permission == null || isAdmin == (permission == Permissions.GROUPADMIN))
+				all.put(e.getKey().toString(), 
+						(isAdmin? Permissions.GROUPADMIN.toString() : Permissions.MEMBER.toString()));
 		}
 			
-		if ( skipBlocks>=0 && blockSize>0) {
-			queryStr += " limit " + blockSize + " offset " + skipBlocks * blockSize;
-		}
-		
-		try (PreparedStatement st = db.prepareStatement(queryStr))  {
-			st.setObject(1, userId);
-		
-			try (ResultSet rs = st.executeQuery() ) {
-				while (rs.next()) {
-					result.put(rs.getObject(1).toString(), 
-							(rs.getBoolean(2)? Permissions.GROUPADMIN.toString() : Permissions.MEMBER.toString()));					
-				} 
-			}
+		if ( skipBlocks<0 || blockSize<=0) 
+			return all;
+
+		Map <String,String> result = new TreeMap<>();
+		long offset = (long) skipBlocks * blockSize;
+		long i = 0;
+		for ( Map.Entry<String,String> e : all.entrySet()) {
+			if ( i >= offset + blockSize)
+				break;
+			if ( i++ >= offset)
+				result.put(e.getKey(), e.getValue());
 		}
 
 		return result;
@@ -876,11 +931,12 @@ public class UserDAO extends NdexDBDAO {
 		if ( result == Permissions.WRITE)
 			return result;
 		
-		if ( !directOnly) {
-			queryStr = "select gn.permission_type from ndex_group_user gu, group_network_membership gn where "+
-		     " gu.group_id = gn.group_id and gu.user_id = ? and gn.network_id = ?";
+		Map<UUID,Boolean> groups = directOnly ? null : getGroupsOfUser(userId);
+		if ( groups != null && !groups.isEmpty()) {
+			queryStr = "select gn.permission_type from group_network_membership gn where "+
+		     " gn.group_id = ANY(?) and gn.network_id = ?";
 			try (PreparedStatement st = db.prepareStatement(queryStr))  {
-				st.setObject(1, userId);
+				st.setArray(1, createUUIDArray(groups.keySet()));
 				st.setObject(2, networkId);
 				try (ResultSet rs = st.executeQuery() ) {
 					while (rs.next()) {
@@ -902,22 +958,11 @@ public class UserDAO extends NdexDBDAO {
 		Preconditions.checkArgument(userId != null, "User UUID required");
 		Preconditions.checkArgument(groupId != null, "Group UUID required");
 
-		String queryStr = "select is_admin from ndex_group_user where user_id = ? and group_id = ?";
-		
-		try (PreparedStatement st = db.prepareStatement(queryStr))  {
-			st.setObject(1, userId);
-			st.setObject(2, groupId);
-			try (ResultSet rs = st.executeQuery() ) {
-				if (rs.next()) {
-					if ( rs.getBoolean(1)) 
-						return Permissions.GROUPADMIN;		
-					
-					return Permissions.MEMBER;
-				} 
-			}
-		}
+		Boolean isAdmin = getGroupsOfUser(userId).get(groupId);
+		if ( isAdmin == null)
+			return null;
 		
-		return null;
+		return isAdmin.booleanValue() ? Permissions.GROUPADMIN : Permissions.MEMBER;
 		
 	}
 
@@ -962,6 +1007,14 @@ public class UserDAO extends NdexDBDAO {
 				st.executeUpdate();
 			}		
 		}
+		invalidateCachedAuthentication(id);
+		invalidateNowAndAfterCommit(() -> {
+			GroupMembershipCache.getInstance().invalidateUser(id);
+			NetworkPermissionCache permissionCache = NetworkPermissionCache.getInstance();
+			permissionCache.invalidateUser(id);
+			// the network sets of the user are deleted too.
+			permissionCache.invalidateAccessKeys();
+		});
 		
 
 	}
@@ -0,0 +1,445 @@
+package org.ndexbio.common.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.ndexbio.cxio.core.AspectIterator;
+import org.ndexbio.rest.Configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads and writes the per-network aspect files under NdexRoot/data/&lt;uuid&gt;/aspects and aspects_cx2.
+ *
+ * When the server property NDEX_ASPECT_COMPRESSION is set to lz4, new aspect files are written as LZ4 frames.
+ * When NDEX_ASPECT_FORMAT is set to json-seq, the elements of new aspect files are stored one per line as a JSON
+ * text sequence (RFC 7464) instead of a JSON array, so that large aspects can be parsed on several cores with
+ * {@link ParallelAspectIterator}. The JSON array framing is added back when an aspect is read as a stream.
+ *
+ * Readers detect the format from the first bytes of the file, so the file names, symlinks and
+ * existence checks in the data directory don't change and a data directory can hold a mix of aspect
+ * formats while it is being migrated.
+ *
+ * When a network is packed into a {@link NetworkSegment}, its aspect files are read from the segment file
+ * under the same paths. Use {@link #aspectExists(String)} instead of File.exists() to check if a network
+ * has an aspect.
+ */
+public final class AspectStorage {
+
+	public static final String ASPECT_COMPRESSION_PROPERTY = "NDEX_ASPECT_COMPRESSION";
+
+	public static final String LZ4 = "lz4";
+
+	public static final String ASPECT_FORMAT_PROPERTY = "NDEX_ASPECT_FORMAT";
+
+	public static final String JSON_SEQ = "json-seq";
+
+	// magic number of a LZ4 frame (0x184D2204), little endian.
+	private static final byte[] LZ4_FRAME_MAGIC = { 0x04, 0x22, 0x4D, 0x18 };
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private AspectStorage() {}
+
+	/**
+	 *
+	 * @return true if the server is configured to compress aspect files when they are written.
+	 */
+	public static boolean isCompressionEnabled() {
+		Configuration config = Configuration.getInstance();
+		if ( config == null)
+			return false;
+		String v = config.getProperty(ASPECT_COMPRESSION_PROPERTY);
+		return v != null && v.trim().equalsIgnoreCase(LZ4);
+	}
+
+	/**
+	 *
+	 * @return true if the server is configured to store aspect files as JSON text sequences.
+	 */
+	public static boolean isJsonSeqEnabled() {
+		Configuration config = Configuration.getInstance();
+		if ( config == null)
+			return false;
+		String v = config.getProperty(ASPECT_FORMAT_PROPERTY);
+		return v != null && v.trim().equalsIgnoreCase(JSON_SEQ);
+	}
+
+	/**
+	 * Open an aspect file for writing. The caller writes the aspect as a JSON array. The stream is compressed
+	 * and/or converted to a JSON text sequence according to the server configuration.
+	 * @param aspectFileName full path of the aspect file.
+	 * @return
+	 * @throws IOException
+	 */
+	public static OutputStream newAspectOutputStream(String aspectFileName) throws IOException {
+		return newAspectOutputStream(aspectFileName, isCompressionEnabled(), isJsonSeqEnabled());
+	}
+
+	public static OutputStream newAspectOutputStream(String aspectFileName, boolean compressed) throws IOException {
+		return newAspectOutputStream(aspectFileName, compressed, false);
+	}
+
+	public static OutputStream newAspectOutputStream(String aspectFileName, boolean compressed, boolean jsonSeq) throws IOException {
+		// the aspect directories of a packed network are created again when an aspect is updated in place.
+		File aspectDir = new File(aspectFileName).getParentFile();
+		if ( aspectDir != null && !aspectDir.exists() && aspectDir.getParentFile() != null &&
+				new File(aspectDir.getParentFile(), NetworkSegment.segmentFileName).exists())
+			Files.createDirectories(aspectDir.toPath());
+		OutputStream out = new FileOutputStream(aspectFileName);
+		try {
+			if ( compressed)
+				out = new FramedLZ4CompressorOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+			if ( jsonSeq)
+				out = new JsonSeqOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+		} catch (IOException e) {
+			out.close();
+			throw e;
+		}
+		return out;
+	}
+
+	/**
+	 * Open an aspect file for reading. Compressed files are decompressed and JSON text sequences are framed
+	 * as a JSON array on the fly, so the caller always gets the aspect as a JSON array.
+	 * @param aspectFileName
+	 * @return
+	 * @throws java.io.FileNotFoundException if the aspect file doesn't exist.
+	 * @throws IOException
+	 */
+	public static InputStream newAspectInputStream(String aspectFileName) throws IOException {
+		InputStream in = openDecompressed(aspectFileName);
+		try {
+			if ( hasJsonSeqMarker(in))
+				return new JsonSeqInputStream(in);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+		return in;
+	}
+
+	/**
+	 * Open an aspect file and decompress it if needed. The returned stream supports mark/reset.
+	 */
+	private static InputStream openDecompressed(String aspectFileName) throws IOException {
+		InputStream in = new BufferedInputStream(openStored(aspectFileName), BUFFER_SIZE);
+		try {
+			if ( hasLZ4Magic(in))
+				return new BufferedInputStream(new FramedLZ4CompressorInputStream(in), BUFFER_SIZE);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+		return in;
+	}
+
+	/**
+	 * Open the stored bytes of an aspect, from the segment file of the network or from the aspect file.
+	 * @throws FileNotFoundException if the network doesn't have the aspect.
+	 */
+	private static InputStream openStored(String aspectFileName) throws IOException {
+		return NetworkSegment.openAspect(Paths.get(aspectFileName));
+	}
+
+	/**
+	 * Check if a network has an aspect, either in its segment file or as an aspect file.
+	 * @param aspectFileName full path of the aspect file.
+	 * @return
+	 * @throws IOException
+	 */
+	public static boolean aspectExists(String aspectFileName) throws IOException {
+		return aspectExists(Paths.get(aspectFileName));
+	}
+
+	public static boolean aspectExists(File aspectFile) throws IOException {
+		return aspectExists(aspectFile.toPath());
+	}
+
+	public static boolean aspectExists(Path aspectFile) throws IOException {
+		return NetworkSegment.aspectExists(aspectFile);
+	}
+
+	/**
+	 * Check if a network has any aspect in the given aspect directory, either in its segment file or as files.
+	 * @param aspectDir
+	 * @return
+	 * @throws IOException
+	 */
+	public static boolean aspectDirectoryExists(String aspectDir) throws IOException {
+		return NetworkSegment.aspectDirectoryExists(Paths.get(aspectDir));
+	}
+
+	/**
+	 * Finish an in-place update of the aspects of a network: delete the given aspects and, if the network is packed,
+	 * fold the aspect files written by the update into its segment file, with one rewrite of the segment file. Call
+	 * it while holding the network lock, after the last aspect is written and before the aspects are read back.
+	 * @param networkDir the network directory, NdexRoot/data/&lt;uuid&gt;
+	 * @param deletedAspectFiles full paths of the aspect files to delete.
+	 * @throws IOException
+	 */
+	public static void finishAspectUpdate(String networkDir, Collection<String> deletedAspectFiles) throws IOException {
+		Set<String> removed = new TreeSet<>();
+		for ( String aspectFileName : deletedAspectFiles) {
+			Path p = Paths.get(aspectFileName);
+			Files.deleteIfExists(p);
+			removed.add(NetworkSegment.entryName(p.getParent().getFileName().toString(), p.getFileName().toString()));
+		}
+		NetworkSegment.update(Paths.get(networkDir), removed);
+	}
+
+	public static InputStream newAspectInputStream(File aspectFile) throws IOException {
+		return newAspectInputStream(aspectFile.getPath());
+	}
+
+	/**
+	 * Read a whole aspect file into an object. Used for small aspects such as attributeDeclarations
+	 * and visualProperties.
+	 */
+	public static <T> T readValue(File aspectFile, Class<T> valueType) throws IOException {
+		try (InputStream in = newAspectInputStream(aspectFile)) {
+			return mapper.readValue(in, valueType);
+		}
+	}
+
+	/**
+	 * Create an iterator that parses a large aspect on several cores if it is stored as a JSON text sequence.
+	 * @param aspectFileName
+	 * @param cls
+	 * @return
+	 * @throws java.io.FileNotFoundException if the aspect file doesn't exist.
+	 * @throws IOException
+	 */
+	public static <E> ParallelAspectIterator<E> newParallelAspectIterator(String aspectFileName, Class<E> cls) throws IOException {
+		InputStream in = openDecompressed(aspectFileName);
+		try {
+			return new ParallelAspectIterator<>(in, cls, hasJsonSeqMarker(in), ParallelAspectIterator.defaultChunkSize);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Same as {@link #newCX1AspectIterator(String, String, Class, String)}, but parses the aspect on several cores
+	 * when it is stored as a JSON text sequence.
+	 */
+	public static <E> ParallelAspectIterator<E> newParallelCX1AspectIterator(String networkId, String aspectName, Class<E> cls,
+			String pathPrefix) throws IOException {
+		String fileName = pathPrefix + networkId + "/" + CXNetworkLoader.CX1AspectDir + "/" + aspectName;
+		if ( !aspectExists(fileName))
+			return new ParallelAspectIterator<>();
+		return newParallelAspectIterator(fileName, cls);
+	}
+
+	/**
+	 * Create an iterator on a CX1 aspect of a network. It follows the same path convention as the AspectIterator
+	 * constructor: the aspect file is pathPrefix + networkId + "/aspects/" + aspectName, and a missing aspect
+	 * file gives an empty iterator.
+	 */
+	public static <E> AspectIterator<E> newCX1AspectIterator(String networkId, String aspectName, Class<E> cls,
+			String pathPrefix) throws IOException {
+		String fileName = pathPrefix + networkId + "/" + CXNetworkLoader.CX1AspectDir + "/" + aspectName;
+		if ( !aspectExists(fileName))
+			return new AspectIterator<>(networkId, aspectName, cls, pathPrefix);
+		return new AspectIterator<>(newAspectInputStream(fileName), cls);
+	}
+
+	/**
+	 *
+	 * @param aspectFile
+	 * @return true if the given file is stored as a LZ4 frame.
+	 * @throws IOException
+	 */
+	public static boolean isCompressed(Path aspectFile) throws IOException {
+		try (InputStream in = new BufferedInputStream(openStored(aspectFile.toString()), LZ4_FRAME_MAGIC.length)) {
+			return hasLZ4Magic(in);
+		}
+	}
+
+	/**
+	 *
+	 * @param aspectFile
+	 * @return true if the given file is stored as a JSON text sequence.
+	 * @throws IOException
+	 */
+	public static boolean isJsonSeq(Path aspectFile) throws IOException {
+		try (InputStream in = openDecompressed(aspectFile.toString())) {
+			return hasJsonSeqMarker(in);
+		}
+	}
+
+	// true if the content is not stored as a plain JSON file, so it can't be read by the library functions directly.
+	private static boolean needsPlainCopy(Path aspectFile) throws IOException {
+		if ( NetworkSegment.containsAspect(aspectFile))
+			return true;
+		return isCompressed(aspectFile) || isJsonSeq(aspectFile);
+	}
+
+	private static boolean hasJsonSeqMarker(InputStream in) throws IOException {
+		in.mark(1);
+		int b = in.read();
+		in.reset();
+		return b == JsonSeqOutputStream.RS;
+	}
+
+	private static boolean hasLZ4Magic(InputStream in) throws IOException {
+		in.mark(LZ4_FRAME_MAGIC.length);
+		byte[] head = new byte[LZ4_FRAME_MAGIC.length];
+		int n = IOUtils.read(in, head);
+		in.reset();
+		if ( n < LZ4_FRAME_MAGIC.length)
+			return false;
+		for ( int i = 0; i < LZ4_FRAME_MAGIC.length; i++) {
+			if ( head[i] != LZ4_FRAME_MAGIC[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Rewrite an aspect file in place, compressed or uncompressed. The storage format (JSON array or JSON text
+	 * sequence) of the file is not changed.
+	 * @param aspectFile
+	 * @param compress
+	 * @return true if the file was rewritten.
+	 * @throws IOException
+	 */
+	public static boolean convertAspectFile(Path aspectFile, boolean compress) throws IOException {
+		if ( Files.isSymbolicLink(aspectFile) || !Files.isRegularFile(aspectFile))
+			return false;
+		return convertAspectFile(aspectFile, compress, isJsonSeq(aspectFile));
+	}
+
+	/**
+	 * Rewrite an aspect file in place with the given compression and storage format. The new content is written
+	 * to a temp file next to the original and then moved over it, so readers never see a partial file.
+	 * Symbolic links are left alone because they point to a file that is converted on its own.
+	 * @param aspectFile
+	 * @param compress
+	 * @param jsonSeq
+	 * @return true if the file was rewritten.
+	 * @throws IOException
+	 */
+	public static boolean convertAspectFile(Path aspectFile, boolean compress, boolean jsonSeq) throws IOException {
+		if ( Files.isSymbolicLink(aspectFile) || !Files.isRegularFile(aspectFile))
+			return false;
+		if ( isCompressed(aspectFile) == compress && isJsonSeq(aspectFile) == jsonSeq)
+			return false;
+
+		Path tmpFile = aspectFile.resolveSibling(aspectFile.getFileName() + "." + Thread.currentThread().getId() + "-" +
+				Calendar.getInstance().getTimeInMillis());
+		try {
+			try (InputStream in = newAspectInputStream(aspectFile.toString());
+				 OutputStream out = newAspectOutputStream(tmpFile.toString(), compress, jsonSeq)) {
+				IOUtils.copy(in, out, BUFFER_SIZE);
+			}
+			Files.move(tmpFile, aspectFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmpFile);
+		}
+		return true;
+	}
+
+	/**
+	 * Check if an aspect is stored as a plain JSON array file, so the library functions that take a file path can read
+	 * it directly. Other aspects are read with {@link #newAspectInputStream(String)}, which decompresses and frames them
+	 * on the fly.
+	 * @param aspectFileName
+	 * @return
+	 * @throws IOException
+	 */
+	public static boolean isPlainAspectFile(String aspectFileName) throws IOException {
+		return !needsPlainCopy(Paths.get(aspectFileName));
+	}
+
+	/**
+	 * Get a directory that holds plain JSON copies of the given aspects. Only for EdgeFilter, which can only read its
+	 * aspects from a directory; other readers stream the aspects instead. If all of the aspects are stored as plain JSON,
+	 * the original directory is returned.
+	 * @param aspectDir the aspect directory, it must end with "/".
+	 * @param aspectNames
+	 * @return
+	 * @throws IOException
+	 */
+	public static PlainAspectFile getPlainAspectDirectory(String aspectDir, String... aspectNames) throws IOException {
+		boolean needsCopy = false;
+		for ( String aspectName : aspectNames) {
+			Path p = Paths.get(aspectDir, aspectName);
+			if ( needsPlainCopy(p)) {
+				needsCopy = true;
+				break;
+			}
+		}
+		if ( !needsCopy)
+			return new PlainAspectFile(aspectDir, null);
+
+		Path dir = Paths.get(aspectDir);
+		Path tmpDir = dir.resolveSibling(dir.getFileName() + "-" + Thread.currentThread().getId() + "-" +
+				Calendar.getInstance().getTimeInMillis());
+		Files.createDirectory(tmpDir);
+		try {
+			for ( String aspectName : aspectNames) {
+				Path p = dir.resolve(aspectName);
+				if ( aspectExists(p))
+					copyAsPlainFile(p, tmpDir.resolve(aspectName));
+			}
+		} catch (IOException e) {
+			FileUtils.deleteDirectory(tmpDir.toFile());
+			throw e;
+		}
+		return new PlainAspectFile(tmpDir.toString() + File.separator, tmpDir);
+	}
+
+	private static void copyAsPlainFile(Path src, Path tgt) throws IOException {
+		try (InputStream in = newAspectInputStream(src.toString())) {
+			Files.copy(in, tgt, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Path of a plain JSON aspect directory. The temporary copy, if one was made, is removed on close.
+	 */
+	public static class PlainAspectFile implements AutoCloseable {
+		private String path;
+		private Path tmpCopy;
+
+		PlainAspectFile(String path, Path tmpCopy) {
+			this.path = path;
+			this.tmpCopy = tmpCopy;
+		}
+
+		public String getPath() {return path;}
+
+		@Override
+		public void close() throws IOException {
+			if ( tmpCopy != null) {
+				if ( Files.isDirectory(tmpCopy))
+					FileUtils.deleteDirectory(tmpCopy.toFile());
+				else
+					Files.deleteIfExists(tmpCopy);
+				tmpCopy = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package org.ndexbio.common.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.ndexbio.common.persistence.CX2ColumnarStore.ColumnType;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads the columnar copy of the CX2 nodes or edges aspect of a network created by {@link CX2ColumnarStore}.
+ * The column files are memory mapped, so topology-only operations don't need to parse any JSON.
+ *
+ * A reader is immutable and can be shared between threads.
+ */
+public class CX2ColumnarReader {
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private int rowCount;
+	private ByteBuffer ids;
+	private ByteBuffer sources;
+	private ByteBuffer targets;
+	private Map<String,Column> attributes;
+
+	private CX2ColumnarReader() {}
+
+	/**
+	 * Open the columnar copy of an aspect.
+	 * @param networkId
+	 * @param aspectName nodes or edges
+	 * @return null if the network has no columnar copy of this aspect.
+	 * @throws IOException
+	 */
+	public static CX2ColumnarReader open(String networkId, String aspectName) throws IOException {
+		return open(NetworkPathResolver.getNetworkDir(networkId), aspectName);
+	}
+
+	/**
+	 * Open the columnar copy of an aspect.
+	 * @param networkDir the network directory, NdexRoot/data/&lt;uuid&gt;
+	 * @param aspectName nodes or edges
+	 * @return null if the network has no columnar copy of this aspect, or the aspect is too large to be mapped.
+	 * @throws IOException
+	 */
+	public static CX2ColumnarReader open(Path networkDir, String aspectName) throws IOException {
+		Path dir = networkDir.resolve(CX2ColumnarStore.columnarDirName);
+		Path metaFile = dir.resolve(aspectName + CX2ColumnarStore.metaSuffix);
+		if ( !Files.exists(metaFile))
+			return null;
+
+		JsonNode meta = mapper.readTree(metaFile.toFile());
+		long rows = meta.get(CX2ColumnarStore.ROW_COUNT).asLong();
+		if ( rows > Integer.MAX_VALUE / Long.BYTES)
+			return null;
+
+		CX2ColumnarReader reader = new CX2ColumnarReader();
+		reader.rowCount = (int) rows;
+		reader.ids = map(dir.resolve(aspectName + CX2ColumnarStore.idSuffix));
+		Path sourceFile = dir.resolve(aspectName + CX2ColumnarStore.sourceSuffix);
+		if ( Files.exists(sourceFile)) {
+			reader.sources = map(sourceFile);
+			reader.targets = map(dir.resolve(aspectName + CX2ColumnarStore.targetSuffix));
+		}
+
+		reader.attributes = new HashMap<>();
+		for ( JsonNode c : meta.get(CX2ColumnarStore.ATTRIBUTES)) {
+			ColumnType type = ColumnType.valueOf(c.get(CX2ColumnarStore.TYPE).asText());
+			String fileName = c.get(CX2ColumnarStore.FILE).asText();
+			String[] dictionary = null;
+			if ( type == ColumnType.STRING)
+				dictionary = mapper.readValue(dir.resolve(fileName + CX2ColumnarStore.dictionarySuffix).toFile(), String[].class);
+			reader.attributes.put(c.get(CX2ColumnarStore.NAME).asText(),
+					new Column(type, map(dir.resolve(fileName)), reader.rowCount, dictionary));
+		}
+		return reader;
+	}
+
+	private static ByteBuffer map(Path file) throws IOException {
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+		}
+	}
+
+	public int getRowCount() {return rowCount;}
+
+	public long getId(int row) {
+		return ids.getLong(row * Long.BYTES);
+	}
+
+	/**
+	 * Only available on the edges aspect.
+	 */
+	public long getSource(int row) {
+		return sources.getLong(row * Long.BYTES);
+	}
+
+	/**
+	 * Only available on the edges aspect.
+	 */
+	public long getTarget(int row) {
+		return targets.getLong(row * Long.BYTES);
+	}
+
+	/**
+	 * @param attributeName
+	 * @return true if the values of this attribute are stored in the columnar copy.
+	 */
+	public boolean hasAttribute(String attributeName) {
+		return attributes.containsKey(attributeName);
+	}
+
+	public boolean hasAttributes(Collection<String> attributeNames) {
+		return attributes.keySet().containsAll(attributeNames);
+	}
+
+	/**
+	 * Get the value of an attribute on a row. The value has the same Java type as the one
+	 * Jackson creates for the declared data type, e.g. Integer for integer attributes.
+	 * @param attributeName
+	 * @param row
+	 * @return null if the element has no value on this attribute.
+	 */
+	public Object getAttributeValue(String attributeName, int row) {
+		Column c = attributes.get(attributeName);
+		if ( c == null)
+			throw new IllegalArgumentException("Attribute " + attributeName + " is not stored in the columnar aspect.");
+		return c.get(row);
+	}
+
+	/**
+	 * Find the rows of the given element ids.
+	 * @param elementIds
+	 * @return a map from element id to row number, in the order of the rows. Ids that are not found are not in the result.
+	 */
+	public Map<Long,Integer> findRows(Set<Long> elementIds) {
+		Map<Long,Integer> result = new LinkedHashMap<>();
+		for ( int i = 0; i < rowCount && result.size() < elementIds.size(); i++) {
+			Long id = Long.valueOf(getId(i));
+			if ( elementIds.contains(id))
+				result.put(id, Integer.valueOf(i));
+		}
+		return result;
+	}
+
+	/**
+	 * @return a map from element id to row number for all the rows. Used to look up the rows of the nodes of the edges.
+	 */
+	public Map<Long,Integer> getRowIndex() {
+		Map<Long,Integer> result = new HashMap<>(rowCount * 4 / 3 + 1);
+		for ( int i = 0; i < rowCount; i++)
+			result.put(Long.valueOf(getId(i)), Integer.valueOf(i));
+		return result;
+	}
+
+	private static class Column {
+		private ColumnType type;
+		private ByteBuffer data;
+		private int bitmapOffset;
+		private String[] dictionary;
+
+		Column(ColumnType type, ByteBuffer data, int rowCount, String[] dictionary) {
+			this.type = type;
+			this.data = data;
+			this.bitmapOffset = rowCount * type.width;
+			this.dictionary = dictionary;
+		}
+
+		Object get(int row) {
+			if ( type == ColumnType.STRING) {
+				int idx = data.getInt(row * type.width);
+				return idx < 0 ? null : dictionary[idx];
+			}
+
+			if ( (data.get(bitmapOffset + (row >> 3)) & (1 << (row & 7))) == 0)
+				return null;
+
+			switch (type) {
+			case LONG:
+				return Long.valueOf(data.getLong(row * type.width));
+			case INTEGER:
+				return Integer.valueOf((int) data.getLong(row * type.width));
+			case DOUBLE:
+				return Double.valueOf(data.getDouble(row * type.width));
+			case BOOLEAN:
+				return Boolean.valueOf(data.get(row) != 0);
+			default:
+				return null;
+			}
+		}
+	}
+}
@@ -0,0 +1,380 @@
+package org.ndexbio.common.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.ndexbio.cx2.aspect.element.core.CxAttributeDeclaration;
+import org.ndexbio.cx2.aspect.element.core.CxEdge;
+import org.ndexbio.cx2.aspect.element.core.CxNode;
+import org.ndexbio.cx2.aspect.element.core.DeclarationEntry;
+import org.ndexbio.cxio.aspects.datamodels.ATTRIBUTE_DATA_TYPE;
+import org.ndexbio.cxio.core.AspectIterator;
+import org.ndexbio.rest.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Builds the columnar binary copy of the CX2 nodes and edges aspects of a network. The copy is stored in
+ * NdexRoot/data/&lt;uuid&gt;/columnar next to the JSON aspects, which are still kept for pass-through downloads.
+ *
+ * Each aspect has a small JSON header file (nodes.meta, edges.meta) and one file per column:
+ * <ul>
+ * <li>nodes.id, edges.id, edges.s, edges.t: fixed-width 8 byte ids.</li>
+ * <li>&lt;aspect&gt;.a&lt;i&gt;: attribute i. Numbers are stored as 8 byte values, booleans as 1 byte, followed by a
+ *     bitmap of the rows that have a value. Strings are stored as 4 byte indexes into the dictionary file
+ *     &lt;aspect&gt;.a&lt;i&gt;.dict, -1 means no value.</li>
+ * </ul>
+ * Attributes of the list types are not stored; readers fall back to the JSON aspect when they need them.
+ * Values are stored after aliases and default values from the attribute declaration are applied.
+ *
+ * The columnar copy is only created when NDEX_COLUMNAR_ASPECTS is set to true in ndex.properties.
+ *
+ * The node attribute lookup in SearchServiceV3 and the TSV export read the columnar copy when it holds every
+ * attribute they need. The Solr indexers still parse the JSON nodes because they need the alias lists, and EdgeFilter
+ * (in the object model library) only reads aspects from a directory. Network sampling works on the CX1 aspects.
+ */
+public final class CX2ColumnarStore {
+
+	public static final String COLUMNAR_PROPERTY = "NDEX_COLUMNAR_ASPECTS";
+
+	public static final String columnarDirName = "columnar";
+
+	static final String metaSuffix = ".meta";
+	static final String idSuffix = ".id";
+	static final String sourceSuffix = ".s";
+	static final String targetSuffix = ".t";
+	static final String attributePrefix = ".a";
+	static final String dictionarySuffix = ".dict";
+
+	static final String ROW_COUNT = "rowCount";
+	static final String ATTRIBUTES = "attributes";
+	static final String NAME = "name";
+	static final String TYPE = "type";
+	static final String FILE = "file";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private static final Logger logger = LoggerFactory.getLogger(CX2ColumnarStore.class);
+
+	/**
+	 * Storage type of an attribute column.
+	 */
+	enum ColumnType {
+		LONG(Long.BYTES), INTEGER(Long.BYTES), DOUBLE(Double.BYTES), BOOLEAN(1), STRING(Integer.BYTES);
+
+		final int width;
+
+		ColumnType(int width) {
+			this.width = width;
+		}
+
+		/**
+		 * @return null if the data type can't be stored in a column.
+		 */
+		static ColumnType fromDataType(ATTRIBUTE_DATA_TYPE t) {
+			if ( t == null)
+				return STRING;
+			switch (t) {
+			case STRING:
+				return STRING;
+			case LONG:
+				return LONG;
+			case INTEGER:
+				return INTEGER;
+			case DOUBLE:
+				return DOUBLE;
+			case BOOLEAN:
+				return BOOLEAN;
+			default:
+				return null;
+			}
+		}
+	}
+
+	private CX2ColumnarStore() {}
+
+	public static boolean isEnabled() {
+		Configuration config = Configuration.getInstance();
+		if ( config == null)
+			return false;
+		return Boolean.parseBoolean(config.getProperty(COLUMNAR_PROPERTY));
+	}
+
+	/**
+	 * Remove the columnar copy of a network and recreate it from the CX2 aspects if the columnar store is enabled
+	 * on this server. Called after the CX2 aspects of a network are (re)created. A failure to build the columnar copy
+	 * is only logged, the readers use the JSON aspects when a network has no columnar copy.
+	 * @param networkDir the network directory, NdexRoot/data/&lt;uuid&gt;
+	 * @throws IOException if the old columnar copy can't be removed.
+	 */
+	public static void rebuildIfEnabled(String networkDir) throws IOException {
+		File colDir = new File(networkDir, columnarDirName);
+		if ( colDir.exists())
+			FileUtils.deleteDirectory(colDir);
+		if ( isEnabled()) {
+			try {
+				build(Paths.get(networkDir));
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Failed to create the columnar aspects in " + networkDir + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Create the columnar copy of the nodes and edges aspects of a network. The columns are written to a temp
+	 * directory which is renamed to 'columnar' when all of them are written, so readers never see a partial copy.
+	 * @param networkDir
+	 * @throws IOException
+	 */
+	public static void build(Path networkDir) throws IOException {
+		Path aspectDir = networkDir.resolve(CX2NetworkLoader.cx2AspectDirName);
+		Path tmpDir = networkDir.resolve(columnarDirName + "-" + Thread.currentThread().getId() + "-" +
+				Calendar.getInstance().getTimeInMillis());
+		Files.createDirectory(tmpDir);
+		try {
+			CxAttributeDeclaration decls = null;
+			File declFile = aspectDir.resolve(CxAttributeDeclaration.ASPECT_NAME).toFile();
+			if ( AspectStorage.aspectExists(declFile)) {
+				CxAttributeDeclaration[] ds = AspectStorage.readValue(declFile, CxAttributeDeclaration[].class);
+				if ( ds.length > 0)
+					decls = ds[0];
+			}
+
+			Map<String,DeclarationEntry> nodeDecls = decls == null ? null : decls.getAttributesInAspect(CxNode.ASPECT_NAME);
+			try (AspectColumnsWriter w = new AspectColumnsWriter(tmpDir, CxNode.ASPECT_NAME, false, nodeDecls)) {
+				Path nodeFile = aspectDir.resolve(CxNode.ASPECT_NAME);
+				if ( AspectStorage.aspectExists(nodeFile)) {
+					try (AspectIterator<CxNode> it = new AspectIterator<>(AspectStorage.newAspectInputStream(nodeFile.toString()), CxNode.class)) {
+						while (it.hasNext()) {
+							CxNode n = it.next();
+							if ( nodeDecls != null)
+								n.extendToFullNode(nodeDecls);
+							w.addRow(n.getId(), 0, 0, n.getAttributes());
+						}
+					}
+				}
+			}
+
+			Map<String,DeclarationEntry> edgeDecls = decls == null ? null : decls.getAttributesInAspect(CxEdge.ASPECT_NAME);
+			try (AspectColumnsWriter w = new AspectColumnsWriter(tmpDir, CxEdge.ASPECT_NAME, true, edgeDecls)) {
+				Path edgeFile = aspectDir.resolve(CxEdge.ASPECT_NAME);
+				if ( AspectStorage.aspectExists(edgeFile)) {
+					try (AspectIterator<CxEdge> it = new AspectIterator<>(AspectStorage.newAspectInputStream(edgeFile.toString()), CxEdge.class)) {
+						while (it.hasNext()) {
+							CxEdge e = it.next();
+							if ( edgeDecls != null)
+								e.extendToFullNode(edgeDecls);
+							w.addRow(e.getId(), e.getSource(), e.getTarget(), e.getAttributes());
+						}
+					}
+				}
+			}
+
+			Files.move(tmpDir, networkDir.resolve(columnarDirName), StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			if ( Files.exists(tmpDir))
+				FileUtils.deleteDirectory(tmpDir.toFile());
+		}
+	}
+
+	private static DataOutputStream newColumnStream(Path file) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile()), BUFFER_SIZE));
+	}
+
+	/**
+	 * Writes the columns of one aspect.
+	 */
+	private static class AspectColumnsWriter implements Closeable {
+		private Path dir;
+		private String aspectName;
+		private DataOutputStream ids;
+		private DataOutputStream sources;
+		private DataOutputStream targets;
+		private List<AttributeColumnWriter> attributes;
+		private long rowCount;
+
+		AspectColumnsWriter(Path dir, String aspectName, boolean isEdge, Map<String,DeclarationEntry> decls) throws IOException {
+			this.dir = dir;
+			this.aspectName = aspectName;
+			this.rowCount = 0;
+			ids = newColumnStream(dir.resolve(aspectName + idSuffix));
+			if ( isEdge) {
+				sources = newColumnStream(dir.resolve(aspectName + sourceSuffix));
+				targets = newColumnStream(dir.resolve(aspectName + targetSuffix));
+			}
+			attributes = new ArrayList<>();
+			if ( decls != null) {
+				for ( Map.Entry<String,DeclarationEntry> decl : decls.entrySet()) {
+					ColumnType type = ColumnType.fromDataType(decl.getValue().getDataType());
+					if ( type != null)
+						attributes.add(new AttributeColumnWriter(dir, aspectName + attributePrefix + attributes.size(),
+								decl.getKey(), type));
+				}
+			}
+		}
+
+		void addRow(long id, long source, long target, Map<String,Object> attrs) throws IOException {
+			ids.writeLong(id);
+			if ( sources != null) {
+				sources.writeLong(source);
+				targets.writeLong(target);
+			}
+			for ( AttributeColumnWriter c : attributes) {
+				c.add(attrs == null ? null : attrs.get(c.name));
+			}
+			rowCount++;
+		}
+
+		@Override
+		public void close() throws IOException {
+			ids.close();
+			if ( sources != null) {
+				sources.close();
+				targets.close();
+			}
+
+			List<Map<String,Object>> columns = new ArrayList<>(attributes.size());
+			for ( AttributeColumnWriter c : attributes) {
+				if ( c.finish()) {
+					Map<String,Object> column = new LinkedHashMap<>();
+					column.put(NAME, c.name);
+					column.put(TYPE, c.type.toString());
+					column.put(FILE, c.fileName);
+					columns.add(column);
+				}
+			}
+
+			Map<String,Object> meta = new LinkedHashMap<>();
+			meta.put(ROW_COUNT, Long.valueOf(rowCount));
+			meta.put(ATTRIBUTES, columns);
+			mapper.writeValue(dir.resolve(aspectName + metaSuffix).toFile(), meta);
+		}
+	}
+
+	/**
+	 * Writes one attribute column. If a value doesn't match the declared type the column is dropped and
+	 * readers use the JSON aspect for this attribute.
+	 */
+	private static class AttributeColumnWriter {
+		private Path dir;
+		String fileName;
+		String name;
+		ColumnType type;
+		private DataOutputStream out;
+		private BitSet present;
+		private Map<String,Integer> dictionary;
+		private List<String> dictionaryValues;
+		private int row;
+		private boolean dropped;
+
+		AttributeColumnWriter(Path dir, String fileName, String name, ColumnType type) throws IOException {
+			this.dir = dir;
+			this.fileName = fileName;
+			this.name = name;
+			this.type = type;
+			out = newColumnStream(dir.resolve(fileName));
+			row = 0;
+			dropped = false;
+			if ( type == ColumnType.STRING) {
+				dictionary = new HashMap<>();
+				dictionaryValues = new ArrayList<>();
+			} else
+				present = new BitSet();
+		}
+
+		void add(Object v) throws IOException {
+			if ( dropped)
+				return;
+
+			switch (type) {
+			case STRING:
+				if ( v == null)
+					out.writeInt(-1);
+				else if ( v instanceof String) {
+					Integer idx = dictionary.get(v);
+					if ( idx == null) {
+						idx = Integer.valueOf(dictionaryValues.size());
+						dictionary.put((String)v, idx);
+						dictionaryValues.add((String)v);
+					}
+					out.writeInt(idx.intValue());
+				} else
+					dropped = true;
+				break;
+			case LONG:
+			case INTEGER:
+				if ( v == null)
+					out.writeLong(0);
+				else if ( v instanceof Number && !(v instanceof Double) && !(v instanceof Float)) {
+					out.writeLong(((Number)v).longValue());
+					present.set(row);
+				} else
+					dropped = true;
+				break;
+			case DOUBLE:
+				if ( v == null)
+					out.writeDouble(0);
+				else if ( v instanceof Number) {
+					out.writeDouble(((Number)v).doubleValue());
+					present.set(row);
+				} else
+					dropped = true;
+				break;
+			case BOOLEAN:
+				if ( v == null)
+					out.writeByte(0);
+				else if ( v instanceof Boolean) {
+					out.writeByte(((Boolean)v).booleanValue() ? 1 : 0);
+					present.set(row);
+				} else
+					dropped = true;
+				break;
+			default:
+				dropped = true;
+			}
+			row++;
+		}
+
+		/**
+		 * Finish writing the column.
+		 * @return false if the column was dropped.
+		 * @throws IOException
+		 */
+		boolean finish() throws IOException {
+			if ( !dropped) {
+				if ( type == ColumnType.STRING) {
+					mapper.writeValue(dir.resolve(fileName + dictionarySuffix).toFile(), dictionaryValues);
+				} else {
+					byte[] bitmap = new byte[(row + 7) / 8];
+					byte[] bits = present.toByteArray();
+					System.arraycopy(bits, 0, bitmap, 0, bits.length);
+					out.write(bitmap);
+				}
+			}
+			out.close();
+			if ( dropped)
+				Files.delete(dir.resolve(fileName));
+			return !dropped;
+		}
+	}
+}
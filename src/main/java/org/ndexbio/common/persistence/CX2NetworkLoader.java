@@ -42,6 +42,7 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -76,7 +77,6 @@ import org.ndexbio.model.exceptions.ObjectNotFoundException;
 import org.ndexbio.model.object.network.NetworkIndexLevel;
 import org.ndexbio.model.object.network.NetworkSummary;
 import org.ndexbio.model.object.network.VisibilityType;
-import org.ndexbio.rest.Configuration;
 import org.ndexbio.task.NdexServerQueue;
 import org.ndexbio.task.SolrIndexScope;
 import org.ndexbio.task.SolrTaskRebuildNetworkIdx;
@@ -129,7 +129,7 @@ public class CX2NetworkLoader implements AutoCloseable {
 		this.isUpdate = isUpdate;
 		
 		this.networkId = networkUUID;
-		this.rootPath = Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/"+ cx2AspectDirName + "/";
+		this.rootPath = NetworkPathResolver.getNetworkDirPath(networkId) + "/"+ cx2AspectDirName + "/";
 						
 		warnings = new ArrayList<> ();
 		
@@ -163,9 +163,11 @@ public class CX2NetworkLoader implements AutoCloseable {
 		  java.nio.file.Path dir = Paths.get(rootPath);
 		  Files.createDirectory(dir);
 		  
-		  try (	InputStream inputStream = new FileInputStream(Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/"+ cx2NetworkFileName) ) {
+		  try (	InputStream inputStream = new FileInputStream(NetworkPathResolver.getNetworkDirPath(networkId) + "/"+ cx2NetworkFileName) ) {
 	
 			  persistNetworkData(inputStream, false); 
+			  
+			  CX2ColumnarStore.rebuildIfEnabled(NetworkPathResolver.getNetworkDirPath(networkId));
 		  
 		  
 			  NetworkSummary summary = new NetworkSummary();
@@ -227,15 +229,17 @@ public class CX2NetworkLoader implements AutoCloseable {
 					if ( warnings.size()>0)
 						dao.setWarning(networkId, warnings);
 					
+					Map<String,Boolean> flags = new LinkedHashMap<>();
 					if ( !isUpdate) {
-						dao.setFlag(this.networkId, "iscomplete", true);
+						flags.put("iscomplete", Boolean.TRUE);
 					} 
+					flags.put("has_sample", Boolean.FALSE);//sampleCreated);
+					flags.put("has_layout", Boolean.valueOf(this.hasLayout));
+					dao.setFlags(this.networkId, flags);
 					if (visibility != null) {
 						dao.updateNetworkVisibility(networkId, visibility, true);
 					}
 					
-					dao.setFlag(this.networkId, "has_sample", false );//sampleCreated);
-					dao.setFlag(this.networkId, "has_layout", this.hasLayout);
 					dao.unlockNetwork(this.networkId);
 
 				} catch (SQLException e) {
@@ -276,7 +280,7 @@ public class CX2NetworkLoader implements AutoCloseable {
 		CX2NetworkFileGenerator g = new CX2NetworkFileGenerator ( networkId, dao);
 		String tmpFileName = g.createCX2File();
 		
-		String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/";
+		String pathPrefix = NetworkPathResolver.getNetworkDirPath(networkId) + "/";
 		
 		java.nio.file.Path src = Paths.get(tmpFileName);
 		java.nio.file.Path tgt = Paths.get( pathPrefix + cx2NetworkFileName);
@@ -289,7 +293,9 @@ public class CX2NetworkLoader implements AutoCloseable {
 		CX2ToCXConverter cvtr = new CX2ToCXConverter(pathPrefix, this.attributeDeclarations, 
 				this.metadataTable, this.hasLayout, this.networkAttributes, warnings);
 		
-		return cvtr.convert();
+		MetaDataCollection cx1Metadata = cvtr.convert();
+		NetworkSegment.packIfEnabled(Paths.get(pathPrefix));
+		return cx1Metadata;
 	}
 	
 
@@ -442,7 +448,7 @@ public class CX2NetworkLoader implements AutoCloseable {
 		CX2AspectWriter writer = aspectTable.get(aspectName);
 		if ( writer == null) {
 			//logger.info("creating new file for aspect " + aspectName);
-			writer = new CX2AspectWriter<>(rootPath + aspectName);
+			writer = new CX2AspectWriter<>(AspectStorage.newAspectOutputStream(rootPath + aspectName));
 			aspectTable.put(aspectName, writer);
 		}
 		writer.writeCXElement(element);
@@ -1,14 +1,12 @@
 package org.ndexbio.common.persistence;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -46,12 +44,15 @@ import org.ndexbio.cxio.aspects.datamodels.NodeAttributesElement;
 import org.ndexbio.cxio.aspects.datamodels.NodesElement;
 import org.ndexbio.cxio.core.CXAspectWriter;
 import org.ndexbio.cxio.core.NdexCXNetworkWriter;
+import org.ndexbio.cxio.core.OpaqueAspectIterator;
 import org.ndexbio.cxio.core.writers.NiceCXCX2Writer;
 import org.ndexbio.cxio.metadata.MetaDataCollection;
 import org.ndexbio.cxio.metadata.MetaDataElement;
+import org.ndexbio.cxio.misc.OpaqueElement;
 import org.ndexbio.model.exceptions.NdexException;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
  * Convert a CX2 network on the server to CX1. This converter works on the individual aspects on the 
@@ -121,7 +122,7 @@ public class CX2ToCXConverter {
 				networkAttributes.extendToFullNode(netAttrDecls);
 				writer.startAspectFragment(CxNetworkAttribute.ASPECT_NAME);
 				writer.openFragment();
-				try (CXAspectWriter cx1aspectWtr = new CXAspectWriter(cx1AspectPath + NetworkAttributesElement.ASPECT_NAME) ) {
+				try (CXAspectWriter cx1aspectWtr = new CXAspectWriter(AspectStorage.newAspectOutputStream(cx1AspectPath + NetworkAttributesElement.ASPECT_NAME)) ) {
 					for (Map.Entry<String, Object> e : this.networkAttributes.getAttributes().entrySet()) {
 						ATTRIBUTE_DATA_TYPE attrType = netAttrDecls.get(e.getKey()).getDataType();
 						NetworkAttributesElement na;
@@ -151,10 +152,10 @@ public class CX2ToCXConverter {
 						hasLayout? metadataTable.get(CxNode.ASPECT_NAME).getElementCount().intValue() : 10);
 				writer.startAspectFragment(CxNode.ASPECT_NAME);
 				writer.openFragment();
-				try (FileInputStream inputStream = new FileInputStream(aspectPath + "nodes")) {
+				try (InputStream inputStream = AspectStorage.newAspectInputStream(aspectPath + "nodes")) {
 
 					Iterator<CxNode> it = om.readerFor(CxNode.class).readValues(inputStream);
-					try (CXAspectWriter cx1aspectWtr = new CXAspectWriter(cx1AspectPath + NodesElement.ASPECT_NAME) ) {
+					try (CXAspectWriter cx1aspectWtr = new CXAspectWriter(AspectStorage.newAspectOutputStream(cx1AspectPath + NodesElement.ASPECT_NAME)) ) {
 
 						while (it.hasNext()) {
 							CxNode n = it.next();
@@ -177,7 +178,7 @@ public class CX2ToCXConverter {
 				if(hasLayout) {
 					writer.startAspectFragment(CartesianLayoutElement.ASPECT_NAME);
 					writer.openFragment();
-					try (CXAspectWriter cx1aspectWtr = new CXAspectWriter(cx1AspectPath + CartesianLayoutElement.ASPECT_NAME) ) {
+					try (CXAspectWriter cx1aspectWtr = new CXAspectWriter(AspectStorage.newAspectOutputStream(cx1AspectPath + CartesianLayoutElement.ASPECT_NAME)) ) {
 
 						for (CartesianLayoutElement e : coordinates) {
 							writer.writeElement(e);
@@ -191,11 +192,11 @@ public class CX2ToCXConverter {
 				//write nodeAttributes
 				writer.startAspectFragment(NodeAttributesElement.ASPECT_NAME);
 				writer.openFragment();
-				try (FileInputStream inputStream = new FileInputStream(aspectPath + CxNode.ASPECT_NAME)) {
+				try (InputStream inputStream = AspectStorage.newAspectInputStream(aspectPath + CxNode.ASPECT_NAME)) {
 
 					Iterator<CxNode> it = om.readerFor(CxNode.class).readValues(inputStream);
 					
-					try (CXAspectWriter cx1aspectWtr = new CXAspectWriter(cx1AspectPath + NodeAttributesElement.ASPECT_NAME) ) {
+					try (CXAspectWriter cx1aspectWtr = new CXAspectWriter(AspectStorage.newAspectOutputStream(cx1AspectPath + NodeAttributesElement.ASPECT_NAME)) ) {
 						while (it.hasNext()) {
 							CxNode n = it.next();
 							n.extendToFullNode(nodeAttrDecls);
@@ -234,10 +235,10 @@ public class CX2ToCXConverter {
 				//write edges
 				writer.startAspectFragment(CxEdge.ASPECT_NAME);
 				writer.openFragment();
-				try (FileInputStream inputStream = new FileInputStream(aspectPath + CxEdge.ASPECT_NAME)) {
+				try (InputStream inputStream = AspectStorage.newAspectInputStream(aspectPath + CxEdge.ASPECT_NAME)) {
 
 					Iterator<CxEdge> it = om.readerFor(CxEdge.class).readValues(inputStream);
-					try (CXAspectWriter cx1aspectWtr = new CXAspectWriter(cx1AspectPath + EdgesElement.ASPECT_NAME) ) {
+					try (CXAspectWriter cx1aspectWtr = new CXAspectWriter(AspectStorage.newAspectOutputStream(cx1AspectPath + EdgesElement.ASPECT_NAME)) ) {
 
 						while (it.hasNext()) {
 							CxEdge edge = it.next();
@@ -261,10 +262,10 @@ public class CX2ToCXConverter {
 				//write edge attributes
 				writer.startAspectFragment(EdgeAttributesElement.ASPECT_NAME);
 				writer.openFragment();
-				try (FileInputStream inputStream = new FileInputStream(aspectPath + CxEdge.ASPECT_NAME)) {
+				try (InputStream inputStream = AspectStorage.newAspectInputStream(aspectPath + CxEdge.ASPECT_NAME)) {
 
 					Iterator<CxEdge> it = om.readerFor(CxEdge.class).readValues(inputStream);
-					try (CXAspectWriter cx1aspectWtr = new CXAspectWriter(cx1AspectPath + EdgeAttributesElement.ASPECT_NAME) ) {
+					try (CXAspectWriter cx1aspectWtr = new CXAspectWriter(AspectStorage.newAspectOutputStream(cx1AspectPath + EdgeAttributesElement.ASPECT_NAME)) ) {
 					
 						while (it.hasNext()) {
 							CxEdge edge = it.next();
@@ -302,19 +303,19 @@ public class CX2ToCXConverter {
 				
 				writer.startAspectFragment(CyVisualPropertiesElement.ASPECT_NAME);
 				writer.openFragment();
-				try (CXAspectWriter cx1aspectWtr = new CXAspectWriter(cx1AspectPath + CyVisualPropertiesElement.ASPECT_NAME) ) {
+				try (CXAspectWriter cx1aspectWtr = new CXAspectWriter(AspectStorage.newAspectOutputStream(cx1AspectPath + CyVisualPropertiesElement.ASPECT_NAME)) ) {
 
 					File vsFile = new File(aspectPath + CxVisualProperty.ASPECT_NAME);
 
-					CxVisualProperty[] vPs = om.readValue(vsFile, CxVisualProperty[].class);
+					CxVisualProperty[] vPs = AspectStorage.readValue(vsFile, CxVisualProperty[].class);
 
 					DefaultVisualProperties defaultVPs = vPs[0].getDefaultProps();
 
 					// get the dependency table
 					VisualEditorProperties vep = null;
 					File vsEditorPropsFile = new File(aspectPath + VisualEditorProperties.ASPECT_NAME);
-					if (vsEditorPropsFile.exists()) {
-						VisualEditorProperties[] vepr = om.readValue(vsEditorPropsFile, VisualEditorProperties[].class);
+					if (AspectStorage.aspectExists(vsEditorPropsFile)) {
+						VisualEditorProperties[] vepr = AspectStorage.readValue(vsEditorPropsFile, VisualEditorProperties[].class);
 						vep = vepr[0];
 					}
 
@@ -338,7 +339,7 @@ public class CX2ToCXConverter {
 
 					// add node bypasses
 					if (this.metadataTable.get(CxNodeBypass.ASPECT_NAME) != null) {
-						try (FileInputStream inputStream = new FileInputStream(aspectPath + CxNodeBypass.ASPECT_NAME)) {
+						try (InputStream inputStream = AspectStorage.newAspectInputStream(aspectPath + CxNodeBypass.ASPECT_NAME)) {
 							Iterator<CxNodeBypass> it = om.readerFor(CxNodeBypass.class).readValues(inputStream);
 
 							while (it.hasNext()) {
@@ -368,7 +369,7 @@ public class CX2ToCXConverter {
 
 					// add edge bypasses
 					if (this.metadataTable.get(CxEdgeBypass.ASPECT_NAME) != null) {
-						try (FileInputStream inputStream = new FileInputStream(aspectPath + CxEdgeBypass.ASPECT_NAME)) {
+						try (InputStream inputStream = AspectStorage.newAspectInputStream(aspectPath + CxEdgeBypass.ASPECT_NAME)) {
 							Iterator<CxEdgeBypass> it = om.readerFor(CxEdgeBypass.class).readValues(inputStream);
 
 							while (it.hasNext()) {
@@ -397,13 +398,20 @@ public class CX2ToCXConverter {
 			for (String aspectName: this.metadataTable.keySet()) {
 				if ( !Cx2Network.cx2SpecialAspects.contains(aspectName) && !aspectName.equals(CxNode.ASPECT_NAME)
 						&& ! aspectName.equals(CxEdge.ASPECT_NAME) && !aspectName.equals(CxVisualProperty.ASPECT_NAME)) {
+					// decompressed on the fly, and written to the CX1 aspect file in the same pass.
 					writer.startAspectFragment(aspectName);
-					writer.writeAspectElementsFromNdexAspectFile(aspectPath + aspectName);
+					writer.openFragment();
+					try (InputStream in = AspectStorage.newAspectInputStream(aspectPath + aspectName);
+						 CXAspectWriter cx1aspectWtr = new CXAspectWriter(AspectStorage.newAspectOutputStream(cx1AspectPath + aspectName))) {
+						OpaqueAspectIterator asi = new OpaqueAspectIterator(in);
+						while ( asi.hasNext()) {
+							ObjectNode e = asi.next();
+							writer.writeElement(new OpaqueElement(aspectName, e));
+							cx1aspectWtr.writeCXElement(e);
+						}
+					}
+					writer.closeFragment();
 					writer.endAspectFragment();
-					
-				    Path copied = Paths.get(cx1AspectPath + aspectName);
-				    Path originalPath = Paths.get(aspectPath + aspectName);
-				    Files.copy(originalPath, copied, StandardCopyOption.REPLACE_EXISTING);
 
 				}
 			}
@@ -22,7 +22,6 @@ import org.ndexbio.model.exceptions.NdexException;
 import org.ndexbio.model.exceptions.ObjectNotFoundException;
 import org.ndexbio.model.object.network.NetworkIndexLevel;
 import org.ndexbio.model.object.network.NetworkSummary;
-import org.ndexbio.rest.Configuration;
 import org.ndexbio.task.NdexServerQueue;
 import org.ndexbio.task.SolrIndexScope;
 import org.ndexbio.task.SolrTaskRebuildNetworkIdx;
@@ -40,7 +39,7 @@ public class CXNetworkAspectsUpdater extends CXNetworkLoader {
 
 	public void update() throws FileNotFoundException, IOException, DuplicateObjectException, ObjectNotFoundException, NdexException, SQLException, SolrServerException {
 	
-		try (	InputStream inputStream = new FileInputStream(Configuration.getInstance().getNdexRoot() + "/data/" + aspectsCXNetworkID.toString() + "/network.cx") ) {
+		try (	InputStream inputStream = new FileInputStream(NetworkPathResolver.getNetworkDirPath(aspectsCXNetworkID.toString()) + "/network.cx") ) {
 			  persistNetworkData(inputStream, true); 
 			  
 
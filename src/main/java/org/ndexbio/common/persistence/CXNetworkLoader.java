@@ -41,6 +41,7 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -97,7 +98,6 @@ import org.ndexbio.model.object.NdexPropertyValuePair;
 import org.ndexbio.model.object.network.NetworkIndexLevel;
 import org.ndexbio.model.object.network.NetworkSummary;
 import org.ndexbio.model.object.network.VisibilityType;
-import org.ndexbio.rest.Configuration;
 import org.ndexbio.task.NdexServerQueue;
 import org.ndexbio.task.SolrIndexScope;
 import org.ndexbio.task.SolrTaskRebuildNetworkIdx;
@@ -175,7 +175,7 @@ public class CXNetworkLoader implements AutoCloseable {
 		
 //		this.ownerName = ownerUserName;
 		this.networkId = networkUUID;
-		this.rootPath = Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/" + CX1AspectDir+ "/";
+		this.rootPath = NetworkPathResolver.getNetworkDirPath(networkId) + "/" + CX1AspectDir+ "/";
 		this.networkName = null;
 
 	//	this.inputStream = new FileInputStream(Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/network.cx");
@@ -266,7 +266,7 @@ public class CXNetworkLoader implements AutoCloseable {
 		  java.nio.file.Path dir = Paths.get(rootPath);
 		  Files.createDirectory(dir);
 		  
-		  try (	InputStream inputStream = new FileInputStream(Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/" + CX1FileName) ) {
+		  try (	InputStream inputStream = new FileInputStream(NetworkPathResolver.getNetworkDirPath(networkId) + "/" + CX1FileName) ) {
 	
 			  persistNetworkData(inputStream, false); 
 		  
@@ -324,15 +324,17 @@ public class CXNetworkLoader implements AutoCloseable {
 				reCreateCXFiles(networkId,metadata, dao, this.attributeStats, this.subNetworkIds.isEmpty());
 				
 				try {
+					Map<String,Boolean> flags = new LinkedHashMap<>();
 					if ( !isUpdate) {
-						dao.setFlag(this.networkId, "iscomplete", true);
+						flags.put("iscomplete", Boolean.TRUE);
 					} 
+					flags.put("has_sample", Boolean.valueOf(sampleCreated));
+					flags.put("has_layout", Boolean.valueOf(metadata.getMetaDataElement(CartesianLayoutElement.ASPECT_NAME)!=null));
+					dao.setFlags(this.networkId, flags);
 					if (visibility != null) {
 						dao.updateNetworkVisibility(networkId, visibility, true);
 					}
 					
-					dao.setFlag(this.networkId, "has_sample", sampleCreated);
-					dao.setFlag(this.networkId, "has_layout", metadata.getMetaDataElement(CartesianLayoutElement.ASPECT_NAME)!=null);
 					dao.unlockNetwork(this.networkId);
 
 					
@@ -390,7 +392,7 @@ public class CXNetworkLoader implements AutoCloseable {
 		CXNetworkFileGenerator g = new CXNetworkFileGenerator ( networkId, dao);
 		String tmpFileName = CXNetworkFileGenerator.createNetworkFile(networkId.toString(),g.getMetaData());
 		
-		String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/";
+		String pathPrefix = NetworkPathResolver.getPathPrefix(networkId);
 		String cxfileDir = pathPrefix + networkId.toString() + "/";
 		
 		java.nio.file.Path src = Paths.get(tmpFileName);
@@ -421,7 +423,7 @@ public class CXNetworkLoader implements AutoCloseable {
 			
 		}
 		
-		
+		NetworkSegment.packIfEnabled(Paths.get(cxfileDir));
 	}
 	
 
@@ -697,7 +699,7 @@ public class CXNetworkLoader implements AutoCloseable {
 		CXAspectWriter writer = aspectTable.get(aspectName);
 		if ( writer == null) {
 			//logger.info("creating new file for aspect " + aspectName);
-			writer = new CXAspectWriter(rootPath + aspectName);
+			writer = new CXAspectWriter(AspectStorage.newAspectOutputStream(rootPath + aspectName));
 			aspectTable.put(aspectName, writer);
 		}
 		writer.writeCXElement(element);
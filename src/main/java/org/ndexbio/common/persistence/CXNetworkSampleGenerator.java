@@ -1,10 +1,9 @@
 package org.ndexbio.common.persistence;
 
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.HashSet;
@@ -35,7 +34,6 @@ import org.ndexbio.model.cx.NodeSupportLinksElement;
 import org.ndexbio.model.cx.SupportElement;
 import org.ndexbio.model.exceptions.NdexException;
 import org.ndexbio.model.internal.CXNetwork;
-import org.ndexbio.rest.Configuration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -81,7 +79,7 @@ public class CXNetworkSampleGenerator {
 		MetaDataCollection metadata = new MetaDataCollection();
 		result.setMetadata(metadata);
 
-		String iteratorPathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" ; 
+		String iteratorPathPrefix = NetworkPathResolver.getPathPrefix(networkId); 
 
 		String pathPrefix = iteratorPathPrefix + networkId + "/aspects/"; 
 	
@@ -90,7 +88,7 @@ public class CXNetworkSampleGenerator {
 		
 		if ( subNetworkId != null) {
 						
-			try (AspectIterator<SubNetworkElement> subNetIterator = new AspectIterator<>(networkId.toString(),SubNetworkElement.ASPECT_NAME , SubNetworkElement.class,iteratorPathPrefix ) ) {
+			try (AspectIterator<SubNetworkElement> subNetIterator = AspectStorage.newCX1AspectIterator(networkId.toString(), SubNetworkElement.ASPECT_NAME , SubNetworkElement.class, iteratorPathPrefix) ) {
 				while ( subNetIterator.hasNext()) {
 					SubNetworkElement subNetwork = subNetIterator.next();
 					
@@ -107,7 +105,7 @@ public class CXNetworkSampleGenerator {
 			}
 			
 			if (edgeIds.isEmpty()) {  // try the subNetworks aspect to be compatible with the old cyCX spec.
-				try (AspectIterator<SubNetworkElement> subNetIterator = new AspectIterator<>(networkId.toString(),"subNetworks" , SubNetworkElement.class ,iteratorPathPrefix) ) {
+				try (AspectIterator<SubNetworkElement> subNetIterator = AspectStorage.newCX1AspectIterator(networkId.toString(), "subNetworks" , SubNetworkElement.class , iteratorPathPrefix) ) {
 					while ( subNetIterator.hasNext()) {
 						SubNetworkElement subNetwork = subNetIterator.next();
 						
@@ -136,7 +134,7 @@ public class CXNetworkSampleGenerator {
 		Set<Long> nodeIds = new TreeSet<>();
 		//go through Edge aspect
 		Long edgeIdCounter = null;
-		try (AspectIterator<EdgesElement> it = new AspectIterator<>(networkId.toString(),EdgesElement.ASPECT_NAME , EdgesElement.class ,iteratorPathPrefix)) {
+		try (AspectIterator<EdgesElement> it = AspectStorage.newCX1AspectIterator(networkId.toString(), EdgesElement.ASPECT_NAME , EdgesElement.class , iteratorPathPrefix)) {
 
 			while (it.hasNext()) {
 	        	EdgesElement edge = it.next();
@@ -163,7 +161,7 @@ public class CXNetworkSampleGenerator {
 		
 		//go through node aspect
 		Long nodeIdCounter = null;
-		try (FileInputStream inputStream = new FileInputStream(pathPrefix + NodesElement.ASPECT_NAME)) {
+		try (InputStream inputStream = AspectStorage.newAspectInputStream(pathPrefix + NodesElement.ASPECT_NAME)) {
 
 			Iterator<NodesElement> it = new ObjectMapper().readerFor(NodesElement.class).readValues(inputStream);
 
@@ -187,8 +185,8 @@ public class CXNetworkSampleGenerator {
 		//process node attribute aspect
 		long nodeAttrCounter = 0;
 		java.nio.file.Path nodeAspectFile = Paths.get(pathPrefix + NodeAttributesElement.ASPECT_NAME);
-		if ( Files.exists(nodeAspectFile)) { 
-			try (FileInputStream inputStream = new FileInputStream(pathPrefix + NodeAttributesElement.ASPECT_NAME)) {
+		if ( AspectStorage.aspectExists(nodeAspectFile)) { 
+			try (InputStream inputStream = AspectStorage.newAspectInputStream(pathPrefix + NodeAttributesElement.ASPECT_NAME)) {
 
 				Iterator<NodeAttributesElement> it = new ObjectMapper().readerFor(NodeAttributesElement.class).readValues(inputStream);
 
@@ -216,8 +214,8 @@ public class CXNetworkSampleGenerator {
 		//process edge attribute aspect
 		long edgeAttrCounter = 0;
 		java.nio.file.Path edgeAspectFile = Paths.get(pathPrefix + EdgeAttributesElement.ASPECT_NAME);
-		if ( Files.exists(edgeAspectFile)) { 
-		  try (FileInputStream inputStream = new FileInputStream(pathPrefix + EdgeAttributesElement.ASPECT_NAME)) {
+		if ( AspectStorage.aspectExists(edgeAspectFile)) { 
+		  try (InputStream inputStream = AspectStorage.newAspectInputStream(pathPrefix + EdgeAttributesElement.ASPECT_NAME)) {
 
 			Iterator<EdgeAttributesElement> it = new ObjectMapper().readerFor(EdgeAttributesElement.class).readValues(inputStream);
 
@@ -245,8 +243,8 @@ public class CXNetworkSampleGenerator {
 		//process network attribute aspect
 		long networkAttrCounter = 0;
 		java.nio.file.Path networkAttrAspectFile = Paths.get(pathPrefix + NetworkAttributesElement.ASPECT_NAME);
-		if ( Files.exists(networkAttrAspectFile)) { 
-		  try (FileInputStream inputStream = new FileInputStream(pathPrefix + NetworkAttributesElement.ASPECT_NAME)) {
+		if ( AspectStorage.aspectExists(networkAttrAspectFile)) { 
+		  try (InputStream inputStream = AspectStorage.newAspectInputStream(pathPrefix + NetworkAttributesElement.ASPECT_NAME)) {
 
 			Iterator<NetworkAttributesElement> it = new ObjectMapper().readerFor(NetworkAttributesElement.class).readValues(inputStream);
 
@@ -272,8 +270,8 @@ public class CXNetworkSampleGenerator {
 		
 		//process namespace aspect
 		java.nio.file.Path nsAspectFile = Paths.get(pathPrefix + NamespacesElement.ASPECT_NAME);
-		if ( Files.exists(nsAspectFile)) { 
-		  try (FileInputStream inputStream = new FileInputStream(pathPrefix + NamespacesElement.ASPECT_NAME)) {
+		if ( AspectStorage.aspectExists(nsAspectFile)) { 
+		  try (InputStream inputStream = AspectStorage.newAspectInputStream(pathPrefix + NamespacesElement.ASPECT_NAME)) {
 
 			Iterator<NamespacesElement> it = new ObjectMapper().readerFor(NamespacesElement.class).readValues(inputStream);
 
@@ -290,9 +288,9 @@ public class CXNetworkSampleGenerator {
 
 		//process cyVisualProperty aspect
 		java.nio.file.Path cyVisPropAspectFile = Paths.get(pathPrefix + CyVisualPropertiesElement.ASPECT_NAME);
-		if ( Files.exists(cyVisPropAspectFile)) { 
+		if ( AspectStorage.aspectExists(cyVisPropAspectFile)) { 
 		  long vpropCount = 0;
-		  try (FileInputStream inputStream = new FileInputStream(pathPrefix + CyVisualPropertiesElement.ASPECT_NAME)) {
+		  try (InputStream inputStream = AspectStorage.newAspectInputStream(pathPrefix + CyVisualPropertiesElement.ASPECT_NAME)) {
 
 			Iterator<CyVisualPropertiesElement> it = new ObjectMapper().readerFor(CyVisualPropertiesElement.class).readValues(inputStream);
 
@@ -324,9 +322,9 @@ public class CXNetworkSampleGenerator {
 
 		//special case to support old visualProperty aspect
 		java.nio.file.Path cyVisPropAspectFileOld = Paths.get(pathPrefix + "visualProperties");
-		if ( Files.exists(cyVisPropAspectFileOld)) { 
+		if ( AspectStorage.aspectExists(cyVisPropAspectFileOld)) { 
 		  long vpropCount = 0;
-		  try (FileInputStream inputStream = new FileInputStream(pathPrefix + "visualProperties")) {
+		  try (InputStream inputStream = AspectStorage.newAspectInputStream(pathPrefix + "visualProperties")) {
 
 			Iterator<CyVisualPropertiesElement> it = new ObjectMapper().readerFor(CyVisualPropertiesElement.class).readValues(inputStream);
 
@@ -347,7 +345,7 @@ public class CXNetworkSampleGenerator {
 		
 		// process function terms
 		long aspElmtCount = 0;
-		try (AspectIterator<FunctionTermElement> it = new AspectIterator<>(networkId.toString(), FunctionTermElement.ASPECT_NAME, FunctionTermElement.class,iteratorPathPrefix)) {
+		try (AspectIterator<FunctionTermElement> it = AspectStorage.newCX1AspectIterator(networkId.toString(), FunctionTermElement.ASPECT_NAME, FunctionTermElement.class, iteratorPathPrefix)) {
 			while (it.hasNext()) {
 				FunctionTermElement fun = it.next();
 				
@@ -369,7 +367,7 @@ public class CXNetworkSampleGenerator {
 		
 		//process citation links aspects
 		aspElmtCount = 0;
-		try (AspectIterator<NodeCitationLinksElement> it = new AspectIterator<>(networkId.toString(), NodeCitationLinksElement.ASPECT_NAME, NodeCitationLinksElement.class,iteratorPathPrefix)) {
+		try (AspectIterator<NodeCitationLinksElement> it = AspectStorage.newCX1AspectIterator(networkId.toString(), NodeCitationLinksElement.ASPECT_NAME, NodeCitationLinksElement.class, iteratorPathPrefix)) {
 			while (it.hasNext()) {
 				NodeCitationLinksElement cl = it.next();
 				
@@ -391,7 +389,7 @@ public class CXNetworkSampleGenerator {
 		 }
 		
 		aspElmtCount = 0;
-		try (AspectIterator<EdgeCitationLinksElement> it = new AspectIterator<>(networkId.toString(), EdgeCitationLinksElement.ASPECT_NAME, EdgeCitationLinksElement.class, iteratorPathPrefix)) {
+		try (AspectIterator<EdgeCitationLinksElement> it = AspectStorage.newCX1AspectIterator(networkId.toString(), EdgeCitationLinksElement.ASPECT_NAME, EdgeCitationLinksElement.class, iteratorPathPrefix)) {
 			while (it.hasNext()) {
 				EdgeCitationLinksElement cl = it.next();
 				
@@ -413,7 +411,7 @@ public class CXNetworkSampleGenerator {
 		 }
 		
 		if( !citationIds.isEmpty()) {
-			try (AspectIterator<CitationElement> it = new AspectIterator<>(networkId.toString(), CitationElement.ASPECT_NAME, CitationElement.class, iteratorPathPrefix)) {
+			try (AspectIterator<CitationElement> it = AspectStorage.newCX1AspectIterator(networkId.toString(), CitationElement.ASPECT_NAME, CitationElement.class, iteratorPathPrefix)) {
 				while (it.hasNext()) {
 					CitationElement c = it.next();
 					if ( citationIds.contains(c.getId()))
@@ -432,7 +430,7 @@ public class CXNetworkSampleGenerator {
 		
 		//process support links aspects
 		aspElmtCount = 0;
-		try (AspectIterator<NodeSupportLinksElement> it = new AspectIterator<>(networkId.toString(), NodeSupportLinksElement.ASPECT_NAME, NodeSupportLinksElement.class, iteratorPathPrefix)) {
+		try (AspectIterator<NodeSupportLinksElement> it = AspectStorage.newCX1AspectIterator(networkId.toString(), NodeSupportLinksElement.ASPECT_NAME, NodeSupportLinksElement.class, iteratorPathPrefix)) {
 			while (it.hasNext()) {
 				NodeSupportLinksElement cl = it.next();
 				
@@ -454,7 +452,7 @@ public class CXNetworkSampleGenerator {
 		 }
 		
 		aspElmtCount = 0;
-		try (AspectIterator<EdgeSupportLinksElement> it = new AspectIterator<>(networkId.toString(), EdgeSupportLinksElement.ASPECT_NAME, EdgeSupportLinksElement.class, iteratorPathPrefix)) {
+		try (AspectIterator<EdgeSupportLinksElement> it = AspectStorage.newCX1AspectIterator(networkId.toString(), EdgeSupportLinksElement.ASPECT_NAME, EdgeSupportLinksElement.class, iteratorPathPrefix)) {
 			while (it.hasNext()) {
 				EdgeSupportLinksElement cl = it.next();
 				
@@ -476,7 +474,7 @@ public class CXNetworkSampleGenerator {
 		 }
 		
 		if( !supportIds.isEmpty()) {
-			try (AspectIterator<SupportElement> it = new AspectIterator<>(networkId.toString(), SupportElement.ASPECT_NAME, SupportElement.class, iteratorPathPrefix)) {
+			try (AspectIterator<SupportElement> it = AspectStorage.newCX1AspectIterator(networkId.toString(), SupportElement.ASPECT_NAME, SupportElement.class, iteratorPathPrefix)) {
 				while (it.hasNext()) {
 					SupportElement e = it.next();
 					if ( supportIds.contains(e.getId()))
@@ -492,7 +490,7 @@ public class CXNetworkSampleGenerator {
 
 		
 		//write the sample network out to disk and update the db.
-		try (FileOutputStream out = new FileOutputStream(Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/sample.cx")) {
+		try (FileOutputStream out = new FileOutputStream(NetworkPathResolver.getNetworkDirPath(networkId) + "/sample.cx")) {
 			NiceCXNetworkWriter writer = new NiceCXNetworkWriter(out, true);
 			writer.writeNiceCXNetwork(result);
 		}
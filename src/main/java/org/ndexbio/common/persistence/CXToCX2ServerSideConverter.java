@@ -168,7 +168,7 @@ public class CXToCX2ServerSideConverter {
 				attrDecls.add(this.attrDeclarations);
 				wtr.writeFullAspectFragment(attrDecls);
 				
-				try (CX2AspectWriter<CxAttributeDeclaration> aspWtr = new CX2AspectWriter<>(cx2AspectDir + CxAttributeDeclaration.ASPECT_NAME)) {
+				try (CX2AspectWriter<CxAttributeDeclaration> aspWtr = new CX2AspectWriter<>(AspectStorage.newAspectOutputStream(cx2AspectDir + CxAttributeDeclaration.ASPECT_NAME))) {
 					aspWtr.writeCXElement(attrDeclarations);
 				}
 			 
@@ -176,7 +176,7 @@ public class CXToCX2ServerSideConverter {
 			
 			//write network attributes
 			CxNetworkAttribute cx2NetAttr = new CxNetworkAttribute();
-			try (AspectIterator<NetworkAttributesElement> a = new AspectIterator<>(networkId, NetworkAttributesElement.ASPECT_NAME, NetworkAttributesElement.class, pathPrefix) ) {
+			try (AspectIterator<NetworkAttributesElement> a = AspectStorage.newCX1AspectIterator(networkId, NetworkAttributesElement.ASPECT_NAME, NetworkAttributesElement.class, pathPrefix) ) {
 				while (a.hasNext()) {
 					NetworkAttributesElement netAttr = a.next();
 					try {
@@ -214,7 +214,7 @@ public class CXToCX2ServerSideConverter {
 			if ( attrStats.hasNamespacesAspect()) {
 				ObjectMapper om = new ObjectMapper();
 				NamespacesElement namespaces = null;
-				try (AspectIterator<NamespacesElement> a = new AspectIterator<>(networkId, NamespacesElement.ASPECT_NAME, NamespacesElement.class, pathPrefix) ) {
+				try (AspectIterator<NamespacesElement> a = AspectStorage.newCX1AspectIterator(networkId, NamespacesElement.ASPECT_NAME, NamespacesElement.class, pathPrefix) ) {
 					while (a.hasNext()) {
 						namespaces = a.next();
 					}
@@ -228,7 +228,7 @@ public class CXToCX2ServerSideConverter {
 				netAttrs.add(cx2NetAttr);
 				wtr.writeFullAspectFragment(netAttrs);
 				
-				try (CX2AspectWriter<CxNetworkAttribute> aspWtr = new CX2AspectWriter<>(cx2AspectDir + CxNetworkAttribute.ASPECT_NAME)) {
+				try (CX2AspectWriter<CxNetworkAttribute> aspWtr = new CX2AspectWriter<>(AspectStorage.newAspectOutputStream(cx2AspectDir + CxNetworkAttribute.ASPECT_NAME))) {
 					aspWtr.writeCXElement(cx2NetAttr);
 				}
 				
@@ -238,7 +238,7 @@ public class CXToCX2ServerSideConverter {
 			if( needToWriteAspect(CxNode.ASPECT_NAME, cx2Metadata)) {
 				Map<Long, CxNode> nodeTable = createCX2NodeTable();
 				wtr.startAspectFragment(CxNode.ASPECT_NAME);
-				try (CX2AspectWriter<CxNode> aspWtr = new CX2AspectWriter<>(cx2AspectDir + CxNode.ASPECT_NAME)) {
+				try (CX2AspectWriter<CxNode> aspWtr = new CX2AspectWriter<>(AspectStorage.newAspectOutputStream(cx2AspectDir + CxNode.ASPECT_NAME))) {
 					for (CxNode n : nodeTable.values()) {
 					
 						wtr.writeElementInFragment(n);
@@ -252,8 +252,8 @@ public class CXToCX2ServerSideConverter {
 			if ( needToWriteAspect(CxEdge.ASPECT_NAME, cx2Metadata)) {
 				Map<Long, CxEdge> edgeAttrTable = createEdgeAttrTable();
 				wtr.startAspectFragment(CxEdge.ASPECT_NAME);
-				try (AspectIterator<EdgesElement> a = new AspectIterator<>(networkId, EdgesElement.ASPECT_NAME, EdgesElement.class, pathPrefix) ) {
-					try(CX2AspectWriter<CxEdge> aspWtr = new CX2AspectWriter<>(cx2AspectDir + CxEdge.ASPECT_NAME)) {
+				try (ParallelAspectIterator<EdgesElement> a = AspectStorage.newParallelCX1AspectIterator(networkId, EdgesElement.ASPECT_NAME, EdgesElement.class, pathPrefix) ) {
+					try(CX2AspectWriter<CxEdge> aspWtr = new CX2AspectWriter<>(AspectStorage.newAspectOutputStream(cx2AspectDir + CxEdge.ASPECT_NAME))) {
 						while (a.hasNext()) {
 							EdgesElement cx1Edge = a.next();
 							CxEdge cx2Edge = edgeAttrTable.remove(cx1Edge.getId());
@@ -298,7 +298,7 @@ public class CXToCX2ServerSideConverter {
 				wtr.writeElementInFragment(vp.getStyle());
 				wtr.endAspectFragment();
 				
-				try (CX2AspectWriter<CxVisualProperty> aspWtr = new CX2AspectWriter<>(cx2AspectDir + CxVisualProperty.ASPECT_NAME)) {
+				try (CX2AspectWriter<CxVisualProperty> aspWtr = new CX2AspectWriter<>(AspectStorage.newAspectOutputStream(cx2AspectDir + CxVisualProperty.ASPECT_NAME))) {
 					aspWtr.writeCXElement(vp.getStyle());
 				}
 			}
@@ -306,7 +306,7 @@ public class CXToCX2ServerSideConverter {
 			if ( !vp.getNodeBypasses().isEmpty()) {
 				wtr.startAspectFragment(CxNodeBypass.ASPECT_NAME);
 				
-				try (CX2AspectWriter<CxNodeBypass> aspWtr = new CX2AspectWriter<>(cx2AspectDir + CxNodeBypass.ASPECT_NAME)) {
+				try (CX2AspectWriter<CxNodeBypass> aspWtr = new CX2AspectWriter<>(AspectStorage.newAspectOutputStream(cx2AspectDir + CxNodeBypass.ASPECT_NAME))) {
 
 					for ( CxNodeBypass e : vp.getNodeBypasses()) {
 						wtr.writeElementInFragment(e);
@@ -318,7 +318,7 @@ public class CXToCX2ServerSideConverter {
 			
 			if ( !vp.getEdgeBypasses().isEmpty()) {
 				wtr.startAspectFragment(CxEdgeBypass.ASPECT_NAME);
-				try (CX2AspectWriter<CxEdgeBypass> aspWtr = new CX2AspectWriter<>(cx2AspectDir + CxEdgeBypass.ASPECT_NAME)) {
+				try (CX2AspectWriter<CxEdgeBypass> aspWtr = new CX2AspectWriter<>(AspectStorage.newAspectOutputStream(cx2AspectDir + CxEdgeBypass.ASPECT_NAME))) {
 
 					for ( CxEdgeBypass e : vp.getEdgeBypasses()) {
 						wtr.writeElementInFragment(e);
@@ -334,7 +334,7 @@ public class CXToCX2ServerSideConverter {
 				wtr.writeElementInFragment(this.visualDependencies);
 				wtr.endAspectFragment();
 				
-				try (CX2AspectWriter<VisualEditorProperties> aspWtr = new CX2AspectWriter<>(cx2AspectDir + VisualEditorProperties.ASPECT_NAME)) {
+				try (CX2AspectWriter<VisualEditorProperties> aspWtr = new CX2AspectWriter<>(AspectStorage.newAspectOutputStream(cx2AspectDir + VisualEditorProperties.ASPECT_NAME))) {
 					aspWtr.writeCXElement(this.visualDependencies);
 				}
 			}
@@ -348,7 +348,7 @@ public class CXToCX2ServerSideConverter {
 					   !aspectName.equals(CxNode.ASPECT_NAME) && !aspectName.equals(CxEdge.ASPECT_NAME)
 					   && !aspectName.equals(CxVisualProperty.ASPECT_NAME)) {
 					wtr.startAspectFragment(aspectName);
-					try (AspectIterator<CxOpaqueAspectElement> a = new AspectIterator<>(networkId, aspectName, CxOpaqueAspectElement.class, pathPrefix) ) {
+					try (AspectIterator<CxOpaqueAspectElement> a = AspectStorage.newCX1AspectIterator(networkId, aspectName, CxOpaqueAspectElement.class, pathPrefix) ) {
 						while ( a.hasNext())
 							wtr.writeElementInFragment(a.next());
 					}
@@ -363,6 +363,12 @@ public class CXToCX2ServerSideConverter {
 			wtr.finish();
 		}
 		
+		// a packed network keeps its old cx2 aspects in the segment file until they are all rewritten. The links to
+		// the opaque aspects become links to their entries in the segment file.
+		NetworkSegment.replaceDirectory(Paths.get(pathPrefix, networkId), CX2NetworkLoader.cx2AspectDirName);
+		
+		CX2ColumnarStore.rebuildIfEnabled(pathPrefix + File.separator + networkId);
+		
 		return cx2Metadata;
 		
 	}
@@ -382,7 +388,7 @@ public class CXToCX2ServerSideConverter {
 		Map<Long, CxNode> nodeTable = new TreeMap<>();
 		
 		// go through node aspects.
-		try (AspectIterator<NodesElement> nodes = new AspectIterator<>(networkId, NodesElement.ASPECT_NAME, NodesElement.class, pathPrefix) ) {
+		try (ParallelAspectIterator<NodesElement> nodes = AspectStorage.newParallelCX1AspectIterator(networkId, NodesElement.ASPECT_NAME, NodesElement.class, pathPrefix) ) {
 			while (nodes.hasNext()) {
 				NodesElement cx1node = nodes.next();
 				Long nodeId = Long.valueOf(cx1node.getId());
@@ -406,7 +412,7 @@ public class CXToCX2ServerSideConverter {
 		}
 		
 		// then node attribute aspect
-		try (AspectIterator<NodeAttributesElement> nAttrs = new AspectIterator<>(networkId, NodeAttributesElement.ASPECT_NAME, NodeAttributesElement.class, pathPrefix) ) {
+		try (ParallelAspectIterator<NodeAttributesElement> nAttrs = AspectStorage.newParallelCX1AspectIterator(networkId, NodeAttributesElement.ASPECT_NAME, NodeAttributesElement.class, pathPrefix) ) {
 			while (nAttrs.hasNext()) {
 				NodeAttributesElement cx1nodeAttr = nAttrs.next();
 				Long nodeId = cx1nodeAttr.getPropertyOf();
@@ -436,7 +442,7 @@ public class CXToCX2ServerSideConverter {
 		}
 		
 		// then coordinate aspect
-		try (AspectIterator<CartesianLayoutElement> coordinates = new AspectIterator<>(networkId, CartesianLayoutElement.ASPECT_NAME, CartesianLayoutElement.class, pathPrefix) ) {
+		try (AspectIterator<CartesianLayoutElement> coordinates = AspectStorage.newCX1AspectIterator(networkId, CartesianLayoutElement.ASPECT_NAME, CartesianLayoutElement.class, pathPrefix) ) {
 			while (coordinates.hasNext()) {
 				CartesianLayoutElement coord = coordinates.next();
 				Long nodeId = coord.getNode();
@@ -457,7 +463,7 @@ public class CXToCX2ServerSideConverter {
 	private Map<Long, CxEdge> createEdgeAttrTable() throws NdexException, JsonProcessingException, IOException {
 		Map<Long, CxEdge> edgeTable = new TreeMap<> ();
 		
-		try (AspectIterator<EdgeAttributesElement> eAttrs = new AspectIterator<>(networkId, EdgeAttributesElement.ASPECT_NAME, EdgeAttributesElement.class, pathPrefix) ) {
+		try (ParallelAspectIterator<EdgeAttributesElement> eAttrs = AspectStorage.newParallelCX1AspectIterator(networkId, EdgeAttributesElement.ASPECT_NAME, EdgeAttributesElement.class, pathPrefix) ) {
 			while (eAttrs.hasNext()) {
 				EdgeAttributesElement cx1EdgeAttr = eAttrs.next();
 				Long edgeId = cx1EdgeAttr.getPropertyOf();
@@ -510,7 +516,7 @@ public class CXToCX2ServerSideConverter {
 		boolean foundNodeRepresentAttr = false;
 		
 		// check nodes aspect
-		try (AspectIterator<NodesElement> nodes = new AspectIterator<>(networkId, NodesElement.ASPECT_NAME, NodesElement.class, pathPrefix) ) {
+		try (ParallelAspectIterator<NodesElement> nodes = AspectStorage.newParallelCX1AspectIterator(networkId, NodesElement.ASPECT_NAME, NodesElement.class, pathPrefix) ) {
 			while (nodes.hasNext()) {
 				attributeStats.addNode(nodes.next());
 				if ( attributeStats.hasBothReservedNodeAttr())
@@ -519,7 +525,7 @@ public class CXToCX2ServerSideConverter {
 		}
 		
 		//check edges aspect
-		try (AspectIterator<EdgesElement> edges = new AspectIterator<>(networkId, EdgesElement.ASPECT_NAME, EdgesElement.class, pathPrefix) ) {
+		try (ParallelAspectIterator<EdgesElement> edges = AspectStorage.newParallelCX1AspectIterator(networkId, EdgesElement.ASPECT_NAME, EdgesElement.class, pathPrefix) ) {
 			while (edges.hasNext()) {
 				attributeStats.addEdge(edges.next());
 				if ( attributeStats.hasEdgeInteractionAttr())
@@ -528,7 +534,7 @@ public class CXToCX2ServerSideConverter {
 		}
 		
 		//check network attribute
-		try (AspectIterator<NetworkAttributesElement> a = new AspectIterator<>(networkId, NetworkAttributesElement.ASPECT_NAME, NetworkAttributesElement.class, pathPrefix) ) {
+		try (AspectIterator<NetworkAttributesElement> a = AspectStorage.newCX1AspectIterator(networkId, NetworkAttributesElement.ASPECT_NAME, NetworkAttributesElement.class, pathPrefix) ) {
 			while (a.hasNext()) {
 				try {
 					String warning = attributeStats.addNetworkAttribute(a.next());
@@ -546,12 +552,12 @@ public class CXToCX2ServerSideConverter {
 		// check if @context exists.
 		String fname = pathPrefix + networkId + "/aspects/"+ NamespacesElement.ASPECT_NAME;
 		java.nio.file.Path contextAspectFile = Paths.get(fname);
-		if ( Files.exists(contextAspectFile))
+		if ( AspectStorage.aspectExists(contextAspectFile))
 			attributeStats.setHasNamespacesAspect();
 		
 		
 		//check node attributes
-		try (AspectIterator<NodeAttributesElement> a = new AspectIterator<>(networkId, NodeAttributesElement.ASPECT_NAME, NodeAttributesElement.class, pathPrefix) ) {
+		try (ParallelAspectIterator<NodeAttributesElement> a = AspectStorage.newParallelCX1AspectIterator(networkId, NodeAttributesElement.ASPECT_NAME, NodeAttributesElement.class, pathPrefix) ) {
 			while (a.hasNext()) {
 				NodeAttributesElement attr = a.next();
 				if (attr.getName().equals(CxNode.NAME) && (!foundNodeNameAttr) ){
@@ -570,7 +576,7 @@ public class CXToCX2ServerSideConverter {
 		}
 		
 		//check edge attributes
-		try (AspectIterator<EdgeAttributesElement> a = new AspectIterator<>(networkId, EdgeAttributesElement.ASPECT_NAME, EdgeAttributesElement.class, pathPrefix) ) {
+		try (ParallelAspectIterator<EdgeAttributesElement> a = AspectStorage.newParallelCX1AspectIterator(networkId, EdgeAttributesElement.ASPECT_NAME, EdgeAttributesElement.class, pathPrefix) ) {
 			while (a.hasNext()) {
 				EdgeAttributesElement e = a.next();
 				if (  (e.getName().equals(CxEdge.INTERACTION) && (!foundEdgeInteractionAttr))) {
@@ -586,7 +592,7 @@ public class CXToCX2ServerSideConverter {
 		}
 		
 		//check node and edge bypass count
-		try (AspectIterator<CyVisualPropertiesElement> a = new AspectIterator<>(networkId, CyVisualPropertiesElement.ASPECT_NAME, CyVisualPropertiesElement.class, pathPrefix) ) {
+		try (AspectIterator<CyVisualPropertiesElement> a = AspectStorage.newCX1AspectIterator(networkId, CyVisualPropertiesElement.ASPECT_NAME, CyVisualPropertiesElement.class, pathPrefix) ) {
 			while (a.hasNext()) {
 				attributeStats.addCyVisualPropertiesElement(a.next());
 			}
@@ -597,7 +603,7 @@ public class CXToCX2ServerSideConverter {
 	private CX2VPHolder readVisualProperties() throws JsonProcessingException, IOException, NdexException {
 		CX2VPHolder holder = new CX2VPHolder ();
 		
-		try (AspectIterator<CyVisualPropertiesElement> a = new AspectIterator<>(networkId, CyVisualPropertiesElement.ASPECT_NAME, CyVisualPropertiesElement.class, pathPrefix) ) {
+		try (AspectIterator<CyVisualPropertiesElement> a = AspectStorage.newCX1AspectIterator(networkId, CyVisualPropertiesElement.ASPECT_NAME, CyVisualPropertiesElement.class, pathPrefix) ) {
 			while (a.hasNext()) {
 				CyVisualPropertiesElement e = a.next();
 				holder.addVisuaProperty(e, visualDependencies, warnings, attrDeclarations);
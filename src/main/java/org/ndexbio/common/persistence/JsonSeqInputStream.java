@@ -0,0 +1,112 @@
+package org.ndexbio.common.persistence;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a JSON text sequence written by {@link JsonSeqOutputStream} as a JSON array, so that the aspect readers
+ * and the aspect responses see the same content as before.
+ */
+class JsonSeqInputStream extends FilterInputStream {
+
+	private boolean started;
+	private boolean firstElement;
+	private boolean eof;
+	private boolean ended;
+
+	JsonSeqInputStream(InputStream in) {
+		super(in);
+		started = false;
+		firstElement = true;
+		eof = false;
+		ended = false;
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		int n;
+		while ( (n = read(b, 0, 1)) == 0) {
+			// nothing was produced from the bytes read so far.
+		}
+		return n < 0 ? -1 : (b[0] & 0xFF);
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if ( len == 0)
+			return 0;
+		if ( ended)
+			return -1;
+
+		int n = 0;
+		if ( !started) {
+			b[off] = '[';
+			started = true;
+			n = 1;
+		}
+
+		while ( n == 0 || (n < len && !eof && in.available() > 0)) {
+			int r = eof ? -1 : in.read(b, off + n, len - n);
+			if ( r < 0) {
+				eof = true;
+				break;
+			}
+			// rewrite the bytes in place, the output is never longer than the input.
+			int w = off + n;
+			for ( int i = off + n; i < off + n + r; i++) {
+				byte c = b[i];
+				if ( c == JsonSeqOutputStream.RS) {
+					if ( firstElement)
+						firstElement = false;
+					else
+						b[w++] = ',';
+				} else if ( c != '\n') {
+					b[w++] = c;
+				}
+			}
+			n = w - off;
+		}
+
+		if ( eof && n < len) {
+			b[off + n] = ']';
+			n++;
+			ended = true;
+		}
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		byte[] buf = new byte[(int) Math.min(n, 8192)];
+		long skipped = 0;
+		while ( skipped < n) {
+			int r = read(buf, 0, (int) Math.min(buf.length, n - skipped));
+			if ( r < 0)
+				break;
+			skipped += r;
+		}
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return 0;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+		// not supported
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+}
@@ -0,0 +1,164 @@
+package org.ndexbio.common.persistence;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts the JSON array written by the aspect writers into a JSON text sequence (RFC 7464): each element of the
+ * array is written on its own line, prefixed by the record separator character. Whitespace outside of strings is
+ * removed, so an element never spans more than one line.
+ *
+ * An empty array is written as "[]", and anything that is not a JSON array is written unchanged.
+ *
+ * The converted bytes are collected in a buffer and written to the underlying stream in blocks.
+ */
+class JsonSeqOutputStream extends FilterOutputStream {
+
+	static final int RS = 0x1E;
+
+	private enum Mode {UNKNOWN, SEQUENCE, PASS_THROUGH}
+
+	private Mode mode;
+	private int depth;
+	private boolean inString;
+	private boolean escape;
+	private boolean inScalarElement;
+	private long elementCount;
+
+	private final byte[] buf = new byte[8192];
+	private int count;
+
+	JsonSeqOutputStream(OutputStream out) {
+		super(out);
+		mode = Mode.UNKNOWN;
+		depth = 0;
+		inString = false;
+		escape = false;
+		inScalarElement = false;
+		elementCount = 0;
+		count = 0;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if ( mode == Mode.PASS_THROUGH) {
+			flushBuffer();
+			out.write(b);
+			return;
+		}
+		convert(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		int end = off + len;
+		for ( int i = off; i < end; i++) {
+			if ( mode == Mode.PASS_THROUGH) {
+				flushBuffer();
+				out.write(b, i, end - i);
+				return;
+			}
+			convert(b[i] & 0xFF);
+		}
+	}
+
+	private void convert(int b) throws IOException {
+
+		if ( inString) {
+			emit(b);
+			if ( escape)
+				escape = false;
+			else if ( b == '\\')
+				escape = true;
+			else if ( b == '"')
+				inString = false;
+			return;
+		}
+
+		if ( b == ' ' || b == '\n' || b == '\r' || b == '\t')
+			return;
+
+		if ( mode == Mode.UNKNOWN) {
+			if ( b == '[') {
+				mode = Mode.SEQUENCE;
+				depth = 1;
+			} else {
+				mode = Mode.PASS_THROUGH;
+				emit(b);
+			}
+			return;
+		}
+
+		if ( depth == 0)   // nothing is expected after the end of the array.
+			return;
+
+		if ( depth == 1) {
+			if ( b == ',' || b == ']') {
+				endScalarElement();
+				if ( b == ']')
+					depth = 0;
+				return;
+			}
+			if ( !inScalarElement) {
+				emit(RS);
+				elementCount++;
+			}
+			if ( b == '{' || b == '[') {
+				depth++;
+			} else {
+				inScalarElement = true;
+				if ( b == '"')
+					inString = true;
+			}
+			emit(b);
+			return;
+		}
+
+		if ( b == '"')
+			inString = true;
+		else if ( b == '{' || b == '[')
+			depth++;
+		else if ( b == '}' || b == ']')
+			depth--;
+		emit(b);
+		if ( depth == 1)
+			emit('\n');
+	}
+
+	private void endScalarElement() throws IOException {
+		if ( inScalarElement) {
+			emit('\n');
+			inScalarElement = false;
+		}
+	}
+
+	private void emit(int b) throws IOException {
+		if ( count == buf.length)
+			flushBuffer();
+		buf[count++] = (byte) b;
+	}
+
+	private void flushBuffer() throws IOException {
+		if ( count > 0) {
+			out.write(buf, 0, count);
+			count = 0;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if ( mode == Mode.SEQUENCE && elementCount == 0) {
+			flushBuffer();
+			out.write("[]".getBytes(StandardCharsets.US_ASCII));
+		}
+		super.close();
+	}
+}
@@ -0,0 +1,220 @@
+package org.ndexbio.common.persistence;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileAttribute;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.ndexbio.rest.Configuration;
+
+/**
+ * Resolves the directory of a network in the data store.
+ *
+ * Networks used to be stored in NdexRoot/data/&lt;uuid&gt;. When NDEX_SHARDED_DATA_DIR is set to true in
+ * ndex.properties, new networks are stored in NdexRoot/data/&lt;ab&gt;/&lt;cd&gt;/&lt;uuid&gt;, where ab and cd are
+ * the first 2 bytes of a hash of the UUID in hex, so that no directory in the data store holds more than a few
+ * thousand entries. The UUIDs generated by this server are time based, that is why they are hashed instead of
+ * using their first characters.
+ *
+ * Both layouts are looked up when a network directory is resolved, so the data store can be migrated with
+ * {@link org.ndexbio.server.tools.NetworkDirMigrator} while the server is running.
+ */
+public final class NetworkPathResolver {
+
+	public static final String SHARDED_LAYOUT_PROPERTY = "NDEX_SHARDED_DATA_DIR";
+
+	public static final String dataDirName = "data";
+
+	private NetworkPathResolver() {}
+
+	/**
+	 *
+	 * @return true if new networks are created in the sharded layout on this server.
+	 */
+	public static boolean isShardedLayoutEnabled() {
+		Configuration config = Configuration.getInstance();
+		if ( config == null)
+			return false;
+		return Boolean.parseBoolean(config.getProperty(SHARDED_LAYOUT_PROPERTY));
+	}
+
+	/**
+	 *
+	 * @return NdexRoot/data
+	 */
+	public static Path getDataDir() {
+		return Paths.get(Configuration.getInstance().getNdexRoot(), dataDirName);
+	}
+
+	/**
+	 * The relative path of the shard directory of a network, for example "3f/a0".
+	 */
+	static String getShardPath(String networkId) {
+		CRC32 crc = new CRC32();
+		crc.update(networkId.toLowerCase().getBytes(StandardCharsets.US_ASCII));
+		long h = crc.getValue();
+		return String.format("%02x/%02x", Long.valueOf((h >>> 24) & 0xFF), Long.valueOf((h >>> 16) & 0xFF));
+	}
+
+	/**
+	 * @return the network directory in the sharded layout, NdexRoot/data/&lt;ab&gt;/&lt;cd&gt;/&lt;uuid&gt;
+	 */
+	public static Path getShardedNetworkDir(Path dataDir, String networkId) {
+		return dataDir.resolve(getShardPath(networkId)).resolve(networkId);
+	}
+
+	/**
+	 * @return the network directory in the old layout, NdexRoot/data/&lt;uuid&gt;
+	 */
+	public static Path getLegacyNetworkDir(Path dataDir, String networkId) {
+		return dataDir.resolve(networkId);
+	}
+
+	/**
+	 * Get the directory of a network. An existing directory is found in either layout; the sharded layout is
+	 * checked first when it is enabled. If the network has no directory yet, the path in the layout for new
+	 * networks is returned.
+	 * @param networkId
+	 * @return
+	 */
+	public static Path getNetworkDir(String networkId) {
+		return getNetworkDir(getDataDir(), networkId, isShardedLayoutEnabled());
+	}
+
+	public static Path getNetworkDir(UUID networkId) {
+		return getNetworkDir(networkId.toString());
+	}
+
+	static Path getNetworkDir(Path dataDir, String networkId, boolean sharded) {
+		Path shardedDir = getShardedNetworkDir(dataDir, networkId);
+		Path legacyDir = getLegacyNetworkDir(dataDir, networkId);
+		// a symbolic link in the old layout points to the migrated directory, so the sharded directory is
+		// returned for it. Otherwise the link would be deleted instead of the directory when the network is updated.
+		boolean isLegacyDir = Files.isDirectory(legacyDir, LinkOption.NOFOLLOW_LINKS);
+		if ( Files.isDirectory(shardedDir) && (sharded || !isLegacyDir))
+			return shardedDir;
+		if ( isLegacyDir)
+			return legacyDir;
+		return sharded ? shardedDir : legacyDir;
+	}
+
+	/**
+	 * Same as {@link #getNetworkDir(String)}, as a string without the trailing "/". Replaces
+	 * NdexRoot + "/data/" + networkId.
+	 */
+	public static String getNetworkDirPath(String networkId) {
+		return getNetworkDir(networkId).toString();
+	}
+
+	public static String getNetworkDirPath(UUID networkId) {
+		return getNetworkDirPath(networkId.toString());
+	}
+
+	/**
+	 * Get the parent directory of a network directory, with a trailing "/". Used with the library classes
+	 * that take a path prefix and a network id, such as AspectIterator.
+	 * @param networkId
+	 * @return
+	 */
+	public static String getPathPrefix(String networkId) {
+		return getNetworkDir(networkId).getParent().toString() + "/";
+	}
+
+	public static String getPathPrefix(UUID networkId) {
+		return getPathPrefix(networkId.toString());
+	}
+
+	/**
+	 * Create the directory of a new network, and the shard directories above it if needed.
+	 * @param networkId
+	 * @param attrs
+	 * @return the new network directory.
+	 * @throws IOException
+	 */
+	public static Path createNetworkDir(String networkId, FileAttribute<?>... attrs) throws IOException {
+		Path dir = getNetworkDir(networkId);
+		Files.createDirectories(dir.getParent(), attrs);
+		return Files.createDirectory(dir, attrs);
+	}
+
+	public static Path createNetworkDir(UUID networkId, FileAttribute<?>... attrs) throws IOException {
+		return createNetworkDir(networkId.toString(), attrs);
+	}
+
+	/**
+	 * Delete the directory of a network, and the symbolic link to it in the old layout if there is one.
+	 * @param networkId
+	 * @throws IOException
+	 */
+	public static void deleteNetworkDir(String networkId) throws IOException {
+		Path dir = getNetworkDir(networkId);
+		FileUtils.deleteDirectory(dir.toFile());
+		Path legacyDir = getLegacyNetworkDir(getDataDir(), networkId);
+		if ( Files.isSymbolicLink(legacyDir))
+			Files.delete(legacyDir);
+	}
+
+	public static void deleteNetworkDir(UUID networkId) throws IOException {
+		deleteNetworkDir(networkId.toString());
+	}
+
+	/**
+	 * List the directories of all the networks in the data store, in both layouts. Symbolic links left in the old
+	 * layout by the migration tool are skipped, so each network is listed once.
+	 * @param dataDir
+	 * @return
+	 * @throws IOException
+	 */
+	public static List<Path> listNetworkDirs(Path dataDir) throws IOException {
+		List<Path> result = new ArrayList<>();
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(dataDir)) {
+			for ( Path entry : entries) {
+				String name = entry.getFileName().toString();
+				if ( isShardName(name) && Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+					try (DirectoryStream<Path> shards = Files.newDirectoryStream(entry)) {
+						for ( Path shard : shards) {
+							if ( isShardName(shard.getFileName().toString()) && Files.isDirectory(shard, LinkOption.NOFOLLOW_LINKS))
+								addNetworkDirs(shard, result);
+						}
+					}
+				} else if ( isNetworkDirName(name) && Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+					result.add(entry);
+				}
+			}
+		}
+		return result;
+	}
+
+	private static void addNetworkDirs(Path shardDir, List<Path> result) throws IOException {
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(shardDir)) {
+			for ( Path entry : entries) {
+				if ( isNetworkDirName(entry.getFileName().toString()) && Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS))
+					result.add(entry);
+			}
+		}
+	}
+
+	private static boolean isShardName(String name) {
+		return name.length() == 2 && Character.digit(name.charAt(0), 16) >= 0 && Character.digit(name.charAt(1), 16) >= 0;
+	}
+
+	static boolean isNetworkDirName(String name) {
+		if ( name.length() != 36)
+			return false;
+		try {
+			UUID.fromString(name);
+			return true;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,705 @@
+package org.ndexbio.common.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.ndexbio.rest.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * Stores all the aspect files of a network (the aspects and aspects_cx2 directories) in one file,
+ * NdexRoot/data/&lt;uuid&gt;/aspects.seg, to save inodes and make directory scans and backups of the data directory faster.
+ *
+ * The segment file starts with a header that indexes the aspects, followed by the aspect contents laid out
+ * contiguously. Each aspect is stored with the same bytes as its aspect file (compressed or not), so an aspect
+ * is read as a byte range of the segment file. The symbolic links in aspects_cx2 are stored as links to the entry
+ * of the aspect in the aspects directory, they don't take any space in the file.
+ *
+ * Header layout:
+ * <pre>
+ *   "NDXSEG01"
+ *   int      number of entries
+ *   entries: UTF name ("aspects/nodes", "aspects_cx2/edges" ...), UTF link target ("" for aspects with content),
+ *            long offset, long length, long CRC32 of the content
+ * </pre>
+ *
+ * Readers look an aspect up in the segment file first and in the aspect directories second. The aspects of a packed
+ * network are updated by writing aspect files into the aspect directories and folding them into a new segment file
+ * with {@link #update(Path, Set)} or {@link #replaceDirectory(Path, String)} once the last one is written, before
+ * they are read back. New networks are packed by {@link #packIfEnabled(Path)} after the last aspect is written when
+ * NDEX_ASPECT_SEGMENT is set to true in ndex.properties.
+ *
+ * Packing is only done while the caller holds the network lock (NetworkDAO.lockNetwork), so only one writer changes
+ * the aspects of a network at a time. The lookups of the readers of this server share a per-network lock, which
+ * packing takes exclusively while it replaces the segment file and removes the aspect directories; a reader that
+ * misses the aspect file because another server packed the network in between looks in the segment file again.
+ */
+public final class NetworkSegment implements Closeable {
+
+	public static final String SEGMENT_PROPERTY = "NDEX_ASPECT_SEGMENT";
+
+	public static final String segmentFileName = "aspects.seg";
+
+	private static final byte[] MAGIC = {'N','D','X','S','E','G','0','1'};
+
+	private static final String[] aspectDirNames = {CXNetworkLoader.CX1AspectDir, CX2NetworkLoader.cx2AspectDirName};
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	static Logger logger = LoggerFactory.getLogger(NetworkSegment.class);
+
+	// shared by the lookups of the readers, taken exclusively when the segment file is replaced.
+	private static final Striped<ReadWriteLock> networkLocks = Striped.lazyWeakReadWriteLock(256);
+
+	private static class Entry {
+		String name;
+		String linkTarget;
+		long offset;
+		long length;
+		long crc;
+
+		Entry(String name, String linkTarget, long offset, long length, long crc) {
+			this.name = name;
+			this.linkTarget = linkTarget;
+			this.offset = offset;
+			this.length = length;
+			this.crc = crc;
+		}
+	}
+
+	private Path segmentFile;
+	private FileChannel channel;
+	private Map<String,Entry> index;
+
+	private NetworkSegment(Path segmentFile, FileChannel channel, Map<String,Entry> index) {
+		this.segmentFile = segmentFile;
+		this.channel = channel;
+		this.index = index;
+	}
+
+	/**
+	 *
+	 * @return true if new networks are packed into segment files on this server.
+	 */
+	public static boolean isEnabled() {
+		Configuration config = Configuration.getInstance();
+		if ( config == null)
+			return false;
+		return Boolean.parseBoolean(config.getProperty(SEGMENT_PROPERTY));
+	}
+
+	/**
+	 * Open the segment file of a network. All the reads from the returned object are from the same version of the
+	 * segment file, even if the network is packed again while it is open.
+	 * @param networkDir the network directory, NdexRoot/data/&lt;uuid&gt;
+	 * @return null if the network has no segment file.
+	 * @throws IOException
+	 */
+	public static NetworkSegment open(Path networkDir) throws IOException {
+		return openFile(networkDir.resolve(segmentFileName));
+	}
+
+	private static NetworkSegment openFile(Path segFile) throws IOException {
+		FileChannel ch;
+		try {
+			ch = FileChannel.open(segFile, StandardOpenOption.READ);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+		try {
+			// don't close this stream, it would close the channel.
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new RangeInputStream(ch, 0, ch.size(), false), 8192));
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			for ( int i = 0; i < MAGIC.length; i++) {
+				if ( magic[i] != MAGIC[i])
+					throw new IOException(segFile + " is not an aspect segment file.");
+			}
+			int count = in.readInt();
+			Map<String,Entry> index = new LinkedHashMap<>();
+			for ( int i = 0; i < count; i++) {
+				Entry e = new Entry(in.readUTF(), in.readUTF(), in.readLong(), in.readLong(), in.readLong());
+				index.put(e.name, e);
+			}
+			return new NetworkSegment(segFile, ch, index);
+		} catch (IOException | RuntimeException e) {
+			ch.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Entry name of an aspect file, for example "aspects_cx2/nodes".
+	 */
+	static String entryName(String aspectDirName, String aspectName) {
+		return aspectDirName + "/" + aspectName;
+	}
+
+	private static ReadWriteLock getLock(Path networkDir) {
+		return networkLocks.get(networkDir.toAbsolutePath().normalize());
+	}
+
+	/**
+	 * Open the stored bytes of an aspect of a network, from its segment file if the aspect is in it, otherwise from
+	 * the aspect file.
+	 * @param aspectFile path of the aspect file, NdexRoot/data/&lt;uuid&gt;/&lt;aspect dir&gt;/&lt;aspect name&gt;.
+	 * @throws FileNotFoundException if the network doesn't have the aspect.
+	 */
+	static InputStream openAspect(Path aspectFile) throws IOException {
+		Path networkDir = getNetworkDir(aspectFile);
+		if ( networkDir == null)
+			return new FileInputStream(aspectFile.toFile());
+		Lock l = getLock(networkDir).readLock();
+		l.lock();
+		try {
+			InputStream in = openEntry(networkDir, aspectFile);
+			if ( in != null)
+				return in;
+			try {
+				return new FileInputStream(aspectFile.toFile());
+			} catch (FileNotFoundException e) {
+				// packed by another server in between.
+				in = openEntry(networkDir, aspectFile);
+				if ( in == null)
+					throw e;
+				return in;
+			}
+		} finally {
+			l.unlock();
+		}
+	}
+
+	/**
+	 * Check if a network has an aspect, in its segment file or as an aspect file.
+	 * @param aspectFile path of the aspect file, NdexRoot/data/&lt;uuid&gt;/&lt;aspect dir&gt;/&lt;aspect name&gt;.
+	 * @throws IOException
+	 */
+	static boolean aspectExists(Path aspectFile) throws IOException {
+		Path networkDir = getNetworkDir(aspectFile);
+		if ( networkDir == null)
+			return Files.exists(aspectFile);
+		Lock l = getLock(networkDir).readLock();
+		l.lock();
+		try {
+			return containsAspect(aspectFile) || Files.exists(aspectFile) || containsAspect(aspectFile);
+		} finally {
+			l.unlock();
+		}
+	}
+
+	/**
+	 * Check if a network has any aspect in an aspect directory, in its segment file or as aspect files.
+	 * @param aspectDir NdexRoot/data/&lt;uuid&gt;/&lt;aspect dir&gt;
+	 * @throws IOException
+	 */
+	static boolean aspectDirectoryExists(Path aspectDir) throws IOException {
+		Path networkDir = aspectDir.getParent();
+		if ( networkDir == null)
+			return Files.isDirectory(aspectDir);
+		Lock l = getLock(networkDir).readLock();
+		l.lock();
+		try {
+			return containsAspectDirectory(aspectDir) || Files.isDirectory(aspectDir) ||
+					containsAspectDirectory(aspectDir);
+		} finally {
+			l.unlock();
+		}
+	}
+
+	// null if the network has no segment file or the aspect is not in it.
+	private static InputStream openEntry(Path networkDir, Path aspectFile) throws IOException {
+		NetworkSegment seg = open(networkDir);
+		if ( seg == null)
+			return null;
+		Entry e = seg.resolve(entryName(aspectFile.getParent().getFileName().toString(), aspectFile.getFileName().toString()));
+		if ( e == null) {
+			seg.close();
+			return null;
+		}
+		// the stream owns the channel of the segment.
+		return new RangeInputStream(seg.channel, e.offset, e.length, true, e.crc);
+	}
+
+	/**
+	 *
+	 * @param aspectFile path of the aspect file, NdexRoot/data/&lt;uuid&gt;/&lt;aspect dir&gt;/&lt;aspect name&gt;.
+	 * @return true if the network has a segment file and the aspect is stored in it.
+	 * @throws IOException
+	 */
+	static boolean containsAspect(Path aspectFile) throws IOException {
+		Path networkDir = getNetworkDir(aspectFile);
+		if ( networkDir == null)
+			return false;
+		try (NetworkSegment seg = open(networkDir)) {
+			return seg != null && seg.resolve(entryName(aspectFile.getParent().getFileName().toString(),
+					aspectFile.getFileName().toString())) != null;
+		}
+	}
+
+	/**
+	 * @param aspectDir NdexRoot/data/&lt;uuid&gt;/&lt;aspect dir&gt;
+	 * @return true if the segment file of the network has at least one aspect in the given aspect directory.
+	 * @throws IOException
+	 */
+	static boolean containsAspectDirectory(Path aspectDir) throws IOException {
+		Path networkDir = aspectDir.getParent();
+		if ( networkDir == null)
+			return false;
+		try (NetworkSegment seg = open(networkDir)) {
+			return seg != null && !seg.list(aspectDir.getFileName().toString()).isEmpty();
+		}
+	}
+
+	private static Path getNetworkDir(Path aspectFile) {
+		Path aspectDir = aspectFile.getParent();
+		if ( aspectDir == null || aspectDir.getFileName() == null)
+			return null;
+		return aspectDir.getParent();
+	}
+
+	private Entry resolve(String name) {
+		Entry e = index.get(name);
+		if ( e != null && !e.linkTarget.isEmpty())
+			e = index.get(e.linkTarget);
+		return e;
+	}
+
+	public boolean contains(String entryName) {
+		return resolve(entryName) != null;
+	}
+
+	/**
+	 * @param aspectDirName
+	 * @return names of the aspects in the given aspect directory.
+	 */
+	public List<String> list(String aspectDirName) {
+		String prefix = aspectDirName + "/";
+		List<String> result = new ArrayList<>();
+		for ( String name : index.keySet()) {
+			if ( name.startsWith(prefix))
+				result.add(name.substring(prefix.length()));
+		}
+		return result;
+	}
+
+	/**
+	 * Get the stored bytes of an aspect. The stream is only valid while this segment is open.
+	 * @param entryName
+	 * @return
+	 * @throws NoSuchFileException if the aspect is not in this segment.
+	 */
+	public InputStream newInputStream(String entryName) throws IOException {
+		Entry e = resolve(entryName);
+		if ( e == null)
+			throw new NoSuchFileException(segmentFile + ":" + entryName);
+		return new RangeInputStream(channel, e.offset, e.length, false, e.crc);
+	}
+
+	/**
+	 * Check the content of all the aspects against their checksums.
+	 * @throws IOException if an aspect is corrupted.
+	 */
+	public void verify() throws IOException {
+		byte[] buf = new byte[BUFFER_SIZE];
+		for ( Entry e : index.values()) {
+			if ( !e.linkTarget.isEmpty()) {
+				if ( resolve(e.name) == null)
+					throw new IOException("Link " + e.name + " in " + segmentFile + " points to a missing aspect " + e.linkTarget);
+				continue;
+			}
+			try (InputStream in = newInputStream(e.name)) {
+				while ( in.read(buf) >= 0) {
+					// the stream checks the checksum at the end of the aspect.
+				}
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Pack the aspect files of a network into its segment file if segment files are enabled on this server,
+	 * or if the network was already packed. Called after the aspects of a network are (re)created. A failure is
+	 * only logged, the aspect files are kept in that case.
+	 * @param networkDir
+	 */
+	public static void packIfEnabled(Path networkDir) {
+		if ( !isEnabled() && !Files.exists(networkDir.resolve(segmentFileName)))
+			return;
+		try {
+			pack(networkDir);
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Failed to pack the aspects in " + networkDir + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Write the aspect files and the existing segment entries of a network into a new segment file and remove the
+	 * aspect directories. An aspect file replaces the segment entry with the same name. The caller holds the network
+	 * lock and has written all the aspects.
+	 * @param networkDir
+	 * @return false if the network has no aspects.
+	 * @throws IOException
+	 */
+	public static boolean pack(Path networkDir) throws IOException {
+		return pack(networkDir, Collections.emptySet());
+	}
+
+	/**
+	 * Finish an in-place update of the aspects of a packed network: fold the aspect files written by the update into
+	 * the segment file and drop the removed aspects from it, with one rewrite of the segment file. Does nothing if
+	 * the network is not packed.
+	 * @param networkDir
+	 * @param removedEntries entry names of the removed aspects, see {@link #entryName(String, String)}.
+	 * @throws IOException
+	 */
+	static void update(Path networkDir, Set<String> removedEntries) throws IOException {
+		if ( Files.exists(networkDir.resolve(segmentFileName)))
+			pack(networkDir, removedEntries);
+	}
+
+	/**
+	 * Replace all the aspects of an aspect directory in the segment file of a packed network by the aspect files
+	 * that were written into that directory. Called after the aspects in that directory are recreated. Does nothing
+	 * if the network is not packed.
+	 * @param networkDir
+	 * @param aspectDirName
+	 * @throws IOException
+	 */
+	public static void replaceDirectory(Path networkDir, String aspectDirName) throws IOException {
+		Set<String> removed = new TreeSet<>();
+		try (NetworkSegment seg = open(networkDir)) {
+			if ( seg == null)
+				return;
+			for ( String name : seg.list(aspectDirName))
+				removed.add(entryName(aspectDirName, name));
+		}
+		pack(networkDir, removed);
+	}
+
+	// the removed entries are dropped from the old segment, aspect files with the same names are still packed.
+	private static boolean pack(Path networkDir, Set<String> removed) throws IOException {
+		Path segFile = networkDir.resolve(segmentFileName);
+		Path tmpFile = networkDir.resolve(segmentFileName + "-" + Thread.currentThread().getId() + "-" +
+				Calendar.getInstance().getTimeInMillis());
+
+		try (NetworkSegment old = open(networkDir)) {
+			// entry name -> aspect file, or null if the content comes from the old segment.
+			Map<String,Path> contents = new LinkedHashMap<>();
+			Map<String,String> links = new LinkedHashMap<>();
+			boolean changed = old == null;
+
+			if ( old != null) {
+				for ( Entry e : old.index.values()) {
+					if ( removed.contains(e.name)) {
+						changed = true;
+						continue;
+					}
+					if ( e.linkTarget.isEmpty())
+						contents.put(e.name, null);
+					else
+						links.put(e.name, e.linkTarget);
+				}
+			}
+
+			for ( String dirName : aspectDirNames) {
+				Path aspectDir = networkDir.resolve(dirName);
+				if ( !Files.isDirectory(aspectDir))
+					continue;
+				changed = true;
+				try (DirectoryStream<Path> files = Files.newDirectoryStream(aspectDir)) {
+					for ( Path f : files) {
+						String name = entryName(dirName, f.getFileName().toString());
+						if ( Files.isSymbolicLink(f)) {
+							String target = getLinkTarget(networkDir, f);
+							if ( target != null) {
+								links.put(name, target);
+								contents.remove(name);
+								continue;
+							}
+						}
+						if ( Files.isRegularFile(f)) {
+							contents.put(name, f);
+							links.remove(name);
+						}
+					}
+				}
+			}
+
+			// already packed, nothing was written or removed since.
+			if ( !changed)
+				return true;
+
+			links.values().removeIf(t -> !contents.containsKey(t));
+
+			if ( contents.isEmpty() && links.isEmpty()) {
+				if ( old == null)
+					return false;
+				replace(networkDir, null, segFile);
+				return false;
+			}
+
+			try {
+				writeSegment(tmpFile, old, contents, links);
+				try (NetworkSegment seg = openFile(tmpFile)) {
+					seg.verify();
+				}
+				replace(networkDir, tmpFile, segFile);
+			} finally {
+				Files.deleteIfExists(tmpFile);
+			}
+		}
+		return true;
+	}
+
+	// move the new segment file in place, or remove the old one if newSegFile is null, and remove the aspect directories.
+	private static void replace(Path networkDir, Path newSegFile, Path segFile) throws IOException {
+		Lock l = getLock(networkDir).writeLock();
+		l.lock();
+		try {
+			if ( newSegFile != null)
+				Files.move(newSegFile, segFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			else
+				Files.deleteIfExists(segFile);
+			for ( String dirName : aspectDirNames) {
+				Path aspectDir = networkDir.resolve(dirName);
+				if ( Files.exists(aspectDir))
+					FileUtils.deleteDirectory(aspectDir.toFile());
+			}
+		} finally {
+			l.unlock();
+		}
+	}
+
+	// entry name of the aspect that a symbolic link points to, null if it points outside of the aspect directories.
+	// The target can be an aspect that is only in the segment file, the link is dropped later if it isn't there either.
+	private static String getLinkTarget(Path networkDir, Path link) throws IOException {
+		Path target = link.getParent().resolve(Files.readSymbolicLink(link)).normalize();
+		Path targetDir = target.getParent();
+		if ( targetDir == null || !networkDir.toAbsolutePath().normalize().equals(targetDir.getParent()))
+			return null;
+		String dirName = targetDir.getFileName().toString();
+		for ( String d : aspectDirNames) {
+			if ( d.equals(dirName))
+				return entryName(dirName, target.getFileName().toString());
+		}
+		return null;
+	}
+
+	private static void writeSegment(Path segFile, NetworkSegment old, Map<String,Path> contents,
+			Map<String,String> links) throws IOException {
+		List<Entry> entries = new ArrayList<>();
+		for ( String name : contents.keySet())
+			entries.add(new Entry(name, "", 0, 0, 0));
+		for ( Map.Entry<String,String> l : links.entrySet())
+			entries.add(new Entry(l.getKey(), l.getValue(), 0, 0, 0));
+
+		int headerSize = encodeHeader(entries).length;
+
+		try (FileChannel ch = FileChannel.open(segFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			ch.position(headerSize);
+			OutputStream out = new BufferedOutputStream(Channels.newOutputStream(ch), BUFFER_SIZE);
+			long offset = headerSize;
+			byte[] buf = new byte[BUFFER_SIZE];
+			for ( Entry e : entries) {
+				if ( !e.linkTarget.isEmpty())
+					continue;
+				Path f = contents.get(e.name);
+				CRC32 crc = new CRC32();
+				long length = 0;
+				try (InputStream in = f != null ? Files.newInputStream(f) : old.newInputStream(e.name)) {
+					int n;
+					while ( (n = in.read(buf)) >= 0) {
+						out.write(buf, 0, n);
+						crc.update(buf, 0, n);
+						length += n;
+					}
+				}
+				e.offset = offset;
+				e.length = length;
+				e.crc = crc.getValue();
+				offset += length;
+			}
+			out.flush();
+
+			ch.position(0);
+			ByteBuffer header = ByteBuffer.wrap(encodeHeader(entries));
+			while ( header.hasRemaining())
+				ch.write(header);
+			ch.force(true);
+		}
+	}
+
+	private static byte[] encodeHeader(List<Entry> entries) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.write(MAGIC);
+			out.writeInt(entries.size());
+			for ( Entry e : entries) {
+				out.writeUTF(e.name);
+				out.writeUTF(e.linkTarget);
+				out.writeLong(e.offset);
+				out.writeLong(e.length);
+				out.writeLong(e.crc);
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Restore the aspect files of a network from its segment file and remove the segment file.
+	 * @param networkDir
+	 * @return false if the network has no segment file.
+	 * @throws IOException
+	 */
+	public static boolean unpack(Path networkDir) throws IOException {
+		try (NetworkSegment seg = open(networkDir)) {
+			if ( seg == null)
+				return false;
+			seg.verify();
+			for ( Entry e : seg.index.values()) {
+				Path f = networkDir.resolve(e.name);
+				Files.createDirectories(f.getParent());
+				if ( Files.exists(f, LinkOption.NOFOLLOW_LINKS))
+					continue;   // aspect files take precedence over the segment.
+				if ( e.linkTarget.isEmpty()) {
+					Path tmpFile = f.resolveSibling(f.getFileName() + "-" + Thread.currentThread().getId() + "-" +
+							Calendar.getInstance().getTimeInMillis());
+					try {
+						try (InputStream in = seg.newInputStream(e.name)) {
+							Files.copy(in, tmpFile);
+						}
+						Files.move(tmpFile, f, StandardCopyOption.ATOMIC_MOVE);
+					} finally {
+						Files.deleteIfExists(tmpFile);
+					}
+				}
+			}
+			for ( Entry e : seg.index.values()) {
+				Path f = networkDir.resolve(e.name);
+				if ( !e.linkTarget.isEmpty() && !Files.exists(f, LinkOption.NOFOLLOW_LINKS))
+					Files.createSymbolicLink(f, networkDir.resolve(e.linkTarget));
+			}
+		}
+		Files.delete(networkDir.resolve(segmentFileName));
+		return true;
+	}
+
+	/**
+	 * Reads a byte range of the segment file with positional reads, so several streams can share one channel.
+	 * When the whole range is read, the content is checked against its checksum.
+	 */
+	private static class RangeInputStream extends InputStream {
+		private FileChannel ch;
+		private long position;
+		private long end;
+		private boolean closeChannel;
+		private CRC32 crc;
+		private long expectedCrc;
+
+		RangeInputStream(FileChannel ch, long offset, long length, boolean closeChannel) {
+			this.ch = ch;
+			this.position = offset;
+			this.end = offset + length;
+			this.closeChannel = closeChannel;
+			this.crc = null;
+		}
+
+		RangeInputStream(FileChannel ch, long offset, long length, boolean closeChannel, long expectedCrc) {
+			this(ch, offset, length, closeChannel);
+			this.crc = new CRC32();
+			this.expectedCrc = expectedCrc;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int n = read(b, 0, 1);
+			return n < 0 ? -1 : (b[0] & 0xFF);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if ( len == 0)
+				return 0;
+			if ( position >= end) {
+				checkCrc();
+				return -1;
+			}
+			ByteBuffer buf = ByteBuffer.wrap(b, off, (int) Math.min(len, end - position));
+			int n = ch.read(buf, position);
+			if ( n < 0)
+				throw new IOException("Unexpected end of aspect segment file.");
+			if ( crc != null)
+				crc.update(b, off, n);
+			position += n;
+			return n;
+		}
+
+		private void checkCrc() throws IOException {
+			if ( crc != null) {
+				long v = crc.getValue();
+				crc = null;
+				if ( v != expectedCrc)
+					throw new IOException("Checksum mismatch in aspect segment file.");
+			}
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = Math.max(0, Math.min(n, end - position));
+			position += skipped;
+			if ( skipped > 0)
+				crc = null;   // can't check the checksum of a partial read.
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(Integer.MAX_VALUE, end - position);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if ( closeChannel)
+				ch.close();
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package org.ndexbio.common.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Iterates the elements of an aspect stored as a JSON text sequence, parsing the elements on all the cores of the
+ * server. The aspect is read in chunks of whole lines, each chunk is parsed by a worker thread and the elements are
+ * returned in the order they are stored.
+ *
+ * The chunks that are read ahead take a permit from a semaphore shared by all the iterators, so at most 2 chunks
+ * per core are held in memory on the whole server. An iterator that can't get a permit and has no chunk in flight
+ * parses the next chunk on the calling thread, so it never waits for the other iterators.
+ *
+ * Aspects stored as a JSON array are parsed sequentially on the calling thread.
+ *
+ * Create instances with {@link AspectStorage#newParallelAspectIterator(String, Class)}. The parser threads are
+ * stopped by {@link #shutdown()} when the server shuts down.
+ *
+ * Read and parse errors are thrown from hasNext() and next() as UncheckedIOException.
+ *
+ * @param <E>
+ */
+public class ParallelAspectIterator<E> implements Iterator<E>, Closeable {
+
+	private static final int PARSER_THREADS = Runtime.getRuntime().availableProcessors();
+
+	private static final int maxChunksInFlight = 2 * PARSER_THREADS;
+
+	private static final Semaphore readAhead = new Semaphore(maxChunksInFlight);
+
+	private static ExecutorService parserPool = null;
+
+	private static boolean isShutdown = false;
+
+	static final int defaultChunkSize = 4 * 1024 * 1024;
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private InputStream in;
+	private ObjectReader reader;
+	private Iterator<E> current;
+
+	// fields used for JSON text sequences
+	private boolean isSequence;
+	private int chunkSize;
+	private byte[] carry;
+	private boolean eof;
+	private Deque<Future<List<E>>> pending;
+
+	/**
+	 * @param in the aspect content. If isSequence is true, this is the raw JSON text sequence, otherwise a JSON array.
+	 */
+	ParallelAspectIterator(InputStream in, Class<E> cls, boolean isSequence, int chunkSize) throws IOException {
+		this.in = in;
+		this.reader = mapper.readerFor(cls);
+		this.isSequence = isSequence;
+		if ( isSequence) {
+			this.chunkSize = chunkSize;
+			carry = new byte[0];
+			eof = false;
+			pending = new ArrayDeque<>();
+			current = Collections.emptyIterator();
+		} else {
+			current = reader.readValues(in);
+		}
+	}
+
+	/**
+	 * An iterator with no elements, used for missing aspects.
+	 */
+	ParallelAspectIterator() {
+		current = Collections.emptyIterator();
+		isSequence = false;
+	}
+
+	/**
+	 * @return the parser threads, or null after the server is shut down and the chunks are parsed on the calling thread.
+	 */
+	private static synchronized ExecutorService getParserPool() {
+		if ( parserPool == null && !isShutdown) {
+			parserPool = Executors.newFixedThreadPool(PARSER_THREADS, r -> {
+				Thread t = new Thread(r, "aspect-parser");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return parserPool;
+	}
+
+	/**
+	 * Stop the parser threads. Called when the server shuts down.
+	 */
+	public static void shutdown() {
+		ExecutorService pool;
+		synchronized (ParallelAspectIterator.class) {
+			isShutdown = true;
+			pool = parserPool;
+			parserPool = null;
+		}
+		if ( pool != null) {
+			pool.shutdownNow();
+			try {
+				pool.awaitTermination(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	static int availableReadAheadPermits() {
+		return readAhead.availablePermits();
+	}
+
+	@Override
+	public boolean hasNext() {
+		if ( !isSequence)
+			return current.hasNext();
+
+		while ( !current.hasNext()) {
+			try {
+				fill();
+				if ( current.hasNext())   // parsed on this thread
+					break;
+				Future<List<E>> next = pending.poll();
+				if ( next == null) {
+					if ( eof && carry.length == 0)
+						return false;
+					continue;
+				}
+				try {
+					current = next.get().iterator();
+				} finally {
+					readAhead.release();
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to read aspect: " + e.getMessage(), e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if ( cause instanceof IOException)
+					throw new UncheckedIOException("Failed to parse aspect: " + cause.getMessage(), (IOException) cause);
+				if ( cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				throw new UncheckedIOException(new IOException("Failed to parse aspect: " + cause.getMessage(), cause));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new UncheckedIOException(new InterruptedIOException("Interrupted while parsing aspect."));
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public E next() {
+		if ( !hasNext())
+			throw new NoSuchElementException();
+		return current.next();
+	}
+
+	// submit chunks to the parser threads while read-ahead permits are available. When the iterator has
+	// nothing in flight and no permit is available, the next chunk is parsed on this thread.
+	private void fill() throws IOException {
+		while ( pending.size() < maxChunksInFlight) {
+			ExecutorService pool = getParserPool();
+			if ( pool == null || !readAhead.tryAcquire()) {
+				if ( pending.isEmpty())
+					current = parseChunk(nextChunk()).iterator();
+				return;
+			}
+			byte[] chunk;
+			try {
+				chunk = nextChunk();
+			} catch (IOException | RuntimeException e) {
+				readAhead.release();
+				throw e;
+			}
+			if ( chunk == null) {
+				readAhead.release();
+				return;
+			}
+			try {
+				pending.add(pool.submit(() -> parseChunk(chunk)));
+			} catch (RejectedExecutionException e) {
+				// shut down while the aspect was read, parse the chunk here after the ones in flight.
+				FutureTask<List<E>> task = new FutureTask<>(() -> parseChunk(chunk));
+				task.run();
+				pending.add(task);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Read the next chunk of whole lines from the input.
+	 * @return null if there is no more data.
+	 */
+	private byte[] nextChunk() throws IOException {
+		if ( eof && carry.length == 0)
+			return null;
+
+		byte[] buf = Arrays.copyOf(carry, Math.max(chunkSize, carry.length * 2));
+		int n = carry.length;
+		while (true) {
+			while ( !eof && n < buf.length) {
+				int r = in.read(buf, n, buf.length - n);
+				if ( r < 0)
+					eof = true;
+				else
+					n += r;
+			}
+
+			int end = n - 1;
+			while ( end >= 0 && buf[end] != '\n')
+				end--;
+
+			if ( end >= 0) {
+				carry = Arrays.copyOfRange(buf, end + 1, n);
+				return end + 1 == buf.length ? buf : Arrays.copyOf(buf, end + 1);
+			}
+			if ( eof) {
+				// last line without a line feed.
+				carry = new byte[0];
+				return n > 0 ? Arrays.copyOf(buf, n) : null;
+			}
+			// a single element is larger than the buffer.
+			buf = Arrays.copyOf(buf, buf.length * 2);
+		}
+	}
+
+	private List<E> parseChunk(byte[] chunk) throws IOException {
+		if ( chunk == null)
+			return Collections.emptyList();
+		List<E> result = new ArrayList<>();
+		int start = 0;
+		for ( int i = 0; i <= chunk.length; i++) {
+			if ( i == chunk.length || chunk[i] == '\n') {
+				int s = start;
+				if ( s < i && chunk[s] == JsonSeqOutputStream.RS)
+					s++;
+				if ( s < i)
+					result.add(reader.readValue(chunk, s, i - s));
+				start = i + 1;
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if ( pending != null) {
+			for ( Future<List<E>> f : pending) {
+				f.cancel(false);
+				readAhead.release();
+			}
+			pending.clear();
+		}
+		if ( in != null)
+			in.close();
+	}
+}
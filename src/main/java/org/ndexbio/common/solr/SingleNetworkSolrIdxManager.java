@@ -31,9 +31,8 @@
 package org.ndexbio.common.solr;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -57,7 +56,9 @@ import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.util.NamedList;
+import org.ndexbio.common.persistence.AspectStorage;
 import org.ndexbio.common.persistence.CX2NetworkLoader;
+import org.ndexbio.common.persistence.NetworkPathResolver;
 import org.ndexbio.cx2.aspect.element.core.CxAttributeDeclaration;
 import org.ndexbio.cx2.aspect.element.core.CxNode;
 import org.ndexbio.cx2.aspect.element.core.DeclarationEntry;
@@ -342,7 +343,7 @@ public class SingleNetworkSolrIdxManager implements AutoCloseable{
 /*	private static Map<Long,NodeIndexEntry> createIndexDocs(String coreName) throws JsonProcessingException, IOException, NdexException {
 		Map<Long,NodeIndexEntry> result = new TreeMap<> ();
 		
-		String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + coreName + "/aspects/"; 
+		String pathPrefix = NetworkPathResolver.getNetworkDirPath(coreName) + "/aspects/"; 
 	
 		//go through node aspect
 		try (FileInputStream inputStream = new FileInputStream(pathPrefix + "nodes")) {
@@ -390,7 +391,7 @@ public class SingleNetworkSolrIdxManager implements AutoCloseable{
 		//go through node attributes to find aliases
 
 		try (AspectIterator<NodeAttributesElement> it = new AspectIterator<>(coreName,NodeAttributesElement.ASPECT_NAME, 
-				   NodeAttributesElement.class, Configuration.getInstance().getNdexRoot() + "/data/")) {
+				   NodeAttributesElement.class, NetworkPathResolver.getPathPrefix(coreName))) {
 	//	try (FileInputStream inputStream = new FileInputStream(pathPrefix + NodeAttributesElement.ASPECT_NAME)) {
 
 	//		Iterator<NodeAttributesElement> it = new ObjectMapper().readerFor(NodeAttributesElement.class).readValues(inputStream);
@@ -441,16 +442,16 @@ public class SingleNetworkSolrIdxManager implements AutoCloseable{
 	private static  Map<Long,NodeIndexEntry> createIndexDocsFromCx2(String coreName) throws JsonProcessingException, IOException {
 		Map<Long,NodeIndexEntry> result = new TreeMap<> ();
 		
-		String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + coreName + "/" + CX2NetworkLoader.cx2AspectDirName + "/"; 
+		String pathPrefix = NetworkPathResolver.getNetworkDirPath(coreName) + "/" + CX2NetworkLoader.cx2AspectDirName + "/"; 
 	
 		ObjectMapper om = new ObjectMapper();
 		
 		//create the attribute name mapping table from attribute declaration
 		File declFile = new File(pathPrefix + CxAttributeDeclaration.ASPECT_NAME);
-		if (!declFile.exists())
+		if (!AspectStorage.aspectExists(declFile))
 			return result;
 		
-		CxAttributeDeclaration[] declarations = om.readValue(declFile, 
+		CxAttributeDeclaration[] declarations = AspectStorage.readValue(declFile, 
 				CxAttributeDeclaration[].class); 
 		
 		if ( declarations.length == 0 || ! declarations[0].getDeclarations().containsKey(CxNode.ASPECT_NAME))
@@ -480,7 +481,7 @@ public class SingleNetworkSolrIdxManager implements AutoCloseable{
 		}
 		
 		//go through node aspect
-		try (FileInputStream inputStream = new FileInputStream(pathPrefix + "nodes")) {
+		try (InputStream inputStream = AspectStorage.newAspectInputStream(pathPrefix + "nodes")) {
 
 			Iterator<CxNode> it = om.readerFor(CxNode.class).readValues(inputStream);
 
@@ -574,8 +575,8 @@ public class SingleNetworkSolrIdxManager implements AutoCloseable{
 		// go through Function Term if it exists
 		java.nio.file.Path functionTermAspect = Paths.get(pathPrefix + FunctionTermElement.ASPECT_NAME);
 
-		if ( Files.exists(functionTermAspect)) { 
-			try (FileInputStream inputStream = new FileInputStream(pathPrefix + FunctionTermElement.ASPECT_NAME)) {
+		if ( AspectStorage.aspectExists(functionTermAspect)) { 
+			try (InputStream inputStream = AspectStorage.newAspectInputStream(pathPrefix + FunctionTermElement.ASPECT_NAME)) {
 
 				Iterator<FunctionTermElement> it = new ObjectMapper().readerFor(FunctionTermElement.class).readValues(inputStream);
 
@@ -19,6 +19,8 @@ import org.ndexbio.cxio.core.AspectIterator;
 import org.ndexbio.common.models.dao.postgresql.GroupDAO;
 import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
 import org.ndexbio.common.models.dao.postgresql.UserDAO;
+import org.ndexbio.common.persistence.AspectStorage;
+import org.ndexbio.common.persistence.NetworkPathResolver;
 import org.ndexbio.cxio.aspects.datamodels.NetworkAttributesElement;
 import org.ndexbio.cxio.aspects.datamodels.NodeAttributesElement;
 import org.ndexbio.cxio.aspects.datamodels.NodesElement;
@@ -90,9 +92,9 @@ public class SolrIndexBuilder implements AutoCloseable {
 					grpMemberships.get(Permissions.WRITE));
 
 				  //process node attribute aspect and add to solr doc
-				  String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" ; 
+				  String pathPrefix = NetworkPathResolver.getPathPrefix(networkid); 
 			
-				  try (AspectIterator<NetworkAttributesElement> it = new AspectIterator<>(networkid.toString(), 
+				  try (AspectIterator<NetworkAttributesElement> it = AspectStorage.newCX1AspectIterator(networkid.toString(), 
 					  NetworkAttributesElement.ASPECT_NAME, NetworkAttributesElement.class, pathPrefix)) {
 					  while (it.hasNext()) {
 						  NetworkAttributesElement e = it.next();
@@ -107,7 +109,7 @@ public class SolrIndexBuilder implements AutoCloseable {
 
 		  
 				  if (summary.getIndexLevel() == NetworkIndexLevel.ALL) {	
-					  try (AspectIterator<FunctionTermElement> it = new AspectIterator<>(networkid.toString(), 
+					  try (AspectIterator<FunctionTermElement> it = AspectStorage.newCX1AspectIterator(networkid.toString(), 
 							  FunctionTermElement.ASPECT_NAME, FunctionTermElement.class, pathPrefix)) {
 						  while (it.hasNext()) {
 							  FunctionTermElement fun = it.next();
@@ -117,7 +119,7 @@ public class SolrIndexBuilder implements AutoCloseable {
 						  }
 					  }
 
-					  try (AspectIterator<NodeAttributesElement> it = new AspectIterator<>(networkid.toString(), 
+					  try (AspectIterator<NodeAttributesElement> it = AspectStorage.newCX1AspectIterator(networkid.toString(), 
 						  NodeAttributesElement.ASPECT_NAME, NodeAttributesElement.class, pathPrefix)) {
 						  while (it.hasNext()) {
 							  NodeAttributesElement e = it.next();					
@@ -125,7 +127,7 @@ public class SolrIndexBuilder implements AutoCloseable {
 						  }
 					  }
 
-					  try (AspectIterator<NodesElement> it = new AspectIterator<>(networkid.toString(), 
+					  try (AspectIterator<NodesElement> it = AspectStorage.newCX1AspectIterator(networkid.toString(), 
 							  NodesElement.ASPECT_NAME, NodesElement.class, pathPrefix)) {
 						  while (it.hasNext()) {
 							  NodesElement e = it.next();					
@@ -178,9 +180,9 @@ public class SolrIndexBuilder implements AutoCloseable {
 					grpMemberships.get(Permissions.WRITE));
 
 				  //process node attribute aspect and add to solr doc
-				  String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" ; 
+				  String pathPrefix = NetworkPathResolver.getPathPrefix(networkid); 
 			
-				  try (AspectIterator<NetworkAttributesElement> it = new AspectIterator<>(networkid.toString(), 
+				  try (AspectIterator<NetworkAttributesElement> it = AspectStorage.newCX1AspectIterator(networkid.toString(), 
 					  NetworkAttributesElement.ASPECT_NAME, NetworkAttributesElement.class, pathPrefix)) {
 					  while (it.hasNext()) {
 						  NetworkAttributesElement e = it.next();
@@ -194,7 +196,7 @@ public class SolrIndexBuilder implements AutoCloseable {
 				  }
 	  
 				  if (summary.getIndexLevel() == NetworkIndexLevel.ALL) {	
-					  try (AspectIterator<FunctionTermElement> it = new AspectIterator<>(networkid.toString(), 
+					  try (AspectIterator<FunctionTermElement> it = AspectStorage.newCX1AspectIterator(networkid.toString(), 
 							  FunctionTermElement.ASPECT_NAME, FunctionTermElement.class, pathPrefix)) {
 						  while (it.hasNext()) {
 							  FunctionTermElement fun = it.next();
@@ -204,7 +206,7 @@ public class SolrIndexBuilder implements AutoCloseable {
 						  }
 					  }
 
-					  try (AspectIterator<NodeAttributesElement> it = new AspectIterator<>(networkid.toString(), 
+					  try (AspectIterator<NodeAttributesElement> it = AspectStorage.newCX1AspectIterator(networkid.toString(), 
 						  NodeAttributesElement.ASPECT_NAME, NodeAttributesElement.class, pathPrefix)) {
 						  while (it.hasNext()) {
 							  NodeAttributesElement e = it.next();					
@@ -212,7 +214,7 @@ public class SolrIndexBuilder implements AutoCloseable {
 						  }
 					  }
 
-					  try (AspectIterator<NodesElement> it = new AspectIterator<>(networkid.toString(), 
+					  try (AspectIterator<NodesElement> it = AspectStorage.newCX1AspectIterator(networkid.toString(), 
 							  NodesElement.ASPECT_NAME, NodesElement.class, pathPrefix)) {
 						  while (it.hasNext()) {
 							  NodesElement e = it.next();					
@@ -39,6 +39,7 @@ import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -83,6 +84,28 @@ public class Configuration
 	private static final String dbUserPropName 	   = "NdexDBUsername";
 	private static final String dbPasswordPropName = "NdexDBDBPassword";
 	
+	// connection pools, see NdexDatabase.
+	public static final String DB_POOL_SIZE = "NdexDBConnectionPoolSize";
+	public static final String DB_POOL_MAX_WAIT = "NdexDBConnectionPoolMaxWait";
+	public static final String DB_BACKGROUND_POOL_SIZE = "NdexDBBackgroundPoolSize";
+	public static final String DB_BACKGROUND_POOL_MAX_WAIT = "NdexDBBackgroundPoolMaxWait";
+	public static final String DB_STATEMENT_CACHE_SIZE = "NdexDBStatementCacheSize";
+	public static final int defaultDBPoolSize = 10;
+	public static final long defaultDBPoolMaxWait = 30;
+	public static final int defaultDBBackgroundPoolSize = 5;
+	public static final long defaultDBBackgroundPoolMaxWait = 600;
+	public static final int defaultDBStatementCacheSize = 200;
+	
+	// read replicas, see NdexDatabase.
+	public static final String DB_REPLICA_URLS = "NdexDBReplicaURLs";
+	public static final String DB_REPLICA_POOL_SIZE = "NdexDBReplicaPoolSize";
+	public static final String DB_REPLICA_STICKY_SECONDS = "NdexDBReplicaStickySeconds";
+	public static final long defaultDBReplicaStickySeconds = 10;
+
+	// how old the counts reported by /admin/status can be.
+	public static final String STATUS_REFRESH_SECONDS = "NdexStatusRefreshSeconds";
+	public static final long defaultStatusRefreshSeconds = 60;
+	
 	public static final String ndexConfigFilePropName = "ndexConfigurationPath";
 	
 	public static final String networkPostEdgeLimit = "NETWORK_POST_ELEMENT_LIMIT";
@@ -450,6 +473,74 @@ public class Configuration
     public String getDBUser() { return _configurationProperties.getProperty(dbUserPropName); }
     public String getDBPasswd () { return _configurationProperties.getProperty(dbPasswordPropName); }
     
+    /**
+     * @return maximum number of connections for API requests.
+     */
+    public int getDBPoolSize() { return (int)getLongProperty(DB_POOL_SIZE, defaultDBPoolSize); }
+    
+    /**
+     * @return how many seconds an API request waits for a database connection before it fails.
+     */
+    public long getDBPoolMaxWait() { return getLongProperty(DB_POOL_MAX_WAIT, defaultDBPoolMaxWait); }
+    
+    /**
+     * @return maximum number of connections for tasks and other background work. 0 makes them share the request pool.
+     */
+    public int getDBBackgroundPoolSize() { return (int)getLongProperty(DB_BACKGROUND_POOL_SIZE, defaultDBBackgroundPoolSize); }
+    
+    /**
+     * @return how many seconds background work waits for a database connection before it fails.
+     */
+    public long getDBBackgroundPoolMaxWait() { return getLongProperty(DB_BACKGROUND_POOL_MAX_WAIT, defaultDBBackgroundPoolMaxWait); }
+    
+    /**
+     * @return number of prepared statements kept open on each connection. 0 turns the statement pooling off.
+     */
+    public int getDBStatementCacheSize() { return (int)getLongProperty(DB_STATEMENT_CACHE_SIZE, defaultDBStatementCacheSize); }
+    
+    /**
+     * @return JDBC URLs of the read replicas of the database, separated by commas in the configuration. Empty if the
+     * server only uses the primary database.
+     */
+    public List<String> getDBReplicaURLs() {
+    	List<String> result = new ArrayList<>();
+    	String value = _configurationProperties.getProperty(DB_REPLICA_URLS);
+    	if ( value != null) {
+    		for ( String url : value.split(",")) {
+    			if ( url.trim().length() > 0)
+    				result.add(url.trim());
+    		}
+    	}
+    	return result;
+    }
+    
+    /**
+     * @return maximum number of connections to each read replica. Defaults to the size of the request pool.
+     */
+    public int getDBReplicaPoolSize() { return (int)getLongProperty(DB_REPLICA_POOL_SIZE, getDBPoolSize()); }
+    
+    /**
+     * @return how many seconds the reads of a user stay on the primary database after the user commits a change.
+     */
+    public long getDBReplicaStickySeconds() { return getLongProperty(DB_REPLICA_STICKY_SECONDS, defaultDBReplicaStickySeconds); }
+    
+    /**
+     * @return how many seconds the network, user and group counts of the server status are kept before they are read again.
+     */
+    public long getStatusRefreshSeconds() { return getLongProperty(STATUS_REFRESH_SECONDS, defaultStatusRefreshSeconds); }
+    
+    private long getLongProperty(String name, long defaultValue) {
+    	String value = _configurationProperties.getProperty(name);
+    	if ( value == null)
+    		return defaultValue;
+    	try {
+    		return Long.parseLong(value.trim());
+    	} catch(NumberFormatException nfe) {
+    		_logger.warn("Unable to convert " + name + " parameter value to a number. Using default value " + defaultValue + " instead.", nfe);
+    	}
+    	return defaultValue;
+    }
+    
 	/**
 	 * Gets admin email address from NdexSystemUserEmail property
 	 * 
@@ -39,10 +39,17 @@ import java.util.jar.Manifest;
 import java.util.logging.Logger;
 
 import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 import org.jboss.resteasy.plugins.server.servlet.HttpServletDispatcher;
 import org.ndexbio.common.access.NdexDatabase;
+import org.ndexbio.common.access.NdexUnitOfWork;
+import org.ndexbio.common.models.dao.postgresql.CacheInvalidationBus;
+import org.ndexbio.common.models.dao.postgresql.NetworkLockManager;
 import org.ndexbio.common.models.dao.postgresql.TaskDAO;
+import org.ndexbio.common.persistence.ParallelAspectIterator;
 import org.ndexbio.common.solr.GroupIndexManager;
 import org.ndexbio.common.solr.NetworkGlobalIndexManager;
 import org.ndexbio.common.solr.UserIndexManager;
@@ -65,7 +72,6 @@ public class NdexHttpServletDispatcher extends HttpServletDispatcher {
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
-	private static final int defaultPoolSize = 10;
 	private Thread  systemTaskProcessorThread;
 	private Thread  clientTaskProcessorThread;
 	private SystemTaskProcessor systemTaskProcessor;
@@ -91,26 +97,17 @@ public class NdexHttpServletDispatcher extends HttpServletDispatcher {
 		try {
 			Configuration configuration = Configuration.createInstance();
 			
-			String poolSize = configuration.getProperty("NdexDBConnectionPoolSize");
-			int size = defaultPoolSize;
-			try {
-				if ( poolSize != null ) {
-					size = Integer.parseInt(poolSize);
-				} 
-			} catch (NumberFormatException e) {
-				logger.warning("NdexDBConnectionPoolSize doesn't have a numeric value in configuration ("+ 
-			e.getMessage() + "). Using default setting " + defaultPoolSize + " instead.");
-			}
-
 			//and initialize the db connections
 	    	
 			NdexDatabase.createNdexDatabase(
 					configuration.getDBURL(),
 	    			configuration.getDBUser(),
-	    			configuration.getDBPasswd(), size);
+	    			configuration.getDBPasswd(), configuration.getDBPoolSize());
     	
 			logger.info("Db created for " + configuration.getDBURL() + " and thread: " + Thread.currentThread().getName());
 
+			CacheInvalidationBus.start();
+
 			// create solr core for network indexes if needed.
 			try (NetworkGlobalIndexManager mgr = new NetworkGlobalIndexManager()) {
 				mgr.createCoreIfNotExists();
@@ -191,6 +188,17 @@ public class NdexHttpServletDispatcher extends HttpServletDispatcher {
 	}
 	
 	
+	/**
+	 * Each request is a unit of work, so the DAOs it opens at the same time share one database connection.
+	 */
+	@Override
+	protected void service(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse)
+			throws ServletException, IOException {
+		try (NdexUnitOfWork work = NdexUnitOfWork.begin()) {
+			super.service(httpServletRequest, httpServletResponse);
+		}
+	}
+	
 	@Override
 	public void destroy() {
 		
@@ -211,6 +219,9 @@ public class NdexHttpServletDispatcher extends HttpServletDispatcher {
         	
         	logger.info("Client task processors stopped. Closing database");
         	
+        	CacheInvalidationBus.shutdown();
+        	ParallelAspectIterator.shutdown();
+        	NetworkLockManager.shutdown();
         	NdexDatabase.close();
 		    logger.info ("Ndex Database connections have been closed.");
         } catch (Exception ee) {
@@ -47,6 +47,8 @@ import org.ndexbio.rest.exceptions.mappers.ForbiddenExceptionMapper;
 import org.ndexbio.rest.exceptions.mappers.NdexExceptionMapper;
 import org.ndexbio.rest.exceptions.mappers.NotSupportedExceptionMapper;
 import org.ndexbio.rest.exceptions.mappers.ObjectNotFoundExceptionMapper;
+import org.ndexbio.rest.exceptions.mappers.PreconditionFailedExceptionMapper;
+import org.ndexbio.rest.exceptions.mappers.ServiceUnavailableExceptionMapper;
 import org.ndexbio.rest.exceptions.mappers.UnauthorizedOperationExceptionMapper;
 //import org.ndexbio.rest.exceptions.mappers.ForbiddenOperationExceptionMapper;
 import org.ndexbio.rest.filters.BasicAuthenticationFilter;
@@ -111,6 +113,8 @@ public class NdexRestApi extends Application
         _providers.add(new DuplicateObjectExceptionMapper());
         _providers.add(new NdexExceptionMapper());
         _providers.add(new ObjectNotFoundExceptionMapper());
+        _providers.add(new PreconditionFailedExceptionMapper());
+        _providers.add(new ServiceUnavailableExceptionMapper());
         _providers.add(new UnauthorizedOperationExceptionMapper());
         _providers.add(new ForbiddenExceptionMapper());
         _providers.add(new BadRequestExceptionMapper());
@@ -52,6 +52,7 @@ import jakarta.ws.rs.core.UriInfo;
 import jakarta.ws.rs.ext.Provider;
 
 import org.jboss.resteasy.core.ResourceMethodInvoker;
+import org.ndexbio.common.access.NdexDatabase;
 import org.ndexbio.common.models.dao.postgresql.UserDAO;
 import org.ndexbio.common.solr.UserIndexManager;
 //import org.ndexbio.model.exceptions.ForbiddenOperationException;
@@ -63,8 +64,11 @@ import org.ndexbio.rest.Configuration;
 import org.ndexbio.rest.services.AuthenticationNotRequired;
 import org.ndexbio.rest.services.NdexOpenFunction;
 import org.ndexbio.rest.services.NdexService;
+import org.ndexbio.rest.services.ReadsFromReplica;
+import org.ndexbio.security.BasicAuthCache;
 import org.ndexbio.security.GoogleOpenIDAuthenticator;
 import org.ndexbio.security.KeyCloakOpenIDAuthenticator;
+import org.ndexbio.security.KeyCloakSigningKeys;
 import org.ndexbio.security.LDAPAuthenticator;
 import org.ndexbio.security.OAuthAuthenticator;
 import org.slf4j.Logger;
@@ -127,20 +131,32 @@ public class BasicAuthenticationFilter implements ContainerRequestFilter
 
 		String useKeyCloak = config.getProperty("USE_KEYCLOAK_AUTHENTICATION");
 		if ( useKeyCloak!=null && useKeyCloak.equalsIgnoreCase("true") ) {
-			String issuer = config.getRequiredProperty("KEYCLOAK_ISSUER");
-			String publicKey = config.getRequiredProperty("KEYCLOAK_PUBLIC_KEY");
-			try {
-				oAuthAuthenticator = new KeyCloakOpenIDAuthenticator(publicKey, issuer);
-				_logger.info("KeyCloak authenticator created.");
-			} catch (InvalidKeySpecException | NoSuchAlgorithmException e) {
-				throw new NdexException("Failed to create Auth filter. Cause: " + e.getMessage());
+			// the authenticator holds the token cache and the key refresh thread, so it is only created once.
+			if ( !(oAuthAuthenticator instanceof KeyCloakOpenIDAuthenticator)) {
+				String issuer = config.getRequiredProperty("KEYCLOAK_ISSUER");
+				String jwksURL = config.getProperty("KEYCLOAK_JWKS_URL");
+				String propValue = config.getProperty(KeyCloakOpenIDAuthenticator.TOKEN_CACHE_TTL_PROPERTY);
+				long tokenCacheTTL = propValue == null ? KeyCloakOpenIDAuthenticator.defaultTokenCacheTTL : Long.parseLong(propValue.trim());
+				try {
+					KeyCloakSigningKeys signingKeys;
+					if ( jwksURL != null) {
+						propValue = config.getProperty("KEYCLOAK_JWKS_REFRESH_INTERVAL");
+						signingKeys = new KeyCloakSigningKeys(jwksURL, propValue == null ? 60 : Long.parseLong(propValue.trim()));
+					} else 
+						signingKeys = new KeyCloakSigningKeys(config.getRequiredProperty("KEYCLOAK_PUBLIC_KEY"));
+					oAuthAuthenticator = new KeyCloakOpenIDAuthenticator(signingKeys, issuer, tokenCacheTTL);
+					_logger.info("KeyCloak authenticator created.");
+				} catch (InvalidKeySpecException | NoSuchAlgorithmException | IOException e) {
+					throw new NdexException("Failed to create Auth filter. Cause: " + e.getMessage());
+				}
 			}
 			NdexService.setOAuthAuthenticator(oAuthAuthenticator);
 		} else {	
 			_logger.info("KeyCloak not configured, trying google oauth.");	
 		   String useGoogleOAuth = config.getProperty(USE_GOOGLE_OAUTH);
 		   if ( useGoogleOAuth !=null && useGoogleOAuth.equalsIgnoreCase("true")) {
-			  oAuthAuthenticator = new GoogleOpenIDAuthenticator(config);
+			  if ( !(oAuthAuthenticator instanceof GoogleOpenIDAuthenticator))
+				  oAuthAuthenticator = new GoogleOpenIDAuthenticator(config);
 			  NdexService.setOAuthAuthenticator(oAuthAuthenticator);
 		   }
 		}   
@@ -163,6 +179,9 @@ public class BasicAuthenticationFilter implements ContainerRequestFilter
         final ResourceMethodInvoker methodInvoker = (ResourceMethodInvoker)requestContext.getProperty("org.jboss.resteasy.core.ResourceMethodInvoker");
         final Method method = methodInvoker.getMethod();
         
+        // the thread may still have the state of its previous request. Authentication uses the primary database.
+        NdexDatabase.clearCurrentThreadRequest();
+        
         String[] authInfo = null;
         User authUser = null;
         boolean authenticated = false;
@@ -224,8 +243,14 @@ public class BasicAuthenticationFilter implements ContainerRequestFilter
             			}
             		} else {
             			authInfo[0] = authInfo[0].toLowerCase();
-            			try ( UserDAO dao = new UserDAO() ) {
-            				authUser = dao.authenticateUser(authInfo[0],authInfo[1]);
+            			BasicAuthCache authCache = BasicAuthCache.getInstance();
+            			authUser = authCache.get(authInfo[0], authInfo[1]);
+            			if ( authUser == null) {
+            				long generation = authCache.getGeneration();
+            				try ( UserDAO dao = new UserDAO() ) {
+            					authUser = dao.authenticateUser(authInfo[0],authInfo[1]);
+            				}
+            				authCache.put(authInfo[0], authInfo[1], authUser, generation);
             			}
             		}
     				authType = "B";
@@ -288,6 +313,8 @@ public class BasicAuthenticationFilter implements ContainerRequestFilter
         						(  method.isAnnotationPresent(PermitAll.class)
         								|| method.isAnnotationPresent(AuthenticationNotRequired.class)) )) {
         			//log the info in log and continue;         		
+        			NdexDatabase.setCurrentThreadRequest(authUser == null ? null : authUser.getExternalId(),
+        					method.isAnnotationPresent(ReadsFromReplica.class));
 
                 	accessLogger.info("[start]\t" + buildLogString(authUser,requestContext,method,authType) );    
         			return;
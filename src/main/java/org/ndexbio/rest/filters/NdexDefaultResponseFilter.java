@@ -76,8 +76,10 @@ import jakarta.ws.rs.core.MultivaluedMap;
 import jakarta.ws.rs.ext.Provider;
 
 import org.jboss.resteasy.core.ResourceMethodInvoker;
+import org.ndexbio.common.access.NdexDatabase;
 import org.ndexbio.rest.services.AuthenticationNotRequired;
 import org.ndexbio.rest.services.NdexOpenFunction;
+import org.ndexbio.rest.services.NdexService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -93,11 +95,26 @@ public class NdexDefaultResponseFilter implements ContainerResponseFilter //, Fi
 	public void filter(ContainerRequestContext arg0,
 			ContainerResponseContext responseContext) throws IOException {
 
+		// the DAOs of this request are done, don't let the next request on this thread inherit its routing.
+		NdexDatabase.clearCurrentThreadRequest();
+		
 		MultivaluedMap<String, Object> headers = responseContext.getHeaders();
 		headers.putSingle("Access-Control-Allow-Origin", "*");
 		headers.putSingle("Access-Control-Allow-Methods", "HEAD, DELETE,GET,OPTIONS,POST,PUT");
 		//headers.putSingle("Access-Control-Allow-Headers", "Accept, Content-Type, Authorization, Content-Length, X-Requested-With, NDEx-application");
 		headers.putSingle("Access-Control-Allow-Credentials", Boolean.TRUE); 
+		
+		Object etag = arg0.getProperty(NdexService.NdexETag);
+		if ( etag != null) {
+			headers.putSingle("ETag", etag);
+			headers.add("Access-Control-Expose-Headers", "ETag");
+		}
+		
+		Object nextCursor = arg0.getProperty(NdexService.NdexNextCursor);
+		if ( nextCursor != null) {
+			headers.putSingle("NDEx-Next-Cursor", nextCursor);
+			headers.add("Access-Control-Expose-Headers", "NDEx-Next-Cursor");
+		}
 	
 		final ResourceMethodInvoker methodInvoker = (ResourceMethodInvoker)arg0.getProperty("org.jboss.resteasy.core.ResourceMethodInvoker");
 	    if ( methodInvoker != null) {
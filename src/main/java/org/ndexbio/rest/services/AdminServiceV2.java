@@ -67,6 +67,7 @@ import org.ndexbio.model.object.network.NetworkSummary;
 import org.ndexbio.model.object.network.VisibilityType;
 import org.ndexbio.rest.Configuration;
 import org.ndexbio.rest.NdexHttpServletDispatcher;
+import org.ndexbio.rest.exceptions.ServiceUnavailableException;
 import org.ndexbio.rest.helpers.AmazonSESMailSender;
 import org.ndexbio.rest.helpers.EZIDClient;
 import org.ndexbio.rest.server.StandaloneServer;
@@ -94,7 +95,8 @@ public class AdminServiceV2 extends NdexService {
 
 	/**************************************************************************
 	 * 
-	 * Gets status for the service.
+	 * Gets status for the service. The counts are estimates from a snapshot
+	 * refreshed every NdexStatusRefreshSeconds, see ServerStatus.
 	 * @throws NdexException 
 	 * @throws SQLException 
 	 **************************************************************************/
@@ -108,51 +110,92 @@ public class AdminServiceV2 extends NdexService {
 	public NdexStatus getStatus(
 			@DefaultValue("short") @QueryParam("format") String format) throws NdexException, SQLException	{
 		
-		try (Connection db =NdexDatabase.getInstance().getConnection()){
-			
-			NdexStatus status = new NdexStatus();
-			status.setNetworkCount(AdminServiceV2.getClassCount(db,"network"));
-			status.setUserCount(AdminServiceV2.getClassCount(db,"ndex_user"));
-			status.setGroupCount(AdminServiceV2.getClassCount(db,"ndex_group")); 
+		ServerStatus.Counts counts = ServerStatus.getInstance().getCounts();
+		NdexStatus status = new NdexStatus();
+		status.setNetworkCount(counts.networkCount);
+		status.setUserCount(counts.userCount);
+		status.setGroupCount(counts.groupCount); 
 
-			Map<String,Object> props = status.getProperties();
-			
-			String edgeLimit = Configuration.getInstance().getProperty(Configuration.networkPostEdgeLimit);
-			if ( edgeLimit != null ) {
-				try {
-					int i = Integer.parseInt(edgeLimit);
-					props.put(postElementLimitProp, Integer.toString(i));
-				} catch( NumberFormatException e) {
-					logger.error("[Invalid value in server property {}]", Configuration.networkPostEdgeLimit);
-			//		props.put("ServerPostEdgeLimit", "-1");  //defaultPostEdgeLimit);
-				}
-			} /* else {
-				props.put(postElementLimitProp, "-1"); // defaultPostEdgeLimit);
-			} */
+		Map<String,Object> props = status.getProperties();
+		
+		String edgeLimit = Configuration.getInstance().getProperty(Configuration.networkPostEdgeLimit);
+		if ( edgeLimit != null ) {
+			try {
+				int i = Integer.parseInt(edgeLimit);
+				props.put(postElementLimitProp, Integer.toString(i));
+			} catch( NumberFormatException e) {
+				logger.error("[Invalid value in server property {}]", Configuration.networkPostEdgeLimit);
+		//		props.put("ServerPostEdgeLimit", "-1");  //defaultPostEdgeLimit);
+			}
+		} /* else {
+			props.put(postElementLimitProp, "-1"); // defaultPostEdgeLimit);
+		} */
 		    
-			props.put("ServerResultLimit", "10000");
-			props.put("ServerVersion", NdexHttpServletDispatcher.getNdexVersion());
-			props.put("Build" , NdexHttpServletDispatcher.getBuildNumber() );
-			
-			if (format.toLowerCase().equals("full")) {
-				List<HashMap<String,Object>> impExpList = new ArrayList<>();	
-				for ( ImporterExporterEntry entry: Configuration.getInstance().getImporterExporters()){
-					HashMap<String,Object> importerExporter = new HashMap<>();
-					importerExporter.put("name", entry.getName());
-					importerExporter.put("description", entry.getDescription());
-					importerExporter.put("fileExtension",  entry.getFileExtension());
-					importerExporter.put("exporter", (entry.getExporterCmd()!=null && !entry.getExporterCmd().isEmpty()));
-					importerExporter.put("importer", (entry.getImporterCmd()!=null && !entry.getImporterCmd().isEmpty()));
-					impExpList.add(importerExporter);
-				}
-				if (!impExpList.isEmpty())
-					props.put("ImporterExporters", impExpList);
+		props.put("ServerResultLimit", "10000");
+		props.put("ServerVersion", NdexHttpServletDispatcher.getNdexVersion());
+		props.put("Build" , NdexHttpServletDispatcher.getBuildNumber() );
+		
+		if (format.toLowerCase().equals("full")) {
+			List<HashMap<String,Object>> impExpList = new ArrayList<>();	
+			for ( ImporterExporterEntry entry: Configuration.getInstance().getImporterExporters()){
+				HashMap<String,Object> importerExporter = new HashMap<>();
+				importerExporter.put("name", entry.getName());
+				importerExporter.put("description", entry.getDescription());
+				importerExporter.put("fileExtension",  entry.getFileExtension());
+				importerExporter.put("exporter", (entry.getExporterCmd()!=null && !entry.getExporterCmd().isEmpty()));
+				importerExporter.put("importer", (entry.getImporterCmd()!=null && !entry.getImporterCmd().isEmpty()));
+				impExpList.add(importerExporter);
 			}
-			
-			status.setProperties(props);
-			
-			return status;
-		} 
+			if (!impExpList.isEmpty())
+				props.put("ImporterExporters", impExpList);
+			props.put("DBConnectionPools", NdexDatabase.getInstance().getPoolStats());
+			Map<String,Object> queues = new HashMap<>();
+			queues.put("system", Integer.valueOf(NdexServerQueue.INSTANCE.getSystemTaskQueue().size()));
+			queues.put("user", Integer.valueOf(NdexServerQueue.INSTANCE.getUserTaskQueue().size()));
+			props.put("TaskQueueSizes", queues);
+			props.put("CountsReadAt", Long.valueOf(counts.readAt));
+		}
+		
+		status.setProperties(props);
+		
+		return status;
+	}
+
+	/**
+	 * Liveness probe. Answers as long as the server can handle requests at all, without using the database.
+	 */
+	@SuppressWarnings("static-method")
+	@GET
+	@PermitAll
+	@NdexOpenFunction
+	@Path("/status/live")
+	@Produces("application/json")
+	public Map<String,Object> getLiveness() {
+		Map<String,Object> result = new HashMap<>();
+		result.put("status", "live");
+		return result;
+	}
+
+	/**
+	 * Readiness probe. Checks that the database pool isn't exhausted and the server isn't shutting down, without
+	 * running any query.
+	 * @throws ServiceUnavailableException (HTTP 503) if the server can't take requests.
+	 */
+	@SuppressWarnings("static-method")
+	@GET
+	@PermitAll
+	@NdexOpenFunction
+	@Path("/status/ready")
+	@Produces("application/json")
+	public Map<String,Object> getReadiness() throws ServiceUnavailableException {
+		NdexDatabase db = NdexDatabase.getInstance();
+		List<String> problems = ServerStatus.getReadinessProblems(db == null ? null : db.getRequestPoolStats(),
+				NdexServerQueue.INSTANCE.isShutdown());
+		if ( !problems.isEmpty())
+			throw new ServiceUnavailableException(String.join(" ", problems));
+		Map<String,Object> result = new HashMap<>();
+		result.put("status", "ready");
+		return result;
 	}
 
 	
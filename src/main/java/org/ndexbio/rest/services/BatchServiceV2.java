@@ -48,6 +48,7 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.Response;
 
 import org.ndexbio.common.importexport.ImporterExporterEntry;
 import org.ndexbio.common.models.dao.postgresql.GroupDAO;
@@ -97,6 +98,7 @@ public class BatchServiceV2 extends NdexService {
 	@POST
 	@PermitAll
 	@AuthenticationNotRequired
+	@ReadsFromReplica
 	@Path("/user")
 	@Produces("application/json")
 	public static List<User> getUsersByUUIDs(
@@ -127,6 +129,7 @@ public class BatchServiceV2 extends NdexService {
 	@POST
 	@PermitAll
 	@AuthenticationNotRequired
+	@ReadsFromReplica
 	@Path("/group")
 	@Produces("application/json")
 	public static List<Group> getGroupsByUUIDs(List<String> groupIdStrs)
@@ -153,12 +156,13 @@ public class BatchServiceV2 extends NdexService {
 
 	@PermitAll
 	@POST
+	@ReadsFromReplica
 	@Path("/network/summary")
 	@Produces("application/json")
-	public List<NetworkSummary> getNetworkSummaries(
+	public Response getNetworkSummaries(
 			@QueryParam("accesskey") String accessKey,
 			List<String> networkIdStrs)
-			throws IllegalArgumentException, NdexException, SQLException, JsonParseException, JsonMappingException, IOException {
+			throws IllegalArgumentException, NdexException, SQLException, IOException {
 
 		if ( networkIdStrs == null )
 			throw new ForbiddenOperationException("A network UUID list is required.");
@@ -170,12 +174,14 @@ public class BatchServiceV2 extends NdexService {
 
 		try (NetworkDAO dao = new NetworkDAO())  {
 			UUID userId = getLoggedInUserId();
-			return dao.getNetworkSummariesByIdStrList(networkIdStrs, userId, accessKey);				
+			// the summaries are written from their cached JSON.
+			return createJsonArrayResponse(dao.getNetworkSummaryJsonByIdStrList(networkIdStrs, userId, accessKey));
 		}  				
 	}
 	
 	
 	@POST
+	@ReadsFromReplica
 	@Path("/network/permission")
 	@Produces("application/json")
 	public Map<String,String> getNetworkPermissions(
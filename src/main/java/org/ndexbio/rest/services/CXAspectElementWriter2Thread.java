@@ -1,8 +1,8 @@
 package org.ndexbio.rest.services;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -10,8 +10,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import org.ndexbio.common.persistence.AspectStorage;
 import org.ndexbio.common.persistence.CX2NetworkLoader;
 import org.ndexbio.common.persistence.CX2ToCXConverter;
+import org.ndexbio.common.persistence.NetworkPathResolver;
 import org.ndexbio.cx2.aspect.element.core.CxAttributeDeclaration;
 import org.ndexbio.cx2.aspect.element.core.CxEdge;
 import org.ndexbio.cx2.aspect.element.core.CxEdgeBypass;
@@ -36,7 +38,6 @@ import org.ndexbio.cxio.core.CXAspectWriter;
 import org.ndexbio.cxio.core.OpaqueAspectIterator;
 import org.ndexbio.model.exceptions.NdexException;
 import org.ndexbio.model.exceptions.ObjectNotFoundException;
-import org.ndexbio.rest.Configuration;
 import org.slf4j.Logger;
 
 import com.fasterxml.jackson.core.JsonParseException;
@@ -60,7 +61,7 @@ public class CXAspectElementWriter2Thread extends Thread {
 			aspect = aspectName;
 			this.limit = limit;
 			checkAspectName();
-			pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + networkId 
+			pathPrefix = NetworkPathResolver.getNetworkDirPath(networkId) 
     				+ "/" + CX2NetworkLoader.cx2AspectDirName + "/";
 			this.logger = accLogger;
 			
@@ -118,11 +119,11 @@ public class CXAspectElementWriter2Thread extends Thread {
 			    }
 		
 			    File aspF = new File ( pathPrefix + aspect);
-				if ( !aspF.exists() ) {
+				if ( !AspectStorage.aspectExists(aspF) ) {
 					o.write("[]".getBytes());
 					return;
 				}
-				try(FileInputStream in = new FileInputStream (aspF))	 {
+				try(InputStream in = AspectStorage.newAspectInputStream(aspF))	 {
 				OpaqueAspectIterator asi = new OpaqueAspectIterator(in);
 				try (CXAspectWriter wtr = new CXAspectWriter (o)) {
 					for ( int i = 0 ; (limit <=0 ||i < limit) && asi.hasNext() ; i++) {
@@ -150,9 +151,8 @@ public class CXAspectElementWriter2Thread extends Thread {
 		private Map<String,DeclarationEntry> getDeclarations(String cx2AspectName) throws JsonParseException, JsonMappingException, IOException {			
 			File attrDeclF = new File ( pathPrefix + CxAttributeDeclaration.ASPECT_NAME);
 			CxAttributeDeclaration[] declarations = null;
-			if ( attrDeclF.exists() ) {
-				ObjectMapper om = new ObjectMapper();
-				declarations = om.readValue(attrDeclF, CxAttributeDeclaration[].class);
+			if ( AspectStorage.aspectExists(attrDeclF) ) {
+				declarations = AspectStorage.readValue(attrDeclF, CxAttributeDeclaration[].class);
 			}
 
 			Map<String,DeclarationEntry> aspAttrDecls = null;
@@ -168,9 +168,9 @@ public class CXAspectElementWriter2Thread extends Thread {
 			Map<String,DeclarationEntry> nodeAttrDecls = getDeclarations(CxNode.ASPECT_NAME);
 			
 			File f = new File (fileName);
-			if ( f.exists()) {
+			if ( AspectStorage.aspectExists(f)) {
 				try (CXAspectWriter wtr = new CXAspectWriter (o)) {
-					try(FileInputStream in = new FileInputStream(f)) {
+					try(InputStream in = AspectStorage.newAspectInputStream(f)) {
 					AspectIterator<CxNode> it = new AspectIterator<>(in, CxNode.class);
 					for ( int i = 0 ; (limit <=0 || i < limit) && it.hasNext() ; i++) {
 						CxNode n = it.next();
@@ -189,9 +189,9 @@ public class CXAspectElementWriter2Thread extends Thread {
 			String fileName = pathPrefix + CxNode.ASPECT_NAME;
 
 			File f = new File(fileName);
-			if (f.exists()) {
+			if (AspectStorage.aspectExists(f)) {
 				try (CXAspectWriter wtr = new CXAspectWriter(o)) {
-					try (FileInputStream in = new FileInputStream(f)) {
+					try (InputStream in = AspectStorage.newAspectInputStream(f)) {
 						try (AspectIterator<CxNode> it = new AspectIterator<>(in, CxNode.class)) {
 							for (int i = 0; (limit <= 0 || i < limit) && it.hasNext(); i++) {
 								CxNode n = it.next();
@@ -216,9 +216,9 @@ public class CXAspectElementWriter2Thread extends Thread {
 			Map<String,DeclarationEntry> nodeAttrDecls = getDeclarations(CxNode.ASPECT_NAME);
 			
 			File f = new File (fileName);
-			if ( f.exists()) {
+			if ( AspectStorage.aspectExists(f)) {
 				try (CXAspectWriter wtr = new CXAspectWriter (o)) {
-					try(FileInputStream in = new FileInputStream(f)) {
+					try(InputStream in = AspectStorage.newAspectInputStream(f)) {
 					AspectIterator<CxNode> it = new AspectIterator<>(in, CxNode.class);
 					for ( int i = 0 ; (limit <=0 || i < limit) && it.hasNext() ; i++) {
 						CxNode n = it.next();
@@ -253,9 +253,9 @@ public class CXAspectElementWriter2Thread extends Thread {
 			Map<String,DeclarationEntry> netAttrDecls = getDeclarations(CxNetworkAttribute.ASPECT_NAME);
 			
 			File f = new File (fileName);
-			if ( f.exists()) {
+			if ( AspectStorage.aspectExists(f)) {
 				try (CXAspectWriter wtr = new CXAspectWriter (o)) {
-					try(FileInputStream in = new FileInputStream(f)) {
+					try(InputStream in = AspectStorage.newAspectInputStream(f)) {
 					AspectIterator<CxNetworkAttribute> it = new AspectIterator<>(in, CxNetworkAttribute.class);
 					for ( int i = 0 ; (limit <=0 || i < limit) && it.hasNext() ; i++) {
 						CxNetworkAttribute n = it.next();
@@ -289,9 +289,9 @@ public class CXAspectElementWriter2Thread extends Thread {
 			Map<String,DeclarationEntry> edgeAttrDecls = getDeclarations(CxEdge.ASPECT_NAME);
 			
 			File f = new File (fileName);
-			if ( f.exists()) {
+			if ( AspectStorage.aspectExists(f)) {
 				try (CXAspectWriter wtr = new CXAspectWriter (o)) {
-					try(FileInputStream in = new FileInputStream(f)) {
+					try(InputStream in = AspectStorage.newAspectInputStream(f)) {
 					AspectIterator<CxEdge> it = new AspectIterator<>(in, CxEdge.class);
 					for ( int i = 0 ; (limit <=0 || i < limit) && it.hasNext() ; i++) {
 						CxEdge n = it.next();
@@ -326,9 +326,9 @@ public class CXAspectElementWriter2Thread extends Thread {
 			Map<String,DeclarationEntry> edgeAttrDecls = getDeclarations(CxEdge.ASPECT_NAME);
 			
 			File f = new File (fileName);
-			if ( f.exists()) {
+			if ( AspectStorage.aspectExists(f)) {
 				try (CXAspectWriter wtr = new CXAspectWriter (o)) {
-					try(FileInputStream in = new FileInputStream(f)) {
+					try(InputStream in = AspectStorage.newAspectInputStream(f)) {
 					AspectIterator<CxEdge> it = new AspectIterator<>(in, CxEdge.class);
 					for ( int i = 0 ; (limit <=0 || i < limit) && it.hasNext() ; i++) {
 						CxEdge n = it.next();
@@ -350,15 +350,15 @@ public class CXAspectElementWriter2Thread extends Thread {
 			
 			CxVisualProperty[] vp = null;
 			File f = new File ( fileName);
-			if ( f.exists() ) {
-				vp = om.readValue(f, CxVisualProperty[].class);
+			if ( AspectStorage.aspectExists(f) ) {
+				vp = AspectStorage.readValue(f, CxVisualProperty[].class);
 			} else 
 				o.write("[]".getBytes());
 			
 			fileName = pathPrefix + VisualEditorProperties.ASPECT_NAME;
 			VisualEditorProperties[] evp = null;
-			if ( f.exists() ) {
-				evp = om.readValue(f, VisualEditorProperties[].class);
+			if ( AspectStorage.aspectExists(f) ) {
+				evp = AspectStorage.readValue(f, VisualEditorProperties[].class);
 			}
 
 			VisualEditorProperties editorProperties = evp == null ? null:evp[0];
@@ -396,8 +396,8 @@ public class CXAspectElementWriter2Thread extends Thread {
 				//Node bypasses
 				fileName = pathPrefix + CxNodeBypass.ASPECT_NAME;
 				f = new File ( fileName);
-				if ( f.exists() ) {
-					try (FileInputStream inputStream = new FileInputStream(fileName)) {
+				if ( AspectStorage.aspectExists(f) ) {
+					try (InputStream inputStream = AspectStorage.newAspectInputStream(fileName)) {
 						Iterator<CxNodeBypass> it = om.readerFor(CxNodeBypass.class).readValues(inputStream);
 						
 						while ((limit <=0 || i < limit) && it.hasNext() ) {
@@ -425,8 +425,8 @@ public class CXAspectElementWriter2Thread extends Thread {
 				//edge bypasses
 				fileName = pathPrefix + CxEdgeBypass.ASPECT_NAME;
 				f = new File ( fileName);
-				if ( f.exists() ) {
-					try (FileInputStream inputStream = new FileInputStream(fileName)) {
+				if ( AspectStorage.aspectExists(f) ) {
+					try (InputStream inputStream = AspectStorage.newAspectInputStream(fileName)) {
 						Iterator<CxEdgeBypass> it = om.readerFor(CxEdgeBypass.class).readValues(inputStream);
 						
 						while ((limit <=0 || i < limit) && it.hasNext() ) {
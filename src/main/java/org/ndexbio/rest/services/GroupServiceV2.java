@@ -55,6 +55,7 @@ import jakarta.ws.rs.core.Response;
 
 import org.apache.solr.client.solrj.SolrServerException;
 import org.ndexbio.common.models.dao.postgresql.GroupDAO;
+import org.ndexbio.common.models.dao.postgresql.PageCursor;
 import org.ndexbio.common.models.dao.postgresql.RequestDAO;
 import org.ndexbio.common.solr.GroupIndexManager;
 import org.ndexbio.model.exceptions.DuplicateObjectException;
@@ -315,13 +316,15 @@ public class GroupServiceV2 extends NdexService {
 	
 	@GET
 	@PermitAll
+	@ReadsFromReplica
 	@Path("/{groupid}/permission")
 	@Produces("application/json")
 	public Map<String,String> getGroupNetworkPermissions(@PathParam("groupid") final String groupIdStr,
 		    @QueryParam("networkid") String networkIdStr,
 		    @QueryParam("permission") String permissions,
 			@DefaultValue("0") @QueryParam("start") int skipBlocks,
-			@DefaultValue("100") @QueryParam("size") int blockSize ) 
+			@DefaultValue("100") @QueryParam("size") int blockSize,
+			@QueryParam("cursor") String cursor) 
 					throws NdexException, SQLException, IllegalArgumentException {
 
 		
@@ -349,6 +352,13 @@ public class GroupServiceV2 extends NdexService {
 		try (GroupDAO dao = new GroupDAO()){
 	//		if ( !dao.isInGroup(groupId, getLoggedInUserId()))
 	//			throw new NdexException("User is not a member of this group.");
+			if ( cursor != null) {
+				// keyset paging, start is ignored.
+				PageCursor.Page<Map<String,String>> page = dao.getGroupNetworkPermissions(groupId, permission,
+						getPageCursor(cursor), blockSize, getLoggedInUserId(), inclusive);
+				setNextCursor(page.getNext());
+				return page.getItems();
+			}
 			return dao.getGroupNetworkPermissions(groupId, permission, skipBlocks, blockSize, getLoggedInUserId(), inclusive);
 			//logger.info("[end: Getting {} networks of group {}]", permissions, groupId);
 			//return l;
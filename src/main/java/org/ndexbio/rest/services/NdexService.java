@@ -34,8 +34,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
@@ -47,12 +45,17 @@ import java.util.Set;
 import java.util.UUID;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 
 import org.apache.commons.io.IOUtils;
 import org.jboss.resteasy.plugins.providers.multipart.InputPart;
 import org.jboss.resteasy.plugins.providers.multipart.MultipartFormDataInput;
 import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
+import org.ndexbio.common.models.dao.postgresql.PageCursor;
 import org.ndexbio.common.models.dao.postgresql.UserDAO;
+import org.ndexbio.common.persistence.NetworkPathResolver;
 import org.ndexbio.common.util.NdexUUIDFactory;
 import org.ndexbio.model.exceptions.BadRequestException;
 import org.ndexbio.model.exceptions.ForbiddenOperationException;
@@ -60,7 +63,6 @@ import org.ndexbio.model.exceptions.NdexException;
 import org.ndexbio.model.exceptions.NetworkConcurrentModificationException;
 import org.ndexbio.model.exceptions.UnauthorizedOperationException;
 import org.ndexbio.model.object.User;
-import org.ndexbio.rest.Configuration;
 import org.ndexbio.rest.filters.BasicAuthenticationFilter;
 import org.ndexbio.security.GoogleOpenIDAuthenticator;
 import org.ndexbio.security.OAuthAuthenticator;
@@ -71,6 +73,12 @@ public abstract class NdexService
 {
 	public static final String NdexZipFlag = "NdexZipped";
 	
+	// request attribute holding the ETag that NdexDefaultResponseFilter puts in the response.
+	public static final String NdexETag = "NdexETag";
+	
+	// request attribute holding the cursor of the next page that NdexDefaultResponseFilter puts in the response.
+	public static final String NdexNextCursor = "NdexNextCursor";
+	
     protected HttpServletRequest _httpRequest;
     private static OAuthAuthenticator oauthAuthenticator = null;
     
@@ -116,6 +124,78 @@ public abstract class NdexService
     	_httpRequest.setAttribute(NdexZipFlag, Boolean.TRUE);
     }
     
+    /**
+     * Send the version of the network back in the ETag header.
+     * @param version
+     */
+    protected void setETag(long version) {
+    	_httpRequest.setAttribute(NdexETag, "\"" + version + "\"");
+    }
+    
+    /**
+     * Send the cursor of the next page of a listing back in the NDEx-Next-Cursor header. Nothing is sent after the
+     * last page.
+     * @param next
+     */
+    protected void setNextCursor(PageCursor next) {
+    	if ( next != null)
+    		_httpRequest.setAttribute(NdexNextCursor, next.encode());
+    }
+    
+    /**
+     * Decode the cursor parameter of a listing.
+     * @param cursor
+     * @return null if the client didn't send a cursor.
+     * @throws BadRequestException the cursor was not created by this server.
+     */
+    protected static PageCursor getPageCursor(String cursor) throws BadRequestException {
+    	try {
+    		return PageCursor.decode(cursor);
+    	} catch (IllegalArgumentException e) {
+    		throw new BadRequestException(e.getMessage());
+    	}
+    }
+    
+    /**
+     * Get the version the client sent in the If-Match header.
+     * @return null if there is no If-Match header or it is "*"; -1 if it can't be a version of ours, which will fail
+     * the update with 412. If-Match uses the strong comparison and our ETags are strong, so a weak tag never matches.
+     */
+    protected Long getIfMatchVersion() {
+    	String ifMatch = _httpRequest.getHeader("If-Match");
+    	if ( ifMatch == null || ifMatch.trim().equals("*"))
+    		return null;
+    	String tag = ifMatch.trim();
+    	if ( tag.startsWith("W/"))
+    		return Long.valueOf(-1);
+    	if ( tag.length() > 1 && tag.startsWith("\"") && tag.endsWith("\""))
+    		tag = tag.substring(1, tag.length() - 1);
+    	try {
+    		return Long.valueOf(tag);
+    	} catch (@SuppressWarnings("unused") NumberFormatException e) {
+    		return Long.valueOf(-1);
+    	}
+    }
+    
+    /**
+     * Create a JSON response from array elements that are already serialized. The elements are written to the
+     * response as they are, without building the whole array in memory.
+     * @param elements
+     * @return
+     */
+    protected static Response createJsonArrayResponse(List<byte[]> elements) {
+    	StreamingOutput body = out -> {
+    		out.write('[');
+    		for ( int i = 0; i < elements.size(); i++) {
+    			if ( i > 0)
+    				out.write(',');
+    			out.write(elements.get(i));
+    		}
+    		out.write(']');
+    	};
+    	return Response.ok().type(MediaType.APPLICATION_JSON_TYPE).entity(body).build();
+    }
+    
     protected InputStream getInputStreamFromRequest() throws IOException {
     		return _httpRequest.getInputStream();
     }
@@ -151,15 +231,14 @@ public abstract class NdexService
 	   protected static UUID storeRawNetworkFromStream(InputStream in, String fileName) throws IOException {
 		   
 		   UUID uuid = NdexUUIDFactory.INSTANCE.createNewNDExUUID();
-		   String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + uuid.toString();
+		   String pathPrefix = NetworkPathResolver.getNetworkDirPath(uuid.toString());
 		   
 		   //Create dir
-		   java.nio.file.Path dir = Paths.get(pathPrefix);
 		   Set<PosixFilePermission> perms =
 				    PosixFilePermissions.fromString("rwxrwxr-x");
 				FileAttribute<Set<PosixFilePermission>> attr =
 				    PosixFilePermissions.asFileAttribute(perms);
-		   Files.createDirectory(dir,attr);
+		   NetworkPathResolver.createNetworkDir(uuid, attr);
 		   
 		   //write content to file
 		   String cxFilePath = pathPrefix + "/" + fileName;
@@ -182,15 +261,14 @@ public abstract class NdexService
 			 
 		   byte[] bytes = new byte[8192];
 		   UUID uuid = NdexUUIDFactory.INSTANCE.createNewNDExUUID();
-		   String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + uuid.toString();
+		   String pathPrefix = NetworkPathResolver.getNetworkDirPath(uuid.toString());
 				   
 		   //Create dir
-		   java.nio.file.Path dir = Paths.get(pathPrefix);
 		   Set<PosixFilePermission> perms =
 						    PosixFilePermissions.fromString("rwxrwxr-x");
 		   FileAttribute<Set<PosixFilePermission>> attr =
 						    PosixFilePermissions.asFileAttribute(perms);
-		   Files.createDirectory(dir,attr);
+		   NetworkPathResolver.createNetworkDir(uuid, attr);
 				   
 		   //write content to file
 		   String cxFilePath = pathPrefix + "/" + fileName;
@@ -241,11 +319,6 @@ public abstract class NdexService
 			        throw new UnauthorizedOperationException("You do not have write permissions for this network.");
 				} 
 				
-				if ( daoNew.networkIsLocked(networkId)) {
-					daoNew.close();
-					throw new NetworkConcurrentModificationException ();
-			   } 
-				
 			try {
 				daoNew.lockNetwork(networkId);
 			} catch (SQLException sqlErr) {
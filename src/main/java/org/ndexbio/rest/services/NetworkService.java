@@ -74,6 +74,7 @@ import org.ndexbio.common.cx.CXNetworkFileGenerator;
 import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
 import org.ndexbio.common.models.dao.postgresql.TaskDAO;
 import org.ndexbio.common.models.dao.postgresql.UserDAO;
+import org.ndexbio.common.persistence.NetworkPathResolver;
 import org.ndexbio.common.util.NdexUUIDFactory;
 import org.ndexbio.cxio.aspects.datamodels.ATTRIBUTE_DATA_TYPE;
 import org.ndexbio.cxio.aspects.datamodels.NetworkAttributesElement;
@@ -286,7 +287,7 @@ public class NetworkService extends NdexService {
 
     	}
     	
-		String cxFilePath = Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/network.cx";
+		String cxFilePath = NetworkPathResolver.getNetworkDirPath(networkId) + "/network.cx";
 
     	try {
 			FileInputStream in = new FileInputStream(cxFilePath)  ;
@@ -314,7 +315,7 @@ public class NetworkService extends NdexService {
 
     	}
     	
-		String cxFilePath = Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/sample.cx";
+		String cxFilePath = NetworkPathResolver.getNetworkDirPath(networkId) + "/sample.cx";
 		
 		try {
 			FileInputStream in = new FileInputStream(cxFilePath)  ;
@@ -518,10 +519,6 @@ public class NetworkService extends NdexService {
 
 			if ( newValues.size() > 0 ) { 
 				
-				if ( networkDao.networkIsLocked(networkUUID)) {
-					throw new NetworkConcurrentModificationException ();
-				} 
-				
 				if (!networkDao.networkIsValid(networkUUID))
 					throw new InvalidNetworkException();
 		
@@ -625,24 +622,19 @@ public class NetworkService extends NdexService {
 		        throw new UnauthorizedOperationException("User doesn't have write permissions for this network.");
 			} 
 			
-			if ( daoNew.networkIsLocked(networkId)) {
-				daoNew.close();
-				throw new NetworkConcurrentModificationException ();
-			} 
-			
 			daoNew.lockNetwork(networkId);
 			
 		//	ownerAccName = daoNew.getNetworkOwnerAcc(networkId);
 			
 	        UUID tmpNetworkId = storeRawNetwork (input);
-	        String cxFileName = Configuration.getInstance().getNdexRoot() + "/data/" + tmpNetworkId.toString() + "/network.cx";
+	        String cxFileName = NetworkPathResolver.getNetworkDirPath(tmpNetworkId.toString()) + "/network.cx";
 			long fileSize = new File(cxFileName).length();
 				
 	        daoNew.clearNetworkSummary(networkId, fileSize);
 
-			java.nio.file.Path src = Paths.get(Configuration.getInstance().getNdexRoot() + "/data/" + tmpNetworkId);
-			java.nio.file.Path tgt = Paths.get(Configuration.getInstance().getNdexRoot() + "/data/" + networkId);
-			FileUtils.deleteDirectory(new File(Configuration.getInstance().getNdexRoot() + "/data/" + networkId));
+			java.nio.file.Path src = Paths.get(NetworkPathResolver.getNetworkDirPath(tmpNetworkId));
+			java.nio.file.Path tgt = Paths.get(NetworkPathResolver.getNetworkDirPath(networkId));
+			FileUtils.deleteDirectory(new File(NetworkPathResolver.getNetworkDirPath(networkId)));
 			Files.move(src, tgt, StandardCopyOption.ATOMIC_MOVE,StandardCopyOption.REPLACE_EXISTING);  
 		
 /*			String urlStr = Configuration.getInstance().getHostURI()  + 
@@ -696,10 +688,9 @@ public class NetworkService extends NdexService {
 						networkDao.deleteNetwork(UUID.fromString(id), getLoggedInUser().getExternalId());
 						networkDao.commit();
 						
-						String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + networkId.toString();
 						try {
 							
-								FileUtils.deleteDirectory(new File(pathPrefix));
+								NetworkPathResolver.deleteNetworkDir(networkId);
 						} catch (IOException e) {
 								e.printStackTrace();
 								throw new NdexException("Failed to delete directory. Error: " + e.getMessage());
@@ -922,7 +913,7 @@ public class NetworkService extends NdexService {
 		   ProvenanceEntity entity = new ProvenanceEntity();
 		   entity.setUri(urlStr + "/summary"); */
 		   
-		   String cxFileName = Configuration.getInstance().getNdexRoot() + "/data/" + uuidStr + "/network.cx";
+		   String cxFileName = NetworkPathResolver.getNetworkDirPath(uuidStr) + "/network.cx";
 		   long fileSize = new File(cxFileName).length();
 
 		   // create entry in db. 
@@ -963,11 +954,10 @@ public class NetworkService extends NdexService {
 				   byte[] bytes = new byte[8192];
 				   UUID uuid = NdexUUIDFactory.INSTANCE.createNewNDExUUID();
 				   String uuidStr = uuid.toString();
-				   String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + uuidStr;
+				   String pathPrefix = NetworkPathResolver.getNetworkDirPath(uuidStr);
 				   
 				   //Create dir
-				   java.nio.file.Path dir = Paths.get(pathPrefix);
-				   Files.createDirectory(dir);
+				   NetworkPathResolver.createNetworkDir(uuid);
 				   
 				   //write content to file
 				   String cxFilePath = pathPrefix + "/network.cx";
@@ -82,10 +82,16 @@ import org.ndexbio.common.NdexClasses;
 import org.ndexbio.common.cx.CX2NetworkFileGenerator;
 import org.ndexbio.common.cx.CXNetworkFileGenerator;
 import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
+import org.ndexbio.common.models.dao.postgresql.NetworkReadAccess;
+import org.ndexbio.common.models.dao.postgresql.PageCursor;
 import org.ndexbio.common.models.dao.postgresql.UserDAO;
+import org.ndexbio.common.persistence.AspectStorage;
+import org.ndexbio.common.persistence.CX2ColumnarStore;
 import org.ndexbio.common.persistence.CX2NetworkLoader;
 import org.ndexbio.common.persistence.CXNetworkAspectsUpdater;
 import org.ndexbio.common.persistence.CXNetworkLoader;
+import org.ndexbio.common.persistence.NetworkPathResolver;
+import org.ndexbio.common.persistence.NetworkSegment;
 import org.ndexbio.common.util.NdexUUIDFactory;
 import org.ndexbio.common.util.Util;
 import org.ndexbio.cx2.aspect.element.core.AttributeDeclaredAspect;
@@ -114,8 +120,11 @@ import org.ndexbio.model.object.ProvenanceEntity;
 import org.ndexbio.model.object.User;
 import org.ndexbio.model.object.network.NetworkIndexLevel;
 import org.ndexbio.model.object.network.NetworkSummary;
+import org.ndexbio.model.object.network.NetworkSummaryFormat;
+import org.ndexbio.model.object.network.NetworkSummaryV3;
 import org.ndexbio.model.object.network.VisibilityType;
 import org.ndexbio.rest.Configuration;
+import org.ndexbio.rest.exceptions.PreconditionFailedException;
 import org.ndexbio.rest.filters.BasicAuthenticationFilter;
 import org.ndexbio.task.CXNetworkLoadingTask;
 import org.ndexbio.task.NdexServerQueue;
@@ -128,7 +137,6 @@ import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 @Path("/v2/network")
 public class NetworkServiceV2 extends NdexService {
@@ -260,6 +268,7 @@ public class NetworkServiceV2 extends NdexService {
 
 		User user = getLoggedInUser();
 		UUID networkUUID = UUID.fromString(networkId);
+		Long expectedVersion = getIfMatchVersion();
 
 		if ( properties.stream().anyMatch(x -> { String n = x.getPredicateString(); 
 		                                    return n.equals(NdexClasses.Network_P_name) || n.equals(NdexClasses.Network_P_desc)
@@ -281,17 +290,19 @@ public class NetworkServiceV2 extends NdexService {
 		        throw new UnauthorizedOperationException("User doesn't have write permissions for this network.");
 			} 
 			
-			if ( daoNew.networkIsLocked(networkUUID,10)) {
-				throw new NetworkConcurrentModificationException ();
-			} 
-			
 			if ( !daoNew.networkIsValid(networkUUID))
 				throw new InvalidNetworkException();
 
+			// fail before waiting for the lock if the client's copy is already out of date.
+			if ( expectedVersion != null)
+				daoNew.checkNetworkVersion(networkUUID, expectedVersion.longValue());
+
 			daoNew.lockNetwork(networkUUID);
 			
 			int i = 0;
 			try {
+				if ( expectedVersion != null)
+					daoNew.claimNetworkVersion(networkUUID, expectedVersion.longValue());
 				i = daoNew.setNetworkProperties(networkUUID, properties);
 
 				// recreate files and update db
@@ -311,7 +322,10 @@ public class NetworkServiceV2 extends NdexService {
 				daoNew.commit();
 			}
 			
+			setETag(daoNew.getNetworkVersion(networkUUID));
 			return i;
+		} catch (PreconditionFailedException e) {
+			throw e;
 		} catch (Exception e) {
 			//logger.severe("Error occurred when update network properties: " + e.getMessage());
 			//e.printStackTrace();
@@ -330,6 +344,7 @@ public class NetworkServiceV2 extends NdexService {
 
 	@PermitAll
 	@GET
+	@ReadsFromReplica
 	@Path("/{networkid}/summary")
 	@Produces("application/json")
 	
@@ -343,10 +358,10 @@ public class NetworkServiceV2 extends NdexService {
 		try (NetworkDAO dao = new NetworkDAO())  {
 			UUID userId = getLoggedInUserId();
 			UUID networkId = UUID.fromString(networkIdStr);
-			if ( dao.isReadable(networkId, userId) || dao.accessKeyIsValid(networkId, accessKey)) {
-				NetworkSummary summary = dao.getNetworkSummaryById(networkId);
-
-				return summary;
+			NetworkReadAccess<NetworkSummary> access = dao.getNetworkSummaryForRead(networkId, userId, accessKey);
+			if ( access.isAuthorized()) {
+				setETag(access.getVersion());
+				return access.getSummary();
 			}
 				
 			throw new UnauthorizedOperationException ("Unauthorized access to network " + networkId);
@@ -358,6 +373,7 @@ public class NetworkServiceV2 extends NdexService {
 
 	@PermitAll
 	@GET
+	@ReadsFromReplica
 	@Path("/{networkid}/aspect")
 	
 	public Response getNetworkCXMetadataCollection(	@PathParam("networkid") final String networkId,
@@ -418,14 +434,19 @@ public class NetworkServiceV2 extends NdexService {
     			throw new UnauthorizedOperationException("User doesn't have access to this network.");
     		}
     		
-    		File cx1AspectDir = new File (Configuration.getInstance().getNdexRoot() + "/data/" + networkId 
+    		File cx1AspectDir = new File (NetworkPathResolver.getNetworkDirPath(networkId) 
     				+ "/" + CXNetworkLoader.CX1AspectDir);
-    		boolean hasCX1AspDir = cx1AspectDir.exists();
+    		boolean hasCX1AspDir;
+    		try {
+    			hasCX1AspDir = AspectStorage.aspectDirectoryExists(cx1AspectDir.getPath());
+    		} catch (IOException e) {
+    			throw new NdexException("Failed to read aspects of this network: " + e.getMessage(), e);
+    		}
     		
-			FileInputStream in = null;
+			InputStream in = null;
 			try {
 				if ( hasCX1AspDir) {
-				   in = new FileInputStream(cx1AspectDir + "/" + aspectName);
+				   in = AspectStorage.newAspectInputStream(cx1AspectDir + "/" + aspectName);
 				   if ( limit <= 0) {
 						return 	Response.ok().type(MediaType.APPLICATION_JSON_TYPE).entity(in).build();
 			    	} 
@@ -451,6 +472,8 @@ public class NetworkServiceV2 extends NdexService {
 				
 			} catch (FileNotFoundException e) {
 					throw new ObjectNotFoundException("Aspect "+ aspectName + " not found in this network: " + e.getMessage());
+			} catch (IOException e) {
+					throw new NdexException("Failed to read aspect " + aspectName + " of this network: " + e.getMessage(), e);
 			}
 	    	
 			
@@ -502,13 +525,14 @@ public class NetworkServiceV2 extends NdexService {
     				userId = getOAuthAuthenticator().getUserUUIDByIdToken(id_token);
     			}
     		}
-    		if ( ! dao.isReadable(networkUUID, userId) && (!dao.accessKeyIsValid(networkUUID, accessKey))) 
+    		NetworkReadAccess<NetworkSummaryV3> access = dao.getNetworkMetadataForRead(networkUUID, userId, accessKey, NetworkSummaryFormat.COMPACT);
+    		if ( !access.isAuthorized()) 
                 throw new UnauthorizedOperationException("User doesn't have read access to this network.");
     		
-    		title = dao.getNetworkName(networkUUID);
+    		title = access.getSummary().getName();
     	}
   
-		String cxFilePath = Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/" + cx1NetworkFileName;
+		String cxFilePath = NetworkPathResolver.getNetworkDirPath(networkId) + "/" + cx1NetworkFileName;
 
     	try {
 			FileInputStream in = new FileInputStream(cxFilePath)  ;
@@ -550,7 +574,7 @@ public class NetworkServiceV2 extends NdexService {
 
     	}
     	
-		String cxFilePath = Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/sample.cx";
+		String cxFilePath = NetworkPathResolver.getNetworkDirPath(networkId) + "/sample.cx";
 		
 		try {
 			FileInputStream in = new FileInputStream(cxFilePath)  ;
@@ -632,7 +656,7 @@ public class NetworkServiceV2 extends NdexService {
 			if (!dao.networkIsValid(networkUUID))
 				throw new InvalidNetworkException();
 
-			String cxFilePath = Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/sample.cx";
+			String cxFilePath = NetworkPathResolver.getNetworkDirPath(networkId) + "/sample.cx";
 
 			try (FileWriter w = new FileWriter(cxFilePath)) {
 				w.write(CXString);
@@ -649,10 +673,10 @@ public class NetworkServiceV2 extends NdexService {
 	private class CXAspectElementsWriterThread extends Thread {
 		private OutputStream o;
 	//	private String networkId;
-		private FileInputStream in;
+		private InputStream in;
 	//	private String aspect;
 		private int limit;
-		public CXAspectElementsWriterThread (OutputStream out, FileInputStream inputStream, /*String aspectName,*/ int limit) {
+		public CXAspectElementsWriterThread (OutputStream out, InputStream inputStream, /*String aspectName,*/ int limit) {
 			o = out;
 		//	this.networkId = networkId;
 		//	aspect = aspectName;
@@ -704,6 +728,7 @@ public class NetworkServiceV2 extends NdexService {
 	 **************************************************************************/
 
 	@GET
+	@ReadsFromReplica
 	@Path("/{networkid}/permission")
 	@Produces("application/json")
 
@@ -712,7 +737,8 @@ public class NetworkServiceV2 extends NdexService {
 		    @QueryParam("type") String sourceType,
 			@QueryParam("permission") final String permissions ,
 			@DefaultValue("0") @QueryParam("start") int skipBlocks,
-			@DefaultValue("100") @QueryParam("size") int blockSize) throws NdexException, SQLException {
+			@DefaultValue("100") @QueryParam("size") int blockSize,
+			@QueryParam("cursor") String cursor) throws NdexException, SQLException {
 		
 		Permissions permission = null;
 		if ( permissions != null ){
@@ -735,6 +761,16 @@ public class NetworkServiceV2 extends NdexService {
 			if ( !networkDao.isAdmin(networkUUID, getLoggedInUserId()) ) 
 				throw new UnauthorizedOperationException("Authenticate user is not the admin of this network.");
 			
+			if ( cursor != null) {
+				// keyset paging, start is ignored.
+				PageCursor after = getPageCursor(cursor);
+				PageCursor.Page<Map<String,String>> page = returnUsers?
+						networkDao.getNetworkUserPermissions(networkUUID, permission, after, blockSize):
+						networkDao.getNetworkGroupPermissions(networkUUID, permission, after, blockSize);
+				setNextCursor(page.getNext());
+				return page.getItems();
+			}
+			
 			Map<String,String> result = returnUsers?
 					networkDao.getNetworkUserPermissions(networkUUID, permission, skipBlocks, blockSize):
 					networkDao.getNetworkGroupPermissions(networkUUID,permission,skipBlocks,blockSize);
@@ -948,6 +984,7 @@ public class NetworkServiceV2 extends NdexService {
 
 			User user = getLoggedInUser();
 			UUID networkUUID = UUID.fromString(networkId);
+			Long expectedVersion = getIfMatchVersion();
 	
 	  	    if(networkDao.isReadOnly(networkUUID)) {
 				throw new NdexException ("Can't update readonly network.");				
@@ -980,19 +1017,14 @@ public class NetworkServiceV2 extends NdexService {
 				if (!networkDao.networkIsValid(networkUUID))
 					throw new InvalidNetworkException();
 
-				try {
-					if ( networkDao.networkIsLocked(networkUUID,10)) {
-						throw new NetworkConcurrentModificationException ();
-					}
-				} catch (InterruptedException e2) {
-					e2.printStackTrace();
-					throw new NdexException("Failed to check network lock: " + e2.getMessage());
-				} 
-				
-				
+				if ( expectedVersion != null)
+					networkDao.checkNetworkVersion(networkUUID, expectedVersion.longValue());
+
 				try {
 					networkDao.lockNetwork(networkUUID);
 				
+					if ( expectedVersion != null)
+						networkDao.claimNetworkVersion(networkUUID, expectedVersion.longValue());
 					networkDao.updateNetworkProfile(networkUUID, newValues);
 					
 					// recreate files and update db
@@ -1010,6 +1042,7 @@ public class NetworkServiceV2 extends NdexService {
 						  networkDao.setFlag(networkUUID, "iscomplete", true);
 						  networkDao.commit();
 					}
+					setETag(networkDao.getNetworkVersion(networkUUID));
 				} catch ( SQLException | IOException | IllegalArgumentException |NdexException e ) {
 					networkDao.rollback();
 					try {
@@ -1038,9 +1071,8 @@ public class NetworkServiceV2 extends NdexService {
 	protected static CxAttributeDeclaration getAttrDeclarations(String pathPrefix) throws JsonParseException, JsonMappingException, IOException {			
 		File attrDeclF = new File ( pathPrefix + CxAttributeDeclaration.ASPECT_NAME);
 		CxAttributeDeclaration[] declarations = null;
-		if ( attrDeclF.exists() ) {
-			ObjectMapper om = new ObjectMapper();
-			declarations = om.readValue(attrDeclF, CxAttributeDeclaration[].class);
+		if ( AspectStorage.aspectExists(attrDeclF) ) {
+			declarations = AspectStorage.readValue(attrDeclF, CxAttributeDeclaration[].class);
 		}
 
 		if ( declarations != null)
@@ -1052,7 +1084,7 @@ public class NetworkServiceV2 extends NdexService {
 	// update the networkAttributes aspect file and also update the metadata in the db.
 	protected static void updateNetworkAttributesAspect(NetworkDAO networkDao, UUID networkUUID) throws JsonParseException, JsonMappingException, SQLException, IOException, NdexException {
 		NetworkSummary fullSummary = networkDao.getNetworkSummaryById(networkUUID);
-		String fileStoreDir = Configuration.getInstance().getNdexRoot() + "/data/" + networkUUID.toString() + "/";
+		String fileStoreDir = NetworkPathResolver.getNetworkDirPath(networkUUID.toString()) + "/";
 		String aspectFilePath = fileStoreDir + CXNetworkLoader.CX1AspectDir + "/" + NetworkAttributesElement.ASPECT_NAME;
 		String cx2AspectDirPath = fileStoreDir + CX2NetworkLoader.cx2AspectDirName + "/";
 		
@@ -1061,12 +1093,13 @@ public class NetworkServiceV2 extends NdexService {
 		List<NetworkAttributesElement> attrs = getNetworkAttributeAspectsFromSummary(fullSummary);
 		
 		CxAttributeDeclaration networkAttrDecl = null;
+		List<String> deletedAspects = new ArrayList<>();
 		if ( attrs.size() > 0 ) {	
 			AspectAttributeStat attributeStats = new AspectAttributeStat();
 			CxNetworkAttribute cx2NetAttr = new CxNetworkAttribute();
 
 			// write cx network attribute aspect file.
-			try (CXAspectWriter writer = new CXAspectWriter(aspectFilePath) ) {
+			try (CXAspectWriter writer = new CXAspectWriter(AspectStorage.newAspectOutputStream(aspectFilePath)) ) {
 				for ( NetworkAttributesElement e : attrs) {
 					writer.writeCXElement(e);	
 					writer.flush();
@@ -1089,18 +1122,14 @@ public class NetworkServiceV2 extends NdexService {
 			if ( isSingleNetwork) {
 				networkAttrDecl = attributeStats.createCxDeclaration();
 			
-				try (CX2AspectWriter<CxNetworkAttribute> aspWtr = new CX2AspectWriter<>(cx2AspectDirPath + CxNetworkAttribute.ASPECT_NAME)) {
+				try (CX2AspectWriter<CxNetworkAttribute> aspWtr = new CX2AspectWriter<>(AspectStorage.newAspectOutputStream(cx2AspectDirPath + CxNetworkAttribute.ASPECT_NAME))) {
 					aspWtr.writeCXElement(cx2NetAttr);
 				}
 			}
 		} else { // remove the aspect file if it exists
-			File f = new File ( aspectFilePath);
-			if ( f.exists())
-				f.delete();
+			deletedAspects.add(aspectFilePath);
 			if ( isSingleNetwork) {
-				f = new File(cx2AspectDirPath + CxNetworkAttribute.ASPECT_NAME);
-				if ( f.exists())
-					f.delete();
+				deletedAspects.add(cx2AspectDirPath + CxNetworkAttribute.ASPECT_NAME);
 			}
 		}
 		
@@ -1153,13 +1182,16 @@ public class NetworkServiceV2 extends NdexService {
 			}
 
 			networkDao.setCxMetadata(networkUUID, cx2metadata);
-			try (CX2AspectWriter<CxAttributeDeclaration> aspWtr = new CX2AspectWriter<>(
-					cx2AspectDirPath + CxAttributeDeclaration.ASPECT_NAME)) {
+			try (CX2AspectWriter<CxAttributeDeclaration> aspWtr = new CX2AspectWriter<>(AspectStorage.newAspectOutputStream(
+					cx2AspectDirPath + CxAttributeDeclaration.ASPECT_NAME))) {
 				aspWtr.writeCXElement(decls);
 			}
 
 		}
 		
+		// fold the updated aspect files into the segment file if this network is packed, before they are read back.
+		AspectStorage.finishAspectUpdate(fileStoreDir, deletedAspects);
+
 		//Recreate the CX file 					
 		CXNetworkFileGenerator g = new CXNetworkFileGenerator(networkUUID, metadata);
 		long cxFileSize = g.reCreateCXFile();
@@ -1189,6 +1221,7 @@ public class NetworkServiceV2 extends NdexService {
 
 			User user = getLoggedInUser();
 			UUID networkUUID = UUID.fromString(networkId);
+			Long expectedVersion = getIfMatchVersion();
 	
 	  	    if(networkDao.isReadOnly(networkUUID)) {
 				throw new NdexException ("Can't update readonly network.");				
@@ -1201,19 +1234,14 @@ public class NetworkServiceV2 extends NdexService {
 			if (!networkDao.networkIsValid(networkUUID))
 				throw new InvalidNetworkException();
 
-			try {
-					if ( networkDao.networkIsLocked(networkUUID,10)) {
-						throw new NetworkConcurrentModificationException ();
-					}
-			} catch (InterruptedException e2) {
-					e2.printStackTrace();
-					throw new NdexException("Failed to check network lock: " + e2.getMessage());
-			} 
-				
-				
+			if ( expectedVersion != null)
+				networkDao.checkNetworkVersion(networkUUID, expectedVersion.longValue());
+
 			try {
 				networkDao.lockNetwork(networkUUID);
 				
+				if ( expectedVersion != null)
+					networkDao.claimNetworkVersion(networkUUID, expectedVersion.longValue());
 				networkDao.updateNetworkSummary(networkUUID, summary);
 				
 				//recreate files and update db
@@ -1231,6 +1259,7 @@ public class NetworkServiceV2 extends NdexService {
 						  networkDao.setFlag(networkUUID, "iscomplete", true);
 						  networkDao.commit();
 				}
+				setETag(networkDao.getNetworkVersion(networkUUID));
 			} catch ( SQLException | IOException | IllegalArgumentException |NdexException e ) {
 					networkDao.rollback();
 					try {
@@ -1292,11 +1321,6 @@ public class NetworkServiceV2 extends NdexService {
 		        throw new UnauthorizedOperationException("User doesn't have write permissions for this network.");
 			} 
 			
-			if ( daoNew.networkIsLocked(networkId)) {
-				daoNew.close();
-				throw new NetworkConcurrentModificationException ();
-			} 
-			
 			daoNew.lockNetwork(networkId);
 						
 	        UUID tmpNetworkId = storeRawNetworkFromMultipart (input, cx1NetworkFileName);
@@ -1369,18 +1393,18 @@ public class NetworkServiceV2 extends NdexService {
 	private static void updateNetworkFromSavedFile(UUID networkId, NetworkDAO daoNew,
 			UUID tmpNetworkId) throws SQLException, NdexException, IOException, JsonParseException,
 			JsonMappingException, ObjectNotFoundException {
-		String cxFileName = Configuration.getInstance().getNdexRoot() + "/data/" + tmpNetworkId.toString()
+		String cxFileName = NetworkPathResolver.getNetworkDirPath(tmpNetworkId.toString())
 				+ "/network.cx";
 		long fileSize = new File(cxFileName).length();
 
 		daoNew.clearNetworkSummary(networkId, fileSize);
 
 		java.nio.file.Path src = Paths
-				.get(Configuration.getInstance().getNdexRoot() + "/data/" + tmpNetworkId);
+				.get(NetworkPathResolver.getNetworkDirPath(tmpNetworkId));
 		java.nio.file.Path tgt = Paths
-				.get(Configuration.getInstance().getNdexRoot() + "/data/" + networkId);
+				.get(NetworkPathResolver.getNetworkDirPath(networkId));
 		FileUtils.deleteDirectory(
-				new File(Configuration.getInstance().getNdexRoot() + "/data/" + networkId));
+				new File(NetworkPathResolver.getNetworkDirPath(networkId)));
 		Files.move(src, tgt, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
 
 		daoNew.commit();
@@ -1419,11 +1443,6 @@ public class NetworkServiceV2 extends NdexService {
 		        throw new UnauthorizedOperationException("User doesn't have write permissions for this network.");
 			} 
 			
-			if ( daoNew.networkIsLocked(networkId)) {
-				daoNew.close();
-				throw new NetworkConcurrentModificationException ();
-			} 
-			
 			daoNew.lockNetwork(networkId);
 			
 			
@@ -1460,11 +1479,6 @@ public class NetworkServiceV2 extends NdexService {
 		        throw new UnauthorizedOperationException("User doesn't have write permissions for this network.");
 			} 
 			
-			if ( daoNew.networkIsLocked(networkId)) {
-				daoNew.close();
-				throw new NetworkConcurrentModificationException ();
-			} 
-			
 			daoNew.lockNetwork(networkId);
 			
 			try (InputStream in = this.getInputStreamFromRequest()) {
@@ -1491,7 +1505,7 @@ public class NetworkServiceV2 extends NdexService {
 				daoNew.unlockNetwork(networkId);   				    		
 		} 
 		     
-		FileUtils.deleteDirectory(new File(Configuration.getInstance().getNdexRoot() + "/data/" + tmpNetworkId.toString()));
+		FileUtils.deleteDirectory(new File(NetworkPathResolver.getNetworkDirPath(tmpNetworkId.toString())));
 		 
 		daoNew.unlockNetwork(networkId);
 	}
@@ -1519,7 +1533,6 @@ public class NetworkServiceV2 extends NdexService {
 						networkDao.commit();
 
 						// move the row network to archive folder and delete the folder
-					    String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + networkId.toString();
 				        /*String archivePath = Configuration.getInstance().getNdexRoot() + "/data/_archive/";
 				        
 				        File archiveDir = new File(archivePath);
@@ -1533,7 +1546,7 @@ public class NetworkServiceV2 extends NdexService {
 						try {
 						//	Files.move(src, tgt, StandardCopyOption.ATOMIC_MOVE); 	
 						
-							FileUtils.deleteDirectory(new File(pathPrefix));
+							NetworkPathResolver.deleteNetworkDir(networkId);
 						} catch (IOException e) {
 							e.printStackTrace();
 							throw new NdexException("Failed to delete directory. Error: " + e.getMessage());
@@ -1704,6 +1717,11 @@ public class NetworkServiceV2 extends NdexService {
 					if ( !networkDao.networkIsValid(networkId))
 						throw new InvalidNetworkException();
 					
+					// these are db only changes, so with If-Match they are made without the network lock.
+					Long expectedVersion = getIfMatchVersion();
+					if ( expectedVersion != null)
+						networkDao.claimNetworkVersion(networkId, expectedVersion.longValue());
+					
 					if ( parameters.containsKey(readOnlyParameter)) {
 						if (!networkDao.isAdmin(networkId, userId))
 							throw new UnauthorizedOperationException("Only network owner can set readOnly Parameter.");
@@ -1754,6 +1772,7 @@ public class NetworkServiceV2 extends NdexService {
 							
 					}
 				    networkDao.commit();
+				    setETag(networkDao.getNetworkVersion(networkId));
 					return;
 			}
 		    
@@ -1808,7 +1827,7 @@ public class NetworkServiceV2 extends NdexService {
 		   String urlStr = Configuration.getInstance().getHostURI()  + 
 		            Configuration.getInstance().getRestAPIPrefix()+"/network/"+ uuidStr;
 		   
-		   String cxFileName = Configuration.getInstance().getNdexRoot() + "/data/" + uuidStr + "/" + cx1NetworkFileName;
+		   String cxFileName = NetworkPathResolver.getNetworkDirPath(uuidStr) + "/" + cx1NetworkFileName;
 		   long fileSize = new File(cxFileName).length();
 
 		   // create entry in db. 
@@ -1864,7 +1883,7 @@ public class NetworkServiceV2 extends NdexService {
 /*	   private static UUID storeRawNetworkFromStream(InputStream in) throws IOException {
 		   
 		   UUID uuid = NdexUUIDFactory.INSTANCE.createNewNDExUUID();
-		   String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + uuid.toString();
+		   String pathPrefix = NetworkPathResolver.getNetworkDirPath(uuid.toString());
 		   
 		   //Create dir
 		   java.nio.file.Path dir = Paths.get(pathPrefix);
@@ -1895,7 +1914,7 @@ public class NetworkServiceV2 extends NdexService {
 			 
 		   byte[] bytes = new byte[8192];
 		   UUID uuid = NdexUUIDFactory.INSTANCE.createNewNDExUUID();
-		   String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + uuid.toString();
+		   String pathPrefix = NetworkPathResolver.getNetworkDirPath(uuid.toString());
 				   
 		   //Create dir
 		   java.nio.file.Path dir = Paths.get(pathPrefix);
@@ -1972,17 +1991,16 @@ public class NetworkServiceV2 extends NdexService {
 			   String uuidStr = uuid.toString();
 			   
 			//	java.nio.file.Path src = Paths.get(Configuration.getInstance().getNdexRoot() + "/data/" + srcNetUUID.toString());
-				java.nio.file.Path tgt = Paths.get(Configuration.getInstance().getNdexRoot() + "/data/" + uuidStr);
 				
 				//Create dir
 				Set<PosixFilePermission> perms =
 						    PosixFilePermissions.fromString("rwxrwxr-x");
 				FileAttribute<Set<PosixFilePermission>> attr =
 						    PosixFilePermissions.asFileAttribute(perms);
-				Files.createDirectory(tgt,attr);
+				NetworkPathResolver.createNetworkDir(uuid,attr);
 				
-				String srcPathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + srcNetUUID.toString() + "/";
-				String tgtPathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + uuidStr + "/";
+				String srcPathPrefix = NetworkPathResolver.getNetworkDirPath(srcNetUUID.toString()) + "/";
+				String tgtPathPrefix = NetworkPathResolver.getNetworkDirPath(uuidStr) + "/";
 
 			    File srcAspectDir = new File ( srcPathPrefix + CXNetworkLoader.CX1AspectDir);
 			    if ( srcAspectDir.exists()) {
@@ -1994,18 +2012,31 @@ public class NetworkServiceV2 extends NdexService {
 			    String tgtCX2AspectPathPrefix = tgtPathPrefix + CX2NetworkLoader.cx2AspectDirName;
 			    String srcCX2AspectPathPrefix = srcPathPrefix + CX2NetworkLoader.cx2AspectDirName;
 			    File srcCX2AspectDir = new File (srcCX2AspectPathPrefix );
-			    Files.createDirectories(Paths.get(tgtCX2AspectPathPrefix), attr);
-			    for ( String fname : srcCX2AspectDir.list() ) {
-			    	java.nio.file.Path src = Paths.get(srcPathPrefix + CX2NetworkLoader.cx2AspectDirName , fname);
-			    	if (Files.isSymbolicLink(src)) {
-			    		java.nio.file.Path link = Paths.get(tgtCX2AspectPathPrefix, fname);
-			    		java.nio.file.Path target = Paths.get(tgtPathPrefix + CXNetworkLoader.CX1AspectDir, fname);
-			    		Files.createSymbolicLink(link, target);
-			    	} else {
-			    		Files.copy(Paths.get(srcCX2AspectPathPrefix, fname),
-			    				Paths.get(tgtCX2AspectPathPrefix, fname));
-			    	}
+			    if ( srcCX2AspectDir.exists()) {
+				    Files.createDirectories(Paths.get(tgtCX2AspectPathPrefix), attr);
+				    for ( String fname : srcCX2AspectDir.list() ) {
+				    	java.nio.file.Path src = Paths.get(srcPathPrefix + CX2NetworkLoader.cx2AspectDirName , fname);
+				    	if (Files.isSymbolicLink(src)) {
+				    		java.nio.file.Path link = Paths.get(tgtCX2AspectPathPrefix, fname);
+				    		java.nio.file.Path target = Paths.get(tgtPathPrefix + CXNetworkLoader.CX1AspectDir, fname);
+				    		Files.createSymbolicLink(link, target);
+				    	} else {
+				    		Files.copy(Paths.get(srcCX2AspectPathPrefix, fname),
+				    				Paths.get(tgtCX2AspectPathPrefix, fname));
+				    	}
 			    	
+				    }
+			    }
+			    
+			    // links in the segment file are relative to the network, so it can be copied as is.
+			    java.nio.file.Path srcSegment = Paths.get(srcPathPrefix + NetworkSegment.segmentFileName);
+			    if ( Files.exists(srcSegment)) {
+			    	Files.copy(srcSegment, Paths.get(tgtPathPrefix + NetworkSegment.segmentFileName));
+			    }
+			    
+			    File srcColumnarDir = new File ( srcPathPrefix + CX2ColumnarStore.columnarDirName);
+			    if ( srcColumnarDir.exists()) {
+			    	FileUtils.copyDirectory(srcColumnarDir, new File ( tgtPathPrefix + CX2ColumnarStore.columnarDirName));
 			    }
 			    
 			    String urlStr = Configuration.getInstance().getHostURI()  + 
@@ -2013,13 +2044,13 @@ public class NetworkServiceV2 extends NdexService {
 			   // ProvenanceEntity entity = new ProvenanceEntity();
 			  //  entity.setUri(urlStr + "/summary");
 			   
-			   String cxFileName = Configuration.getInstance().getNdexRoot() + "/data/" + srcNetUUID.toString() + "/" + cx1NetworkFileName;
+			   String cxFileName = NetworkPathResolver.getNetworkDirPath(srcNetUUID.toString()) + "/" + cx1NetworkFileName;
 			   long fileSize = new File(cxFileName).length();
 
 			   // copy sample 
-			   java.nio.file.Path srcSample = Paths.get(Configuration.getInstance().getNdexRoot() + "/data/" + srcNetUUID.toString() + "/sample.cx");
+			   java.nio.file.Path srcSample = Paths.get(NetworkPathResolver.getNetworkDirPath(srcNetUUID.toString()) + "/sample.cx");
 			   if ( Files.exists(srcSample, LinkOption.NOFOLLOW_LINKS)) {
-				   java.nio.file.Path tgtSample = Paths.get(Configuration.getInstance().getNdexRoot() + "/data/" + uuidStr + "/sample.cx");
+				   java.nio.file.Path tgtSample = Paths.get(NetworkPathResolver.getNetworkDirPath(uuidStr) + "/sample.cx");
 				   Files.copy(srcSample, tgtSample);
 			   }
 			   
@@ -3,8 +3,6 @@ package org.ndexbio.rest.services;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.PosixFilePermission;
@@ -15,11 +13,13 @@ import java.util.UUID;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.ndexbio.common.access.NdexDatabase;
 import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
+import org.ndexbio.common.models.dao.postgresql.NetworkLockManager;
 import org.ndexbio.common.persistence.CXNetworkLoader;
+import org.ndexbio.common.persistence.NetworkPathResolver;
 import org.ndexbio.model.exceptions.NdexException;
 import org.ndexbio.model.object.network.VisibilityType;
-import org.ndexbio.rest.Configuration;
 
 public class  NetworkStreamSaverThread extends Thread 
 {
@@ -30,19 +30,21 @@ public class  NetworkStreamSaverThread extends Thread
 		this.networkUUID = networkId;
 		this.input = in;
 	//	this.owner = ownerName;
+		NetworkLockManager.getInstance().handOff(networkId);
 	}
 	
 	@Override
 	public void run() {
-		String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + networkUUID.toString();
+		NdexDatabase.setCurrentThreadWorkload(NdexDatabase.Workload.BACKGROUND);
+		NetworkLockManager.getInstance().adopt(networkUUID);
+		String pathPrefix = NetworkPathResolver.getNetworkDirPath(networkUUID.toString());
 
 		// Create dir
-		java.nio.file.Path dir = Paths.get(pathPrefix);
 		Set<PosixFilePermission> perms = PosixFilePermissions.fromString("rwxrwxr-x");
 		FileAttribute<Set<PosixFilePermission>> attr = PosixFilePermissions.asFileAttribute(perms);
 
 		try {
-			Files.createDirectory(dir, attr);
+			NetworkPathResolver.createNetworkDir(networkUUID, attr);
 
 			// write content to file
 			File cxFile = new File(pathPrefix + "/network.cx");
@@ -0,0 +1,19 @@
+package org.ndexbio.rest.services;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an API function that only reads from the database. When read replicas are configured, its DAOs get their
+ * connections from a replica, unless the user committed a change in the last few seconds (see NdexDatabase). The
+ * connections are read only, so don't put it on a function that writes anything, including download counters or
+ * saved query results.
+ */
+@Retention (RUNTIME)
+@Target({METHOD})
+public @interface ReadsFromReplica {
+	// no content in this annotation because it is just a flag.
+}
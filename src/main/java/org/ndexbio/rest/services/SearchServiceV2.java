@@ -74,6 +74,7 @@ import org.ndexbio.common.models.dao.postgresql.GroupDAO;
 import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
 import org.ndexbio.common.models.dao.postgresql.UserDAO;
 import org.ndexbio.common.persistence.CXNetworkLoader;
+import org.ndexbio.common.persistence.NetworkPathResolver;
 import org.ndexbio.common.solr.SingleNetworkSolrIdxManager;
 import org.ndexbio.common.util.NdexUUIDFactory;
 import org.ndexbio.model.errorcodes.NDExError;
@@ -134,6 +135,7 @@ public class SearchServiceV2 extends NdexService {
 	@POST
 	@PermitAll
 	@AuthenticationNotRequired
+	@ReadsFromReplica
 	@Path("/user")
 	@Produces("application/json")
 	
@@ -169,6 +171,7 @@ public class SearchServiceV2 extends NdexService {
 	@POST
 	@PermitAll
 	@AuthenticationNotRequired
+	@ReadsFromReplica
 	@Path("/group")
 	@Produces("application/json")
 	public static SolrSearchResult<Group> findGroups(SimpleQuery simpleQuery,
@@ -189,6 +192,7 @@ public class SearchServiceV2 extends NdexService {
 
 	@POST
 	@PermitAll
+	@ReadsFromReplica
 	@Path("/network")
 	@Produces("application/json")
 	// TODO: need to node accountName is a filter and you cannot use wildcards
@@ -397,15 +401,14 @@ public class SearchServiceV2 extends NdexService {
 		
 		@Override
 		public void run() {
-			String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + networkUUID.toString();
+			String pathPrefix = NetworkPathResolver.getNetworkDirPath(networkUUID.toString());
 
 			// Create dir
-			java.nio.file.Path dir = Paths.get(pathPrefix);
 			Set<PosixFilePermission> perms = PosixFilePermissions.fromString("rwxrwxr-x");
 			FileAttribute<Set<PosixFilePermission>> attr = PosixFilePermissions.asFileAttribute(perms);
 
 			try {
-				Files.createDirectory(dir, attr);
+				NetworkPathResolver.createNetworkDir(networkUUID, attr);
 
 				// write content to file
 				File cxFile = new File(pathPrefix + "/network.cx");
@@ -611,6 +614,7 @@ public class SearchServiceV2 extends NdexService {
 	
 	@POST
 	@PermitAll
+	@ReadsFromReplica
 	@Path("/network/genes")
 	@Produces("application/json")
 	public NetworkSearchResult searchNetworkByGenes(
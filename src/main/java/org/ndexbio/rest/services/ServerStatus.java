@@ -0,0 +1,135 @@
+package org.ndexbio.rest.services;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import org.ndexbio.common.access.NdexDatabase;
+import org.ndexbio.model.exceptions.NdexException;
+import org.ndexbio.rest.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Data behind the status endpoints of the admin services.
+ * <p>
+ * Load balancers and monitors call the status every few seconds, so the network, user and group counts are read from
+ * the database at most once every NdexStatusRefreshSeconds (default 60); between refreshes the last snapshot is
+ * returned. Only one request refreshes the snapshot at a time, the others keep getting the previous one. The readiness
+ * check doesn't use the database at all, it only looks at the connection pool and the task queues.
+ */
+final class ServerStatus {
+
+	static Logger logger = LoggerFactory.getLogger(ServerStatus.class);
+
+	static final class Counts {
+		final int networkCount;
+		final int userCount;
+		final int groupCount;
+		// when the counts were read, in ms.
+		final long readAt;
+
+		Counts(int networkCount, int userCount, int groupCount, long readAt) {
+			this.networkCount = networkCount;
+			this.userCount = userCount;
+			this.groupCount = groupCount;
+			this.readAt = readAt;
+		}
+	}
+
+	@FunctionalInterface
+	interface CountReader {
+		Counts read(long now) throws SQLException, NdexException;
+	}
+
+	private static ServerStatus instance = null;
+
+	private final long refreshMillis;
+	private final CountReader reader;
+	private final LongSupplier clock;
+
+	private volatile Counts counts = null;
+	private final ReentrantLock refreshing = new ReentrantLock();
+
+	ServerStatus(long refreshMillis, CountReader reader, LongSupplier clock) {
+		this.refreshMillis = refreshMillis;
+		this.reader = reader;
+		this.clock = clock;
+	}
+
+	static synchronized ServerStatus getInstance() {
+		if ( instance == null)
+			instance = new ServerStatus(Configuration.getInstance().getStatusRefreshSeconds() * 1000,
+					ServerStatus::readCounts, System::currentTimeMillis);
+		return instance;
+	}
+
+	/**
+	 * @return the snapshot of the counts, read again if it is older than the refresh period.
+	 * @throws SQLException if the counts have never been read and reading them failed.
+	 */
+	Counts getCounts() throws SQLException, NdexException {
+		Counts c = counts;
+		if ( c != null && clock.getAsLong() - c.readAt < refreshMillis)
+			return c;
+		if ( c == null)
+			refreshing.lock();
+		else if ( !refreshing.tryLock())
+			// another request is refreshing them.
+			return c;
+		try {
+			Counts latest = counts;
+			if ( latest != c)
+				return latest;
+			long now = clock.getAsLong();
+			try {
+				counts = reader.read(now);
+			} catch (SQLException | NdexException e) {
+				if ( c == null)
+					throw e;
+				// keep the old counts, and don't try again before the next refresh.
+				logger.warn("Failed to refresh the server status counts: " + e.getMessage());
+				counts = new Counts(c.networkCount, c.userCount, c.groupCount, now);
+				return c;
+			}
+			return counts;
+		} finally {
+			refreshing.unlock();
+		}
+	}
+
+	private static Counts readCounts(long now) throws SQLException, NdexException {
+		try (Connection db = NdexDatabase.getInstance().getConnection()) {
+			return new Counts(AdminServiceV2.getClassCount(db, "network"), AdminServiceV2.getClassCount(db, "ndex_user"),
+					AdminServiceV2.getClassCount(db, "ndex_group"), now);
+		}
+	}
+
+	/**
+	 * @param requestPoolStats counts of the request pool (see NdexDatabase.getRequestPoolStats()), null if the database
+	 * is closed.
+	 * @param queueShutdown true if the task queues have been shut down.
+	 * @return the reasons why the server can't take requests, empty if it is ready.
+	 */
+	static List<String> getReadinessProblems(Map<String, Object> requestPoolStats, boolean queueShutdown) {
+		List<String> problems = new ArrayList<>();
+		if ( requestPoolStats == null)
+			problems.add("Database is closed.");
+		else {
+			int maxTotal = ((Number) requestPoolStats.get("maxTotal")).intValue();
+			int active = ((Number) requestPoolStats.get("active")).intValue();
+			int waiting = ((Number) requestPoolStats.get("waiting")).intValue();
+			// a negative maxTotal means the pool has no limit.
+			if ( maxTotal >= 0 && active >= maxTotal && waiting > 0)
+				problems.add("All " + maxTotal + " database connections are in use and " + waiting
+						+ " requests are waiting for one.");
+		}
+		if ( queueShutdown)
+			problems.add("Server is shutting down.");
+		return problems;
+	}
+}
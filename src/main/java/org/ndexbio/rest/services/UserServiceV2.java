@@ -58,10 +58,12 @@ import jakarta.ws.rs.core.Response;
 import org.ndexbio.common.models.dao.postgresql.GroupDAO;
 import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
 import org.ndexbio.common.models.dao.postgresql.NetworkSetDAO;
+import org.ndexbio.common.models.dao.postgresql.PageCursor;
 import org.ndexbio.common.models.dao.postgresql.RequestDAO;
 import org.ndexbio.common.models.dao.postgresql.UserDAO;
 import org.ndexbio.common.solr.UserIndexManager;
 import org.ndexbio.common.util.Util;
+import org.ndexbio.model.exceptions.BadRequestException;
 import org.ndexbio.model.exceptions.DuplicateObjectException;
 import org.ndexbio.model.exceptions.NdexException;
 import org.ndexbio.model.exceptions.ObjectNotFoundException;
@@ -1066,6 +1068,7 @@ public class UserServiceV2 extends NdexService {
 
 	   	
 	   	@GET
+		@ReadsFromReplica
 		@Path("/{userid}/showcase")
 		@Produces("application/json")
 		@PermitAll
@@ -1082,27 +1085,42 @@ public class UserServiceV2 extends NdexService {
 				
 			}   
 	   	
+	  	/**
+	  	 * Networks for the account page. When the cursor parameter is present (empty for the first page), the networks
+	  	 * are paged by keyset and offset is ignored; the cursor of the next page is sent in the NDEx-Next-Cursor header.
+	  	 */
 	  	@GET
+		@ReadsFromReplica
 		@Path("/{userid}/networksummary")
 		@Produces("application/json")
 		public List<NetworkSummary> getNetworkSummariesForMyAccountPage(
 						@PathParam("userid") String userIdStr,
 						@DefaultValue("0") @QueryParam("offset") int offset,
-						@DefaultValue("0") @QueryParam("limit") int limit
-			) throws SQLException, JsonParseException, JsonMappingException, IOException, UnauthorizedOperationException {
+						@DefaultValue("0") @QueryParam("limit") int limit,
+						@QueryParam("cursor") String cursor
+			) throws SQLException, JsonParseException, JsonMappingException, IOException, UnauthorizedOperationException, BadRequestException {
 
 			UUID userId = UUID.fromString(userIdStr);
 			if ( !userId.equals(getLoggedInUserId()))
 				throw new UnauthorizedOperationException("Userid has to be the same as the autheticated user's");
 			
 			try (NetworkDAO dao = new NetworkDAO()) {
+				if ( cursor != null) {
+					PageCursor.Page<List<NetworkSummary>> page =
+							dao.getNetworkSummariesForMyAccountPage(userId, getPageCursor(cursor), limit);
+					setNextCursor(page.getNext());
+					return page.getItems();
+				}
 				return dao.getNetworkSummariesForMyAccountPage(userId, offset, limit);
-			} 
+			} catch (IllegalArgumentException e) {
+				throw new BadRequestException(e.getMessage());
+			}
 					
 		}      	
 
 
 	  	@GET
+		@ReadsFromReplica
 		@Path("/{userid}/networkcount")
 		@Produces("application/json")
 		public Map<String,Integer> getNumNetworksForMyAccountPage(
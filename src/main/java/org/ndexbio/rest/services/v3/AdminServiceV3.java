@@ -4,6 +4,7 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.sql.SQLException;
 import java.util.Base64;
+import java.util.Map;
 
 import jakarta.annotation.security.PermitAll;
 import jakarta.servlet.http.HttpServletRequest;
@@ -22,6 +23,7 @@ import org.ndexbio.model.exceptions.UnauthorizedOperationException;
 import org.ndexbio.model.object.NdexStatus;
 import org.ndexbio.model.object.User;
 import org.ndexbio.rest.Configuration;
+import org.ndexbio.rest.exceptions.ServiceUnavailableException;
 import org.ndexbio.rest.services.AdminServiceV2;
 import org.ndexbio.rest.services.NdexOpenFunction;
 import org.ndexbio.rest.services.NdexService;
@@ -46,6 +48,26 @@ public class AdminServiceV3 extends NdexService {
 		AdminServiceV2 adminService = new AdminServiceV2(this._httpRequest );
 		return adminService.getStatus(format);
 	}
+
+	@GET
+	@PermitAll
+	@NdexOpenFunction
+	@Path("/status/live")
+	@Produces("application/json")
+	public Map<String,Object> getLiveness() {
+		AdminServiceV2 adminService = new AdminServiceV2(this._httpRequest );
+		return adminService.getLiveness();
+	}
+
+	@GET
+	@PermitAll
+	@NdexOpenFunction
+	@Path("/status/ready")
+	@Produces("application/json")
+	public Map<String,Object> getReadiness() throws ServiceUnavailableException {
+		AdminServiceV2 adminService = new AdminServiceV2(this._httpRequest );
+		return adminService.getReadiness();
+	}
 	
 	
 	@PUT
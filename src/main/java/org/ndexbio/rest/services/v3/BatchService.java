@@ -49,6 +49,7 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.Response;
 
 import org.ndexbio.common.importexport.ImporterExporterEntry;
 import org.ndexbio.common.models.dao.postgresql.GroupDAO;
@@ -67,10 +68,10 @@ import org.ndexbio.model.object.TaskType;
 import org.ndexbio.model.object.User;
 import org.ndexbio.model.object.network.NetworkSummary;
 import org.ndexbio.model.object.network.NetworkSummaryFormat;
-import org.ndexbio.model.object.network.NetworkSummaryV3;
 import org.ndexbio.rest.Configuration;
 import org.ndexbio.rest.filters.BasicAuthenticationFilter;
 import org.ndexbio.rest.services.NdexService;
+import org.ndexbio.rest.services.ReadsFromReplica;
 import org.ndexbio.task.NdexServerQueue;
 import org.ndexbio.task.NetworkExportTask;
 import org.slf4j.Logger;
@@ -101,9 +102,10 @@ public class BatchService extends NdexService {
 	
 	@PermitAll
 	@POST
+	@ReadsFromReplica
 	@Path("/networks/summary")
 	@Produces("application/json")
-	public List<NetworkSummaryV3> getNetworkSummaries(
+	public Response getNetworkSummaries(
 			@QueryParam("accesskey") String accessKey,
 			List<String> networkIdStrs,
 			@DefaultValue("FULL") @QueryParam("format") String format)
@@ -122,7 +124,8 @@ public class BatchService extends NdexService {
 
 			try (NetworkDAO dao = new NetworkDAO()) {
 				UUID userId = getLoggedInUserId();
-				return dao.getNetworkV3SummariesByIdStrList(networkIdStrs, userId, accessKey, fmt);
+				// the summaries are written from their cached JSON.
+				return createJsonArrayResponse(dao.getNetworkV3SummaryJsonByIdStrList(networkIdStrs, userId, accessKey, fmt));
 			}
 		} catch (IllegalArgumentException e) {
 			throw new BadRequestException("Format " + format + " is unsupported. Error message: " + e.getMessage());
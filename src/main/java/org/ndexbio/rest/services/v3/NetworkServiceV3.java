@@ -42,8 +42,11 @@ import jakarta.ws.rs.core.Response.ResponseBuilder;
 import org.apache.commons.io.FileUtils;
 import org.jboss.resteasy.plugins.providers.multipart.MultipartFormDataInput;
 import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
+import org.ndexbio.common.models.dao.postgresql.NetworkReadAccess;
 import org.ndexbio.common.models.dao.postgresql.UserDAO;
+import org.ndexbio.common.persistence.AspectStorage;
 import org.ndexbio.common.persistence.CX2NetworkLoader;
+import org.ndexbio.common.persistence.NetworkPathResolver;
 import org.ndexbio.common.util.Util;
 import org.ndexbio.cx2.aspect.element.core.CxAspectElement;
 import org.ndexbio.cx2.aspect.element.core.CxAttributeDeclaration;
@@ -112,9 +115,6 @@ public class NetworkServiceV3  extends NdexService {
     	String title = null;
     	try (NetworkDAO dao = new NetworkDAO()) {
     		UUID networkUUID = UUID.fromString(networkId);
-    		if ( !dao.hasCX2(networkUUID)) {
-    			throw new ObjectNotFoundException("CX2 network is not available for this network. ");
-    		}
      		UUID userId = getLoggedInUserId();
     		if ( userId == null ) {
     			if ( auth_token != null) {
@@ -125,13 +125,17 @@ public class NetworkServiceV3  extends NdexService {
     				userId = getOAuthAuthenticator().getUserUUIDByIdToken(id_token);
     			}
     		}
-    		if ( ! dao.isReadable(networkUUID, userId) && (!dao.accessKeyIsValid(networkUUID, accessKey))) 
+    		NetworkReadAccess<NetworkSummaryV3> access = dao.getNetworkMetadataForRead(networkUUID, userId, accessKey, NetworkSummaryFormat.COMPACT);
+    		if ( !access.hasCX2()) {
+    			throw new ObjectNotFoundException("CX2 network is not available for this network. ");
+    		}
+    		if ( !access.isAuthorized()) 
                 throw new UnauthorizedOperationException("User doesn't have read access to this network.");
     		
-    		title = dao.getNetworkName(networkUUID);
+    		title = access.getSummary().getName();
     	}
   
-		String cxFilePath = Configuration.getInstance().getNdexRoot() + "/data/" + networkId + "/"+ CX2NetworkLoader.cx2NetworkFileName;
+		String cxFilePath = NetworkPathResolver.getNetworkDirPath(networkId) + "/"+ CX2NetworkLoader.cx2NetworkFileName;
 
     	try {
 			FileInputStream in = new FileInputStream(cxFilePath)  ;
@@ -183,7 +187,7 @@ public class NetworkServiceV3  extends NdexService {
 			@PathParam("networkid") final String networkId,
 			@DefaultValue("first") @QueryParam("method") String method,
 			@DefaultValue("-1") @QueryParam("size") int limit,
-			@QueryParam("accesskey") String accessKey ) throws NdexException, SQLException {
+			@QueryParam("accesskey") String accessKey ) throws NdexException, SQLException, IOException {
 		if ( method.equalsIgnoreCase("first"))
 			return getAspectElements(networkId, CxEdge.ASPECT_NAME, limit, accessKey);
 		else if ( !method.equalsIgnoreCase("random"))
@@ -195,19 +199,20 @@ public class NetworkServiceV3  extends NdexService {
 			UUID networkUUID = UUID.fromString(networkId);
 	    	
 	    	try (NetworkDAO dao = new NetworkDAO()) {
-	    		if ( !dao.isReadable(networkUUID, getLoggedInUserId()) && 
-	    				! dao.accessKeyIsValid(networkUUID, accessKey)) {
+	    		NetworkReadAccess<NetworkSummaryV3> access = dao.getNetworkMetadataForRead(networkUUID, getLoggedInUserId(), 
+	    				accessKey, NetworkSummaryFormat.COMPACT);
+	    		if ( !access.isAuthorized()) {
 	    			throw new UnauthorizedOperationException("User doesn't have access to this network.");
 	    		}
-	    		long edgeCount = dao.getNetworkEdgeCount(networkUUID);
+	    		long edgeCount = access.getSummary().getEdgeCount();
 	    		TreeSet<Long> positions = Util.generateRandomId(limit, edgeCount);
 	    		
-	    		File cx2AspectDir = new File (Configuration.getInstance().getNdexRoot() + "/data/" + networkId 
+	    		File cx2AspectDir = new File (NetworkPathResolver.getNetworkDirPath(networkId) 
 	    				+ "/" + CX2NetworkLoader.cx2AspectDirName);
 
-	    		FileInputStream in = null;
+	    		InputStream in = null;
 				try {
-					in = new FileInputStream(cx2AspectDir + "/" + CxEdge.ASPECT_NAME);
+					in = AspectStorage.newAspectInputStream(cx2AspectDir + "/" + CxEdge.ASPECT_NAME);
 					   
 					PipedInputStream pin = new PipedInputStream();
 					PipedOutputStream out;
@@ -230,6 +235,8 @@ public class NetworkServiceV3  extends NdexService {
 					
 				} catch (@SuppressWarnings("unused") FileNotFoundException e) {
 						throw new ObjectNotFoundException("Aspect edges is not found in this network.");
+				} catch (IOException e) {
+						throw new NdexException("Failed to read aspect edges: " + e.getMessage(), e);
 				}
 	    	}	
 		}
@@ -253,12 +260,12 @@ public class NetworkServiceV3  extends NdexService {
     			throw new UnauthorizedOperationException("User doesn't have access to this network.");
     		}
     		
-    		File cx2AspectDir = new File (Configuration.getInstance().getNdexRoot() + "/data/" + networkId 
+    		File cx2AspectDir = new File (NetworkPathResolver.getNetworkDirPath(networkId) 
     				+ "/" + CX2NetworkLoader.cx2AspectDirName);
     		
-			FileInputStream in = null;
+			InputStream in = null;
 			try {
-				in = new FileInputStream(cx2AspectDir + "/" + aspectName);
+				in = AspectStorage.newAspectInputStream(cx2AspectDir + "/" + aspectName);
 				if ( limit <= 0) {
 						return 	Response.ok().type(MediaType.APPLICATION_JSON_TYPE).entity(in).build();
 			    } 
@@ -282,8 +289,10 @@ public class NetworkServiceV3  extends NdexService {
 				//	logger.info("[end: Return get one aspect in network {}]", networkId);
 					return 	Response.ok().type(MediaType.APPLICATION_JSON_TYPE).entity(pin).build();
 				
-			} catch (FileNotFoundException e) {
+			} catch (@SuppressWarnings("unused") FileNotFoundException e) {
 					throw new ObjectNotFoundException("Aspect "+ aspectName + " is not found in this network.");
+			} catch (IOException e) {
+					throw new NdexException("Failed to read aspect " + aspectName + ": " + e.getMessage(), e);
 			}
 		
     	}
@@ -293,10 +302,10 @@ public class NetworkServiceV3  extends NdexService {
 	private class CX2AspectElementsWriterThread extends Thread {
 		private OutputStream o;
 	//	private String networkId;
-		private FileInputStream in;
+		private InputStream in;
 		private String aspect;
 		private int limit;
-		public CX2AspectElementsWriterThread (OutputStream out, FileInputStream inputStream, String aspectName, int limit) {
+		public CX2AspectElementsWriterThread (OutputStream out, InputStream inputStream, String aspectName, int limit) {
 			o = out;
 		//	this.networkId = networkId;
 			aspect = aspectName;
@@ -337,9 +346,9 @@ public class NetworkServiceV3  extends NdexService {
 	private class CX2RandomEdgeWriterThread extends Thread {
 		private OutputStream o;
 	//	private String networkId;
-		private FileInputStream in;
+		private InputStream in;
 		private TreeSet<Long> positions;
-		public CX2RandomEdgeWriterThread (OutputStream out, FileInputStream inputStream, TreeSet<Long> positions) {
+		public CX2RandomEdgeWriterThread (OutputStream out, InputStream inputStream, TreeSet<Long> positions) {
 			o = out;
 		//	this.networkId = networkId;
 			this.positions = positions;
@@ -443,7 +452,7 @@ public class NetworkServiceV3  extends NdexService {
 		   
 			   String urlStr = Configuration.getInstance().getHostURI() +"/v3/networks/"+ uuidStr;
 			   
-			   String cxFileName = Configuration.getInstance().getNdexRoot() + "/data/" + uuidStr + "/" + CX2NetworkLoader.cx2NetworkFileName;
+			   String cxFileName = NetworkPathResolver.getNetworkDirPath(uuidStr) + "/" + CX2NetworkLoader.cx2NetworkFileName;
 			   long fileSize = new File(cxFileName).length();
 
 			   // create entry in db. 
@@ -594,18 +603,18 @@ public class NetworkServiceV3  extends NdexService {
 		private static NdexObjectUpdateStatus updateCx2NetworkFromSavedFile(UUID networkId, NetworkDAO daoNew,
 				UUID tmpNetworkId) throws SQLException, NdexException, IOException, JsonParseException,
 				JsonMappingException, ObjectNotFoundException {
-			String cxFileName = Configuration.getInstance().getNdexRoot() + "/data/" + tmpNetworkId.toString()
+			String cxFileName = NetworkPathResolver.getNetworkDirPath(tmpNetworkId.toString())
 					+ "/" + CX2NetworkLoader.cx2NetworkFileName;
 			long fileSize = new File(cxFileName).length();
 
 			NdexObjectUpdateStatus status = daoNew.clearNetworkSummary(networkId, fileSize);
 
 			java.nio.file.Path src = Paths
-					.get(Configuration.getInstance().getNdexRoot() + "/data/" + tmpNetworkId);
+					.get(NetworkPathResolver.getNetworkDirPath(tmpNetworkId));
 			java.nio.file.Path tgt = Paths
-					.get(Configuration.getInstance().getNdexRoot() + "/data/" + networkId);
+					.get(NetworkPathResolver.getNetworkDirPath(networkId));
 			FileUtils.deleteDirectory(
-					new File(Configuration.getInstance().getNdexRoot() + "/data/" + networkId));
+					new File(NetworkPathResolver.getNetworkDirPath(networkId)));
 			Files.move(src, tgt, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
 
 			daoNew.commit();
@@ -819,9 +828,10 @@ public class NetworkServiceV3  extends NdexService {
 			try (NetworkDAO dao = new NetworkDAO())  {
 				UUID userId = getLoggedInUserId();
 				UUID networkId = UUID.fromString(networkIdStr);
-				if ( dao.isReadable(networkId, userId) || dao.accessKeyIsValid(networkId, accessKey)) {
-					NetworkSummaryV3 summary = dao.getNetworkMetadataById(networkId,fmt);
-					return summary;	
+				NetworkReadAccess<NetworkSummaryV3> access = dao.getNetworkMetadataForRead(networkId, userId, accessKey, fmt);
+				if ( access.isAuthorized()) {
+					setETag(access.getVersion());
+					return access.getSummary();	
 				}
 					
 				throw new UnauthorizedOperationException ("Unauthorized access to network " + networkId);
@@ -6,6 +6,7 @@ import java.io.InputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.net.URISyntaxException;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -33,7 +34,10 @@ import jakarta.ws.rs.core.Response;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
 import org.ndexbio.common.models.dao.postgresql.UserDAO;
+import org.ndexbio.common.persistence.AspectStorage;
+import org.ndexbio.common.persistence.CX2ColumnarReader;
 import org.ndexbio.common.persistence.CX2NetworkLoader;
+import org.ndexbio.common.persistence.NetworkPathResolver;
 import org.ndexbio.cx2.aspect.element.core.CxAttributeDeclaration;
 import org.ndexbio.cx2.aspect.element.core.CxEdge;
 import org.ndexbio.cx2.aspect.element.core.CxMetadata;
@@ -102,19 +106,22 @@ public class SearchServiceV3 extends NdexService  {
 				throw new UnauthorizedOperationException("User doesn't have access to this network.");
 			}
 			
-			String cx2AspectDir = Configuration.getInstance().getNdexRoot() + File.separator + "data" +File.separator + networkId
+			String cx2AspectDir = NetworkPathResolver.getNetworkDirPath(networkId)
 					+ File.separator + CX2NetworkLoader.cx2AspectDirName+  File.separator;
 					
-			EdgeFilter filter = new EdgeFilter(queryParameter, limit, order, cx2AspectDir);
-			Set<CxEdge> result = filter.filterTopN();
+			Set<CxEdge> result;
+			try (AspectStorage.PlainAspectFile plainDir = AspectStorage.getPlainAspectDirectory(cx2AspectDir,
+					CxEdge.ASPECT_NAME, CxAttributeDeclaration.ASPECT_NAME)) {
+				EdgeFilter filter = new EdgeFilter(queryParameter, limit, order, plainDir.getPath());
+				result = filter.filterTopN();
+			}
 			if (format.equals("cx2"))
 				return Response.ok().type(MediaType.APPLICATION_JSON_TYPE).entity(result).build();
 			else if ( format.equals("cx")) {
-				String aspectFile = Configuration.getInstance().getNdexRoot() + File.separator + "data" +File.separator + networkId
+				String aspectFile = NetworkPathResolver.getNetworkDirPath(networkId)
 								+ File.separator + CX2NetworkLoader.cx2AspectDirName+  File.separator + CxAttributeDeclaration.ASPECT_NAME;
 				File vsFile = new File( aspectFile );
-				ObjectMapper om = new ObjectMapper();
-				CxAttributeDeclaration[] ds = om.readValue(vsFile, CxAttributeDeclaration[].class); 
+				CxAttributeDeclaration[] ds = AspectStorage.readValue(vsFile, CxAttributeDeclaration[].class); 
 						
 				Map<String, DeclarationEntry> edgeAttrDecls= 
 						ds[0].getDeclarations().get(CxEdge.ASPECT_NAME);
@@ -326,7 +333,7 @@ public class SearchServiceV3 extends NdexService  {
 			if ( dao.isReadable(networkId, userId) || dao.accessKeyIsValid(networkId, accessKey)) {
 				List<CxMetadata> md = dao.getCx2MetaDataList(networkId);
 			
-				String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + networkIdStr + "/aspects_cx2/";
+				String pathPrefix = NetworkPathResolver.getNetworkDirPath(networkIdStr) + "/aspects_cx2/";
 			
 				// get attribute declaration
 				CxAttributeDeclaration decl= null;
@@ -336,7 +343,7 @@ public class SearchServiceV3 extends NdexService  {
 
 			
 				if (md.stream().anyMatch(m -> m.getName().equals(CxAttributeDeclaration.ASPECT_NAME))) {
-					try (AspectIterator<CxAttributeDeclaration> ei = new AspectIterator<>( pathPrefix + CxAttributeDeclaration.ASPECT_NAME, CxAttributeDeclaration.class)) {
+					try (AspectIterator<CxAttributeDeclaration> ei = new AspectIterator<>( AspectStorage.newAspectInputStream(pathPrefix + CxAttributeDeclaration.ASPECT_NAME), CxAttributeDeclaration.class)) {
 						while (ei.hasNext()) {
 							decl = ei.next();
 							break;
@@ -409,8 +416,24 @@ public class SearchServiceV3 extends NdexService  {
 		        generator.writeStartObject(); // Start the object
 		        generator.setCodec(new ObjectMapper());
 		        
+		        // use the columnar copy of the node aspect when it has all the requested attributes
+		        CX2ColumnarReader columns = CX2ColumnarReader.open(Paths.get(pathPrefix).getParent(), CxNode.ASPECT_NAME);
+		        if ( columns != null && columns.hasAttributes(attrNames)) {
+		        	for ( Map.Entry<Long,Integer> row : columns.findRows(ids).entrySet()) {
+		        		Map<String,Object> attrs = new HashMap<>();
+		        		for (String attrName : attrNames) {
+		        			attrs.put(attrName, columns.getAttributeValue(attrName, row.getValue().intValue()));
+		        		}
+		        		generator.writeFieldName(row.getKey().toString());
+		        		generator.writeObject(attrs);
+		        	}
+		            generator.writeEndObject(); // End the object
+		            generator.close();
+		            return;
+		        }
+		        
 		        //iterate throw the node aspect and return the filtered result
-		        try (AspectIterator<CxNode> ei = new AspectIterator<>( pathPrefix + CxNode.ASPECT_NAME, CxNode.class)) {
+		        try (AspectIterator<CxNode> ei = new AspectIterator<>( AspectStorage.newAspectInputStream(pathPrefix + CxNode.ASPECT_NAME), CxNode.class)) {
 		        	while (ei.hasNext()) {
 		        		if ( count == ids.size())
 		        			break;
@@ -1,11 +1,11 @@
 package org.ndexbio.rest.services.v3;
 
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -14,7 +14,11 @@ import java.util.UUID;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
+import org.ndexbio.common.persistence.AspectStorage;
+import org.ndexbio.common.persistence.CX2ColumnarReader;
 import org.ndexbio.common.persistence.CX2NetworkLoader;
+import org.ndexbio.common.persistence.NetworkPathResolver;
+import org.ndexbio.common.persistence.ParallelAspectIterator;
 import org.ndexbio.cx2.aspect.element.core.CxAttributeDeclaration;
 import org.ndexbio.cx2.aspect.element.core.CxEdge;
 import org.ndexbio.cx2.aspect.element.core.CxNode;
@@ -22,13 +26,14 @@ import org.ndexbio.cx2.aspect.element.core.DeclarationEntry;
 import org.ndexbio.cx2.io.CX2AspectWriter;
 import org.ndexbio.cxio.aspects.datamodels.ATTRIBUTE_DATA_TYPE;
 import org.ndexbio.model.exceptions.NdexException;
-import org.ndexbio.rest.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.MappingIterator;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class TSVWriterThread extends Thread {
 	
+	private static final Logger logger = LoggerFactory.getLogger(TSVWriterThread.class);
+
 	private OutputStreamWriter out;
 	private UUID networkId;
 	private boolean exportNodes;
@@ -88,41 +93,49 @@ public class TSVWriterThread extends Thread {
 	
 	private void writeNodes() {
 
-		try (FileInputStream in = new FileInputStream(Configuration.getInstance().getNdexRoot() + "/data/" + networkId 
-				+ "/" + CX2NetworkLoader.cx2AspectDirName + "/" + CxNode.ASPECT_NAME) ) {
-
-			ObjectMapper om = new ObjectMapper();
-			Map<String, DeclarationEntry > attrTable = attrDecls == null? 
-					        null: attrDecls.getDeclarations().get(CxNode.ASPECT_NAME);
-			if ( nodeAttrs == null) {
-				if (attrTable != null) {
-					nodeAttrs = new String[attrTable.size()];
-					int i = 0;
-					for ( String s : attrTable.keySet()) {
-						nodeAttrs[i++]=s;
-					}	
-				}
+		Map<String, DeclarationEntry > attrTable = attrDecls == null? 
+				        null: attrDecls.getDeclarations().get(CxNode.ASPECT_NAME);
+		if ( nodeAttrs == null) {
+			if (attrTable != null) {
+				nodeAttrs = new String[attrTable.size()];
+				int i = 0;
+				for ( String s : attrTable.keySet()) {
+					nodeAttrs[i++]=s;
+				}	
 			}
-			
+		}
+
+		try {
 			if ( includeHeader) {
 				writeNodeTSVHeader(attrTable);
 			}
-			try (MappingIterator<CxNode> it = om.readerFor(CxNode.class).readValues(in) ) {
+
+			CX2ColumnarReader columns = openColumns(CxNode.ASPECT_NAME, nodeAttrs);
+			if ( columns != null) {
+				for ( int row = 0; row < columns.getRowCount(); row++) {
+					out.write(Long.toString(columns.getId(row)));
+					writeColumnValues(columns, row, nodeAttrs, attrTable);
+					out.write("\n");
+				}
+				return;
+			}
+
+			try (ParallelAspectIterator<CxNode> it = AspectStorage.newParallelAspectIterator(NetworkPathResolver.getNetworkDirPath(networkId) 
+					+ "/" + CX2NetworkLoader.cx2AspectDirName + "/" + CxNode.ASPECT_NAME, CxNode.class) ) {
 				while ( it.hasNext()) {
 					CxNode node = it.next();
 					node.extendToFullNode(attrTable);
-                    out.write(node.getId().toString());
-                    if ( nodeAttrs !=null && nodeAttrs.length > 0) {
-                    	for ( String attrName : nodeAttrs) {
-                    		out.write(delimiter);
-                    		Object v = node.getAttributes().get(attrName);
-                    		ATTRIBUTE_DATA_TYPE t = attrTable.get(attrName).getDataType();
-                    		out.write(cvtValueToString(v, t,true));
-                    	}                    	
-                    }
-                    out.write("\n");
+	                out.write(node.getId().toString());
+	                if ( nodeAttrs !=null && nodeAttrs.length > 0) {
+	                	for ( String attrName : nodeAttrs) {
+	                		out.write(delimiter);
+	                		Object v = node.getAttributes().get(attrName);
+	                		ATTRIBUTE_DATA_TYPE t = attrTable.get(attrName).getDataType();
+	                		out.write(cvtValueToString(v, t,true));
+	                	}                    	
+	                }
+	                out.write("\n");
 				}
-
 			}
 
 		} catch (IOException e) {
@@ -140,7 +153,6 @@ public class TSVWriterThread extends Thread {
 	
 	private void writeEdges() {
 
-		ObjectMapper om = new ObjectMapper();
 		Map<String, DeclarationEntry > edgeAttrTable = null;
 		if ( edgeAttrs == null) {
 			edgeAttrTable= attrDecls.getDeclarations().get(CxEdge.ASPECT_NAME);
@@ -168,18 +180,24 @@ public class TSVWriterThread extends Thread {
 		Map<String, DeclarationEntry> nodeAttrTable = attrDecls == null? null: 
 			attrDecls.getDeclarations().get(CxNode.ASPECT_NAME);
 
+		try {
+			if ( writeEdgesFromColumns(edgeAttrTable, nodeAttrTable))
+				return;
+		} catch (IOException e) {
+			// part of the rows have been sent and the output is closed, the JSON aspects can't be tried anymore.
+			logger.error("Failed to export the edges of network " + networkId + " from its columnar copy: " + e.getMessage(), e);
+			return;
+		}
+
 		Map<Long,CxNode> nodeTable = new TreeMap<>();
 		
-		try (FileInputStream in = new FileInputStream(Configuration.getInstance().getNdexRoot() + "/data/" + networkId 
-				+ "/" + CX2NetworkLoader.cx2AspectDirName + "/" + CxNode.ASPECT_NAME) ) {
-
-			try (MappingIterator<CxNode> it = om.readerFor(CxNode.class).readValues(in) ) {
-				while ( it.hasNext()) {
-					CxNode node = it.next();
-					node.extendToFullNode(attrDecls.getDeclarations().get(CxNode.ASPECT_NAME));
-					nodeTable.put(node.getId(), node);
-				}
+		try (ParallelAspectIterator<CxNode> it = AspectStorage.newParallelAspectIterator(NetworkPathResolver.getNetworkDirPath(networkId) 
+				+ "/" + CX2NetworkLoader.cx2AspectDirName + "/" + CxNode.ASPECT_NAME, CxNode.class) ) {
 
+			while ( it.hasNext()) {
+				CxNode node = it.next();
+				node.extendToFullNode(attrDecls.getDeclarations().get(CxNode.ASPECT_NAME));
+				nodeTable.put(node.getId(), node);
 			}
 
 		} catch (IOException e) {
@@ -189,8 +207,8 @@ public class TSVWriterThread extends Thread {
 		} 
 		
 		
-		try (FileInputStream in = new FileInputStream(Configuration.getInstance().getNdexRoot() + "/data/" + networkId 
-				+ "/" + CX2NetworkLoader.cx2AspectDirName + "/" + CxEdge.ASPECT_NAME) ) {
+		try (ParallelAspectIterator<CxEdge> it = AspectStorage.newParallelAspectIterator(NetworkPathResolver.getNetworkDirPath(networkId) 
+				+ "/" + CX2NetworkLoader.cx2AspectDirName + "/" + CxEdge.ASPECT_NAME, CxEdge.class) ) {
 
 			if ( includeHeader) {
 				writeEdgeTSVHeader(edgeAttrTable);
@@ -198,51 +216,48 @@ public class TSVWriterThread extends Thread {
 			
 			ATTRIBUTE_DATA_TYPE nodeKeyType = nodeKey.equals(idStr)? 
 					ATTRIBUTE_DATA_TYPE.LONG : nodeAttrTable.get(nodeKey).getDataType();
-			try (MappingIterator<CxEdge> it = om.readerFor(CxEdge.class).readValues(in) ) {
-				while ( it.hasNext()) {
-					CxEdge edge = it.next();
-					edge.extendToFullNode(edgeAttrTable);
-                    out.write(edge.getId().toString() + delimiter);
-                    
-                    CxNode srcNode = nodeTable.get(edge.getSource());
-                    CxNode tgtNode = nodeTable.get(edge.getTarget());
-                    
-                    if (nodeKey.equals(idStr)) {
-                    	out.write(srcNode.getId() + delimiter + tgtNode.getId());
-                    } else {
-                    	out.write ( cvtValueToString(srcNode.getAttributes().get(nodeKey) , nodeKeyType,true) + 
-                    			delimiter + cvtValueToString(tgtNode.getAttributes().get(nodeKey) , nodeKeyType,true));
-                    }
-                    
-                    if ( edgeAttrs !=null && edgeAttrs.length > 0) {
-                    	for ( String attrName : edgeAttrs) {
-                    		out.write(delimiter);
-                    		Object v = edge.getAttributes().get(attrName);
-                    		ATTRIBUTE_DATA_TYPE t = edgeAttrTable.get(attrName).getDataType();
-                    		out.write(cvtValueToString(v, t,true));
-                    	}                    	
-                    }
-                    
-                    if ( nodeAttrs !=null && nodeAttrs.length > 0 ) {
-                    	for ( String attrName : nodeAttrs) {
-                    		out.write(delimiter);
-                    		Object v = srcNode.getAttributes().get(attrName);
-                    		ATTRIBUTE_DATA_TYPE t = nodeAttrTable.get(attrName).getDataType();
-                    		out.write(cvtValueToString(v, t,true));
-                    	}
-                    	
-                    	for ( String attrName : nodeAttrs) {
-                    		out.write(delimiter);
-                    		Object v = tgtNode.getAttributes().get(attrName);
-                    		ATTRIBUTE_DATA_TYPE t = nodeAttrTable.get(attrName).getDataType();
-                    		out.write(cvtValueToString(v, t,true));
-                    	}
-                    	
-                    }
-                    
-                    out.write("\n");
-				}
-
+			while ( it.hasNext()) {
+				CxEdge edge = it.next();
+				edge.extendToFullNode(edgeAttrTable);
+                out.write(edge.getId().toString() + delimiter);
+                
+                CxNode srcNode = nodeTable.get(edge.getSource());
+                CxNode tgtNode = nodeTable.get(edge.getTarget());
+                
+                if (nodeKey.equals(idStr)) {
+                	out.write(srcNode.getId() + delimiter + tgtNode.getId());
+                } else {
+                	out.write ( cvtValueToString(srcNode.getAttributes().get(nodeKey) , nodeKeyType,true) + 
+                			delimiter + cvtValueToString(tgtNode.getAttributes().get(nodeKey) , nodeKeyType,true));
+                }
+                
+                if ( edgeAttrs !=null && edgeAttrs.length > 0) {
+                	for ( String attrName : edgeAttrs) {
+                		out.write(delimiter);
+                		Object v = edge.getAttributes().get(attrName);
+                		ATTRIBUTE_DATA_TYPE t = edgeAttrTable.get(attrName).getDataType();
+                		out.write(cvtValueToString(v, t,true));
+                	}                    	
+                }
+                
+                if ( nodeAttrs !=null && nodeAttrs.length > 0 ) {
+                	for ( String attrName : nodeAttrs) {
+                		out.write(delimiter);
+                		Object v = srcNode.getAttributes().get(attrName);
+                		ATTRIBUTE_DATA_TYPE t = nodeAttrTable.get(attrName).getDataType();
+                		out.write(cvtValueToString(v, t,true));
+                	}
+                	
+                	for ( String attrName : nodeAttrs) {
+                		out.write(delimiter);
+                		Object v = tgtNode.getAttributes().get(attrName);
+                		ATTRIBUTE_DATA_TYPE t = nodeAttrTable.get(attrName).getDataType();
+                		out.write(cvtValueToString(v, t,true));
+                	}
+                	
+                }
+                
+                out.write("\n");
 			}
 
 		} catch (IOException e) {
@@ -258,6 +273,91 @@ public class TSVWriterThread extends Thread {
 	}
 	
 	
+	/**
+	 * Write the edges from the columnar copy of the nodes and edges, so that no JSON is parsed and the nodes are
+	 * not loaded as objects.
+	 * @return false if the network has no columnar copy or the copy doesn't hold all the exported attributes.
+	 *   Nothing is written in that case, and neither when the columnar copy can't be read.
+	 * @throws IOException if writing the rows failed. The output is closed.
+	 */
+	private boolean writeEdgesFromColumns(Map<String, DeclarationEntry> edgeAttrTable,
+			Map<String, DeclarationEntry> nodeAttrTable) throws IOException {
+		CX2ColumnarReader edgeColumns;
+		CX2ColumnarReader nodeColumns;
+		try {
+			edgeColumns = openColumns(CxEdge.ASPECT_NAME, edgeAttrs);
+			if ( edgeColumns == null)
+				return false;
+			nodeColumns = nodeKey.equals(idStr) ? 
+					openColumns(CxNode.ASPECT_NAME, nodeAttrs) : openColumns(CxNode.ASPECT_NAME, nodeAttrs, new String[] {nodeKey});
+			if ( nodeColumns == null)
+				return false;
+		} catch (IOException e) {
+			logger.warn("Failed to read the columnar copy of network " + networkId + ", exporting from the JSON aspects: " + e.getMessage());
+			return false;
+		}
+
+		try {
+			if ( includeHeader) {
+				writeEdgeTSVHeader(edgeAttrTable);
+			}
+
+			ATTRIBUTE_DATA_TYPE nodeKeyType = nodeKey.equals(idStr)? 
+					ATTRIBUTE_DATA_TYPE.LONG : nodeAttrTable.get(nodeKey).getDataType();
+			Map<Long,Integer> nodeRows = nodeColumns.getRowIndex();
+			for ( int row = 0; row < edgeColumns.getRowCount(); row++) {
+				out.write(Long.toString(edgeColumns.getId(row)) + delimiter);
+
+				int srcRow = nodeRows.get(Long.valueOf(edgeColumns.getSource(row))).intValue();
+				int tgtRow = nodeRows.get(Long.valueOf(edgeColumns.getTarget(row))).intValue();
+
+				if (nodeKey.equals(idStr)) {
+					out.write(nodeColumns.getId(srcRow) + delimiter + nodeColumns.getId(tgtRow));
+				} else {
+					out.write ( cvtValueToString(nodeColumns.getAttributeValue(nodeKey, srcRow) , nodeKeyType,true) + 
+							delimiter + cvtValueToString(nodeColumns.getAttributeValue(nodeKey, tgtRow) , nodeKeyType,true));
+				}
+
+				writeColumnValues(edgeColumns, row, edgeAttrs, edgeAttrTable);
+				writeColumnValues(nodeColumns, srcRow, nodeAttrs, nodeAttrTable);
+				writeColumnValues(nodeColumns, tgtRow, nodeAttrs, nodeAttrTable);
+				out.write("\n");
+			}
+		} finally {
+			try {
+				out.close();
+			} catch (IOException e) {
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Open the columnar copy of an aspect if it holds all the given attributes.
+	 * @return null if the JSON aspect needs to be read.
+	 */
+	private CX2ColumnarReader openColumns(String aspectName, String[]... attrNames) throws IOException {
+		CX2ColumnarReader columns = CX2ColumnarReader.open(networkId.toString(), aspectName);
+		if ( columns == null)
+			return null;
+		for ( String[] names : attrNames) {
+			if ( names != null && !columns.hasAttributes(Arrays.asList(names)))
+				return null;
+		}
+		return columns;
+	}
+
+	private void writeColumnValues(CX2ColumnarReader columns, int row, String[] attrNames,
+			Map<String, DeclarationEntry> attrTable) throws IOException {
+		if ( attrNames == null)
+			return;
+		for ( String attrName : attrNames) {
+			out.write(delimiter);
+			ATTRIBUTE_DATA_TYPE t = attrTable.get(attrName).getDataType();
+			out.write(cvtValueToString(columns.getAttributeValue(attrName, row), t, true));
+		}
+	}
+
 	private void writeNodeTSVHeader( Map<String,DeclarationEntry> nodeAttrDecls) throws IOException {
 		out.write(idStr);
 		
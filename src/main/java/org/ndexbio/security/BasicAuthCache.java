@@ -0,0 +1,165 @@
+package org.ndexbio.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.ndexbio.model.object.User;
+import org.ndexbio.rest.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of successful Basic authentications, so that a client sending the same credentials on every request doesn't
+ * cost a password hash and a database lookup each time.
+ *
+ * Entries are keyed by an HMAC of the user name and password, with a random key that never leaves this process, so
+ * the passwords are not kept in memory. Entries expire BASIC_AUTH_CACHE_TTL seconds after they are created (default
+ * 60, 0 turns the cache off). UserDAO removes the entries of a user when the password, the verification status or the
+ * profile of the user changes, or when the user is deleted.
+ */
+public final class BasicAuthCache {
+
+	static Logger logger = LoggerFactory.getLogger(BasicAuthCache.class);
+
+	public static final String CACHE_TTL_PROPERTY = "BASIC_AUTH_CACHE_TTL";
+	public static final String CACHE_SIZE_PROPERTY = "BASIC_AUTH_CACHE_SIZE";
+
+	private static final long defaultTTL = 60;
+	private static final long defaultSize = 10000;
+	private static final String hmacAlgorithm = "HmacSHA256";
+
+	private static BasicAuthCache instance = null;
+
+	private final Cache<String, User> users;
+	private final SecretKeySpec secretKey;
+
+	// increased on every invalidation. An authentication that started before an invalidation is not cached, because
+	// it might have read the old password from the database.
+	private final AtomicLong generation = new AtomicLong();
+
+	private final ThreadLocal<Mac> macs = new ThreadLocal<>();
+
+	BasicAuthCache(long ttlSeconds, long maxSize) {
+		if ( ttlSeconds > 0) {
+			users = CacheBuilder.newBuilder().maximumSize(maxSize)
+					.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).build();
+		} else {
+			users = null;
+		}
+		byte[] key = new byte[32];
+		new SecureRandom().nextBytes(key);
+		secretKey = new SecretKeySpec(key, hmacAlgorithm);
+	}
+
+	public static synchronized BasicAuthCache getInstance() {
+		if ( instance == null) {
+			long ttl = defaultTTL;
+			long size = defaultSize;
+			Configuration config = Configuration.getInstance();
+			if ( config != null) {
+				String value = config.getProperty(CACHE_TTL_PROPERTY);
+				if ( value != null)
+					ttl = Long.parseLong(value.trim());
+				value = config.getProperty(CACHE_SIZE_PROPERTY);
+				if ( value != null)
+					size = Long.parseLong(value.trim());
+			}
+			instance = new BasicAuthCache(ttl, size);
+			if ( instance.isEnabled())
+				logger.info("Basic authentication cache turned on. TTL: " + ttl + " seconds, size: " + size + ".");
+		}
+		return instance;
+	}
+
+	public boolean isEnabled() {
+		return users != null;
+	}
+
+	/**
+	 * Get the current invalidation generation. Call this before checking the credentials against the database and
+	 * pass the value to {@link #put(String, String, User, long)}.
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 *
+	 * @param userName
+	 * @param password
+	 * @return the user authenticated by these credentials, or null if they are not in the cache.
+	 */
+	public User get(String userName, String password) {
+		if ( users == null)
+			return null;
+		return users.getIfPresent(getKey(userName, password));
+	}
+
+	/**
+	 * Cache a successful authentication.
+	 * @param userName
+	 * @param password
+	 * @param user
+	 * @param startGeneration the value of {@link #getGeneration()} before the credentials were checked.
+	 */
+	public void put(String userName, String password, User user, long startGeneration) {
+		if ( users == null || user.getExternalId() == null)
+			return;
+		String key = getKey(userName, password);
+		users.put(key, user);
+		// an invalidation happened while this user was authenticated, the entry might already be stale.
+		if ( generation.get() != startGeneration)
+			users.invalidate(key);
+	}
+
+	/**
+	 * Remove all the cached authentications of a user.
+	 * @param userId
+	 */
+	public void invalidateUser(UUID userId) {
+		generation.incrementAndGet();
+		if ( users == null)
+			return;
+		users.asMap().values().removeIf(u -> userId.equals(u.getExternalId()));
+	}
+
+	public void invalidateAll() {
+		generation.incrementAndGet();
+		if ( users != null)
+			users.invalidateAll();
+	}
+
+	long size() {
+		return users == null ? 0 : users.size();
+	}
+
+	private String getKey(String userName, String password) {
+		Mac mac = macs.get();
+		try {
+			if ( mac == null) {
+				mac = Mac.getInstance(hmacAlgorithm);
+				mac.init(secretKey);
+				macs.set(mac);
+			}
+		} catch (NoSuchAlgorithmException | InvalidKeyException e) {
+			// HmacSHA256 is required in every Java platform.
+			throw new IllegalStateException("Failed to create " + hmacAlgorithm + " for the authentication cache.", e);
+		}
+		mac.update(userName.getBytes(StandardCharsets.UTF_8));
+		mac.update((byte) 0);
+		return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+	}
+
+}
@@ -37,10 +37,14 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
@@ -59,25 +63,44 @@ import org.ndexbio.model.exceptions.ObjectNotFoundException;
 import org.ndexbio.model.exceptions.UnauthorizedOperationException;
 import org.ndexbio.model.object.User;
 import org.ndexbio.rest.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken.Payload;
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
+import com.google.api.client.googleapis.auth.oauth2.GooglePublicKeysManager;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.json.gson.GsonFactory;
 
+/**
+ * Authenticates users with Google id tokens. The verifier, its HTTP transport and Google's signing certificates are
+ * shared by all requests; the certificates are reloaded in a background thread. The user resolved from a token is
+ * cached until the token expires.
+ */
 public class GoogleOpenIDAuthenticator implements OAuthAuthenticator{
 
+	static Logger logger = LoggerFactory.getLogger(GoogleOpenIDAuthenticator.class);
+
 //	private static final String GOOGLE_OAUTH_KEY = "GOOGLE_OAUTH_KEY";
 	private static final String GOOGLE_OAUTH_CLIENT_ID = "GOOGLE_OAUTH_CLIENT_ID";
 	private static final String GOOGLE_OAUTH_CLIENT_SECRET = "GOOGLE_OAUTH_CLIENT_SECRET";
+	public static final String TOKEN_CACHE_TTL_PROPERTY = "GOOGLE_OAUTH_TOKEN_CACHE_TTL";
+	public static final String KEY_REFRESH_INTERVAL_PROPERTY = "GOOGLE_OAUTH_KEY_REFRESH_INTERVAL";
+
+	private static final long defaultTokenCacheTTL = 300;
+	private static final long defaultKeyRefreshInterval = 30;
+	private static final long tokenCacheSize = 10000;
 
 	private String apiState;
 	private String clientID;
 	private String clientSecret;
-//	private GoogleIdTokenVerifier verifier;
+	private GoogleIdTokenVerifier verifier;
+	private GooglePublicKeysManager publicKeys;
+	private ScheduledExecutorService keyRefresher;
+	private TokenUserCache userCache;
 
 	// a table to support google OAuth authentication. a access_token -> user uuid mapping table
 	private Map<String,OAuthUserRecord> googleTokenTable ;  
@@ -92,6 +115,55 @@ public class GoogleOpenIDAuthenticator implements OAuthAuthenticator{
 		
 		googleTokenTable = new TreeMap<>();
 
+		String value = config.getProperty(TOKEN_CACHE_TTL_PROPERTY);
+		long tokenCacheTTL = value == null ? defaultTokenCacheTTL : Long.parseLong(value.trim());
+		value = config.getProperty(KEY_REFRESH_INTERVAL_PROPERTY);
+		long keyRefreshInterval = value == null ? defaultKeyRefreshInterval : Long.parseLong(value.trim());
+
+		try {
+			init(new GooglePublicKeysManager.Builder(GoogleNetHttpTransport.newTrustedTransport(), 
+					GsonFactory.getDefaultInstance()).build(), tokenCacheTTL, keyRefreshInterval);
+		} catch (GeneralSecurityException | IOException e) {
+			throw new NdexException("Failed to create Google OAuth authenticator: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Create an authenticator that gets the signing certificates from the given key manager.
+	 * @param clientID
+	 * @param publicKeys
+	 * @param tokenCacheTTL upper limit in seconds for how long a user stays cached for a token. 0 turns the cache off.
+	 * @param keyRefreshInterval minutes between reloads of the certificates.
+	 */
+	GoogleOpenIDAuthenticator(String clientID, GooglePublicKeysManager publicKeys, long tokenCacheTTL, long keyRefreshInterval) {
+		this.clientID = clientID;
+		googleTokenTable = new TreeMap<>();
+		init(publicKeys, tokenCacheTTL, keyRefreshInterval);
+	}
+
+	private void init(GooglePublicKeysManager keysManager, long tokenCacheTTL, long keyRefreshInterval) {
+		publicKeys = keysManager;
+		verifier = new GoogleIdTokenVerifier.Builder(publicKeys)
+			    .setAudience(Collections.singletonList(clientID))
+			    .build();
+		userCache = new TokenUserCache(tokenCacheTTL, tokenCacheSize);
+
+		keyRefresher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "google-oauth-key-refresher");
+			t.setDaemon(true);
+			return t;
+		});
+		// load the certificates now, and reload them before they expire so that no request waits for them.
+		keyRefresher.scheduleWithFixedDelay(this::refreshPublicKeys, 0, keyRefreshInterval, TimeUnit.MINUTES);
+	}
+
+	private void refreshPublicKeys() {
+		try {
+			publicKeys.refresh();
+		} catch (GeneralSecurityException | IOException e) {
+			// the verifier keeps using the current certificates, and loads them itself when they expire.
+			logger.warn("Failed to reload Google OAuth signing certificates: " + e.getMessage());
+		}
 	}
 
 	public String getAPIStateKey () {return apiState;}
@@ -106,10 +178,30 @@ public class GoogleOpenIDAuthenticator implements OAuthAuthenticator{
 		}
 	}
 	
+	@Override
 	public User getUserByIdToken(String idTokenString) throws GeneralSecurityException, IOException, IllegalArgumentException, ObjectNotFoundException, NdexException {
 		
+		  User user = userCache.get(idTokenString);
+		  if ( user != null)
+			  return user;
+
 		  Payload payload = getPayloadFromIdToken(idTokenString);
+		  long generation = userCache.getGeneration();
+		  user = getUserFromPayload(payload);
+		  Long exp = payload.getExpirationTimeSeconds();
+		  userCache.put(idTokenString, user, exp == null ? null : new Date(exp.longValue() * 1000), generation);
+		  return user;
+	}
 
+	/**
+	 * Find the NDEx user of a verified token.
+	 * @param payload
+	 * @return
+	 * @throws ObjectNotFoundException
+	 * @throws NdexException
+	 * @throws IOException
+	 */
+	protected User getUserFromPayload(Payload payload) throws ObjectNotFoundException, NdexException, IOException {
 		  // Print user identifier
 		//  String userId = payload.getSubject();
 		//  System.out.println("User ID: " + userId);
@@ -133,10 +225,6 @@ public class GoogleOpenIDAuthenticator implements OAuthAuthenticator{
 	}
 	
     public GoogleIdToken.Payload getPayloadFromIdToken(String idTokenString) throws GeneralSecurityException, IOException, UnauthorizedOperationException {
-        GoogleIdTokenVerifier verifier = new GoogleIdTokenVerifier.Builder(GoogleNetHttpTransport.newTrustedTransport(), GsonFactory.getDefaultInstance())
-			    .setAudience(Collections.singletonList(clientID))
-			    .build();
-		
         GoogleIdToken idToken = verifier.verify(idTokenString);
 		if (idToken != null) {
             return idToken.getPayload();
@@ -145,25 +233,13 @@ public class GoogleOpenIDAuthenticator implements OAuthAuthenticator{
     }
 	
 	
+	/**
+	 * Resolved through {@link #getUserByIdToken(String)}, so the user found for the token is cached for the next
+	 * requests made with it.
+	 */
+	@Override
 	public UUID getUserUUIDByIdToken(String idTokenString) throws GeneralSecurityException, IOException, IllegalArgumentException, ObjectNotFoundException, NdexException {
-		
-		Payload payload = getPayloadFromIdToken(idTokenString);
-
-		// Print user identifier
-		String userId = payload.getSubject();
-		System.out.println("User ID: " + userId);
-
-		// Get profile information from payload
-		String email = payload.getEmail();
-
-		try (UserDAO userDao = new UserDAO()) {
-			UUID userUUID = userDao.getUUIDByEmail(email.toLowerCase());
-			return userUUID;
-		} catch (SQLException e1) {
-			e1.printStackTrace();
-			throw new UnauthorizedOperationException("SQL Error when getting user by email: " + e1.getMessage());
-		}
-
+		return getUserByIdToken(idTokenString).getExternalId();
 	}
 /*	
 	public String getIDTokenFromQueryStr(String googleQueryString) throws NdexException, ClientProtocolException, IOException, SQLException, IllegalArgumentException, NoSuchAlgorithmException {
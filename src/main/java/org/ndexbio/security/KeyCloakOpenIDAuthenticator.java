@@ -2,15 +2,9 @@ package org.ndexbio.security;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
-import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.interfaces.RSAPublicKey;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.PKCS8EncodedKeySpec;
-import java.security.spec.X509EncodedKeySpec;
 import java.sql.SQLException;
-import java.util.Base64;
 import java.util.UUID;
 
 import org.ndexbio.common.models.dao.postgresql.UserDAO;
@@ -24,85 +18,81 @@ import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.interfaces.DecodedJWT;
 
+/**
+ * Authenticates users with the id tokens issued by a Keycloak realm. Each token is decoded and verified once per
+ * request, and the user it resolves to is cached until the token expires.
+ */
 public class KeyCloakOpenIDAuthenticator implements OAuthAuthenticator {
 		
+	public static final String TOKEN_CACHE_TTL_PROPERTY = "KEYCLOAK_TOKEN_CACHE_TTL";
+
+	// default upper limit in seconds for how long a user stays cached for a token.
+	public static final long defaultTokenCacheTTL = 300;
+
+	private static final long tokenCacheSize = 10000;
+
 	JWTVerifier verifier;
+
+	private TokenUserCache userCache;
 	 
 	public KeyCloakOpenIDAuthenticator(String pubKeyStr, String issuer) throws InvalidKeySpecException, NoSuchAlgorithmException {
-		
-		KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+		this(new KeyCloakSigningKeys(pubKeyStr), issuer, defaultTokenCacheTTL);
+	}
 
-		byte[] encodedPub = Base64.getDecoder().decode(pubKeyStr);
-		
-		RSAPublicKey pubk = (RSAPublicKey) keyFactory.generatePublic(new X509EncodedKeySpec(encodedPub));
-		
-		verifier = JWT.require (Algorithm.RSA256(pubk, null))
+	/**
+	 * 
+	 * @param signingKeys
+	 * @param issuer
+	 * @param tokenCacheTTL upper limit in seconds for how long a user stays cached for a token. 0 turns the cache off.
+	 */
+	public KeyCloakOpenIDAuthenticator(KeyCloakSigningKeys signingKeys, String issuer, long tokenCacheTTL) {
+		verifier = JWT.require (Algorithm.RSA256(signingKeys))
 		          .withIssuer(issuer)//"http://localhost:8080/realms/googleauth")
 		          .build();
-	}
-
-	
-	private String getUserEmailFromIdToken(String idToken) {
-	
-		DecodedJWT jwt = getDecodedJWT(idToken);
-				
-		return jwt.getClaim("email").asString();
-		
+		userCache = new TokenUserCache(tokenCacheTTL, tokenCacheSize);
 	}
 
 	//decode the token and verify it.
-	private DecodedJWT getDecodedJWT(String idToken) {
-		DecodedJWT jwt = JWT.decode(idToken);
-		verifier.verify(jwt);
-		return jwt;
+	DecodedJWT getDecodedJWT(String idToken) {
+		return verifier.verify(idToken);
 	}
 
+	/**
+	 * Resolved through {@link #getUserByIdToken(String)}, so the user found for the token is cached for the next
+	 * requests made with it.
+	 */
 	@Override
 	public UUID getUserUUIDByIdToken(String idTokenString) throws GeneralSecurityException, IOException,
 			IllegalArgumentException, ObjectNotFoundException, NdexException {
-		String username = getUserNameFromIdToken(idTokenString);
-		//try to get user by username	
-		if (username != null) {
-			try (UserDAO userDao = new UserDAO()) {
-				User u = userDao.getUserByAccountName(username, true, false);
-				if ( !u.getIsVerified())
-					throw UnauthorizedOperationException.createUnVerifiedAccountError(u.getUserName(), u.getEmailAddress());
-				return u.getExternalId();
-			} catch (SQLException e1) {
-				e1.printStackTrace();
-				throw new NdexException("SQL Error when getting user by username: " + e1.getMessage());
-			} catch (ObjectNotFoundException e) {
-				// Didn't find the user by username. Go to the next step.
-			}
-		}
-
-		//if username is not specified in id token, try to get user by email
-		String email = getUserEmailFromIdToken(idTokenString);
-		if ( email == null)
-			throw new UnauthorizedOperationException("Email is not found in the token.");
-		try (UserDAO userDao = new UserDAO()) {
-			UUID userUUID = userDao.getUUIDByEmail(email.toLowerCase());
-			return userUUID;
-		} catch (SQLException e1) {
-			e1.printStackTrace();
-			throw new UnauthorizedOperationException("SQL Error when getting user by email: " + e1.getMessage());
-		}
+		return getUserByIdToken(idTokenString).getExternalId();
 	}
 
-
-	private String getUserNameFromIdToken(String idToken) {
-		DecodedJWT jwt = getDecodedJWT(idToken);
-
-		return jwt.getClaim("preferred_username").asString();
-
-	}
-	
 	@Override
 	public User getUserByIdToken(String idTokenString) throws GeneralSecurityException, IOException,
 			IllegalArgumentException, ObjectNotFoundException, NdexException {
 		
+		User user = userCache.get(idTokenString);
+		if ( user != null)
+			return user;
+
+		DecodedJWT jwt = getDecodedJWT(idTokenString);
+		long generation = userCache.getGeneration();
+		user = getUserFromVerifiedToken(jwt);
+		userCache.put(idTokenString, user, jwt.getExpiresAt(), generation);
+		return user;
+	}
+
+	/**
+	 * Find the NDEx user of a verified token.
+	 * @param jwt
+	 * @return
+	 * @throws ObjectNotFoundException
+	 * @throws NdexException
+	 * @throws IOException 
+	 */
+	protected User getUserFromVerifiedToken(DecodedJWT jwt) throws ObjectNotFoundException, NdexException, IOException {
 		//Try to get user by username first
-		String username = getUserNameFromIdToken(idTokenString);
+		String username = jwt.getClaim("preferred_username").asString();
 		if (username != null) {
 			try (UserDAO userDao = new UserDAO()) {
 				User u = userDao.getUserByAccountName(username, false, true);
@@ -119,7 +109,7 @@ public class KeyCloakOpenIDAuthenticator implements OAuthAuthenticator {
 			}
 		}
 		//Try to get user by email and return the user
-		String email = getUserEmailFromIdToken(idTokenString);
+		String email = jwt.getClaim("email").asString();
 		if ( email == null)
 			throw new UnauthorizedOperationException("No username or email is specified in the token.");
 		
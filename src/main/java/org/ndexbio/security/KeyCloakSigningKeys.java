@@ -0,0 +1,166 @@
+package org.ndexbio.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.auth0.jwt.interfaces.RSAKeyProvider;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Public keys used to verify the tokens signed by Keycloak. The keys are either a single key configured in
+ * ndex.properties (KEYCLOAK_PUBLIC_KEY), or the key set published by the realm (KEYCLOAK_JWKS_URL, for example
+ * https://host/realms/ndex/protocol/openid-connect/certs). A key set is loaded when the server starts and reloaded
+ * in a background thread, so token verification never waits for a network call. A token signed with a key
+ * that is not in the current set fails, and the set is reloaded in the background right away.
+ */
+public class KeyCloakSigningKeys implements RSAKeyProvider {
+
+	static Logger logger = LoggerFactory.getLogger(KeyCloakSigningKeys.class);
+
+	private static final int connectTimeout = 10000;
+
+	private volatile Map<String, RSAPublicKey> keys;
+
+	// the configured key, used for all tokens when no key set url is given.
+	private RSAPublicKey staticKey;
+
+	private String jwksURL;
+	private ScheduledExecutorService refresher;
+	private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+	/**
+	 * Use a single configured public key.
+	 * @param pubKeyStr Base64 encoded X.509 public key.
+	 * @throws InvalidKeySpecException
+	 * @throws NoSuchAlgorithmException
+	 */
+	public KeyCloakSigningKeys(String pubKeyStr) throws InvalidKeySpecException, NoSuchAlgorithmException {
+		KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+		byte[] encodedPub = Base64.getDecoder().decode(pubKeyStr);
+		staticKey = (RSAPublicKey) keyFactory.generatePublic(new X509EncodedKeySpec(encodedPub));
+		keys = Collections.emptyMap();
+	}
+
+	/**
+	 * Load the key set from the realm and reload it every refreshMinutes minutes.
+	 * @param jwksURL
+	 * @param refreshMinutes
+	 * @throws IOException when the key set can't be loaded.
+	 * @throws InvalidKeySpecException
+	 * @throws NoSuchAlgorithmException
+	 */
+	public KeyCloakSigningKeys(String jwksURL, long refreshMinutes) throws IOException, InvalidKeySpecException, NoSuchAlgorithmException {
+		this.jwksURL = jwksURL;
+		keys = parseJWKS(fetchJWKS(jwksURL));
+		logger.info(keys.size() + " signing keys loaded from " + jwksURL);
+		refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "keycloak-jwks-refresher");
+			t.setDaemon(true);
+			return t;
+		});
+		refresher.scheduleWithFixedDelay(this::refresh, refreshMinutes, refreshMinutes, TimeUnit.MINUTES);
+	}
+
+	KeyCloakSigningKeys(Map<String, RSAPublicKey> keys) {
+		this.keys = keys;
+	}
+
+	@Override
+	public RSAPublicKey getPublicKeyById(String keyId) {
+		if ( staticKey != null)
+			return staticKey;
+		RSAPublicKey key = keyId == null ? null : keys.get(keyId);
+		if ( key == null && keyId != null && refresher != null && !refreshing.get()) {
+			// the realm might have rotated its keys.
+			refresher.execute(this::refresh);
+		}
+		return key;
+	}
+
+	@Override
+	public RSAPrivateKey getPrivateKey() {
+		return null;
+	}
+
+	@Override
+	public String getPrivateKeyId() {
+		return null;
+	}
+
+	private void refresh() {
+		if ( !refreshing.compareAndSet(false, true))
+			return;
+		try {
+			keys = parseJWKS(fetchJWKS(jwksURL));
+		} catch (IOException | InvalidKeySpecException | NoSuchAlgorithmException e) {
+			// keep the current keys.
+			logger.warn("Failed to reload the Keycloak signing keys from " + jwksURL + ": " + e.getMessage());
+		} finally {
+			refreshing.set(false);
+		}
+	}
+
+	private static JsonNode fetchJWKS(String url) throws IOException {
+		HttpURLConnection c = (HttpURLConnection) new URL(url).openConnection();
+		c.setConnectTimeout(connectTimeout);
+		c.setReadTimeout(connectTimeout);
+		c.setRequestProperty("Accept", "application/json");
+		try {
+			if ( c.getResponseCode() != HttpURLConnection.HTTP_OK)
+				throw new IOException("HTTP status " + c.getResponseCode() + " from " + url);
+			try (InputStream in = c.getInputStream()) {
+				return new ObjectMapper().readTree(in);
+			}
+		} finally {
+			c.disconnect();
+		}
+	}
+
+	/**
+	 * Get the RSA signing keys from a JSON Web Key Set.
+	 * @param jwks
+	 * @return map from key id to key.
+	 * @throws InvalidKeySpecException
+	 * @throws NoSuchAlgorithmException
+	 */
+	static Map<String, RSAPublicKey> parseJWKS(JsonNode jwks) throws InvalidKeySpecException, NoSuchAlgorithmException {
+		KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+		Map<String, RSAPublicKey> result = new HashMap<>();
+		JsonNode keyList = jwks.get("keys");
+		if ( keyList == null)
+			return result;
+		Base64.Decoder decoder = Base64.getUrlDecoder();
+		for ( JsonNode key : keyList) {
+			if ( !"RSA".equals(key.path("kty").asText()) || "enc".equals(key.path("use").asText())
+					|| !key.hasNonNull("kid") || !key.hasNonNull("n") || !key.hasNonNull("e"))
+				continue;
+			BigInteger modulus = new BigInteger(1, decoder.decode(key.get("n").asText()));
+			BigInteger exponent = new BigInteger(1, decoder.decode(key.get("e").asText()));
+			result.put(key.get("kid").asText(),
+					(RSAPublicKey) keyFactory.generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+		}
+		return result;
+	}
+}
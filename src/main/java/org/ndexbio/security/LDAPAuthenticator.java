@@ -30,14 +30,18 @@
  */
 package org.ndexbio.security;
 
-import java.util.AbstractMap;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
 import java.util.Hashtable;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.naming.AuthenticationException;
 import javax.naming.Context;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
@@ -45,8 +49,6 @@ import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
 import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
-import javax.naming.ldap.InitialLdapContext;
-import javax.naming.ldap.LdapContext;
 
 import org.ndexbio.model.exceptions.NdexException;
 import org.ndexbio.model.exceptions.UnauthorizedOperationException;
@@ -54,20 +56,30 @@ import org.ndexbio.model.object.User;
 import org.ndexbio.rest.Configuration;
 import org.ndexbio.rest.helpers.Security;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 
+/**
+ * Authenticates users against an LDAP or Active Directory server. Binds go through a {@link LDAPConnectionPool}, and
+ * when AD_AUTH_USE_CACHE is on, results are cached by a salted hash of the credentials: successful authentications for
+ * AD_AUTH_CACHE_TTL seconds, rejected ones for the shorter AD_AUTH_NEGATIVE_CACHE_TTL seconds, so that repeated
+ * attempts with wrong passwords don't each cost a bind on the directory.
+ */
 public class LDAPAuthenticator {
 	
 	static Logger logger = Logger.getLogger(LDAPAuthenticator.class.getName());
 	
-	private final static int CACHE_SIZE = 100;
+	private final static int CACHE_SIZE = 10000;
 	
 	private final static String PROP_LDAP_URL = "PROP_LDAP_URL";
 	private final static String AD_SEARCH_BASE= "AD_SEARCH_BASE";
 	private final static String AD_NDEX_GROUP_NAME="AD_NDEX";
 	private final static String AD_AUTH_USE_CACHE="AD_AUTH_USE_CACHE";
+	private final static String AD_AUTH_CACHE_TTL="AD_AUTH_CACHE_TTL";
+	private final static String AD_AUTH_NEGATIVE_CACHE_TTL="AD_AUTH_NEGATIVE_CACHE_TTL";
+	private final static String AD_CONNECTION_POOL_SIZE="AD_CONNECTION_POOL_SIZE";
+	private final static String AD_CONNECTION_IDLE_TIMEOUT="AD_CONNECTION_IDLE_TIMEOUT";
+	private final static String AD_CONNECTION_WAIT_TIMEOUT="AD_CONNECTION_WAIT_TIMEOUT";
 	private final static String JAVA_KEYSTORE="KEYSTORE_PATH";
 	private final static String AD_USE_SSL="AD_USE_SSL";
 	private final static String AD_TRACE_MODE="AD_TRACE_MODE";
@@ -76,6 +88,13 @@ public class LDAPAuthenticator {
     private final static String AD_CTX_PRINCIPLE2 = "AD_CTX_PRINCIPLE2";
     protected final static String AD_SEARCH_FILTER = "AD_SEARCH_FILTER";
     protected final static String userNamePattern = "%%USER_NAME%%";
+
+    private final static long defaultCacheTTL = 120;
+    private final static long defaultNegativeCacheTTL = 15;
+    private final static int defaultPoolSize = 10;
+    private final static long defaultIdleTimeout = 300;
+    private final static long defaultWaitTimeout = 10;
+    private final static int connectTimeout = 10000;
     
 	private String ldapAdServer;
 	protected String ldapSearchBase;
@@ -95,9 +114,16 @@ public class LDAPAuthenticator {
 	protected String delegatedUserName ;
 	private String delegatedUserPassword;
 
-	
-	//key is the combination of 
-	protected LoadingCache<java.util.Map.Entry<String,String>, Boolean>  userCredentials;
+	protected LDAPConnectionPool connectionPool;
+
+	// successful authentications. Keys are salted hashes of the user name and password.
+	protected Cache<String, Boolean> userCredentials;
+
+	// rejected authentications, the value is the error message returned to the user. An empty string means the
+	// credentials are valid but the user is not in the NDEx group.
+	protected Cache<String, String> rejectedCredentials;
+
+	private final byte[] salt;
 	
 	public LDAPAuthenticator (Configuration config) throws NdexException {
 		
@@ -134,6 +160,8 @@ public class LDAPAuthenticator {
 		env.put(Context.SECURITY_AUTHENTICATION, "simple");
         env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
         env.put(Context.PROVIDER_URL, ldapAdServer);
+        env.put("com.sun.jndi.ldap.connect.timeout", Integer.toString(connectTimeout));
+        env.put("com.sun.jndi.ldap.read.timeout", Integer.toString(connectTimeout));
        
        env.put("java.naming.ldap.attributes.binary", "objectSID");
        
@@ -144,32 +172,24 @@ public class LDAPAuthenticator {
        
 	   pattern = Pattern.compile("^CN=(.*?[^\\\\]),");
 
+	   salt = new byte[32];
+	   new SecureRandom().nextBytes(salt);
+
 	   String useCacheStr = config.getProperty(AD_AUTH_USE_CACHE);
        if (useCacheStr != null && Boolean.parseBoolean(useCacheStr)) {
        	 useCache = true;
-       	 logger.info("Server AD Authentication cache turned on.");
+       	 long ttl = getLongProperty(config, AD_AUTH_CACHE_TTL, defaultCacheTTL);
+       	 long negativeTTL = getLongProperty(config, AD_AUTH_NEGATIVE_CACHE_TTL, defaultNegativeCacheTTL);
+       	 logger.info("Server AD Authentication cache turned on. TTL: " + ttl + " seconds, TTL of rejected credentials: "
+       			 + negativeTTL + " seconds.");
        	 userCredentials = CacheBuilder
 				.newBuilder().maximumSize(CACHE_SIZE)
-				.expireAfterAccess(10L, TimeUnit.MINUTES)
-				//.expireAfterWrite(1L, TimeUnit.HOURS)
-				.build(new CacheLoader<java.util.Map.Entry<String,String>, Boolean>() {
-				   @Override
-				   public Boolean load(java.util.Map.Entry<String,String> entry) throws NdexException, ExecutionException {
-					   String userName = entry.getKey();
-					   String pswd = entry.getValue();
-					   Boolean userIsInGrp = ( delegatedUserName !=null) ? 
-							   userIsInNdexGroup(getFullyQualifiedNameByUserId(userName),pswd)
-							      : userIsInNdexGroup(userName, pswd);
-                   	   if ( userIsInGrp.booleanValue() ) {
-                   		   userCredentials.put(new AbstractMap.SimpleImmutableEntry<>(userName, pswd), Boolean.TRUE);	
-                   		   return Boolean.TRUE;
-                   	   } 
-                   		
-                   	   userCredentials.put(new AbstractMap.SimpleImmutableEntry<>(userName, pswd), Boolean.FALSE);
-                   	   throw new UnauthorizedOperationException("User " + userName + " is not in the required group." );
-                   	   
-				   }
-			    });
+				.expireAfterWrite(ttl, TimeUnit.SECONDS)
+				.build();
+       	 rejectedCredentials = CacheBuilder
+ 				.newBuilder().maximumSize(CACHE_SIZE)
+ 				.expireAfterWrite(negativeTTL, TimeUnit.SECONDS)
+ 				.build();
        } else {
     	   useCache = false;
        }
@@ -192,6 +212,22 @@ public class LDAPAuthenticator {
            logger.info("Server AD authentication using ssl with keystore "+ keystore);
        }
 
+       int poolSize = (int) getLongProperty(config, AD_CONNECTION_POOL_SIZE, defaultPoolSize);
+       connectionPool = new LDAPConnectionPool(env, poolSize,
+    		   getLongProperty(config, AD_CONNECTION_IDLE_TIMEOUT, defaultIdleTimeout),
+    		   getLongProperty(config, AD_CONNECTION_WAIT_TIMEOUT, defaultWaitTimeout));
+       logger.info("Server AD connection pool size: " + poolSize + ".");
+	}
+
+	private static long getLongProperty(Configuration config, String name, long defaultValue) throws NdexException {
+		String value = config.getProperty(name);
+		if ( value == null)
+			return defaultValue;
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			throw new NdexException("Invalid value " + value + " for configuration property " + name + ".");
+		}
 	}
 
 	/*
@@ -205,38 +241,43 @@ public class LDAPAuthenticator {
 		return  username.equals("chenjing") && password.equals("chenjing");
 		
 	} */
+
+	/**
+	 * Bind to the directory as a user and run an operation. Falls back to AD_CTX_PRINCIPLE2 when the bind with
+	 * AD_CTX_PRINCIPLE fails for any reason, not only rejected credentials.
+	 */
+	private <T> T executeAsUser(String username, String password, LDAPConnectionPool.LDAPOperation<T> operation) throws NamingException {
+		if ( delegatedUserName != null)
+			return connectionPool.execute(username, password, operation);
+		return connectionPool.execute(ctxPrinciplePattern.replaceAll(userNamePattern, username),
+				ctxPrinciplePattern2 == null ? null : ctxPrinciplePattern2.replaceAll(userNamePattern, username),
+				password, operation);
+	}
 	
 	protected Boolean userIsInNdexGroup (String username, String password) throws UnauthorizedOperationException  {
       
+	  return userIsInNdexGroup(username, password, null);
+	}
+
+	private Boolean userIsInNdexGroup (String username, String password, String cacheKey) throws UnauthorizedOperationException  {
  	  //env.put(Context.SECURITY_PRINCIPAL, "NA\\" +username);
 	  String searchFilter = null;
 	  String searchBase = ldapSearchBase;
 	  if ( delegatedUserName != null) {
-		  env.put(Context.SECURITY_PRINCIPAL,username);
 		  searchBase = username;
 		  searchFilter = "(objectClass=user)";
 	  } else {
-		  env.put(Context.SECURITY_PRINCIPAL, ctxPrinciplePattern.replaceAll(userNamePattern, username));
 		  searchFilter = searchFilterPattern.replaceAll(userNamePattern, username);
 	  }
+	  final String base = searchBase;
+	  final String filter = searchFilter;
 	  
-	  env.put(Context.SECURITY_CREDENTIALS, password);
       try {
-    	  LdapContext ctx;
-	  try {
-		  ctx = new InitialLdapContext(env,null);
-	  } catch (NamingException e) {
-		  if (ctxPrinciplePattern2 != null && delegatedUserName == null) {
-			env.put(Context.SECURITY_PRINCIPAL, ctxPrinciplePattern2.replaceAll(userNamePattern, username));
-			ctx = new InitialLdapContext(env,null);
-		  } else {
-			throw e;
-		  }
-	  }
-	   
+    	  return executeAsUser(username, password, ctx -> {
 		  SearchControls searchControls = new SearchControls();
 		  searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
-		  NamingEnumeration<SearchResult> results = ctx.search(searchBase, searchFilter, searchControls);
+		  NamingEnumeration<SearchResult> results = ctx.search(base, filter, searchControls);
+		  try {
 		  SearchResult searchResult = null;
 			if (results.hasMoreElements()) {
 				searchResult = results.nextElement();
@@ -244,7 +285,9 @@ public class LDAPAuthenticator {
 			//			Attribute uWWID = attrs.get("employeeID");
 				if ( ldapNDExGroup != null ) {
 					Attribute grp = attrs.get("memberOf");
-					NamingEnumeration enu = grp.getAll();
+					if ( grp == null)
+						return Boolean.FALSE;
+					NamingEnumeration<?> enu = grp.getAll();
 					while ( enu.hasMore()) {
 						String obj = (String)enu.next();
 						//	        	System.out.println(obj);
@@ -260,6 +303,15 @@ public class LDAPAuthenticator {
 				return Boolean.TRUE;
 			}
 			return Boolean.FALSE;
+		  } finally {
+			  results.close();
+		  }
+    	  });
+      } catch (AuthenticationException e) {
+    	  // wrong user name or password. 
+    	  if ( cacheKey != null)
+    		  rejectedCredentials.put(cacheKey, e.getMessage() == null ? "Invalid credentials." : e.getMessage());
+    	  throw new UnauthorizedOperationException(e.getMessage());
       } catch (NamingException e) {
     	  throw new UnauthorizedOperationException(e.getMessage());
       }
@@ -272,36 +324,28 @@ public class LDAPAuthenticator {
 	 	  //env.put(Context.SECURITY_PRINCIPAL, "NA\\" +username);
 	      String searchFilter = null;
 		  String searchBase = ldapSearchBase;
+		  String principal = username;
 		  if (delegatedUserName != null) {
 			  String cn = getFullyQualifiedNameByUserId(username);
-			  env.put(Context.SECURITY_PRINCIPAL,cn);
+			  principal = cn;
 			  searchBase = cn;
 			  searchFilter = "(objectClass=user)";
 		  } else {
-			  env.put(Context.SECURITY_PRINCIPAL, ctxPrinciplePattern.replaceAll(userNamePattern, username));
 			  searchFilter = searchFilterPattern.replaceAll(userNamePattern, username);
 		  }
+		  final String base = searchBase;
+		  final String filter = searchFilter;
 			
-	      env.put(Context.SECURITY_CREDENTIALS, password);
 	      try {
-	    	  LdapContext ctx;
-		  try {
-			  ctx = new InitialLdapContext(env,null);
-		  } catch (NamingException e) {
-			  if (ctxPrinciplePattern2 != null && delegatedUserName == null) {
-				env.put(Context.SECURITY_PRINCIPAL, ctxPrinciplePattern2.replaceAll(userNamePattern, username));
-				ctx = new InitialLdapContext(env,null);
-		  	  } else {
-				throw e;
-			  }
-		  }
+	    	  return executeAsUser(principal, password, ctx -> {
 	      
 	    	  // String searchFilter = "(&(SAMAccountName="+ username + ")(objectClass=user)(objectCategory=person))";
 	    	  //String searchFilter = searchFilterPattern.replaceAll(userNamePattern, username);
 		  
 	    	  SearchControls searchControls = new SearchControls();
 	    	  searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
-	    	  NamingEnumeration<SearchResult> results = ctx.search(searchBase, searchFilter, searchControls);
+	    	  NamingEnumeration<SearchResult> results = ctx.search(base, filter, searchControls);
+	    	  try {
 		  
 	    	  SearchResult searchResult = null;
 	    	  if ( results.hasMoreElements()) {
@@ -315,17 +359,17 @@ public class LDAPAuthenticator {
 
                 
                 Attribute attr =attrs.get("givenName");
-                if ( attr.size()>0) {
+                if ( attr != null && attr.size()>0) {
                 	newUser.setFirstName(attr.get(0).toString());
                 }
                 
                 attr =attrs.get("sn");
-                if ( attr.size()>0) {
+                if ( attr != null && attr.size()>0) {
                 	newUser.setLastName(attr.get(0).toString());
                 }
                 
                 attr =attrs.get("mail");
-                if ( attr.size()>0) {
+                if ( attr != null && attr.size()>0) {
                 	newUser.setEmailAddress(attr.get(0).toString());
                 }
 				
@@ -333,6 +377,10 @@ public class LDAPAuthenticator {
 				
 	    	  }
 	    	  return null;
+	    	  } finally {
+	    		  results.close();
+	    	  }
+	    	  });
 	      } catch (NamingException e) {
 	    	  throw new UnauthorizedOperationException(e.getMessage());
 	      }
@@ -340,30 +388,63 @@ public class LDAPAuthenticator {
 
 	
 	
-	public synchronized boolean authenticateUser(String username, String password) throws UnauthorizedOperationException {
-		if ( !useCache) {
-			if ( delegatedUserName !=null) {  
-				return userIsInNdexGroup(getFullyQualifiedNameByUserId(username),password).booleanValue();
+	public boolean authenticateUser(String username, String password) throws UnauthorizedOperationException {
+		String key = null;
+		if ( useCache) {
+			key = getCacheKey(username, password);
+			if ( userCredentials.getIfPresent(key) != null)
+				return true;
+			String rejection = rejectedCredentials.getIfPresent(key);
+			if ( rejection != null) {
+				if ( rejection.isEmpty())
+					return false;
+				throw new UnauthorizedOperationException(rejection);
 			}
-			return userIsInNdexGroup(username,password).booleanValue();
 		}
-		
-		Boolean result;
+
+		// concurrent requests with the same credentials might all go to the directory, which is fine since the
+		// pool limits the number of connections.
+		String name = username;
+		if ( delegatedUserName != null) {
+			name = getFullyQualifiedNameByUserId(username);
+			if ( name == null) {
+				String msg = "User " + username + " not found.";
+				if ( key != null)
+					rejectedCredentials.put(key, msg);
+				throw new UnauthorizedOperationException(msg);
+			}
+		}
+		boolean isInGroup = userIsInNdexGroup(name, password, key).booleanValue();
+		if ( key != null) {
+			if ( isInGroup)
+				userCredentials.put(key, Boolean.TRUE);
+			else
+				rejectedCredentials.put(key, "");
+		}
+		return isInGroup;
+	}
+
+	// salted hash of the credentials, so that the passwords are not kept in memory.
+	private String getCacheKey(String username, String password) {
 		try {
-			result = userCredentials.get(new AbstractMap.SimpleImmutableEntry<>(username, password));
-		} catch (ExecutionException e) {
-			throw new UnauthorizedOperationException(e.getMessage());
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			md.update(salt);
+			md.update(username.getBytes(StandardCharsets.UTF_8));
+			md.update((byte) 0);
+			md.update(password.getBytes(StandardCharsets.UTF_8));
+			return Base64.getEncoder().encodeToString(md.digest());
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-256 is required in every Java platform.
+			throw new IllegalStateException("SHA-256 is not available.", e);
 		}
-		return result.booleanValue() ;
 	}
 	
 	
 	protected String getFullyQualifiedNameByUserId(String userId) throws UnauthorizedOperationException {
 		
-		  env.put(Context.SECURITY_PRINCIPAL, ctxPrinciplePattern.replaceAll(userNamePattern, delegatedUserName));	
-	      env.put(Context.SECURITY_CREDENTIALS, delegatedUserPassword);
 	      try {
-	    	  LdapContext ctx = new InitialLdapContext(env,null);
+	    	  return connectionPool.execute(ctxPrinciplePattern.replaceAll(userNamePattern, delegatedUserName),
+	    			  delegatedUserPassword, ctx -> {
 		
 	    	  String searchFilter = searchFilterPattern.replaceAll(userNamePattern, userId);
 
@@ -371,13 +452,17 @@ public class LDAPAuthenticator {
 	    	  searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
 	    	  NamingEnumeration<SearchResult> results = ctx.search(ldapSearchBase,
 	    			  searchFilter, searchControls);
-
+	    	  try {
 	    	  SearchResult searchResult = null;
 	    	  if (results.hasMoreElements()) {
 	    		  searchResult = results.nextElement();
 	    		  return searchResult.getNameInNamespace();
 	    	  }
 	    	  return null;
+	    	  } finally {
+	    		  results.close();
+	    	  }
+	    	  });
 	      } catch (NamingException e) {
 	    	  throw new UnauthorizedOperationException(e.getMessage());
 	      }
@@ -0,0 +1,194 @@
+package org.ndexbio.security;
+
+import java.util.Hashtable;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.naming.AuthenticationException;
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
+
+/**
+ * A pool of connections to the LDAP server. A connection is bound to a different user each time it is taken from the
+ * pool, by sending a new bind request on the open connection (LDAP v3), so authenticating a user doesn't cost a new TCP
+ * and TLS handshake with the directory. The pool also limits how many connections this server opens to the directory
+ * at the same time.
+ */
+final class LDAPConnectionPool {
+
+	static Logger logger = Logger.getLogger(LDAPConnectionPool.class.getName());
+
+	/**
+	 * An operation on a connection that has been bound to a user.
+	 */
+	@FunctionalInterface
+	interface LDAPOperation<T> {
+		T run(LdapContext ctx) throws NamingException;
+	}
+
+	private static class IdleConnection {
+		final LdapContext ctx;
+		final long releasedAt;
+
+		IdleConnection(LdapContext ctx) {
+			this.ctx = ctx;
+			this.releasedAt = System.currentTimeMillis();
+		}
+	}
+
+	private final Hashtable<String, Object> env;
+	private final int maxSize;
+	private final long idleTimeoutMillis;
+	private final long waitTimeoutMillis;
+
+	// most recently used first, so that the idle connections at the end are the ones that time out.
+	private final LinkedBlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+	private final Semaphore permits;
+
+	/**
+	 *
+	 * @param env environment of the connections, without the principal and the credentials.
+	 * @param maxSize maximum number of connections. 0 turns the pooling off, every operation opens a new connection.
+	 * @param idleTimeoutSeconds idle connections older than this are closed instead of being reused.
+	 * @param waitTimeoutSeconds how long an operation waits for a connection when all of them are in use.
+	 */
+	LDAPConnectionPool(Hashtable<String, Object> env, int maxSize, long idleTimeoutSeconds, long waitTimeoutSeconds) {
+		this.env = new Hashtable<>(env);
+		this.env.remove(Context.SECURITY_PRINCIPAL);
+		this.env.remove(Context.SECURITY_CREDENTIALS);
+		this.maxSize = maxSize;
+		this.idleTimeoutMillis = idleTimeoutSeconds * 1000;
+		this.waitTimeoutMillis = waitTimeoutSeconds * 1000;
+		this.permits = maxSize > 0 ? new Semaphore(maxSize, true) : null;
+	}
+
+	/**
+	 * Bind a connection to the given principal and run an operation on it.
+	 * @param principal
+	 * @param password
+	 * @param operation
+	 * @return the result of the operation.
+	 * @throws AuthenticationException when the server rejects the credentials.
+	 * @throws NamingException
+	 */
+	<T> T execute(String principal, String password, LDAPOperation<T> operation) throws NamingException {
+		return execute(principal, null, password, operation);
+	}
+
+	/**
+	 * Bind a connection to the given principal and run an operation on it. If the bind fails for any reason, e.g. the
+	 * directory doesn't accept the format of the principal, it is tried again with fallbackPrincipal. Errors thrown by
+	 * the operation are not retried.
+	 * @param principal
+	 * @param fallbackPrincipal null if there is no other principal to try.
+	 * @param password
+	 * @param operation
+	 * @return the result of the operation.
+	 * @throws NamingException
+	 */
+	<T> T execute(String principal, String fallbackPrincipal, String password, LDAPOperation<T> operation) throws NamingException {
+		if ( permits == null) {
+			LdapContext ctx = bind(principal, fallbackPrincipal, password, false);
+			try {
+				return operation.run(ctx);
+			} finally {
+				closeQuietly(ctx);
+			}
+		}
+
+		try {
+			if ( !permits.tryAcquire(waitTimeoutMillis, TimeUnit.MILLISECONDS))
+				throw new NamingException("Timed out waiting for a connection to the LDAP server.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NamingException("Interrupted while waiting for a connection to the LDAP server.");
+		}
+
+		try {
+			LdapContext ctx = bind(principal, fallbackPrincipal, password, true);
+			boolean reusable = false;
+			try {
+				T result = operation.run(ctx);
+				reusable = true;
+				return result;
+			} finally {
+				if ( reusable)
+					idle.offerFirst(new IdleConnection(ctx));
+				else
+					closeQuietly(ctx);
+			}
+		} finally {
+			permits.release();
+		}
+	}
+
+	private LdapContext bind(String principal, String fallbackPrincipal, String password, boolean pooled) throws NamingException {
+		try {
+			return pooled ? bind(principal, password) : openConnection(principal, password);
+		} catch (NamingException e) {
+			if ( fallbackPrincipal == null)
+				throw e;
+			logger.log(Level.FINE, "Bind with " + principal + " failed, trying " + fallbackPrincipal + ": " + e.getMessage());
+			return pooled ? bind(fallbackPrincipal, password) : openConnection(fallbackPrincipal, password);
+		}
+	}
+
+	private LdapContext bind(String principal, String password) throws NamingException {
+		IdleConnection c;
+		while ( (c = idle.pollFirst()) != null) {
+			if ( System.currentTimeMillis() - c.releasedAt > idleTimeoutMillis) {
+				closeQuietly(c.ctx);
+				continue;
+			}
+			try {
+				c.ctx.addToEnvironment(Context.SECURITY_PRINCIPAL, principal);
+				c.ctx.addToEnvironment(Context.SECURITY_CREDENTIALS, password);
+				c.ctx.reconnect(null);
+				return c.ctx;
+			} catch (AuthenticationException e) {
+				// the connection is no longer bound to anyone.
+				closeQuietly(c.ctx);
+				throw e;
+			} catch (NamingException e) {
+				// the server closed the connection, try the next one.
+				logger.log(Level.FINE, "Dropping LDAP connection: " + e.getMessage());
+				closeQuietly(c.ctx);
+			}
+		}
+		return openConnection(principal, password);
+	}
+
+	private LdapContext openConnection(String principal, String password) throws NamingException {
+		Hashtable<String, Object> ctxEnv = new Hashtable<>(env);
+		ctxEnv.put(Context.SECURITY_PRINCIPAL, principal);
+		ctxEnv.put(Context.SECURITY_CREDENTIALS, password);
+		return new InitialLdapContext(ctxEnv, null);
+	}
+
+	int getMaxSize() {
+		return maxSize;
+	}
+
+	int getIdleCount() {
+		return idle.size();
+	}
+
+	void close() {
+		IdleConnection c;
+		while ( (c = idle.pollFirst()) != null)
+			closeQuietly(c.ctx);
+	}
+
+	private static void closeQuietly(LdapContext ctx) {
+		try {
+			ctx.close();
+		} catch (NamingException e) {
+			logger.log(Level.FINE, "Failed to close LDAP connection: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package org.ndexbio.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ndexbio.model.object.User;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache from OAuth tokens to the NDEx users they were resolved to. An entry is valid until the token expires, but
+ * no longer than the maximum TTL of the cache, so that changes to the user account are picked up even if the
+ * token lives for a long time. Tokens are stored as SHA-256 hashes.
+ *
+ * UserDAO removes the entries of a user from all the token caches when the user account changes.
+ */
+public final class TokenUserCache {
+
+	private static final List<TokenUserCache> caches = new CopyOnWriteArrayList<>();
+
+	private static class CachedUser {
+		final User user;
+		final long expiresAt;
+
+		CachedUser(User user, long expiresAt) {
+			this.user = user;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final Cache<String, CachedUser> users;
+
+	// same as in BasicAuthCache, a lookup that overlaps an invalidation is not cached.
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 *
+	 * @param maxTTLSeconds 0 turns the cache off.
+	 * @param maxSize
+	 */
+	public TokenUserCache(long maxTTLSeconds, long maxSize) {
+		if ( maxTTLSeconds > 0) {
+			users = CacheBuilder.newBuilder().maximumSize(maxSize)
+					.expireAfterWrite(maxTTLSeconds, TimeUnit.SECONDS).build();
+			caches.add(this);
+		} else
+			users = null;
+	}
+
+	public boolean isEnabled() {
+		return users != null;
+	}
+
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 *
+	 * @param token
+	 * @return the user resolved from this token, or null if the token is not in the cache or has expired.
+	 */
+	public User get(String token) {
+		if ( users == null)
+			return null;
+		String key = hashToken(token);
+		CachedUser u = users.getIfPresent(key);
+		if ( u == null)
+			return null;
+		if ( u.expiresAt <= System.currentTimeMillis()) {
+			users.invalidate(key);
+			return null;
+		}
+		return u.user;
+	}
+
+	/**
+	 * Cache the user resolved from a verified token.
+	 * @param token
+	 * @param user
+	 * @param expiresAt expiration time of the token. Null if the token doesn't expire.
+	 * @param startGeneration the value of {@link #getGeneration()} before the user was looked up.
+	 */
+	public void put(String token, User user, Date expiresAt, long startGeneration) {
+		if ( users == null || user.getExternalId() == null)
+			return;
+		long expTime = expiresAt == null ? Long.MAX_VALUE : expiresAt.getTime();
+		if ( expTime <= System.currentTimeMillis())
+			return;
+		String key = hashToken(token);
+		users.put(key, new CachedUser(user, expTime));
+		if ( generation.get() != startGeneration)
+			users.invalidate(key);
+	}
+
+	public void invalidate(UUID userId) {
+		generation.incrementAndGet();
+		if ( users != null)
+			users.asMap().values().removeIf(u -> userId.equals(u.user.getExternalId()));
+	}
+
+	/**
+	 * Remove the entries of a user from all the token caches in this server.
+	 * @param userId
+	 */
+	public static void invalidateUser(UUID userId) {
+		for ( TokenUserCache cache : caches)
+			cache.invalidate(userId);
+	}
+
+	public void invalidate() {
+		generation.incrementAndGet();
+		if ( users != null)
+			users.invalidateAll();
+	}
+
+	/**
+	 * Remove all the entries from all the token caches in this server.
+	 */
+	public static void invalidateAll() {
+		for ( TokenUserCache cache : caches)
+			cache.invalidate();
+	}
+
+	long size() {
+		return users == null ? 0 : users.size();
+	}
+
+	private static String hashToken(String token) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			return Base64.getEncoder().encodeToString(md.digest(token.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-256 is required in every Java platform.
+			throw new IllegalStateException("SHA-256 is not available.", e);
+		}
+	}
+}
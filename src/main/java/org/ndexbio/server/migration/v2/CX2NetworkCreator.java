@@ -18,6 +18,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.ndexbio.common.access.NdexDatabase;
 import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
+import org.ndexbio.common.persistence.NetworkPathResolver;
 import org.ndexbio.common.solr.NetworkGlobalIndexManager;
 import org.ndexbio.rest.Configuration;
 import org.ndexbio.server.migration.v2.util.CX2NetworkCreationRunner;
@@ -122,8 +123,6 @@ public class CX2NetworkCreator {
 		NdexDatabase.createNdexDatabase(configuration.getDBURL(), configuration.getDBUser(),
 				configuration.getDBPasswd(), 10);
 
-		String rootPath = Configuration.getInstance().getNdexRoot() + "/data/";
-
 		ExecutorService es = Executors.newFixedThreadPool(NUMBER_WORKERS);
 
 		boolean onlyUpdateSingleNetwork = false;
@@ -141,7 +140,7 @@ public class CX2NetworkCreator {
 			try (NetworkDAO networkdao = new NetworkDAO()) {
 				System.out.println("Submitting tasks for processing");
 				for (UUID networkUUID : networksToUpdate) {
-					CX2NetworkCreationRunner task = new CX2NetworkCreationRunner(rootPath, networkUUID, networkdao,
+					CX2NetworkCreationRunner task = new CX2NetworkCreationRunner(NetworkPathResolver.getPathPrefix(networkUUID), networkUUID, networkdao,
 							globalIdx, edgeCountLimit);
 					futureTasks.add(es.submit(task));
 				}
@@ -165,7 +164,7 @@ public class CX2NetworkCreator {
 						+ Integer.toString(SMALL_NETWORK_EDGECOUNT_CUTOFF) + " or more edges to convert");
 
 				for (UUID networkUUID : networksToUpdate) {
-					CX2NetworkCreationRunner task = new CX2NetworkCreationRunner(rootPath, networkUUID, networkdao,
+					CX2NetworkCreationRunner task = new CX2NetworkCreationRunner(NetworkPathResolver.getPathPrefix(networkUUID), networkUUID, networkdao,
 							globalIdx, edgeCountLimit);
 					try {
 						System.out.print(Integer.toString(remainNetworkCount) + ": " + networkUUID.toString() + " ");
@@ -23,6 +23,7 @@ import org.ndexbio.common.access.NdexDatabase;
 import org.ndexbio.common.models.dao.postgresql.GroupDAO;
 import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
 import org.ndexbio.common.models.dao.postgresql.UserDAO;
+import org.ndexbio.common.persistence.NetworkPathResolver;
 import org.ndexbio.common.solr.GroupIndexManager;
 import org.ndexbio.common.solr.NetworkGlobalIndexManager;
 import org.ndexbio.common.solr.UserIndexManager;
@@ -301,14 +302,13 @@ public class V13DbImporter implements AutoCloseable {
 							UUID uuid = (UUID)rs.getObject(1);
 							String uuidStr = uuid.toString();
 							logger.info("Loading network "+ uuidStr );
-							String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" + uuidStr;
+							String pathPrefix = NetworkPathResolver.getNetworkDirPath(uuidStr);
 							   
 							//Create dir
-							java.nio.file.Path dir = Paths.get(pathPrefix);
-							Files.createDirectory(dir);
+							NetworkPathResolver.createNetworkDir(uuid);
 							
 							java.nio.file.Path src = Paths.get(importFilesPrefix  + "/" +  uuidStr + ".cx");
-							java.nio.file.Path tgt = Paths.get(Configuration.getInstance().getNdexRoot() + "/data/" + uuidStr + "/network.cx");
+							java.nio.file.Path tgt = Paths.get(pathPrefix + "/network.cx");
 							Files.copy(src, tgt,StandardCopyOption.REPLACE_EXISTING);  
 							
 			/*				try (CXNetworkLoader loader = new CXNetworkLoader(uuid,rs.getString(2), false,dao, null,null)) {
@@ -16,6 +16,7 @@ import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
 import org.ndexbio.common.persistence.CX2NetworkLoader;
 import org.ndexbio.common.persistence.CXNetworkLoader;
 import org.ndexbio.common.persistence.CXToCX2ServerSideConverter;
+import org.ndexbio.common.persistence.NetworkSegment;
 import org.ndexbio.common.solr.NetworkGlobalIndexManager;
 import org.ndexbio.common.solr.SingleNetworkSolrIdxManager;
 import org.ndexbio.common.util.Util;
@@ -97,6 +98,7 @@ public class CX2NetworkCreationRunner implements Callable {
 							_networkUUID.toString(), null, true);
 					List<CxMetadata> cx2mc = converter.convert();
 					_networkdao.setCxMetadata(_networkUUID, cx2mc);
+					NetworkSegment.packIfEnabled(Paths.get(_rootPath + _networkUUID.toString()));
 					
 					Path cx1File = Paths.get(_rootPath + _networkUUID.toString() + "/" + CXNetworkLoader.CX1FileName);
 					if ( Files.exists(cx1File, LinkOption.NOFOLLOW_LINKS)) {
@@ -0,0 +1,127 @@
+package org.ndexbio.server.tools;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.ndexbio.common.persistence.AspectStorage;
+import org.ndexbio.common.persistence.CX2NetworkLoader;
+import org.ndexbio.common.persistence.CXNetworkLoader;
+import org.ndexbio.common.persistence.NetworkPathResolver;
+import org.ndexbio.common.persistence.NetworkSegment;
+import org.ndexbio.rest.Configuration;
+
+/**
+ * Command line tool to compress (or decompress) the aspect files of the existing networks
+ * on this server. It can also convert the aspect files between JSON arrays and JSON text sequences.
+ * Each aspect file is rewritten in place through a temp file, so the server can keep
+ * running while the tool is working. Symbolic links in the aspects_cx2 directories are not touched.
+ * Networks packed into a segment file are unpacked, converted and packed again.
+ *
+ * To run (via a terminal):
+ *
+ * 1) Open a terminal and change into the following directory:
+ *
+ *    Example: cd /opt/ndex/tomcat/webapps/ndex-rest/WEB-INF
+ *
+ * 2) Set ndexConfigurationPath environment variable to ndex.properties
+ *    file
+ *
+ *    Example: export ndexConfigurationPath=/opt/ndex/conf/ndex.properties
+ *
+ * 3) Invoke command by running this:
+ *
+ *    java -classpath lib/*:../../../lib/* org.ndexbio.server.tools.AspectCompressionMigrator [-decompress] [-json-seq|-json-array] [network UUID]
+ *
+ * Without -json-seq or -json-array the storage format of each file is kept.
+ *
+ * Set NDEX_ASPECT_COMPRESSION and NDEX_ASPECT_FORMAT in ndex.properties before running this tool, otherwise new networks
+ * will still be stored in the old format.
+ */
+public class AspectCompressionMigrator {
+
+	private AspectCompressionMigrator() {}
+
+	/**
+	 * Compress or decompress all the aspect files of one network.
+	 * @param networkDir the network directory, NdexRoot/data/&lt;uuid&gt;
+	 * @param compress
+	 * @return number of aspect files rewritten.
+	 * @throws IOException
+	 */
+	public static int migrateNetwork(Path networkDir, boolean compress) throws IOException {
+		return migrateNetwork(networkDir, compress, null);
+	}
+
+	/**
+	 * Compress or decompress all the aspect files of one network and convert them to the given storage format.
+	 * @param networkDir the network directory, NdexRoot/data/&lt;uuid&gt;
+	 * @param compress
+	 * @param jsonSeq true to store the aspects as JSON text sequences, false to store them as JSON arrays, null to keep
+	 *            the current format of each file.
+	 * @return number of aspect files rewritten.
+	 * @throws IOException
+	 */
+	public static int migrateNetwork(Path networkDir, boolean compress, Boolean jsonSeq) throws IOException {
+		// aspects in a segment file are converted as files and packed again.
+		boolean packed = NetworkSegment.unpack(networkDir);
+		int count = 0;
+		for ( String dirName : new String[] {CXNetworkLoader.CX1AspectDir, CX2NetworkLoader.cx2AspectDirName}) {
+			Path aspectDir = networkDir.resolve(dirName);
+			if ( !Files.isDirectory(aspectDir))
+				continue;
+			try (DirectoryStream<Path> aspects = Files.newDirectoryStream(aspectDir)) {
+				for ( Path aspectFile : aspects) {
+					boolean converted = jsonSeq == null ? AspectStorage.convertAspectFile(aspectFile, compress) :
+						AspectStorage.convertAspectFile(aspectFile, compress, jsonSeq.booleanValue());
+					if ( converted)
+						count++;
+				}
+			}
+		}
+		if ( packed)
+			NetworkSegment.pack(networkDir);
+		return count;
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		boolean compress = true;
+		Boolean jsonSeq = null;
+		String networkId = null;
+		for ( String arg : args) {
+			if ( arg.equals("-decompress"))
+				compress = false;
+			else if ( arg.equals("-json-seq"))
+				jsonSeq = Boolean.TRUE;
+			else if ( arg.equals("-json-array"))
+				jsonSeq = Boolean.FALSE;
+			else
+				networkId = arg;
+		}
+
+		Configuration.createInstance();
+
+		if ( networkId != null) {
+			int n = migrateNetwork(NetworkPathResolver.getNetworkDir(networkId), compress, jsonSeq);
+			System.out.println(networkId + ": " + n + " aspect files converted.");
+			return;
+		}
+
+		int networkCount = 0;
+		long fileCount = 0;
+		for ( Path networkDir : NetworkPathResolver.listNetworkDirs(NetworkPathResolver.getDataDir())) {
+			try {
+				fileCount += migrateNetwork(networkDir, compress, jsonSeq);
+			} catch (IOException e) {
+				System.err.println("While converting network " + networkDir.getFileName() + " : caught exception: " + e.getMessage());
+			}
+			networkCount++;
+			if ( networkCount % 1000 == 0)
+				System.out.println(networkCount + " networks processed.");
+		}
+		System.out.println("Done. " + networkCount + " networks processed, " + fileCount + " aspect files converted.");
+	}
+
+}
@@ -0,0 +1,101 @@
+package org.ndexbio.server.tools;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.ndexbio.common.access.NdexDatabase;
+import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
+import org.ndexbio.model.object.network.NetworkSummaryFormat;
+import org.ndexbio.rest.Configuration;
+
+/**
+ * Command line tool to time the queries behind the batch network summary endpoints (POST /v2/batch/network/summary
+ * and POST /v3/batch/networks/summary) against the database of this server. Every call asks for a different random
+ * set of public networks, like real clients do. The times include the serialization of the summaries, which is
+ * skipped for the networks found in the summary cache; run it with NETWORK_SUMMARY_CACHE_TTL=0 to time the uncached
+ * path. To compare the effect of statement pooling, run it again with
+ * NdexDBStatementCacheSize=0 in ndex.properties; to compare with an older release, run the same tool built from that
+ * release.
+ *
+ * To run (via a terminal):
+ *
+ * 1) Open a terminal and change into the following directory:
+ *
+ *    Example: cd /opt/ndex/tomcat/webapps/ndex-rest/WEB-INF
+ *
+ * 2) Set ndexConfigurationPath environment variable to ndex.properties
+ *    file
+ *
+ *    Example: export ndexConfigurationPath=/opt/ndex/conf/ndex.properties
+ *
+ * 3) Invoke command by running this:
+ *
+ *    java -classpath lib/*:../../../lib/* org.ndexbio.server.tools.BatchSummaryBenchmark [batch size] [iterations]
+ */
+public class BatchSummaryBenchmark {
+
+	private static final int warmupIterations = 50;
+
+	private BatchSummaryBenchmark() {}
+
+	public static void main(String[] args) throws Exception {
+		int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+		Configuration configuration = Configuration.createInstance();
+		NdexDatabase.createNdexDatabase(configuration.getDBURL(), configuration.getDBUser(),
+				configuration.getDBPasswd(), 2);
+
+		try (NetworkDAO dao = new NetworkDAO()) {
+			List<String> ids = new ArrayList<>();
+			try (PreparedStatement p = dao.getDBConnection().prepareStatement(
+					"select \"UUID\" from network where visibility='PUBLIC' and is_deleted=false limit ?")) {
+				p.setInt(1, batchSize * 20);
+				try (ResultSet rs = p.executeQuery()) {
+					while ( rs.next())
+						ids.add(rs.getObject(1).toString());
+				}
+			}
+			if ( ids.size() < batchSize)
+				throw new Exception("Only " + ids.size() + " public networks found, the batch size has to be smaller.");
+
+			Random random = new Random(1);
+			long[] v2Times = new long[iterations];
+			long[] v3Times = new long[iterations];
+			for ( int i = -warmupIterations; i < iterations; i++) {
+				Collections.shuffle(ids, random);
+				List<String> batch = new ArrayList<>(ids.subList(0, batchSize));
+
+				long t0 = System.nanoTime();
+				dao.getNetworkSummaryJsonByIdStrList(batch, null, null);
+				long t1 = System.nanoTime();
+				dao.getNetworkV3SummaryJsonByIdStrList(batch, null, null, NetworkSummaryFormat.COMPACT);
+				long t2 = System.nanoTime();
+				dao.commit();
+				if ( i >= 0) {
+					v2Times[i] = t1 - t0;
+					v3Times[i] = t2 - t1;
+				}
+			}
+			report("v2 network summaries", v2Times);
+			report("v3 network summaries (COMPACT)", v3Times);
+		} finally {
+			NdexDatabase.close();
+		}
+	}
+
+	private static void report(String name, long[] times) {
+		Arrays.sort(times);
+		long total = 0;
+		for ( long t : times)
+			total += t;
+		System.out.printf("%s: %d calls, mean %.2f ms, p50 %.2f ms, p95 %.2f ms, p99 %.2f ms%n", name, times.length,
+				total / 1e6 / times.length, times[times.length / 2] / 1e6, times[(int) (times.length * 0.95)] / 1e6,
+				times[(int) (times.length * 0.99)] / 1e6);
+	}
+}
@@ -0,0 +1,151 @@
+package org.ndexbio.server.tools;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.ndexbio.common.persistence.CX2NetworkLoader;
+import org.ndexbio.common.persistence.NetworkPathResolver;
+import org.ndexbio.rest.Configuration;
+
+/**
+ * Command line tool to move the network directories on this server from the old layout (NdexRoot/data/&lt;uuid&gt;)
+ * to the sharded layout (NdexRoot/data/&lt;ab&gt;/&lt;cd&gt;/&lt;uuid&gt;). Each directory is renamed into its shard
+ * and a symbolic link is left at the old path, so requests that already resolved the old path can finish while the
+ * tool is working. An update that is saving a network at the moment its directory is moved can fail, and needs to be
+ * submitted again. Run the tool again with -remove-links after the server has been restarted with
+ * NDEX_SHARDED_DATA_DIR=true to remove these links.
+ *
+ * To run (via a terminal):
+ *
+ * 1) Open a terminal and change into the following directory:
+ *
+ *    Example: cd /opt/ndex/tomcat/webapps/ndex-rest/WEB-INF
+ *
+ * 2) Set ndexConfigurationPath environment variable to ndex.properties
+ *    file
+ *
+ *    Example: export ndexConfigurationPath=/opt/ndex/conf/ndex.properties
+ *
+ * 3) Invoke command by running this:
+ *
+ *    java -classpath lib/*:../../../lib/* org.ndexbio.server.tools.NetworkDirMigrator [-remove-links] [network UUID]
+ */
+public class NetworkDirMigrator {
+
+	private NetworkDirMigrator() {}
+
+	/**
+	 * Move a network directory from the old layout to its shard directory.
+	 * @param dataDir NdexRoot/data
+	 * @param networkId
+	 * @return false if the network directory is not in the old layout.
+	 * @throws IOException
+	 */
+	public static boolean migrateNetwork(Path dataDir, String networkId) throws IOException {
+		Path legacyDir = NetworkPathResolver.getLegacyNetworkDir(dataDir, networkId);
+		if ( !Files.isDirectory(legacyDir, LinkOption.NOFOLLOW_LINKS))
+			return false;
+
+		Path shardedDir = NetworkPathResolver.getShardedNetworkDir(dataDir, networkId);
+		if ( Files.exists(shardedDir, LinkOption.NOFOLLOW_LINKS))
+			throw new IOException("Network " + networkId + " exists in both layouts.");
+
+		Files.createDirectories(shardedDir.getParent());
+		Files.move(legacyDir, shardedDir, StandardCopyOption.ATOMIC_MOVE);
+		Files.createSymbolicLink(legacyDir, shardedDir);
+		relinkOpaqueAspects(shardedDir, legacyDir);
+		return true;
+	}
+
+	/**
+	 * The opaque aspects in the aspects_cx2 directory are absolute symbolic links to the files in the aspects
+	 * directory. Point them to the new network directory, so that they still work after the link to the old path is
+	 * removed. Each link is replaced by a rename, so it never disappears for the readers.
+	 */
+	private static void relinkOpaqueAspects(Path networkDir, Path oldNetworkDir) throws IOException {
+		Path cx2AspectDir = networkDir.resolve(CX2NetworkLoader.cx2AspectDirName);
+		if ( !Files.isDirectory(cx2AspectDir))
+			return;
+		try (DirectoryStream<Path> aspects = Files.newDirectoryStream(cx2AspectDir)) {
+			for ( Path aspect : aspects) {
+				if ( !Files.isSymbolicLink(aspect))
+					continue;
+				Path target = Files.readSymbolicLink(aspect);
+				if ( !target.startsWith(oldNetworkDir))
+					continue;
+				Path tmpLink = cx2AspectDir.resolve(aspect.getFileName() + "-" + Thread.currentThread().getId()
+						+ "-" + System.currentTimeMillis());
+				Files.createSymbolicLink(tmpLink, networkDir.resolve(oldNetworkDir.relativize(target)));
+				Files.move(tmpLink, aspect, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	/**
+	 * Remove the symbolic link left in the old layout for a migrated network.
+	 * @param dataDir
+	 * @param networkId
+	 * @return false if there is no such link.
+	 * @throws IOException
+	 */
+	public static boolean removeLink(Path dataDir, String networkId) throws IOException {
+		Path legacyDir = NetworkPathResolver.getLegacyNetworkDir(dataDir, networkId);
+		if ( !Files.isSymbolicLink(legacyDir))
+			return false;
+		Files.delete(legacyDir);
+		return true;
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		boolean removeLinks = false;
+		String networkId = null;
+		for ( String arg : args) {
+			if ( arg.equals("-remove-links"))
+				removeLinks = true;
+			else
+				networkId = arg;
+		}
+
+		Configuration.createInstance();
+		Path dataDir = NetworkPathResolver.getDataDir();
+
+		if ( networkId != null) {
+			boolean done = removeLinks ? removeLink(dataDir, networkId) : migrateNetwork(dataDir, networkId);
+			System.out.println(networkId + ": " + (done ? "done." : "nothing to do."));
+			return;
+		}
+
+		if ( !removeLinks && !NetworkPathResolver.isShardedLayoutEnabled())
+			System.out.println("Warning: " + NetworkPathResolver.SHARDED_LAYOUT_PROPERTY +
+					" is not set to true in ndex.properties. New networks will still be created in the old layout.");
+
+		int networkCount = 0;
+		int changedCount = 0;
+		int errorCount = 0;
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(dataDir)) {
+			for ( Path entry : entries) {
+				String name = entry.getFileName().toString();
+				if ( name.length() != 36)
+					continue;
+				try {
+					if ( removeLinks ? removeLink(dataDir, name) : migrateNetwork(dataDir, name))
+						changedCount++;
+				} catch (IOException e) {
+					errorCount++;
+					System.err.println("While processing network " + name + " : caught exception: " + e.getMessage());
+				}
+				networkCount++;
+				if ( networkCount % 1000 == 0)
+					System.out.println(networkCount + " networks processed.");
+			}
+		}
+		System.out.println("Done. " + networkCount + " networks processed, " + changedCount + " " +
+				(removeLinks ? "links removed" : "moved") + ", " + errorCount + " errors.");
+	}
+
+}
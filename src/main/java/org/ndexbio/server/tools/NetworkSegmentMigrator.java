@@ -0,0 +1,109 @@
+package org.ndexbio.server.tools;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.ndexbio.common.persistence.NetworkPathResolver;
+import org.ndexbio.common.persistence.NetworkSegment;
+import org.ndexbio.rest.Configuration;
+
+/**
+ * Command line tool to pack the aspect files of the existing networks on this server into segment files
+ * (NdexRoot/data/&lt;uuid&gt;/aspects.seg), or to unpack them back to aspect files. The content of each new segment
+ * file is checked against its checksums before the aspect files are removed, and networks are packed one at a time,
+ * so the server can keep running while the tool is working.
+ *
+ * To run (via a terminal):
+ *
+ * 1) Open a terminal and change into the following directory:
+ *
+ *    Example: cd /opt/ndex/tomcat/webapps/ndex-rest/WEB-INF
+ *
+ * 2) Set ndexConfigurationPath environment variable to ndex.properties
+ *    file
+ *
+ *    Example: export ndexConfigurationPath=/opt/ndex/conf/ndex.properties
+ *
+ * 3) Invoke command by running this:
+ *
+ *    java -classpath lib/*:../../../lib/* org.ndexbio.server.tools.NetworkSegmentMigrator [-unpack|-verify] [network UUID]
+ *
+ * Set NDEX_ASPECT_SEGMENT=true in ndex.properties before packing, otherwise new networks will still be stored
+ * as aspect files.
+ */
+public class NetworkSegmentMigrator {
+
+	private NetworkSegmentMigrator() {}
+
+	private enum Action {
+		PACK("packed"), UNPACK("unpacked"), VERIFY("verified");
+
+		private String doneStr;
+
+		Action(String doneStr) {this.doneStr = doneStr;}
+	}
+
+	/**
+	 *
+	 * @param networkDir the network directory, NdexRoot/data/&lt;uuid&gt;
+	 * @param action
+	 * @return true if the network was changed (or checked, for VERIFY).
+	 * @throws IOException
+	 */
+	private static boolean migrateNetwork(Path networkDir, Action action) throws IOException {
+		switch (action) {
+		case PACK:
+			return NetworkSegment.pack(networkDir);
+		case UNPACK:
+			return NetworkSegment.unpack(networkDir);
+		default:
+			try (NetworkSegment seg = NetworkSegment.open(networkDir)) {
+				if ( seg == null)
+					return false;
+				seg.verify();
+				return true;
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		Action action = Action.PACK;
+		String networkId = null;
+		for ( String arg : args) {
+			if ( arg.equals("-unpack"))
+				action = Action.UNPACK;
+			else if ( arg.equals("-verify"))
+				action = Action.VERIFY;
+			else
+				networkId = arg;
+		}
+
+		Configuration.createInstance();
+
+		if ( networkId != null) {
+			boolean done = migrateNetwork(NetworkPathResolver.getNetworkDir(networkId), action);
+			System.out.println(networkId + ": " + (done ? "done." : "nothing to do."));
+			return;
+		}
+
+		int networkCount = 0;
+		int changedCount = 0;
+		int errorCount = 0;
+		for ( Path networkDir : NetworkPathResolver.listNetworkDirs(NetworkPathResolver.getDataDir())) {
+			try {
+				if ( migrateNetwork(networkDir, action))
+					changedCount++;
+			} catch (IOException e) {
+				errorCount++;
+				System.err.println("While processing network " + networkDir.getFileName() + " : caught exception: " + e.getMessage());
+			}
+			networkCount++;
+			if ( networkCount % 1000 == 0)
+				System.out.println(networkCount + " networks processed.");
+		}
+		System.out.println("Done. " + networkCount + " networks processed, " + changedCount + " " +
+				action.doneStr + ", " + errorCount + " errors.");
+	}
+
+}
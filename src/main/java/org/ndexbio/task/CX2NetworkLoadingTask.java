@@ -2,12 +2,15 @@ package org.ndexbio.task;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Logger;
 
 import org.apache.solr.client.solrj.SolrServerException;
 import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
+import org.ndexbio.common.models.dao.postgresql.NetworkLockManager;
 import org.ndexbio.common.persistence.CX2NetworkLoader;
 import org.ndexbio.model.exceptions.NdexException;
 import org.ndexbio.model.object.TaskType;
@@ -28,15 +31,18 @@ public class CX2NetworkLoadingTask extends CXNetworkLoadingTask {
 	@Override
 	public void run()  {
 		
+	  NetworkLockManager.getInstance().adopt(networkId);
 	  try (NetworkDAO dao = new NetworkDAO ()) {
 		try ( CX2NetworkLoader loader = new CX2NetworkLoader(getNetworkId(), isUpdate,dao, visibility, nodeAttributeIndexList, 0) ) {
 				loader.persistCXNetwork();
 		} catch ( IOException | NdexException | SQLException | RuntimeException | SolrServerException e1) {
 			logger.severe("Error occurred when loading network " + networkId + ": " + e1.getMessage());
 			e1.printStackTrace();
-			dao.setFlag(networkId, "is_validated", true);
-			dao.setFlag(networkId, "iscomplete", true);
-			dao.setFlag(networkId,"readonly", false);
+			Map<String,Boolean> flags = new LinkedHashMap<>();
+			flags.put("is_validated", Boolean.TRUE);
+			flags.put("iscomplete", Boolean.TRUE);
+			flags.put("readonly", Boolean.FALSE);
+			dao.setFlags(networkId, flags);
 			try {
 				dao.updateNetworkVisibility(networkId, VisibilityType.PRIVATE, true);
 			} catch (NdexException e) {
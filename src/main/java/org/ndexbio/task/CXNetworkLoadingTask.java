@@ -2,12 +2,15 @@ package org.ndexbio.task;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Logger;
 
 import org.apache.solr.client.solrj.SolrServerException;
 import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
+import org.ndexbio.common.models.dao.postgresql.NetworkLockManager;
 import org.ndexbio.common.persistence.CXNetworkLoader;
 import org.ndexbio.model.exceptions.NdexException;
 import org.ndexbio.model.object.Task;
@@ -34,20 +37,25 @@ public class CXNetworkLoadingTask extends NdexSystemTask {
 		this.isUpdate = isUpdate;
 		this.visibility = visibility;
 		this.nodeAttributeIndexList = nodeAttributeIndexList;
+		// the request that locked the network ends before this task runs.
+		NetworkLockManager.getInstance().handOff(networkUUID);
 	}
 	
 	@Override
 	public void run()  {
 		
+	  NetworkLockManager.getInstance().adopt(networkId);
 	  try (NetworkDAO dao = new NetworkDAO ()) {
 		try ( CXNetworkLoader loader = new CXNetworkLoader(networkId, /*ownerUserName,*/ isUpdate,dao, visibility, nodeAttributeIndexList, 0) ) {
 				loader.persistCXNetwork();
 		} catch ( IOException | NdexException | SQLException | RuntimeException | SolrServerException e1) {
 			logger.severe("Error occurred when loading network " + networkId + ": " + e1.getMessage());
 			e1.printStackTrace();
-			dao.setFlag(networkId, "is_validated", true);
-			dao.setFlag(networkId, "iscomplete", true);
-			dao.setFlag(networkId, "readonly", false);
+			Map<String,Boolean> flags = new LinkedHashMap<>();
+			flags.put("is_validated", Boolean.TRUE);
+			flags.put("iscomplete", Boolean.TRUE);
+			flags.put("readonly", Boolean.FALSE);
+			dao.setFlags(networkId, flags);
 			try {
 				dao.updateNetworkVisibility(networkId, VisibilityType.PRIVATE, true);
 			} catch (NdexException e) {
@@ -35,6 +35,8 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.sql.SQLException;
 
+import org.ndexbio.common.access.NdexDatabase;
+import org.ndexbio.common.access.NdexUnitOfWork;
 import org.ndexbio.common.models.dao.postgresql.TaskDAO;
 import org.ndexbio.model.exceptions.NdexException;
 import org.ndexbio.model.object.Status;
@@ -53,6 +55,7 @@ public class ClientTaskProcessor extends NdexTaskProcessor {
 	
 	@Override
 	public void run() {
+		NdexDatabase.setCurrentThreadWorkload(NdexDatabase.Workload.BACKGROUND);
 		while ( !shutdown) {
 			NdexTask task = null;
 			try {
@@ -66,7 +69,8 @@ public class ClientTaskProcessor extends NdexTaskProcessor {
 				return;
 			}
 			
-			try {		   
+			// DAOs opened at the same time by the task share one connection.
+			try (NdexUnitOfWork work = NdexUnitOfWork.begin()) {		   
 				try (TaskDAO dao = new TaskDAO()) {
 					if (!dao.isNotDeleted(task.getTask().getExternalId()))
 							return ;
@@ -48,6 +48,7 @@ public enum NdexServerQueue {
 	
 	private LinkedBlockingDeque<NdexSystemTask> systemTaskQueue;
 	private LinkedBlockingDeque<NdexTask> userTaskQueue;
+	private volatile boolean shutdown = false;
 	
 	public static final NdexTask endOfQueue = new NdexTask (null) { 
 		@Override 
@@ -109,8 +110,16 @@ public enum NdexServerQueue {
 	}
 	
 	public void shutdown () {
+		shutdown = true;
 		systemTaskQueue.add(endOfSystemQueue);
 		userTaskQueue.add(endOfQueue);
 		
 	}
+
+	/**
+	 * @return true once the server started to shut down. Tasks added after it are not run.
+	 */
+	public boolean isShutdown () {
+		return shutdown;
+	}
  }
@@ -5,6 +5,7 @@ import java.util.Map;
 
 import org.ndexbio.common.importexport.ExporterExecutorImpl;
 import org.ndexbio.common.importexport.ImporterExporterEntry;
+import org.ndexbio.common.persistence.NetworkPathResolver;
 import org.ndexbio.model.object.Status;
 import org.ndexbio.model.object.Task;
 import org.ndexbio.rest.Configuration;
@@ -29,7 +30,7 @@ public class NetworkExportTask extends NdexTask {
 				                                         Configuration.getInstance().getNdexRoot(),
 				                                         Configuration.getInstance().getExporterTimeout());
 		
-		try (FileInputStream input = new FileInputStream (Configuration.getInstance().getNdexRoot() + "/data/"+task.getResource() + "/network.cx")) {
+		try (FileInputStream input = new FileInputStream (NetworkPathResolver.getNetworkDirPath(task.getResource()) + "/network.cx")) {
 		
 			int exitCode = executor.export(input, task.getExternalId(), task.getTaskOwnerId());
 			if (exitCode == 0) {
@@ -49,8 +50,8 @@ public class NetworkExportTask extends NdexTask {
 				   task.getAttribute("downloadFileExtension").toString().toLowerCase() + ".gz";
         try (GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(outFileName)) ) {
      	
-     	   try (FileInputStream in = new FileInputStream(Configuration.getInstance().getNdexRoot() +
-     			   "/data/" + task.getResource() + "/network.cx")) {
+     	   try (FileInputStream in = new FileInputStream(
+     			   NetworkPathResolver.getNetworkDirPath(task.getResource()) + "/network.cx")) {
             
      		   byte[] buf = new byte[8192];
      		   int len;
@@ -1,8 +1,8 @@
 package org.ndexbio.task;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.sql.SQLException;
 import java.util.Calendar;
 import java.util.Collection;
@@ -15,7 +15,10 @@ import java.util.UUID;
 
 import org.apache.solr.client.solrj.SolrServerException;
 import org.ndexbio.common.models.dao.postgresql.NetworkDAO;
+import org.ndexbio.common.persistence.AspectStorage;
+import org.ndexbio.common.persistence.ParallelAspectIterator;
 import org.ndexbio.common.persistence.CX2NetworkLoader;
+import org.ndexbio.common.persistence.NetworkPathResolver;
 import org.ndexbio.common.solr.NetworkGlobalIndexManager;
 import org.ndexbio.common.solr.SingleNetworkSolrIdxManager;
 import org.ndexbio.cx2.aspect.element.core.CxAttributeDeclaration;
@@ -34,7 +37,6 @@ import org.ndexbio.model.object.Task;
 import org.ndexbio.model.object.TaskType;
 import org.ndexbio.model.object.network.NetworkIndexLevel;
 import org.ndexbio.model.object.network.NetworkSummary;
-import org.ndexbio.rest.Configuration;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
@@ -114,22 +116,21 @@ public class SolrTaskRebuildNetworkIdx extends NdexSystemTask {
 							userMemberships.get(Permissions.READ), userMemberships.get(Permissions.WRITE),
 							grpMemberships.get(Permissions.READ), grpMemberships.get(Permissions.WRITE));
 
-					String pathPrefix = Configuration.getInstance().getNdexRoot() + "/data/" ; 
+					String pathPrefix = NetworkPathResolver.getPathPrefix(networkId); 
 
 					if (indexLevel == NetworkIndexLevel.META || indexLevel == NetworkIndexLevel.ALL) {
 						if ( this.fromCX2File) {
 							
 							String cx2AspectPath = pathPrefix + networkId.toString() + "/" + CX2NetworkLoader.cx2AspectDirName + "/";
 							File attrFile = new File (cx2AspectPath + CxNetworkAttribute.ASPECT_NAME);
-							if (attrFile.exists()) {
+							if (AspectStorage.aspectExists(attrFile)) {
 							
 								//create the attribute name mapping table from attribute declaration
 								File declFile = new File(cx2AspectPath + CxAttributeDeclaration.ASPECT_NAME);
-								ObjectMapper om = new ObjectMapper();
 							
-								CxAttributeDeclaration[] declarations = om.readValue(declFile, CxAttributeDeclaration[].class);
+								CxAttributeDeclaration[] declarations = AspectStorage.readValue(declFile, CxAttributeDeclaration[].class);
 								
-								CxNetworkAttribute[] attrs = om.readValue(attrFile,CxNetworkAttribute[].class);
+								CxNetworkAttribute[] attrs = AspectStorage.readValue(attrFile,CxNetworkAttribute[].class);
 								attrs[0].extendToFullNode(declarations[0].getAttributesInAspect(CxNetworkAttribute.ASPECT_NAME));
 								
 							
@@ -140,7 +141,7 @@ public class SolrTaskRebuildNetworkIdx extends NdexSystemTask {
 								
 							}
 						} else { 
-							try (AspectIterator<NetworkAttributesElement> it = new AspectIterator<>(networkId.toString(),
+							try (AspectIterator<NetworkAttributesElement> it = AspectStorage.newCX1AspectIterator(networkId.toString(),
 								NetworkAttributesElement.ASPECT_NAME, NetworkAttributesElement.class,pathPrefix)) {
 								while (it.hasNext()) {
 									NetworkAttributesElement e = it.next();
@@ -163,8 +164,8 @@ public class SolrTaskRebuildNetworkIdx extends NdexSystemTask {
 							ObjectMapper om = new ObjectMapper();
 							
 							File functionAspectFile = new File (cx2AspectPath + FunctionTermElement.ASPECT_NAME);
-							if ( functionAspectFile.exists()) {
-								try (FileInputStream inputStream = new FileInputStream(cx2AspectPath + FunctionTermElement.ASPECT_NAME)) {
+							if ( AspectStorage.aspectExists(functionAspectFile)) {
+								try (InputStream inputStream = AspectStorage.newAspectInputStream(cx2AspectPath + FunctionTermElement.ASPECT_NAME)) {
 
 									Iterator<FunctionTermElement> it = om.readerFor(FunctionTermElement.class).readValues(inputStream);
 
@@ -181,7 +182,7 @@ public class SolrTaskRebuildNetworkIdx extends NdexSystemTask {
 							processCx2Nodes(cx2AspectPath, om, globalIdx);
 							
 						} else { 
-							try (AspectIterator<FunctionTermElement> it = new AspectIterator<>(networkId.toString(),
+							try (AspectIterator<FunctionTermElement> it = AspectStorage.newCX1AspectIterator(networkId.toString(),
 								FunctionTermElement.ASPECT_NAME, FunctionTermElement.class, pathPrefix)) {
 								while (it.hasNext()) {
 									FunctionTermElement fun = it.next();
@@ -191,7 +192,7 @@ public class SolrTaskRebuildNetworkIdx extends NdexSystemTask {
 								}
 							}
 
-							try (AspectIterator<NodeAttributesElement> it = new AspectIterator<>(networkId.toString(),
+							try (ParallelAspectIterator<NodeAttributesElement> it = AspectStorage.newParallelCX1AspectIterator(networkId.toString(),
 									NodeAttributesElement.ASPECT_NAME, NodeAttributesElement.class, pathPrefix)) {
 								while (it.hasNext()) {
 									NodeAttributesElement e = it.next();
@@ -199,7 +200,7 @@ public class SolrTaskRebuildNetworkIdx extends NdexSystemTask {
 								}
 							}
 
-							try (AspectIterator<NodesElement> it = new AspectIterator<>(networkId.toString(), NodesElement.ASPECT_NAME,
+							try (ParallelAspectIterator<NodesElement> it = AspectStorage.newParallelCX1AspectIterator(networkId.toString(), NodesElement.ASPECT_NAME,
 									NodesElement.class,pathPrefix)) {
 								while (it.hasNext()) {
 									NodesElement e = it.next();
@@ -235,10 +236,10 @@ public class SolrTaskRebuildNetworkIdx extends NdexSystemTask {
 	
 	private static void processCx2Nodes(String cx2AspectPath, ObjectMapper om, NetworkGlobalIndexManager globalIdx) throws JsonParseException, JsonMappingException, IOException {
 		File declFile = new File(cx2AspectPath + CxAttributeDeclaration.ASPECT_NAME);
-		if (!declFile.exists())
+		if (!AspectStorage.aspectExists(declFile))
 			return;
 		
-		CxAttributeDeclaration[] declarations = om.readValue(declFile, 
+		CxAttributeDeclaration[] declarations = AspectStorage.readValue(declFile, 
 				CxAttributeDeclaration[].class); 
 		
 		if ( declarations.length == 0 || ! declarations[0].getDeclarations().containsKey(CxNode.ASPECT_NAME))
@@ -276,11 +277,9 @@ public class SolrTaskRebuildNetworkIdx extends NdexSystemTask {
 		}
 
 		File nodeAspectFile = new File (cx2AspectPath + CxNode.ASPECT_NAME);
-		if ( nodeAspectFile.exists()) {
+		if ( AspectStorage.aspectExists(nodeAspectFile)) {
 			//go through node aspect
-			try (FileInputStream inputStream = new FileInputStream(cx2AspectPath + "nodes")) {
-
-				Iterator<CxNode> it = om.readerFor(CxNode.class).readValues(inputStream);
+			try (ParallelAspectIterator<CxNode> it = AspectStorage.newParallelAspectIterator(cx2AspectPath + "nodes", CxNode.class)) {
 
 				while (it.hasNext()) {
 					CxNode node = it.next();
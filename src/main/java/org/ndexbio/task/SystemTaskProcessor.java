@@ -36,6 +36,8 @@ import java.io.StringWriter;
 import java.sql.SQLException;
 import java.util.logging.Logger;
 
+import org.ndexbio.common.access.NdexDatabase;
+import org.ndexbio.common.access.NdexUnitOfWork;
 import org.ndexbio.common.models.dao.postgresql.TaskDAO;
 import org.ndexbio.model.exceptions.NdexException;
 import org.ndexbio.model.object.Status;
@@ -50,6 +52,7 @@ public class SystemTaskProcessor extends NdexTaskProcessor {
 	
 	@Override
 	public void run() {
+		NdexDatabase.setCurrentThreadWorkload(NdexDatabase.Workload.BACKGROUND);
 		while ( !shutdown) {
 			NdexSystemTask task = null;
 			try {
@@ -62,7 +65,8 @@ public class SystemTaskProcessor extends NdexTaskProcessor {
 				String stacktrace = null;
 				Status status = Status.PROCESSING;
 			
-				try {
+				// DAOs opened at the same time by the task share one connection.
+				try (NdexUnitOfWork work = NdexUnitOfWork.begin()) {
 					try (TaskDAO dao = new TaskDAO()) {
 						  dao.updateTaskStatus(task.getTaskId(), status);
 						  dao.commit();
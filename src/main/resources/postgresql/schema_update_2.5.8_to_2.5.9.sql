@@ -0,0 +1,55 @@
+-- Version of the network record, exposed as the ETag of the network summary. Updates that send If-Match are applied
+-- only if the version hasn't changed.
+
+ALTER TABLE IF EXISTS core.network ADD COLUMN IF NOT EXISTS row_version bigint NOT NULL DEFAULT 1;
+
+-- bump the version when the metadata of a network changes. Processing flags (islocked, iscomplete, solr_idx_lvl,
+-- file sizes ...) are not listed so they don't invalidate the ETags clients hold.
+CREATE OR REPLACE FUNCTION core.bump_network_row_version() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    NEW.row_version := OLD.row_version + 1;
+    RETURN NEW;
+END;
+$$;
+
+ALTER FUNCTION core.bump_network_row_version() OWNER TO ndexserver;
+
+DROP TRIGGER IF EXISTS network_row_version_trigger ON core.network;
+
+CREATE TRIGGER network_row_version_trigger BEFORE UPDATE OF name, description, version, properties, visibility,
+    owneruuid, edgecount, nodecount, cxmetadata, cx2metadata, modification_time, is_deleted, readonly, ndexdoi,
+    show_in_homepage, subnetworkids, provenance
+    ON core.network FOR EACH ROW EXECUTE PROCEDURE core.bump_network_row_version();
+
+-- Leave free space in the pages of the network table so the frequent flag updates (islocked, iscomplete, error,
+-- solr_idx_lvl ...) can be HOT updates: the new row version goes on the same page and the indexes are not touched.
+-- None of these columns is indexed. The setting applies to pages written from now on; run
+-- "VACUUM FULL core.network" in a maintenance window to apply it to the existing pages.
+ALTER TABLE IF EXISTS core.network SET (fillfactor = 80, autovacuum_vacuum_scale_factor = 0.05);
+
+-- Keyset pagination of the network listings (account page, group networks) seeks on (modification_time, "UUID") in
+-- descending order, and the permission listings of a network seek on the account UUID. Rows without a modification
+-- time can't be paged by keyset, so they get their creation time.
+-- Only the owner branch of the account page can seek through an index. The networks shared through
+-- user_network_membership and group_network_membership are ordered by a column of the joined network table, which no
+-- index can cover: those branches read all the memberships of the user or group through the existing user_id and
+-- group_id indexes and sort them, so their cost grows with the number of memberships, not with the page depth.
+UPDATE core.network SET modification_time = coalesce(creation_time, localtimestamp) WHERE modification_time IS NULL;
+
+CREATE INDEX IF NOT EXISTS network_owner_modtime_idx ON core.network USING btree (owneruuid, modification_time DESC, "UUID" DESC)
+    WHERE (NOT is_deleted);
+
+CREATE INDEX IF NOT EXISTS user_network_membership_network_user_idx ON core.user_network_membership USING btree (network_id, user_id);
+
+CREATE INDEX IF NOT EXISTS group_network_membership_network_group_idx ON core.group_network_membership USING btree (network_id, group_id);
+
+-- The network lock (islocked) is a lease: lock_owner is the server process that holds it and renews lock_expiration
+-- while the update runs. A lock whose lease has run out, because its server crashed or its task died, can be taken
+-- by another request. Locks held at the time of the upgrade run out in an hour.
+ALTER TABLE IF EXISTS core.network ADD COLUMN IF NOT EXISTS lock_owner character varying(255);
+
+ALTER TABLE IF EXISTS core.network ADD COLUMN IF NOT EXISTS lock_expiration timestamp without time zone;
+
+UPDATE core.network SET lock_expiration = localtimestamp + interval '1 hour' WHERE islocked AND lock_expiration IS NULL;
@@ -0,0 +1,45 @@
+package org.ndexbio.common.access;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+
+public class TestNdexReadReplicas {
+
+	@Test
+	public void testStickyAfterWrite() {
+		AtomicLong now = new AtomicLong();
+		Ticker ticker = new Ticker() {
+			@Override
+			public long read() {
+				return now.get();
+			}
+		};
+		NdexReadReplicas replicas = new NdexReadReplicas(new ArrayList<>(), 10, ticker);
+		UUID writer = UUID.randomUUID();
+		UUID reader = UUID.randomUUID();
+
+		assertFalse(replicas.isRecentWriter(writer));
+		replicas.recordWrite(writer);
+		assertTrue(replicas.isRecentWriter(writer));
+		assertFalse(replicas.isRecentWriter(reader));
+
+		now.addAndGet(TimeUnit.SECONDS.toNanos(9));
+		assertTrue(replicas.isRecentWriter(writer));
+		// another write restarts the period.
+		replicas.recordWrite(writer);
+		now.addAndGet(TimeUnit.SECONDS.toNanos(9));
+		assertTrue(replicas.isRecentWriter(writer));
+
+		now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		assertFalse(replicas.isRecentWriter(writer));
+	}
+
+}
@@ -0,0 +1,40 @@
+package org.ndexbio.common.models.dao.postgresql;
+
+import static org.junit.Assert.*;
+
+import java.util.UUID;
+
+import org.junit.Test;
+import org.ndexbio.common.models.dao.postgresql.CacheInvalidationBus.Event;
+import org.ndexbio.common.models.dao.postgresql.CacheInvalidationBus.Topic;
+
+public class TestCacheInvalidationBus {
+
+	@Test
+	public void testEventRoundTrip() {
+		UUID id = UUID.randomUUID();
+		for ( Topic t : Topic.values()) {
+			Event e = new Event(t, t.hasId ? id : null);
+			String payload = CacheInvalidationBus.encode("server1", e);
+			assertTrue(payload, payload.startsWith("server1 "));
+			assertEquals(e, CacheInvalidationBus.decode(payload.substring("server1 ".length())));
+		}
+	}
+
+	@Test
+	public void testDecodeInvalid() {
+		for ( String s : new String[] {"", "xx", "pn", "pa:" + UUID.randomUUID(), "pn:not-a-uuid"})
+			assertNull(s, CacheInvalidationBus.decode(s));
+	}
+
+	@Test
+	public void testEventNeedsId() {
+		try {
+			new Event(Topic.PERMISSION_NETWORK, null);
+			fail("event without an id");
+		} catch (@SuppressWarnings("unused") IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+}
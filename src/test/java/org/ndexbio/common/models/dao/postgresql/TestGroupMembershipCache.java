@@ -0,0 +1,91 @@
+package org.ndexbio.common.models.dao.postgresql;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class TestGroupMembershipCache {
+
+	@Test
+	public void testInvalidation() {
+		GroupMembershipCache cache = new GroupMembershipCache(60, 1000);
+		UUID user1 = UUID.randomUUID();
+		UUID user2 = UUID.randomUUID();
+		UUID group1 = UUID.randomUUID();
+
+		Map<UUID, Boolean> groups = new HashMap<>();
+		groups.put(group1, Boolean.TRUE);
+		cache.put(user1, groups, cache.getGeneration());
+		cache.put(user2, new HashMap<>(), cache.getGeneration());
+
+		// the cached copy doesn't follow the map it was made from.
+		groups.clear();
+		assertEquals(Boolean.TRUE, cache.get(user1).get(group1));
+		assertTrue(cache.get(user2).isEmpty());
+
+		cache.invalidateUser(user1);
+		assertNull(cache.get(user1));
+		assertNotNull(cache.get(user2));
+
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testPutAfterInvalidationIsDropped() {
+		GroupMembershipCache cache = new GroupMembershipCache(60, 1000);
+		UUID user = UUID.randomUUID();
+
+		long generation = cache.getGeneration();
+		cache.invalidateUser(UUID.randomUUID());
+		Map<UUID, Boolean> returned = cache.put(user, new HashMap<>(), generation);
+		assertTrue(returned.isEmpty());
+		assertNull(cache.get(user));
+
+		cache.put(user, new HashMap<>(), GroupMembershipCache.noGeneration);
+		assertNull(cache.get(user));
+	}
+
+	@Test
+	public void testListeners() {
+		GroupMembershipCache cache = new GroupMembershipCache(60, 1000);
+		List<String> events = new ArrayList<>();
+		UUID user = UUID.randomUUID();
+		cache.addInvalidationListener(new GroupMembershipCache.InvalidationListener() {
+			@Override
+			public void userInvalidated(UUID userId) {
+				events.add("user " + userId);
+			}
+
+			@Override
+			public void allInvalidated() {
+				events.add("all");
+			}
+		});
+
+		cache.invalidateUser(user);
+		cache.invalidateAll();
+		// received from another server, not sent back.
+		cache.invalidateUserLocally(user);
+		cache.invalidateAllLocally();
+		assertEquals(2, events.size());
+		assertEquals("user " + user, events.get(0));
+		assertEquals("all", events.get(1));
+	}
+
+	@Test
+	public void testDisabled() {
+		GroupMembershipCache cache = new GroupMembershipCache(0, 1000);
+		assertFalse(cache.isEnabled());
+		UUID user = UUID.randomUUID();
+		cache.put(user, new HashMap<>(), cache.getGeneration());
+		assertNull(cache.get(user));
+	}
+
+}
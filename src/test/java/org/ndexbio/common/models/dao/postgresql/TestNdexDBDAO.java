@@ -0,0 +1,38 @@
+package org.ndexbio.common.models.dao.postgresql;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class TestNdexDBDAO {
+
+	@Test
+	public void testOrderByIds() {
+		UUID id1 = UUID.randomUUID();
+		UUID id2 = UUID.randomUUID();
+		UUID id3 = UUID.randomUUID();
+		UUID id4 = UUID.randomUUID();
+
+		// rows come back from the db in any order.
+		Map<UUID, String> rows = new HashMap<>();
+		rows.put(id4, "d");
+		rows.put(id1, "a");
+		rows.put(id3, "c");
+
+		List<UUID> missingIds = new ArrayList<>();
+		List<String> result = NdexDBDAO.orderByIds(Arrays.asList(id3, id2, id1, id4), rows, missingIds);
+		assertEquals(Arrays.asList("c", "a", "d"), result);
+		assertEquals(Arrays.asList(id2), missingIds);
+
+		assertEquals(Arrays.asList("a", "c"), NdexDBDAO.orderByIds(Arrays.asList(id1, id2, id3), rows, null));
+		assertTrue(NdexDBDAO.orderByIds(new ArrayList<UUID>(), rows, null).isEmpty());
+	}
+
+}
@@ -0,0 +1,116 @@
+package org.ndexbio.common.models.dao.postgresql;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.ndexbio.model.object.network.VisibilityType;
+
+public class TestNetworkDAO {
+
+	/**
+	 * A network row with transactions: the visibility changed by an update is seen by the connection that made it,
+	 * and only kept if the connection commits.
+	 */
+	private static class NetworkRow {
+		boolean committedPublic;
+		boolean pendingPublic;
+		int queries;
+
+		Connection connection() {
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+					(proxy, method, args) -> {
+						switch (method.getName()) {
+						case "prepareStatement":
+							return statement((String) args[0]);
+						case "commit":
+							committedPublic = pendingPublic;
+							return null;
+						case "rollback":
+							pendingPublic = committedPublic;
+							return null;
+						default:
+							return defaultValue(method.getReturnType());
+						}
+					});
+		}
+
+		private PreparedStatement statement(String sql) {
+			return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+						switch (method.getName()) {
+						case "executeUpdate":
+							assertTrue(sql.startsWith("update network n set visibility"));
+							pendingPublic = sql.contains("'" + VisibilityType.PUBLIC + "'");
+							return Integer.valueOf(1);
+						case "executeQuery":
+							queries++;
+							return resultSet(pendingPublic);
+						default:
+							return defaultValue(method.getReturnType());
+						}
+					});
+		}
+
+		private ResultSet resultSet(boolean isPublic) {
+			boolean[] read = new boolean[1];
+			return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ResultSet.class },
+					(proxy, method, args) -> {
+						switch (method.getName()) {
+						case "next":
+							boolean hasRow = !read[0];
+							read[0] = true;
+							return Boolean.valueOf(hasRow);
+						case "getBoolean":
+							return Boolean.valueOf(isPublic);
+						default:
+							return defaultValue(method.getReturnType());
+						}
+					});
+		}
+
+		private static Object defaultValue(Class<?> type) {
+			if ( type == boolean.class)
+				return Boolean.FALSE;
+			if ( type == int.class)
+				return Integer.valueOf(0);
+			if ( type == long.class)
+				return Long.valueOf(0);
+			return null;
+		}
+	}
+
+	@Test
+	public void testUncommittedChangesAreNotCached() throws Exception {
+		NetworkRow row = new NetworkRow();
+		UUID networkId = UUID.randomUUID();
+
+		try (NetworkDAO dao = new NetworkDAO(row.connection())) {
+			assertFalse(dao.isReadable(networkId, null));
+			assertFalse(dao.isReadable(networkId, null));
+			assertEquals(1, row.queries);
+
+			// the DAO sees its own change, without caching it.
+			dao.updateNetworkVisibility(networkId, VisibilityType.PUBLIC, true);
+			assertTrue(dao.isReadable(networkId, null));
+			assertTrue(dao.isReadable(networkId, null));
+			assertEquals(3, row.queries);
+
+			dao.rollback();
+			assertFalse(dao.isReadable(networkId, null));
+			assertEquals(4, row.queries);
+		}
+
+		// the rolled back change is not served to the other requests either.
+		try (NetworkDAO dao = new NetworkDAO(row.connection())) {
+			assertFalse(dao.isReadable(networkId, null));
+			assertEquals(4, row.queries);
+		}
+	}
+
+}
@@ -0,0 +1,179 @@
+package org.ndexbio.common.models.dao.postgresql;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class TestNetworkLockManager {
+
+	@Test
+	public void testWakeUpOnRelease() throws Exception {
+		NetworkLockManager manager = new NetworkLockManager(10000);
+		UUID networkId = UUID.randomUUID();
+		AtomicBoolean flag = new AtomicBoolean(true);
+
+		Thread holder = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch (@SuppressWarnings("unused") InterruptedException e) {/*do nothing*/}
+			flag.set(false);
+			manager.released(networkId);
+		});
+		long start = System.currentTimeMillis();
+		holder.start();
+		assertTrue(manager.lock(networkId, () -> flag.compareAndSet(false, true)));
+		holder.join();
+		// woken up by the release, not by the poll interval.
+		assertTrue(System.currentTimeMillis() - start < NetworkLockManager.pollMillis + 100);
+		assertTrue(flag.get());
+		assertEquals(0, manager.getWaitingCount(networkId));
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		NetworkLockManager manager = new NetworkLockManager(300);
+		UUID networkId = UUID.randomUUID();
+		AtomicBoolean flag = new AtomicBoolean(true);
+
+		long start = System.currentTimeMillis();
+		assertFalse(manager.lock(networkId, () -> flag.compareAndSet(false, true)));
+		assertTrue(System.currentTimeMillis() - start >= 300);
+		assertFalse(manager.awaitUnlocked(networkId, () -> !flag.get(), 100));
+		assertEquals(0, manager.getWaitingCount(networkId));
+
+		// a lock released without a notification, e.g. by another server, is found by polling.
+		new Thread(() -> {
+			try {
+				Thread.sleep(50);
+			} catch (@SuppressWarnings("unused") InterruptedException e) {/*do nothing*/}
+			flag.set(false);
+		}).start();
+		assertTrue(manager.awaitUnlocked(networkId, () -> !flag.get(), 2000));
+	}
+
+	@Test
+	public void testFifo() throws Exception {
+		NetworkLockManager manager = new NetworkLockManager(10000);
+		UUID networkId = UUID.randomUUID();
+		AtomicBoolean flag = new AtomicBoolean(true);
+		List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+
+		List<Thread> threads = new ArrayList<>();
+		for ( int i = 0; i < 5; i++) {
+			final int n = i;
+			Thread t = new Thread(() -> {
+				try {
+					if ( manager.lock(networkId, () -> flag.compareAndSet(false, true))) {
+						order.add(Integer.valueOf(n));
+						flag.set(false);
+						manager.released(networkId);
+					}
+				} catch (Exception e) {
+					fail(e.getMessage());
+				}
+			});
+			t.start();
+			threads.add(t);
+			// wait until the thread is in line before starting the next one.
+			while ( manager.getWaitingCount(networkId) < i + 1)
+				Thread.sleep(5);
+			Thread.sleep(20);
+		}
+
+		flag.set(false);
+		manager.released(networkId);
+		for ( Thread t : threads)
+			t.join(5000);
+
+		assertEquals(List.of(0, 1, 2, 3, 4), order);
+	}
+
+	/**
+	 * The lock row of a network, updated like NetworkDAO.lockNetwork and renewNetworkLocks do.
+	 */
+	private static final class LockRow {
+		final AtomicReference<String> owner = new AtomicReference<>();
+		final AtomicLong expiration = new AtomicLong();
+
+		synchronized boolean tryLock(String who, long leaseMillis) {
+			long now = System.currentTimeMillis();
+			if ( owner.get() != null && expiration.get() >= now)
+				return false;
+			owner.set(who);
+			expiration.set(now + leaseMillis);
+			return true;
+		}
+
+		synchronized void renew(String who, long leaseMillis) {
+			if ( who.equals(owner.get()))
+				expiration.set(System.currentTimeMillis() + leaseMillis);
+		}
+	}
+
+	@Test
+	public void testReclaimExpiredLease() throws Exception {
+		LockRow row = new LockRow();
+		UUID networkId = UUID.randomUUID();
+		long lease = 300;
+		NetworkLockManager serverA = new NetworkLockManager(100, lease, "A",
+				(ids, owner, leaseMillis) -> row.renew(owner, leaseMillis));
+		NetworkLockManager serverB = new NetworkLockManager(3 * lease, lease, "B",
+				(ids, owner, leaseMillis) -> row.renew(owner, leaseMillis));
+		try {
+			assertTrue(serverA.lock(networkId, () -> row.tryLock("A", lease)));
+			serverA.acquired(networkId);
+
+			// renewed while the holder runs, the other server can't take the lock.
+			assertFalse(serverB.lock(networkId, () -> row.tryLock("B", lease)));
+			assertEquals("A", row.owner.get());
+
+			// the task that took the lock over ends without unlocking the network.
+			Thread task = new Thread(() -> serverA.adopt(networkId));
+			task.start();
+			task.join();
+
+			assertTrue(serverB.lock(networkId, () -> row.tryLock("B", lease)));
+			assertEquals("B", row.owner.get());
+			assertEquals(0, serverA.getHeldCount());
+		} finally {
+			serverA.stopRenewal();
+			serverB.stopRenewal();
+		}
+	}
+
+	@Test
+	public void testHandOff() throws Exception {
+		UUID networkId = UUID.randomUUID();
+		List<UUID> renewed = Collections.synchronizedList(new ArrayList<>());
+		NetworkLockManager manager = new NetworkLockManager(100, 60000, "A",
+				(ids, owner, leaseMillis) -> renewed.addAll(ids));
+		try {
+			Thread request = new Thread(() -> {
+				manager.acquired(networkId);
+				manager.handOff(networkId);
+			});
+			request.start();
+			request.join();
+
+			// the request has ended, but the queued task hasn't started yet.
+			manager.renewLeases();
+			assertEquals(List.of(networkId), renewed);
+
+			manager.unlocked(networkId);
+			manager.renewLeases();
+			assertEquals(1, renewed.size());
+			assertEquals(0, manager.getHeldCount());
+		} finally {
+			manager.stopRenewal();
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+package org.ndexbio.common.models.dao.postgresql;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.ndexbio.common.models.dao.postgresql.NetworkPermissionCache.Check;
+
+public class TestNetworkPermissionCache {
+
+	@Test
+	public void testInvalidation() {
+		NetworkPermissionCache cache = new NetworkPermissionCache(60, 1000);
+		UUID net1 = UUID.randomUUID();
+		UUID net2 = UUID.randomUUID();
+		UUID user1 = UUID.randomUUID();
+		UUID user2 = UUID.randomUUID();
+
+		cache.put(Check.READ, net1, user1, true, cache.getGeneration());
+		cache.put(Check.WRITE, net1, user1, false, cache.getGeneration());
+		cache.put(Check.READ, net2, user1, true, cache.getGeneration());
+		cache.put(Check.READ, net2, user2, true, cache.getGeneration());
+		cache.put(Check.READ, net2, null, false, cache.getGeneration());
+		cache.putAccessKeyDecision(net2, "key1", true, cache.getGeneration());
+
+		assertEquals(Boolean.TRUE, cache.get(Check.READ, net1, user1));
+		assertEquals(Boolean.FALSE, cache.get(Check.WRITE, net1, user1));
+		assertNull(cache.get(Check.ADMIN, net1, user1));
+		assertEquals(Boolean.FALSE, cache.get(Check.READ, net2, null));
+		assertEquals(Boolean.TRUE, cache.getAccessKeyDecision(net2, "key1"));
+		assertNull(cache.getAccessKeyDecision(net2, "key2"));
+
+		cache.invalidateNetwork(net1);
+		assertNull(cache.get(Check.READ, net1, user1));
+		assertNull(cache.get(Check.WRITE, net1, user1));
+		assertEquals(Boolean.TRUE, cache.get(Check.READ, net2, user1));
+
+		cache.invalidateUser(user1);
+		assertNull(cache.get(Check.READ, net2, user1));
+		assertEquals(Boolean.TRUE, cache.get(Check.READ, net2, user2));
+
+		cache.invalidateAccessKeys();
+		assertNull(cache.getAccessKeyDecision(net2, "key1"));
+		assertEquals(Boolean.TRUE, cache.get(Check.READ, net2, user2));
+
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testCheckOverlappingInvalidation() {
+		NetworkPermissionCache cache = new NetworkPermissionCache(60, 1000);
+		UUID net = UUID.randomUUID();
+		UUID user = UUID.randomUUID();
+
+		// the grant was read before it was revoked, so it must not be cached.
+		long generation = cache.getGeneration();
+		cache.invalidateNetwork(net);
+		cache.put(Check.READ, net, user, true, generation);
+		assertNull(cache.get(Check.READ, net, user));
+
+		generation = cache.getGeneration();
+		cache.invalidateUser(UUID.randomUUID());
+		cache.putAccessKeyDecision(net, "key", true, generation);
+		assertNull(cache.getAccessKeyDecision(net, "key"));
+	}
+
+	@Test
+	public void testListenersAndDisabledCache() {
+		NetworkPermissionCache cache = new NetworkPermissionCache(0, 1000);
+		assertFalse(cache.isEnabled());
+		UUID net = UUID.randomUUID();
+		cache.put(Check.READ, net, null, true, cache.getGeneration());
+		assertNull(cache.get(Check.READ, net, null));
+
+		List<String> events = new ArrayList<>();
+		NetworkPermissionCache.InvalidationListener listener = new NetworkPermissionCache.InvalidationListener() {
+			@Override
+			public void networkInvalidated(UUID networkId) { events.add("network " + networkId); }
+			@Override
+			public void userInvalidated(UUID userId) { events.add("user " + userId); }
+			@Override
+			public void accessKeysInvalidated() { events.add("accessKeys"); }
+			@Override
+			public void allInvalidated() { events.add("all"); }
+		};
+		cache.addInvalidationListener(listener);
+		cache.invalidateNetwork(net);
+		cache.invalidateAccessKeys();
+		cache.invalidateAll();
+		// invalidations received from other servers are not sent back.
+		cache.invalidateNetworkLocally(net);
+		cache.invalidateAllLocally();
+		assertEquals(3, events.size());
+		assertEquals("network " + net, events.get(0));
+		cache.removeInvalidationListener(listener);
+		cache.invalidateAll();
+		assertEquals(3, events.size());
+	}
+
+	/**
+	 * Readers keep checking a permission while it is granted and revoked. Once a revoke and its invalidation are
+	 * done, no reader may see the grant in the cache.
+	 */
+	@Test
+	public void testNoStaleGrant() throws InterruptedException {
+		NetworkPermissionCache cache = new NetworkPermissionCache(60, 1000);
+		UUID net = UUID.randomUUID();
+		UUID user = UUID.randomUUID();
+
+		// stands for the row in the database.
+		AtomicBoolean granted = new AtomicBoolean(true);
+		// odd while the permission is revoked and the invalidation has completed.
+		AtomicLong phase = new AtomicLong();
+		AtomicBoolean stop = new AtomicBoolean(false);
+		AtomicInteger staleReads = new AtomicInteger();
+
+		List<Thread> readers = new ArrayList<>();
+		for ( int i = 0; i < 4; i++) {
+			Thread t = new Thread(() -> {
+				while ( !stop.get()) {
+					long startPhase = phase.get();
+					Boolean cached = cache.get(Check.READ, net, user);
+					if ( cached == null) {
+						long generation = cache.getGeneration();
+						boolean value = granted.get();
+						Thread.yield();
+						cache.put(Check.READ, net, user, value, generation);
+					} else if ( cached.booleanValue() && startPhase % 2 == 1 && phase.get() == startPhase) {
+						staleReads.incrementAndGet();
+					}
+				}
+			});
+			t.start();
+			readers.add(t);
+		}
+
+		for ( int round = 0; round < 2000; round++) {
+			granted.set(true);
+			cache.invalidateNetwork(net);
+			Thread.yield();
+			granted.set(false);
+			cache.invalidateNetwork(net);
+			phase.incrementAndGet();
+			Thread.yield();
+			phase.incrementAndGet();
+		}
+		stop.set(true);
+		for ( Thread t : readers)
+			t.join();
+
+		assertEquals(0, staleReads.get());
+	}
+}
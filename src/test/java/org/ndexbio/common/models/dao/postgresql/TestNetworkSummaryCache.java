@@ -0,0 +1,131 @@
+package org.ndexbio.common.models.dao.postgresql;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.ndexbio.common.models.dao.postgresql.NetworkSummaryCache.Kind;
+
+public class TestNetworkSummaryCache {
+
+	@Test
+	public void testInvalidate() {
+		NetworkSummaryCache cache = new NetworkSummaryCache(60, 1024 * 1024);
+		UUID networkId = UUID.randomUUID();
+
+		long version = cache.getVersion(networkId);
+		cache.put(Kind.SUMMARY, networkId, "v1", 100, version);
+		cache.put(Kind.CX_METADATA, networkId, "m1", 100, version);
+		assertEquals("v1", cache.get(Kind.SUMMARY, networkId));
+		assertEquals("m1", cache.get(Kind.CX_METADATA, networkId));
+		assertNull(cache.get(Kind.CX2_METADATA, networkId));
+
+		cache.invalidateNetwork(networkId);
+		assertNull(cache.get(Kind.SUMMARY, networkId));
+		assertNull(cache.get(Kind.CX_METADATA, networkId));
+
+		// a value read before the invalidation is not cached.
+		cache.put(Kind.SUMMARY, networkId, "v1", 100, version);
+		assertNull(cache.get(Kind.SUMMARY, networkId));
+		assertEquals(0, cache.size());
+
+		cache.put(Kind.SUMMARY, networkId, "v2", 100, cache.getVersion(networkId));
+		assertEquals("v2", cache.get(Kind.SUMMARY, networkId));
+		cache.invalidateAll();
+		assertNull(cache.get(Kind.SUMMARY, networkId));
+	}
+
+	@Test
+	public void testVariants() {
+		NetworkSummaryCache cache = new NetworkSummaryCache(60, 1024 * 1024);
+		UUID networkId = UUID.randomUUID();
+
+		long version = cache.getVersion(networkId);
+		cache.put(Kind.SUMMARY_V3_JSON, networkId, "FULL", "full", 100, version);
+		cache.put(Kind.SUMMARY_V3_JSON, networkId, "COMPACT", "compact", 100, version);
+		assertEquals("full", cache.get(Kind.SUMMARY_V3_JSON, networkId, "FULL"));
+		assertEquals("compact", cache.get(Kind.SUMMARY_V3_JSON, networkId, "COMPACT"));
+		assertNull(cache.get(Kind.SUMMARY_V3_JSON, networkId));
+
+		// the variants are not removed by the invalidation, but they are outdated.
+		cache.invalidateNetwork(networkId);
+		assertNull(cache.get(Kind.SUMMARY_V3_JSON, networkId, "FULL"));
+		assertNull(cache.get(Kind.SUMMARY_V3_JSON, networkId, "COMPACT"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testBoundedBySize() {
+		NetworkSummaryCache cache = new NetworkSummaryCache(60, 10000);
+		for ( int i = 0; i < 100; i++) {
+			UUID id = UUID.randomUUID();
+			cache.put(Kind.SUMMARY, id, "v", 1000, cache.getVersion(id));
+		}
+		assertTrue(cache.size() <= 10);
+	}
+
+	@Test
+	public void testTurnedOff() {
+		NetworkSummaryCache cache = new NetworkSummaryCache(0, 10000);
+		UUID networkId = UUID.randomUUID();
+		assertFalse(cache.isEnabled());
+		cache.put(Kind.SUMMARY, networkId, "v", 100, cache.getVersion(networkId));
+		assertNull(cache.get(Kind.SUMMARY, networkId));
+	}
+
+	/**
+	 * Readers go through the cache the way NetworkDAO does while a writer keeps updating the network and invalidating
+	 * it after each commit. Once a commit has been invalidated, no reader may see an older value.
+	 */
+	@Test
+	public void testNoStaleReadAfterCommit() throws Exception {
+		NetworkSummaryCache cache = new NetworkSummaryCache(60, 1024 * 1024);
+		UUID networkId = UUID.randomUUID();
+		// the committed value in the db.
+		AtomicLong db = new AtomicLong();
+		// the last value whose commit has been followed by the invalidation.
+		AtomicLong committed = new AtomicLong();
+		AtomicBoolean done = new AtomicBoolean(false);
+		AtomicReference<String> failure = new AtomicReference<>();
+
+		List<Thread> readers = new ArrayList<>();
+		for ( int i = 0; i < 4; i++) {
+			Thread t = new Thread(() -> {
+				while ( !done.get()) {
+					long floor = committed.get();
+					Long value = (Long) cache.get(Kind.SUMMARY, networkId);
+					if ( value == null) {
+						long version = cache.getVersion(networkId);
+						value = Long.valueOf(db.get());
+						// a slow query makes the race with the writer more likely.
+						Thread.yield();
+						cache.put(Kind.SUMMARY, networkId, value, 100, version);
+					}
+					if ( value.longValue() < floor)
+						failure.compareAndSet(null, "read " + value + " after " + floor + " was committed.");
+				}
+			});
+			t.start();
+			readers.add(t);
+		}
+
+		for ( long v = 1; v <= 20000; v++) {
+			cache.invalidateNetwork(networkId);
+			db.set(v);
+			cache.invalidateNetwork(networkId);
+			committed.set(v);
+		}
+		done.set(true);
+		for ( Thread t : readers)
+			t.join(5000);
+
+		assertNull(failure.get(), failure.get());
+	}
+
+}
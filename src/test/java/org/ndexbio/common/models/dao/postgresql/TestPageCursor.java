@@ -0,0 +1,51 @@
+package org.ndexbio.common.models.dao.postgresql;
+
+import static org.junit.Assert.*;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class TestPageCursor {
+
+	@Test
+	public void testRoundTrip() {
+		UUID id = UUID.randomUUID();
+		// postgres timestamps have microseconds.
+		Timestamp t = Timestamp.valueOf("2024-03-05 10:11:12.123456");
+		PageCursor c = new PageCursor(t, id);
+		PageCursor decoded = PageCursor.decode(c.encode());
+		assertEquals(c, decoded);
+		assertEquals(t, decoded.getTime());
+		assertEquals(id, decoded.getId());
+
+		Timestamp old = Timestamp.valueOf("1960-01-01 00:00:00.5");
+		assertEquals(old, PageCursor.decode(new PageCursor(old, id).encode()).getTime());
+
+		PageCursor idOnly = PageCursor.decode(new PageCursor(null, id).encode());
+		assertNull(idOnly.getTime());
+		assertEquals(id, idOnly.getId());
+	}
+
+	@Test
+	public void testEncodingIsUrlSafe() {
+		String s = new PageCursor(new Timestamp(System.currentTimeMillis()), UUID.randomUUID()).encode();
+		assertTrue(s, s.matches("[A-Za-z0-9_-]+"));
+	}
+
+	@Test
+	public void testDecodeInvalid() {
+		assertNull(PageCursor.decode(null));
+		assertNull(PageCursor.decode(""));
+		for ( String s : new String[] {"abc", "!!", "MTIzLjQ1Ng", "MS4yLjM"}) {
+			try {
+				PageCursor.decode(s);
+				fail("decoded " + s);
+			} catch (@SuppressWarnings("unused") IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+}
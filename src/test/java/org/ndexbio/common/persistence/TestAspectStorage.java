@@ -0,0 +1,353 @@
+package org.ndexbio.common.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+import org.ndexbio.cx2.aspect.element.core.CxNode;
+import org.ndexbio.cxio.aspects.datamodels.NodesElement;
+import org.ndexbio.cxio.core.AspectIterator;
+import org.ndexbio.server.tools.AspectCompressionMigrator;
+
+public class TestAspectStorage {
+
+	@Rule
+	public TemporaryFolder _tmpFolder = new TemporaryFolder();
+
+	private static final String NODES = "[{\"@id\":1,\"n\":\"A\"},{\"@id\":2,\"n\":\"B\",\"r\":\"hgnc:B\"}]";
+
+	private static void writeAspect(String fileName, String content, boolean compressed) throws IOException {
+		try (OutputStream out = AspectStorage.newAspectOutputStream(fileName, compressed)) {
+			out.write(content.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private static String readAspect(String fileName) throws IOException {
+		try (InputStream in = AspectStorage.newAspectInputStream(fileName)) {
+			return IOUtils.toString(in, StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		File dir = _tmpFolder.newFolder();
+		String plain = dir.getCanonicalPath() + File.separator + "plain";
+		String compressed = dir.getCanonicalPath() + File.separator + "compressed";
+		writeAspect(plain, NODES, false);
+		writeAspect(compressed, NODES, true);
+
+		assertFalse(AspectStorage.isCompressed(new File(plain).toPath()));
+		assertTrue(AspectStorage.isCompressed(new File(compressed).toPath()));
+		assertEquals(NODES, readAspect(plain));
+		assertEquals(NODES, readAspect(compressed));
+	}
+
+	@Test
+	public void testEmptyAndShortFiles() throws Exception {
+		File dir = _tmpFolder.newFolder();
+		String empty = dir.getCanonicalPath() + File.separator + "empty";
+		String shortFile = dir.getCanonicalPath() + File.separator + "short";
+		writeAspect(empty, "", false);
+		writeAspect(shortFile, "[]", false);
+		assertEquals("", readAspect(empty));
+		assertEquals("[]", readAspect(shortFile));
+	}
+
+	@Test
+	public void testCX1AspectIteratorOnCompressedAspect() throws Exception {
+		File root = _tmpFolder.newFolder();
+		String networkId = UUID.randomUUID().toString();
+		File aspectDir = new File(root, networkId + File.separator + CXNetworkLoader.CX1AspectDir);
+		assertTrue(aspectDir.mkdirs());
+		writeAspect(aspectDir.getCanonicalPath() + File.separator + NodesElement.ASPECT_NAME, NODES, true);
+
+		String pathPrefix = root.getCanonicalPath() + File.separator;
+		int count = 0;
+		try (AspectIterator<NodesElement> it = AspectStorage.newCX1AspectIterator(networkId, NodesElement.ASPECT_NAME,
+				NodesElement.class, pathPrefix)) {
+			while (it.hasNext()) {
+				NodesElement n = it.next();
+				count++;
+				assertEquals(count, n.getId());
+			}
+		}
+		assertEquals(2, count);
+
+		// missing aspect gives an empty iterator.
+		try (AspectIterator<NodesElement> it = AspectStorage.newCX1AspectIterator(networkId, "foo",
+				NodesElement.class, pathPrefix)) {
+			assertFalse(it.hasNext());
+		}
+	}
+
+	@Test
+	public void testConvertAspectFile() throws Exception {
+		File dir = _tmpFolder.newFolder();
+		Path p = new File(dir, "nodes").toPath();
+		writeAspect(p.toString(), NODES, false);
+
+		assertFalse(AspectStorage.convertAspectFile(p, false));
+		assertTrue(AspectStorage.convertAspectFile(p, true));
+		assertTrue(AspectStorage.isCompressed(p));
+		assertEquals(NODES, readAspect(p.toString()));
+		assertFalse(AspectStorage.convertAspectFile(p, true));
+
+		assertTrue(AspectStorage.convertAspectFile(p, false));
+		assertFalse(AspectStorage.isCompressed(p));
+		assertEquals(NODES, new String(Files.readAllBytes(p), StandardCharsets.UTF_8));
+
+		// no temp files are left behind
+		assertEquals(1, dir.list().length);
+	}
+
+	@Test
+	public void testPlainAspectFile() throws Exception {
+		File networkDir = _tmpFolder.newFolder();
+		File aspectDir = new File(networkDir, CX2NetworkLoader.cx2AspectDirName);
+		assertTrue(aspectDir.mkdir());
+		String plain = aspectDir.getCanonicalPath() + File.separator + "edges";
+		String compressed = aspectDir.getCanonicalPath() + File.separator + "nodes";
+		writeAspect(plain, "[]", false);
+		writeAspect(compressed, NODES, true);
+
+		assertTrue(AspectStorage.isPlainAspectFile(plain));
+		assertFalse(AspectStorage.isPlainAspectFile(compressed));
+
+		String tmpPath;
+		String aspectDirPath = aspectDir.getCanonicalPath() + File.separator;
+		try (AspectStorage.PlainAspectFile d = AspectStorage.getPlainAspectDirectory(aspectDirPath, "edges")) {
+			assertEquals(aspectDirPath, d.getPath());
+		}
+		try (AspectStorage.PlainAspectFile d = AspectStorage.getPlainAspectDirectory(aspectDirPath, "edges", "nodes")) {
+			tmpPath = d.getPath();
+			assertNotEquals(aspectDirPath, tmpPath);
+			assertEquals("[]", new String(Files.readAllBytes(new File(tmpPath + "edges").toPath()), StandardCharsets.UTF_8));
+			assertEquals(NODES, new String(Files.readAllBytes(new File(tmpPath + "nodes").toPath()), StandardCharsets.UTF_8));
+		}
+		assertFalse(new File(tmpPath).exists());
+		assertEquals(1, networkDir.list().length);
+	}
+
+	@Test
+	public void testMigrateNetwork() throws Exception {
+		File networkDir = _tmpFolder.newFolder();
+		File cx1Dir = new File(networkDir, CXNetworkLoader.CX1AspectDir);
+		File cx2Dir = new File(networkDir, CX2NetworkLoader.cx2AspectDirName);
+		assertTrue(cx1Dir.mkdir());
+		assertTrue(cx2Dir.mkdir());
+		writeAspect(new File(cx1Dir, "cyTableColumn").getCanonicalPath(), "[{\"applies_to\":\"node_table\"}]", false);
+		writeAspect(new File(cx2Dir, "nodes").getCanonicalPath(), NODES, false);
+		Path link = new File(cx2Dir, "cyTableColumn").toPath();
+		Files.createSymbolicLink(link, new File(cx1Dir, "cyTableColumn").toPath());
+
+		assertEquals(2, AspectCompressionMigrator.migrateNetwork(networkDir.toPath(), true));
+		assertTrue(Files.isSymbolicLink(link));
+		assertTrue(AspectStorage.isCompressed(link));
+		assertEquals("[{\"applies_to\":\"node_table\"}]", readAspect(link.toString()));
+		assertEquals(NODES, readAspect(new File(cx2Dir, "nodes").getCanonicalPath()));
+
+		assertEquals(0, AspectCompressionMigrator.migrateNetwork(networkDir.toPath(), true));
+		assertEquals(2, AspectCompressionMigrator.migrateNetwork(networkDir.toPath(), false));
+	}
+
+	@Test
+	public void testJsonSeqRoundTrip() throws Exception {
+		File dir = _tmpFolder.newFolder();
+		String seq = dir.getCanonicalPath() + File.separator + "seq";
+		String compressedSeq = dir.getCanonicalPath() + File.separator + "compressedSeq";
+		String emptySeq = dir.getCanonicalPath() + File.separator + "emptySeq";
+		String pretty = "[ {\"@id\" : 1, \"n\" : \"A\"},\n {\"@id\":2,\"n\":\"B\",\"r\":\"hgnc:B\"} ]";
+		try (OutputStream out = AspectStorage.newAspectOutputStream(seq, false, true)) {
+			out.write(pretty.getBytes(StandardCharsets.UTF_8));
+		}
+		try (OutputStream out = AspectStorage.newAspectOutputStream(compressedSeq, true, true)) {
+			out.write(NODES.getBytes(StandardCharsets.UTF_8));
+		}
+		try (OutputStream out = AspectStorage.newAspectOutputStream(emptySeq, false, true)) {
+			out.write("[ ]".getBytes(StandardCharsets.UTF_8));
+		}
+
+		assertEquals("\u001e{\"@id\":1,\"n\":\"A\"}\n\u001e{\"@id\":2,\"n\":\"B\",\"r\":\"hgnc:B\"}\n",
+				new String(Files.readAllBytes(new File(seq).toPath()), StandardCharsets.UTF_8));
+		assertTrue(AspectStorage.isJsonSeq(new File(seq).toPath()));
+		assertTrue(AspectStorage.isJsonSeq(new File(compressedSeq).toPath()));
+		assertFalse(AspectStorage.isJsonSeq(new File(emptySeq).toPath()));
+
+		assertEquals(NODES, readAspect(seq));
+		assertEquals(NODES, readAspect(compressedSeq));
+		assertEquals("[]", readAspect(emptySeq));
+	}
+
+	@Test
+	public void testJsonSeqScalarsAndStrings() throws Exception {
+		String content = "[1, \"a, ]\\\" [b\", {\"v\":[1,{\"x\":\"}\"}]}, true]";
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (OutputStream out = new JsonSeqOutputStream(bytes)) {
+			out.write(content.getBytes(StandardCharsets.UTF_8));
+		}
+		try (InputStream in = new JsonSeqInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			assertEquals("[1,\"a, ]\\\" [b\",{\"v\":[1,{\"x\":\"}\"}]},true]", IOUtils.toString(in, StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void testJsonSeqBlockWrites() throws Exception {
+		String content = "[{\"id\":1, \"v\":{\"n\":\"a b\"}},\n {\"id\":2}, 3]";
+		byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+
+		ByteArrayOutputStream oneByOne = new ByteArrayOutputStream();
+		try (OutputStream out = new JsonSeqOutputStream(oneByOne)) {
+			for ( byte b : bytes)
+				out.write(b);
+		}
+		// blocks that split the elements and strings at different places give the same output.
+		for ( int blockSize = 1; blockSize <= bytes.length; blockSize += 3) {
+			ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+			try (OutputStream out = new JsonSeqOutputStream(blocks)) {
+				for ( int i = 0; i < bytes.length; i += blockSize)
+					out.write(bytes, i, Math.min(blockSize, bytes.length - i));
+			}
+			assertArrayEquals(oneByOne.toByteArray(), blocks.toByteArray());
+		}
+
+		// content that is not an array is passed through.
+		ByteArrayOutputStream passThrough = new ByteArrayOutputStream();
+		try (OutputStream out = new JsonSeqOutputStream(passThrough)) {
+			out.write(" {\"a\": 1}".getBytes(StandardCharsets.UTF_8), 0, 4);
+			out.write(" {\"a\": 1}".getBytes(StandardCharsets.UTF_8), 4, 5);
+		}
+		assertEquals("{\"a\": 1}", new String(passThrough.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testConvertAspectFileFormat() throws Exception {
+		File dir = _tmpFolder.newFolder();
+		Path p = new File(dir, "nodes").toPath();
+		writeAspect(p.toString(), NODES, false);
+
+		assertTrue(AspectStorage.convertAspectFile(p, true, true));
+		assertTrue(AspectStorage.isCompressed(p));
+		assertTrue(AspectStorage.isJsonSeq(p));
+		assertEquals(NODES, readAspect(p.toString()));
+
+		// the format is kept when only the compression is changed.
+		assertTrue(AspectStorage.convertAspectFile(p, false));
+		assertFalse(AspectStorage.isCompressed(p));
+		assertTrue(AspectStorage.isJsonSeq(p));
+		assertFalse(AspectStorage.convertAspectFile(p, false, true));
+
+		assertTrue(AspectStorage.convertAspectFile(p, false, false));
+		assertEquals(NODES, new String(Files.readAllBytes(p), StandardCharsets.UTF_8));
+		assertEquals(1, dir.list().length);
+
+		// the library functions can't read a JSON text sequence from its path.
+		assertTrue(AspectStorage.isPlainAspectFile(p.toString()));
+		AspectStorage.convertAspectFile(p, false, true);
+		assertFalse(AspectStorage.isPlainAspectFile(p.toString()));
+	}
+
+	@Test
+	public void testParallelAspectIterator() throws Exception {
+		File dir = _tmpFolder.newFolder();
+		String seq = dir.getCanonicalPath() + File.separator + "seq";
+		String compressedSeq = dir.getCanonicalPath() + File.separator + "compressedSeq";
+		String array = dir.getCanonicalPath() + File.separator + "array";
+		StringBuilder b = new StringBuilder("[");
+		int total = 5000;
+		for ( int i = 0; i < total; i++) {
+			if ( i > 0)
+				b.append(",");
+			b.append("{\"id\":").append(i).append(",\"v\":{\"name\":\"node ").append(i).append("\"}}");
+		}
+		b.append("]");
+		try (OutputStream out = AspectStorage.newAspectOutputStream(seq, false, true)) {
+			out.write(b.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		try (OutputStream out = AspectStorage.newAspectOutputStream(compressedSeq, true, true)) {
+			out.write(b.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		writeAspect(array, b.toString(), false);
+
+		// use a small chunk size so that the elements are split across many chunks.
+		try (ParallelAspectIterator<CxNode> it = new ParallelAspectIterator<>(
+					 Files.newInputStream(new File(seq).toPath()), CxNode.class, true, 100)) {
+			int count = 0;
+			while ( it.hasNext()) {
+				CxNode n = it.next();
+				assertEquals(count, n.getId().intValue());
+				assertEquals("node " + count, n.getAttributes().get("name"));
+				count++;
+			}
+			assertEquals(total, count);
+		}
+
+		for ( String f : new String[] {seq, compressedSeq, array}) {
+			try (ParallelAspectIterator<CxNode> it = AspectStorage.newParallelAspectIterator(f, CxNode.class)) {
+				int count = 0;
+				while ( it.hasNext()) {
+					assertEquals(count++, it.next().getId().intValue());
+				}
+				assertEquals(total, count);
+			}
+		}
+	}
+
+	@Test
+	public void testParallelAspectIteratorReadAheadLimit() throws Exception {
+		File dir = _tmpFolder.newFolder();
+		String seq = dir.getCanonicalPath() + File.separator + "seq";
+		StringBuilder b = new StringBuilder("[");
+		int total = 2000;
+		for ( int i = 0; i < total; i++) {
+			if ( i > 0)
+				b.append(",");
+			b.append("{\"id\":").append(i).append("}");
+		}
+		b.append("]");
+		try (OutputStream out = AspectStorage.newAspectOutputStream(seq, false, true)) {
+			out.write(b.toString().getBytes(StandardCharsets.UTF_8));
+		}
+
+		// more iterators than read-ahead permits, read in turns. The ones that get no permit parse on this thread.
+		int iteratorCount = 4 * Runtime.getRuntime().availableProcessors() + 1;
+		List<ParallelAspectIterator<CxNode>> iterators = new ArrayList<>();
+		try {
+			for ( int i = 0; i < iteratorCount; i++)
+				iterators.add(new ParallelAspectIterator<>(Files.newInputStream(new File(seq).toPath()), CxNode.class, true, 50));
+			for ( int count = 0; count < total; count++) {
+				for ( ParallelAspectIterator<CxNode> it : iterators) {
+					assertTrue(it.hasNext());
+					assertEquals(count, it.next().getId().intValue());
+				}
+			}
+			for ( ParallelAspectIterator<CxNode> it : iterators)
+				assertFalse(it.hasNext());
+		} finally {
+			for ( ParallelAspectIterator<CxNode> it : iterators)
+				it.close();
+		}
+
+		// closing an iterator that is half read gives its permits back.
+		for ( int i = 0; i < iteratorCount; i++) {
+			try (ParallelAspectIterator<CxNode> it = new ParallelAspectIterator<>(
+					Files.newInputStream(new File(seq).toPath()), CxNode.class, true, 50)) {
+				assertEquals(0, it.next().getId().intValue());
+			}
+		}
+		assertEquals(2 * Runtime.getRuntime().availableProcessors(), ParallelAspectIterator.availableReadAheadPermits());
+	}
+}
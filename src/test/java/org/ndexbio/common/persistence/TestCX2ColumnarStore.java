@@ -0,0 +1,116 @@
+package org.ndexbio.common.persistence;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+import org.ndexbio.cx2.aspect.element.core.CxAttributeDeclaration;
+import org.ndexbio.cx2.aspect.element.core.CxEdge;
+import org.ndexbio.cx2.aspect.element.core.CxNode;
+
+public class TestCX2ColumnarStore {
+
+	@Rule
+	public TemporaryFolder _tmpFolder = new TemporaryFolder();
+
+	private static void writeFile(File f, String content) throws IOException {
+		try (BufferedWriter bw = new BufferedWriter(new FileWriter(f))) {
+			bw.write(content);
+		}
+	}
+
+	private static File createNetworkDir(File networkDir) throws IOException {
+		File aspectDir = new File(networkDir, CX2NetworkLoader.cx2AspectDirName);
+		assertTrue(aspectDir.mkdirs());
+		writeFile(new File(aspectDir, CxAttributeDeclaration.ASPECT_NAME),
+				"[{\"nodes\":{\"name\":{\"d\":\"string\"},\"score\":{\"d\":\"double\"},\"rank\":{\"d\":\"integer\"},"
+				+ "\"big\":{\"d\":\"long\"},\"flag\":{\"d\":\"boolean\"},\"alias\":{\"d\":\"list_of_string\"}},"
+				+ "\"edges\":{\"interaction\":{\"d\":\"string\"}}}]");
+		writeFile(new File(aspectDir, CxNode.ASPECT_NAME),
+				"[{\"id\":10,\"v\":{\"name\":\"A\",\"score\":0.5,\"rank\":1,\"big\":5000000000,\"flag\":true,\"alias\":[\"a1\"]}},"
+				+ "{\"id\":20,\"v\":{\"name\":\"B\"}},"
+				+ "{\"id\":30,\"v\":{\"name\":\"A\",\"flag\":false}}]");
+		writeFile(new File(aspectDir, CxEdge.ASPECT_NAME),
+				"[{\"id\":0,\"s\":10,\"t\":20,\"v\":{\"interaction\":\"binds\"}},"
+				+ "{\"id\":1,\"s\":20,\"t\":30}]");
+		return networkDir;
+	}
+
+	@Test
+	public void testNodes() throws Exception {
+		File networkDir = createNetworkDir(_tmpFolder.newFolder());
+		CX2ColumnarStore.build(networkDir.toPath());
+
+		CX2ColumnarReader nodes = CX2ColumnarReader.open(networkDir.toPath(), CxNode.ASPECT_NAME);
+		assertNotNull(nodes);
+		assertEquals(3, nodes.getRowCount());
+		assertEquals(10L, nodes.getId(0));
+		assertEquals(30L, nodes.getId(2));
+
+		assertTrue(nodes.hasAttributes(Arrays.asList("name", "score", "rank", "big", "flag")));
+		assertFalse(nodes.hasAttribute("alias"));
+
+		assertEquals("A", nodes.getAttributeValue("name", 0));
+		assertEquals("B", nodes.getAttributeValue("name", 1));
+		assertEquals("A", nodes.getAttributeValue("name", 2));
+		assertEquals(Double.valueOf(0.5), nodes.getAttributeValue("score", 0));
+		assertNull(nodes.getAttributeValue("score", 1));
+		assertEquals(Integer.valueOf(1), nodes.getAttributeValue("rank", 0));
+		assertEquals(Long.valueOf(5000000000L), nodes.getAttributeValue("big", 0));
+		assertEquals(Boolean.TRUE, nodes.getAttributeValue("flag", 0));
+		assertNull(nodes.getAttributeValue("flag", 1));
+		assertEquals(Boolean.FALSE, nodes.getAttributeValue("flag", 2));
+
+		Map<Long,Integer> rows = nodes.findRows(new HashSet<>(Arrays.asList(Long.valueOf(30), Long.valueOf(10), Long.valueOf(99))));
+		assertEquals(2, rows.size());
+		assertEquals(Integer.valueOf(0), rows.get(Long.valueOf(10)));
+		assertEquals(Integer.valueOf(2), rows.get(Long.valueOf(30)));
+
+		rows = nodes.getRowIndex();
+		assertEquals(3, rows.size());
+		assertEquals(Integer.valueOf(1), rows.get(Long.valueOf(20)));
+	}
+
+	@Test
+	public void testEdges() throws Exception {
+		File networkDir = createNetworkDir(_tmpFolder.newFolder());
+		CX2ColumnarStore.build(networkDir.toPath());
+
+		CX2ColumnarReader edges = CX2ColumnarReader.open(networkDir.toPath(), CxEdge.ASPECT_NAME);
+		assertNotNull(edges);
+		assertEquals(2, edges.getRowCount());
+		assertEquals(1L, edges.getId(1));
+		assertEquals(10L, edges.getSource(0));
+		assertEquals(20L, edges.getTarget(0));
+		assertEquals(20L, edges.getSource(1));
+		assertEquals(30L, edges.getTarget(1));
+		assertEquals("binds", edges.getAttributeValue("interaction", 0));
+		assertNull(edges.getAttributeValue("interaction", 1));
+	}
+
+	@Test
+	public void testCompressedAspectsAndMissingCopy() throws Exception {
+		File networkDir = createNetworkDir(_tmpFolder.newFolder());
+		assertNull(CX2ColumnarReader.open(networkDir.toPath(), CxNode.ASPECT_NAME));
+
+		File aspectDir = new File(networkDir, CX2NetworkLoader.cx2AspectDirName);
+		for ( String f : aspectDir.list())
+			AspectStorage.convertAspectFile(new File(aspectDir, f).toPath(), true);
+
+		CX2ColumnarStore.build(networkDir.toPath());
+		CX2ColumnarReader nodes = CX2ColumnarReader.open(networkDir.toPath(), CxNode.ASPECT_NAME);
+		assertEquals(3, nodes.getRowCount());
+		assertEquals("B", nodes.getAttributeValue("name", 1));
+
+		// only the columnar directory is added to the network directory.
+		assertEquals(2, networkDir.list().length);
+	}
+}
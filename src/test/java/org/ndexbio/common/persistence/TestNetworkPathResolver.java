@@ -0,0 +1,99 @@
+package org.ndexbio.common.persistence;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.server.tools.NetworkDirMigrator;
+
+import static org.junit.Assert.*;
+
+public class TestNetworkPathResolver {
+
+	@Rule
+	public TemporaryFolder _tmpFolder = new TemporaryFolder();
+
+	@Test
+	public void testShardPath() {
+		String id = UUID.randomUUID().toString();
+		String shard = NetworkPathResolver.getShardPath(id);
+		assertTrue(shard.matches("[0-9a-f]{2}/[0-9a-f]{2}"));
+		assertEquals(shard, NetworkPathResolver.getShardPath(id.toUpperCase()));
+
+		// time based UUIDs created close together should still be spread over the shards.
+		Set<String> shards = new HashSet<>();
+		long msb = UUID.randomUUID().getMostSignificantBits();
+		for ( int i = 0; i < 100; i++)
+			shards.add(NetworkPathResolver.getShardPath(new UUID(msb + i, 0x8000000000000000L).toString()).substring(0, 2));
+		assertTrue(shards.size() > 50);
+	}
+
+	@Test
+	public void testResolveBothLayouts() throws Exception {
+		Path dataDir = _tmpFolder.newFolder("data").toPath();
+		String id = UUID.randomUUID().toString();
+		Path legacyDir = dataDir.resolve(id);
+		Path shardedDir = NetworkPathResolver.getShardedNetworkDir(dataDir, id);
+
+		// new networks go to the configured layout.
+		assertEquals(legacyDir, NetworkPathResolver.getNetworkDir(dataDir, id, false));
+		assertEquals(shardedDir, NetworkPathResolver.getNetworkDir(dataDir, id, true));
+
+		// existing networks are found in either layout.
+		Files.createDirectory(legacyDir);
+		assertEquals(legacyDir, NetworkPathResolver.getNetworkDir(dataDir, id, true));
+
+		Files.delete(legacyDir);
+		Files.createDirectories(shardedDir);
+		assertEquals(shardedDir, NetworkPathResolver.getNetworkDir(dataDir, id, false));
+
+		// the link left by the migration tool resolves to the sharded directory.
+		Files.createSymbolicLink(legacyDir, shardedDir);
+		assertEquals(shardedDir, NetworkPathResolver.getNetworkDir(dataDir, id, false));
+	}
+
+	@Test
+	public void testListAndMigrate() throws Exception {
+		Path dataDir = _tmpFolder.newFolder("data").toPath();
+		String id1 = UUID.randomUUID().toString();
+		String id2 = UUID.randomUUID().toString();
+		Path dir1 = Files.createDirectory(dataDir.resolve(id1));
+		Files.createDirectories(NetworkPathResolver.getShardedNetworkDir(dataDir, id2));
+		Files.createDirectory(dataDir.resolve("_archive"));
+
+		File cx1Dir = dir1.resolve(CXNetworkLoader.CX1AspectDir).toFile();
+		File cx2Dir = dir1.resolve(CX2NetworkLoader.cx2AspectDirName).toFile();
+		assertTrue(cx1Dir.mkdir());
+		assertTrue(cx2Dir.mkdir());
+		Files.write(new File(cx1Dir, "cyTableColumn").toPath(), "[]".getBytes(StandardCharsets.UTF_8));
+		Files.createSymbolicLink(new File(cx2Dir, "cyTableColumn").toPath(), new File(cx1Dir, "cyTableColumn").toPath());
+
+		List<Path> dirs = NetworkPathResolver.listNetworkDirs(dataDir);
+		assertEquals(2, dirs.size());
+
+		assertTrue(NetworkDirMigrator.migrateNetwork(dataDir, id1));
+		assertFalse(NetworkDirMigrator.migrateNetwork(dataDir, id1));
+		Path shardedDir = NetworkPathResolver.getShardedNetworkDir(dataDir, id1);
+		assertTrue(Files.isSymbolicLink(dir1));
+		assertEquals(shardedDir, NetworkPathResolver.getNetworkDir(dataDir, id1, false));
+
+		// the link is skipped when listing the networks.
+		dirs = NetworkPathResolver.listNetworkDirs(dataDir);
+		assertEquals(2, dirs.size());
+		assertTrue(dirs.contains(shardedDir));
+
+		assertTrue(NetworkDirMigrator.removeLink(dataDir, id1));
+		assertFalse(Files.exists(dir1, java.nio.file.LinkOption.NOFOLLOW_LINKS));
+		Path link = shardedDir.resolve(CX2NetworkLoader.cx2AspectDirName).resolve("cyTableColumn");
+		assertTrue(Files.isSymbolicLink(link));
+		assertEquals("[]", new String(Files.readAllBytes(link), StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,173 @@
+package org.ndexbio.common.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class TestNetworkSegment {
+
+	@Rule
+	public TemporaryFolder _tmpFolder = new TemporaryFolder();
+
+	private static final String NODES = "[{\"id\":1,\"v\":{\"n\":\"A\"}},{\"id\":2,\"v\":{\"n\":\"B\"}}]";
+	private static final String CX1_NODES = "[{\"@id\":1,\"n\":\"A\"},{\"@id\":2,\"n\":\"B\"}]";
+	private static final String OPAQUE = "[{\"applies_to\":\"node_table\"}]";
+
+	private static void writeAspect(File f, String content, boolean compressed) throws IOException {
+		try (OutputStream out = AspectStorage.newAspectOutputStream(f.getCanonicalPath(), compressed)) {
+			out.write(content.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private static String readAspect(File f) throws IOException {
+		try (InputStream in = AspectStorage.newAspectInputStream(f)) {
+			return IOUtils.toString(in, StandardCharsets.UTF_8);
+		}
+	}
+
+	private File createNetworkDir() throws IOException {
+		File networkDir = _tmpFolder.newFolder();
+		File cx1Dir = new File(networkDir, CXNetworkLoader.CX1AspectDir);
+		File cx2Dir = new File(networkDir, CX2NetworkLoader.cx2AspectDirName);
+		assertTrue(cx1Dir.mkdir());
+		assertTrue(cx2Dir.mkdir());
+		writeAspect(new File(cx1Dir, "nodes"), CX1_NODES, false);
+		writeAspect(new File(cx1Dir, "cyTableColumn"), OPAQUE, false);
+		writeAspect(new File(cx2Dir, "nodes"), NODES, true);
+		Files.createSymbolicLink(new File(cx2Dir, "cyTableColumn").toPath(), new File(cx1Dir, "cyTableColumn").toPath());
+		return networkDir;
+	}
+
+	@Test
+	public void testPackAndRead() throws Exception {
+		File networkDir = createNetworkDir();
+		assertTrue(NetworkSegment.pack(networkDir.toPath()));
+
+		// only the segment file is left in the network directory.
+		assertArrayEquals(new String[] {NetworkSegment.segmentFileName}, networkDir.list());
+
+		File cx1Dir = new File(networkDir, CXNetworkLoader.CX1AspectDir);
+		File cx2Dir = new File(networkDir, CX2NetworkLoader.cx2AspectDirName);
+		assertTrue(AspectStorage.aspectExists(new File(cx1Dir, "nodes")));
+		assertTrue(AspectStorage.aspectExists(new File(cx2Dir, "cyTableColumn")));
+		assertFalse(AspectStorage.aspectExists(new File(cx2Dir, "edges")));
+		assertTrue(AspectStorage.aspectDirectoryExists(cx1Dir.getPath()));
+
+		assertEquals(CX1_NODES, readAspect(new File(cx1Dir, "nodes")));
+		assertEquals(NODES, readAspect(new File(cx2Dir, "nodes")));
+		assertEquals(OPAQUE, readAspect(new File(cx2Dir, "cyTableColumn")));
+		assertTrue(AspectStorage.isCompressed(new File(cx2Dir, "nodes").toPath()));
+
+		try (NetworkSegment seg = NetworkSegment.open(networkDir.toPath())) {
+			seg.verify();
+			assertEquals(2, seg.list(CX2NetworkLoader.cx2AspectDirName).size());
+		}
+
+		// a packed aspect is not a plain file, so it is streamed, and no copy is left behind.
+		String nodesPath = new File(cx2Dir, "nodes").getPath();
+		assertFalse(AspectStorage.isPlainAspectFile(nodesPath));
+		try (AspectStorage.PlainAspectFile d = AspectStorage.getPlainAspectDirectory(cx2Dir.getPath() + File.separator, "nodes")) {
+			assertEquals(NODES, new String(Files.readAllBytes(new File(d.getPath(), "nodes").toPath()), StandardCharsets.UTF_8));
+		}
+		assertEquals(1, networkDir.list().length);
+	}
+
+	@Test
+	public void testUpdateAndDeleteAspects() throws Exception {
+		File networkDir = createNetworkDir();
+		NetworkSegment.pack(networkDir.toPath());
+		File cx1Dir = new File(networkDir, CXNetworkLoader.CX1AspectDir);
+		File cx2Dir = new File(networkDir, CX2NetworkLoader.cx2AspectDirName);
+		Path segFile = new File(networkDir, NetworkSegment.segmentFileName).toPath();
+
+		// nothing to fold, the segment file is not rewritten.
+		Object fileKey = Files.getAttribute(segFile, "fileKey");
+		assertTrue(NetworkSegment.pack(networkDir.toPath()));
+		assertEquals(fileKey, Files.getAttribute(segFile, "fileKey"));
+
+		// the segment is read first, an aspect file written in place is only seen after the update is finished.
+		String newNodes = "[{\"id\":3}]";
+		writeAspect(new File(cx2Dir, "nodes"), newNodes, false);
+		assertEquals(NODES, readAspect(new File(cx2Dir, "nodes")));
+
+		AspectStorage.finishAspectUpdate(networkDir.getPath(), Arrays.asList(
+				new File(cx1Dir, "nodes").getPath(), new File(cx2Dir, "cyTableColumn").getPath()));
+		assertFalse(cx2Dir.exists());
+		assertEquals(newNodes, readAspect(new File(cx2Dir, "nodes")));
+		assertFalse(AspectStorage.aspectExists(new File(cx1Dir, "nodes")));
+		assertFalse(AspectStorage.aspectExists(new File(cx2Dir, "cyTableColumn")));
+		assertTrue(AspectStorage.aspectExists(new File(cx1Dir, "cyTableColumn")));
+	}
+
+	@Test
+	public void testReplaceDirectory() throws Exception {
+		File networkDir = createNetworkDir();
+		NetworkSegment.pack(networkDir.toPath());
+		File cx1Dir = new File(networkDir, CXNetworkLoader.CX1AspectDir);
+		File cx2Dir = new File(networkDir, CX2NetworkLoader.cx2AspectDirName);
+
+		// recreate the cx2 aspects, the opaque aspect links to an aspect that is only in the segment file.
+		assertTrue(cx2Dir.mkdir());
+		String newNodes = "[{\"id\":4}]";
+		writeAspect(new File(cx2Dir, "edges"), newNodes, false);
+		Files.createSymbolicLink(new File(cx2Dir, "cyTableColumn").toPath(), new File(cx1Dir, "cyTableColumn").toPath());
+
+		NetworkSegment.replaceDirectory(networkDir.toPath(), CX2NetworkLoader.cx2AspectDirName);
+		assertFalse(cx2Dir.exists());
+		assertFalse(AspectStorage.aspectExists(new File(cx2Dir, "nodes")));
+		assertEquals(newNodes, readAspect(new File(cx2Dir, "edges")));
+		assertEquals(OPAQUE, readAspect(new File(cx2Dir, "cyTableColumn")));
+		assertEquals(CX1_NODES, readAspect(new File(cx1Dir, "nodes")));
+		try (NetworkSegment seg = NetworkSegment.open(networkDir.toPath())) {
+			seg.verify();
+		}
+	}
+
+	@Test
+	public void testUnpack() throws Exception {
+		File networkDir = createNetworkDir();
+		NetworkSegment.pack(networkDir.toPath());
+		assertTrue(NetworkSegment.unpack(networkDir.toPath()));
+		assertFalse(NetworkSegment.unpack(networkDir.toPath()));
+
+		File cx1Dir = new File(networkDir, CXNetworkLoader.CX1AspectDir);
+		File cx2Dir = new File(networkDir, CX2NetworkLoader.cx2AspectDirName);
+		assertFalse(new File(networkDir, NetworkSegment.segmentFileName).exists());
+		assertEquals(CX1_NODES, new String(Files.readAllBytes(new File(cx1Dir, "nodes").toPath()), StandardCharsets.UTF_8));
+		assertTrue(AspectStorage.isCompressed(new File(cx2Dir, "nodes").toPath()));
+		Path link = new File(cx2Dir, "cyTableColumn").toPath();
+		assertTrue(Files.isSymbolicLink(link));
+		assertEquals(OPAQUE, readAspect(link.toFile()));
+		assertEquals(2, cx2Dir.list().length);
+	}
+
+	@Test
+	public void testCorruptedSegment() throws Exception {
+		File networkDir = createNetworkDir();
+		NetworkSegment.pack(networkDir.toPath());
+		File segFile = new File(networkDir, NetworkSegment.segmentFileName);
+		try (RandomAccessFile f = new RandomAccessFile(segFile, "rw")) {
+			f.seek(f.length() - 2);
+			f.write('x');
+		}
+
+		try (NetworkSegment seg = NetworkSegment.open(networkDir.toPath())) {
+			seg.verify();
+			fail("corrupted segment file should not pass verification.");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("Checksum"));
+		}
+	}
+}
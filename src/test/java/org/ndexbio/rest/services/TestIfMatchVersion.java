@@ -0,0 +1,32 @@
+package org.ndexbio.rest.services;
+
+import static org.junit.Assert.*;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+public class TestIfMatchVersion {
+
+	private static Long parse(String ifMatch) {
+		HttpServletRequest request = EasyMock.createMock(HttpServletRequest.class);
+		EasyMock.expect(request.getHeader("If-Match")).andReturn(ifMatch).anyTimes();
+		EasyMock.replay(request);
+		NdexService service = new NdexService(request) {/* no endpoints */};
+		return service.getIfMatchVersion();
+	}
+
+	@Test
+	public void testParse() {
+		assertNull(parse(null));
+		assertNull(parse("*"));
+		assertEquals(Long.valueOf(12), parse("\"12\""));
+		// If-Match uses the strong comparison, a weak tag never matches.
+		assertEquals(Long.valueOf(-1), parse("W/\"12\""));
+		assertEquals(Long.valueOf(7), parse(" 7 "));
+		// an ETag that is not ours can't match any version.
+		assertEquals(Long.valueOf(-1), parse("\"abc\""));
+	}
+
+}
@@ -0,0 +1,82 @@
+package org.ndexbio.rest.services;
+
+import static org.junit.Assert.*;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class TestServerStatus {
+
+	@Test
+	public void testCountsAreRefreshedPeriodically() throws Exception {
+		AtomicLong now = new AtomicLong(1000);
+		AtomicInteger reads = new AtomicInteger();
+		ServerStatus status = new ServerStatus(60000,
+				t -> new ServerStatus.Counts(reads.incrementAndGet(), 2, 3, t), now::get);
+
+		assertEquals(1, status.getCounts().networkCount);
+		now.addAndGet(59999);
+		assertEquals(1, status.getCounts().networkCount);
+		assertEquals(1, reads.get());
+
+		now.addAndGet(1);
+		ServerStatus.Counts c = status.getCounts();
+		assertEquals(2, c.networkCount);
+		assertEquals(now.get(), c.readAt);
+	}
+
+	@Test
+	public void testFailedRefreshKeepsOldCounts() throws Exception {
+		AtomicLong now = new AtomicLong(0);
+		AtomicInteger reads = new AtomicInteger();
+		ServerStatus status = new ServerStatus(1000, t -> {
+			if ( reads.incrementAndGet() > 1)
+				throw new SQLException("database is down");
+			return new ServerStatus.Counts(10, 20, 30, t);
+		}, now::get);
+
+		assertEquals(20, status.getCounts().userCount);
+		now.set(1000);
+		assertEquals(20, status.getCounts().userCount);
+		// not retried until the next refresh.
+		now.set(1500);
+		assertEquals(20, status.getCounts().userCount);
+		assertEquals(2, reads.get());
+	}
+
+	@Test
+	public void testFirstReadFailure() {
+		ServerStatus status = new ServerStatus(1000, t -> {
+			throw new SQLException("database is down");
+		}, () -> 0);
+		try {
+			status.getCounts();
+			fail("counts without a database");
+		} catch (@SuppressWarnings("unused") Exception e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testReadiness() {
+		assertTrue(ServerStatus.getReadinessProblems(poolStats(10, 3, 0), false).isEmpty());
+		assertTrue(ServerStatus.getReadinessProblems(poolStats(10, 10, 0), false).isEmpty());
+		assertEquals(1, ServerStatus.getReadinessProblems(poolStats(10, 10, 2), false).size());
+		assertEquals(1, ServerStatus.getReadinessProblems(poolStats(10, 3, 0), true).size());
+		assertEquals(2, ServerStatus.getReadinessProblems(null, true).size());
+	}
+
+	private static Map<String, Object> poolStats(int maxTotal, int active, int waiting) {
+		Map<String, Object> stats = new HashMap<>();
+		stats.put("maxTotal", Integer.valueOf(maxTotal));
+		stats.put("active", Integer.valueOf(active));
+		stats.put("waiting", Integer.valueOf(waiting));
+		return stats;
+	}
+
+}
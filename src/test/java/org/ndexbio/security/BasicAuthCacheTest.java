@@ -0,0 +1,68 @@
+package org.ndexbio.security;
+
+import static org.junit.Assert.*;
+
+import java.util.UUID;
+
+import org.junit.Test;
+import org.ndexbio.model.object.User;
+
+public class BasicAuthCacheTest {
+
+	private static User createUser(String userName) {
+		User user = new User();
+		user.setExternalId(UUID.randomUUID());
+		user.setUserName(userName);
+		return user;
+	}
+
+	@Test
+	public void testGetAndPut() {
+		BasicAuthCache cache = new BasicAuthCache(60, 100);
+		assertTrue(cache.isEnabled());
+		User u = createUser("user1");
+
+		assertNull(cache.get("user1", "pswd"));
+		cache.put("user1", "pswd", u, cache.getGeneration());
+		assertSame(u, cache.get("user1", "pswd"));
+
+		// a different password, or the same characters split differently, is a different key.
+		assertNull(cache.get("user1", "pswd2"));
+		assertNull(cache.get("user1p", "swd"));
+	}
+
+	@Test
+	public void testInvalidation() {
+		BasicAuthCache cache = new BasicAuthCache(60, 100);
+		User u1 = createUser("user1");
+		User u2 = createUser("user2");
+		cache.put("user1", "pswd", u1, cache.getGeneration());
+		cache.put("user2", "pswd", u2, cache.getGeneration());
+
+		cache.invalidateUser(u1.getExternalId());
+		assertNull(cache.get("user1", "pswd"));
+		assertSame(u2, cache.get("user2", "pswd"));
+
+		// an authentication that started before an invalidation is not cached.
+		long generation = cache.getGeneration();
+		cache.invalidateUser(u1.getExternalId());
+		cache.put("user1", "pswd", u1, generation);
+		assertNull(cache.get("user1", "pswd"));
+
+		cache.invalidateAll();
+		assertNull(cache.get("user2", "pswd"));
+	}
+
+	@Test
+	public void testSizeLimitAndDisabled() {
+		BasicAuthCache cache = new BasicAuthCache(60, 10);
+		for ( int i = 0; i < 100; i++)
+			cache.put("user" + i, "pswd", createUser("user" + i), cache.getGeneration());
+		assertTrue(cache.size() <= 10);
+
+		BasicAuthCache disabled = new BasicAuthCache(0, 10);
+		assertFalse(disabled.isEnabled());
+		disabled.put("user1", "pswd", createUser("user1"), disabled.getGeneration());
+		assertNull(disabled.get("user1", "pswd"));
+	}
+}
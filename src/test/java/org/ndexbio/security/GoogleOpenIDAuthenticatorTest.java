@@ -0,0 +1,183 @@
+package org.ndexbio.security;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.interfaces.RSAPrivateKey;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.model.exceptions.UnauthorizedOperationException;
+import org.ndexbio.model.object.User;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken.Payload;
+import com.google.api.client.googleapis.auth.oauth2.GooglePublicKeysManager;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Verifies Google style id tokens against a local server that publishes the signing certificate the same way
+ * https://www.googleapis.com/oauth2/v1/certs does.
+ */
+public class GoogleOpenIDAuthenticatorTest {
+
+	@ClassRule
+	public static TemporaryFolder _tmpFolder = new TemporaryFolder();
+
+	private static final String clientID = "test-client";
+	private static final String keyId = "key1";
+	private static final String storePassword = "changeit";
+
+	private static HttpServer certServer;
+	private static final AtomicInteger certRequests = new AtomicInteger();
+	private static String certsURL;
+	private static RSAPrivateKey signingKey;
+	private static RSAPrivateKey otherKey;
+
+	private static class TestAuthenticator extends GoogleOpenIDAuthenticator {
+		final AtomicInteger lookups = new AtomicInteger();
+		final User user;
+
+		TestAuthenticator(long tokenCacheTTL) {
+			super(clientID, new GooglePublicKeysManager.Builder(new NetHttpTransport(), GsonFactory.getDefaultInstance())
+					.setPublicCertsEncodedUrl(certsURL).build(), tokenCacheTTL, 60);
+			user = new User();
+			user.setExternalId(UUID.randomUUID());
+			user.setUserName("user1");
+		}
+
+		@Override
+		protected User getUserFromPayload(Payload payload) {
+			lookups.incrementAndGet();
+			user.setEmailAddress(payload.getEmail());
+			return user;
+		}
+	}
+
+	@BeforeClass
+	public static void startCertServer() throws Exception {
+		KeyStore store = createKeyStore("signing");
+		signingKey = (RSAPrivateKey) store.getKey("signing", storePassword.toCharArray());
+		otherKey = (RSAPrivateKey) createKeyStore("other").getKey("other", storePassword.toCharArray());
+
+		Certificate cert = store.getCertificate("signing");
+		String pem = "-----BEGIN CERTIFICATE-----\n"
+				+ Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(cert.getEncoded())
+				+ "\n-----END CERTIFICATE-----\n";
+		byte[] body = ("{\"" + keyId + "\": \"" + pem.replace("\n", "\\n") + "\"}").getBytes(StandardCharsets.UTF_8);
+
+		certServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		certServer.createContext("/certs", exchange -> {
+			certRequests.incrementAndGet();
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.getResponseHeaders().add("Cache-Control", "public, max-age=3600");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		certServer.start();
+		certsURL = "http://localhost:" + certServer.getAddress().getPort() + "/certs";
+	}
+
+	@AfterClass
+	public static void stopCertServer() {
+		if ( certServer != null)
+			certServer.stop(0);
+	}
+
+	// creates a key pair with a self-signed certificate.
+	private static KeyStore createKeyStore(String alias) throws Exception {
+		File storeFile = new File(_tmpFolder.getRoot(), alias + ".p12");
+		Process p = new ProcessBuilder(System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool",
+				"-genkeypair", "-alias", alias, "-keyalg", "RSA", "-keysize", "2048", "-validity", "2",
+				"-dname", "CN=" + alias, "-storetype", "PKCS12", "-keystore", storeFile.getAbsolutePath(),
+				"-storepass", storePassword, "-keypass", storePassword).redirectErrorStream(true).start();
+		p.getInputStream().readAllBytes();
+		assertEquals(0, p.waitFor());
+
+		KeyStore store = KeyStore.getInstance("PKCS12");
+		try (InputStream in = new FileInputStream(storeFile)) {
+			store.load(in, storePassword.toCharArray());
+		}
+		return store;
+	}
+
+	private static String createToken(RSAPrivateKey key, String email, long expiresInSeconds) {
+		long now = System.currentTimeMillis();
+		return JWT.create().withKeyId(keyId).withIssuer("https://accounts.google.com").withAudience(clientID)
+				.withSubject(UUID.randomUUID().toString()).withClaim("email", email)
+				.withIssuedAt(new Date(now - 1000)).withExpiresAt(new Date(now + expiresInSeconds * 1000))
+				.sign(Algorithm.RSA256(null, key));
+	}
+
+	@Test
+	public void testVerifiedTokenCache() throws Exception {
+		TestAuthenticator authenticator = new TestAuthenticator(300);
+		String token = createToken(signingKey, "user1@example.com", 3600);
+
+		User u = authenticator.getUserByIdToken(token);
+		assertEquals("user1@example.com", u.getEmailAddress());
+		assertSame(u, authenticator.getUserByIdToken(token));
+		assertEquals(u.getExternalId(), authenticator.getUserUUIDByIdToken(token));
+		assertEquals(1, authenticator.lookups.get());
+
+		// changes to the user account drop the cached tokens of the user.
+		TokenUserCache.invalidateUser(u.getExternalId());
+		authenticator.getUserByIdToken(token);
+		assertEquals(2, authenticator.lookups.get());
+
+		// a UUID lookup caches the user too.
+		String token2 = createToken(signingKey, "user2@example.com", 3600);
+		UUID userId = authenticator.getUserUUIDByIdToken(token2);
+		assertEquals(userId, authenticator.getUserByIdToken(token2).getExternalId());
+		assertEquals(3, authenticator.lookups.get());
+	}
+
+	@Test
+	public void testSharedPublicKeys() throws Exception {
+		int requestsBefore = certRequests.get();
+		TestAuthenticator authenticator = new TestAuthenticator(0);
+		for ( int i = 0; i < 10; i++)
+			authenticator.getUserByIdToken(createToken(signingKey, "user" + i + "@example.com", 3600));
+		assertEquals(10, authenticator.lookups.get());
+
+		// the certificates are loaded by the background refresh, or by the first verification if it came first.
+		assertTrue(certRequests.get() - requestsBefore <= 2);
+	}
+
+	@Test
+	public void testInvalidTokens() throws Exception {
+		TestAuthenticator authenticator = new TestAuthenticator(300);
+		try {
+			authenticator.getUserByIdToken(createToken(otherKey, "user1@example.com", 3600));
+			fail("Token signed with an unknown key was accepted.");
+		} catch (UnauthorizedOperationException e) {
+			// expected
+		}
+		try {
+			authenticator.getUserByIdToken(createToken(signingKey, "user1@example.com", -3600));
+			fail("Expired token was accepted.");
+		} catch (UnauthorizedOperationException e) {
+			// expected
+		}
+		assertEquals(0, authenticator.lookups.get());
+	}
+}
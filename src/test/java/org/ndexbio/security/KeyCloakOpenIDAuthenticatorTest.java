@@ -6,12 +6,28 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
 import java.security.spec.InvalidKeySpecException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
+import org.ndexbio.model.object.User;
 
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
 import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class KeyCloakOpenIDAuthenticatorTest {
 
@@ -38,4 +54,106 @@ public class KeyCloakOpenIDAuthenticatorTest {
 		//fail("Not yet implemented");
 	}
 
+	private static final String issuer = "http://localhost:8080/realms/ndex";
+
+	private static KeyPair createKeyPair() throws NoSuchAlgorithmException {
+		KeyPairGenerator gen = KeyPairGenerator.getInstance("RSA");
+		gen.initialize(2048);
+		return gen.generateKeyPair();
+	}
+
+	private static String createToken(KeyPair keys, String kid, String userName, Date expiresAt) {
+		return JWT.create().withIssuer(issuer).withKeyId(kid)
+				.withClaim("preferred_username", userName)
+				.withClaim("email", userName + "@example.com")
+				.withExpiresAt(expiresAt)
+				.sign(Algorithm.RSA256((RSAPublicKey) keys.getPublic(), (RSAPrivateKey) keys.getPrivate()));
+	}
+
+	// resolves users without a database and counts the lookups.
+	private static class TestAuthenticator extends KeyCloakOpenIDAuthenticator {
+		AtomicInteger lookups = new AtomicInteger();
+
+		TestAuthenticator(KeyCloakSigningKeys keys) {
+			super(keys, issuer, 60);
+		}
+
+		@Override
+		protected User getUserFromVerifiedToken(DecodedJWT jwt) {
+			lookups.incrementAndGet();
+			User u = new User();
+			u.setExternalId(UUID.randomUUID());
+			u.setUserName(jwt.getClaim("preferred_username").asString());
+			return u;
+		}
+	}
+
+	@Test
+	public void testVerifiedTokenCache() throws Exception {
+		KeyPair keys = createKeyPair();
+		String pubKeyStr = Base64.getEncoder().encodeToString(keys.getPublic().getEncoded());
+		TestAuthenticator authenticator = new TestAuthenticator(new KeyCloakSigningKeys(pubKeyStr));
+
+		String token = createToken(keys, "k1", "user1", new Date(System.currentTimeMillis() + 60000));
+		User u = authenticator.getUserByIdToken(token);
+		assertEquals("user1", u.getUserName());
+		assertSame(u, authenticator.getUserByIdToken(token));
+		assertEquals(u.getExternalId(), authenticator.getUserUUIDByIdToken(token));
+		assertEquals(1, authenticator.lookups.get());
+
+		TokenUserCache.invalidateUser(u.getExternalId());
+		assertNotSame(u, authenticator.getUserByIdToken(token));
+		assertEquals(2, authenticator.lookups.get());
+
+		// expired tokens are rejected, and never cached.
+		String expired = createToken(keys, "k1", "user2", new Date(System.currentTimeMillis() - 1000));
+		try {
+			authenticator.getUserByIdToken(expired);
+			fail("Expired token should be rejected.");
+		} catch (TokenExpiredException e) {
+			// expected
+		}
+
+		// tokens signed by another key are rejected.
+		String forged = createToken(createKeyPair(), "k1", "user1", new Date(System.currentTimeMillis() + 60000));
+		try {
+			authenticator.getUserByIdToken(forged);
+			fail("Token with invalid signature should be rejected.");
+		} catch (SignatureVerificationException e) {
+			// expected
+		}
+		assertEquals(2, authenticator.lookups.get());
+
+		// a UUID lookup caches the user too.
+		String token3 = createToken(keys, "k1", "user3", new Date(System.currentTimeMillis() + 60000));
+		UUID userId = authenticator.getUserUUIDByIdToken(token3);
+		assertEquals(userId, authenticator.getUserByIdToken(token3).getExternalId());
+		assertEquals(3, authenticator.lookups.get());
+	}
+
+	@Test
+	public void testKeySet() throws Exception {
+		KeyPair keys1 = createKeyPair();
+		KeyPair keys2 = createKeyPair();
+		RSAPublicKey pub1 = (RSAPublicKey) keys1.getPublic();
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		String jwks = "{\"keys\":[{\"kid\":\"k1\",\"kty\":\"RSA\",\"use\":\"sig\",\"n\":\"" +
+				encoder.encodeToString(pub1.getModulus().toByteArray()) + "\",\"e\":\"" +
+				encoder.encodeToString(pub1.getPublicExponent().toByteArray()) + "\"}," +
+				"{\"kid\":\"k3\",\"kty\":\"EC\",\"crv\":\"P-256\"}]}";
+		Map<String, RSAPublicKey> keyMap = KeyCloakSigningKeys.parseJWKS(new ObjectMapper().readTree(jwks));
+		assertEquals(Collections.singleton("k1"), keyMap.keySet());
+		assertEquals(pub1.getModulus(), keyMap.get("k1").getModulus());
+
+		TestAuthenticator authenticator = new TestAuthenticator(new KeyCloakSigningKeys(keyMap));
+		Date exp = new Date(System.currentTimeMillis() + 60000);
+		assertEquals("user1", authenticator.getUserByIdToken(createToken(keys1, "k1", "user1", exp)).getUserName());
+		try {
+			authenticator.getUserByIdToken(createToken(keys2, "k2", "user2", exp));
+			fail("Token signed by an unknown key should be rejected.");
+		} catch (SignatureVerificationException e) {
+			// expected
+		}
+	}
+
 }
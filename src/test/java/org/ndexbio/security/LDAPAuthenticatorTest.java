@@ -0,0 +1,201 @@
+package org.ndexbio.security;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ndexbio.model.exceptions.NdexException;
+import org.ndexbio.model.exceptions.UnauthorizedOperationException;
+import org.ndexbio.model.object.User;
+import org.ndexbio.rest.Configuration;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSimpleBindRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+
+/**
+ * Runs the LDAP authenticator against an in-memory directory server.
+ */
+public class LDAPAuthenticatorTest {
+
+	private static final String baseDN = "dc=example,dc=com";
+	private static final String peopleDN = "ou=people," + baseDN;
+
+	private InMemoryDirectoryServer server;
+	private final AtomicInteger binds = new AtomicInteger();
+
+	@Before
+	public void startServer() throws Exception {
+		InMemoryDirectoryServerConfig cfg = new InMemoryDirectoryServerConfig(baseDN);
+		// memberOf is an Active Directory attribute.
+		cfg.setSchema(null);
+		cfg.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("default", 0));
+		cfg.addInMemoryOperationInterceptor(new InMemoryOperationInterceptor() {
+			@Override
+			public void processSimpleBindRequest(InMemoryInterceptedSimpleBindRequest request) {
+				binds.incrementAndGet();
+			}
+		});
+		server = new InMemoryDirectoryServer(cfg);
+		server.add("dn: " + baseDN, "objectClass: top", "objectClass: domain", "dc: example");
+		server.add("dn: " + peopleDN, "objectClass: top", "objectClass: organizationalUnit", "ou: people");
+		server.add("dn: uid=user1," + peopleDN, "objectClass: inetOrgPerson", "uid: user1", "cn: User One",
+				"givenName: User", "sn: One", "mail: user1@example.com", "userPassword: pswd1",
+				"memberOf: CN=ndex,ou=groups," + baseDN);
+		server.add("dn: uid=user2," + peopleDN, "objectClass: inetOrgPerson", "uid: user2", "cn: User Two",
+				"givenName: User", "sn: Two", "mail: user2@example.com", "userPassword: pswd2");
+		server.startListening();
+	}
+
+	@After
+	public void stopServer() {
+		server.shutDown(true);
+	}
+
+	private Configuration createConfig(boolean useCache, int poolSize) throws NdexException {
+		return createConfig(useCache, poolSize, new HashMap<>());
+	}
+
+	private Configuration createConfig(boolean useCache, int poolSize, Map<String, String> overrides) throws NdexException {
+		Map<String, String> props = new HashMap<>();
+		props.put("PROP_LDAP_URL", "ldap://localhost:" + server.getListenPort());
+		props.put("AD_SEARCH_BASE", peopleDN);
+		props.put("AD_NDEX", "ndex");
+		props.put("AD_CTX_PRINCIPLE", "uid=%%USER_NAME%%," + peopleDN);
+		props.put("AD_SEARCH_FILTER", "(uid=%%USER_NAME%%)");
+		props.put("AD_CONNECTION_POOL_SIZE", Integer.toString(poolSize));
+		if ( useCache) {
+			props.put("AD_AUTH_USE_CACHE", "true");
+			props.put("AD_AUTH_CACHE_TTL", "60");
+			props.put("AD_AUTH_NEGATIVE_CACHE_TTL", "1");
+		}
+		props.putAll(overrides);
+
+		Configuration config = EasyMock.mock(Configuration.class);
+		EasyMock.expect(config.getProperty(EasyMock.anyString()))
+				.andAnswer(() -> props.get(EasyMock.getCurrentArgument(0))).anyTimes();
+		EasyMock.expect(config.getRequiredProperty(EasyMock.anyString())).andAnswer(() -> {
+			String value = props.get(EasyMock.getCurrentArgument(0));
+			if ( value == null)
+				throw new NdexException("Missing property " + EasyMock.getCurrentArgument(0));
+			return value;
+		}).anyTimes();
+		EasyMock.replay(config);
+		return config;
+	}
+
+	@Test
+	public void testPooledAuthentication() throws Exception {
+		LDAPAuthenticator authenticator = new LDAPAuthenticator(createConfig(false, 2));
+
+		for ( int i = 0; i < 5; i++)
+			assertTrue(authenticator.authenticateUser("user1", "pswd1"));
+		// every authentication binds, but they all share one connection.
+		assertEquals(5, binds.get());
+		assertEquals(1, authenticator.connectionPool.getIdleCount());
+
+		// valid credentials, but not in the NDEx group.
+		assertFalse(authenticator.authenticateUser("user2", "pswd2"));
+
+		try {
+			authenticator.authenticateUser("user1", "wrong");
+			fail("Wrong password was accepted.");
+		} catch (UnauthorizedOperationException e) {
+			// expected
+		}
+		// the connection of a failed bind is not reused.
+		assertTrue(authenticator.authenticateUser("user1", "pswd1"));
+
+		User u = authenticator.getNewUser("user1", "pswd1");
+		assertEquals("User", u.getFirstName());
+		assertEquals("One", u.getLastName());
+		assertEquals("user1@example.com", u.getEmailAddress());
+	}
+
+	@Test
+	public void testSecondPrincipalPattern() throws Exception {
+		// the directory rejects the first pattern as an invalid DN, not as wrong credentials.
+		Map<String, String> props = new HashMap<>();
+		props.put("AD_CTX_PRINCIPLE", "uid=%%USER_NAME%%,,invalid");
+		props.put("AD_CTX_PRINCIPLE2", "uid=%%USER_NAME%%," + peopleDN);
+
+		for ( int poolSize : new int[] {0, 2}) {
+			LDAPAuthenticator authenticator = new LDAPAuthenticator(createConfig(false, poolSize, props));
+			assertTrue(authenticator.authenticateUser("user1", "pswd1"));
+			assertFalse(authenticator.authenticateUser("user2", "pswd2"));
+			try {
+				authenticator.authenticateUser("user1", "wrong");
+				fail("Wrong password was accepted.");
+			} catch (UnauthorizedOperationException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testConcurrentAuthentication() throws Exception {
+		LDAPAuthenticator authenticator = new LDAPAuthenticator(createConfig(false, 2));
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for ( int i = 0; i < 40; i++) {
+				String user = i % 2 == 0 ? "user1" : "user2";
+				String pswd = i % 2 == 0 ? "pswd1" : "pswd2";
+				results.add(executor.submit(() -> Boolean.valueOf(authenticator.authenticateUser(user, pswd))));
+			}
+			for ( int i = 0; i < results.size(); i++)
+				assertEquals(i % 2 == 0, results.get(i).get().booleanValue());
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(authenticator.connectionPool.getIdleCount() <= 2);
+	}
+
+	@Test
+	public void testCachedResults() throws Exception {
+		LDAPAuthenticator authenticator = new LDAPAuthenticator(createConfig(true, 2));
+
+		for ( int i = 0; i < 3; i++)
+			assertTrue(authenticator.authenticateUser("user1", "pswd1"));
+		assertEquals(1, binds.get());
+
+		for ( int i = 0; i < 3; i++)
+			assertFalse(authenticator.authenticateUser("user2", "pswd2"));
+		assertEquals(2, binds.get());
+
+		for ( int i = 0; i < 3; i++) {
+			try {
+				authenticator.authenticateUser("user1", "wrong");
+				fail("Wrong password was accepted.");
+			} catch (UnauthorizedOperationException e) {
+				// expected
+			}
+		}
+		assertEquals(3, binds.get());
+
+		// rejected credentials expire sooner than accepted ones.
+		Thread.sleep(1500);
+		assertTrue(authenticator.authenticateUser("user1", "pswd1"));
+		assertEquals(3, binds.get());
+		try {
+			authenticator.authenticateUser("user1", "wrong");
+			fail("Wrong password was accepted.");
+		} catch (UnauthorizedOperationException e) {
+			// expected
+		}
+		assertEquals(4, binds.get());
+	}
+}